@@ -21,7 +21,12 @@
 
 package ca.mcgill.cs.stg.jetuml;
 
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
 import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
@@ -34,25 +39,45 @@ import ca.mcgill.cs.stg.jetuml.diagrams.ObjectDiagramGraph;
 import ca.mcgill.cs.stg.jetuml.diagrams.SequenceDiagramGraph;
 import ca.mcgill.cs.stg.jetuml.diagrams.StateDiagramGraph;
 import ca.mcgill.cs.stg.jetuml.diagrams.UseCaseDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.framework.BatchRenderer;
 import ca.mcgill.cs.stg.jetuml.framework.EditorFrame;
+import ca.mcgill.cs.stg.jetuml.framework.Instrumentation;
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
 
 /**
  * A program for editing UML diagrams.
+ * 
+ * To show the window as early as possible, the files given as 
+ * arguments are opened once the window is shown, and the classes
+ * and fonts needed to draw diagrams are loaded in the background
+ * in the meantime. The time until the window can be used is 
+ * recorded by Instrumentation.
  */
 public final class UMLEditor
 {
 	private static final int JAVA_MAJOR_VERSION = 7;
 	private static final int JAVA_MINOR_VERSION = 0;
+	private static final int WARM_UP_IMAGE_SIZE = 200;
+	private static final String WARM_UP_TEXT = "JetUML 0123456789 <<interface>> = ()";
 	
 	private UMLEditor() {}
 	
 	/**
 	 * @param pArgs Each argument is a file to open upon launch.
-	 * Can be empty.
+	 * Can be empty. If the first argument is -batch, the remaining 
+	 * arguments are processed by a BatchRenderer without opening
+	 * any window.
 	 */
 	public static void main(String[] pArgs)
 	{
+		final long start = System.nanoTime();
+		if( pArgs.length > 0 && pArgs[0].equals("-batch") )
+		{
+			System.setProperty("java.awt.headless", "true");
+			System.exit(new BatchRenderer(UMLEditor.class).run(Arrays.copyOfRange(pArgs, 1, pArgs.length), System.out));
+		}
 		checkVersion();
+		Instrumentation.register();
 		try
 		{
 			System.setProperty("apple.laf.useScreenMenuBar", "true");
@@ -62,6 +87,7 @@ public final class UMLEditor
 			// well, we tried...
 		}
 		final String[] arguments = pArgs;
+		startWarmUp();
 		
 		SwingUtilities.invokeLater(new Runnable()
 		{
@@ -69,20 +95,70 @@ public final class UMLEditor
 			public void run()
 			{
 				setLookAndFeel();
-				EditorFrame frame = new EditorFrame(UMLEditor.class);
+				final EditorFrame frame = new EditorFrame(UMLEditor.class);
 				frame.addGraphType("class_diagram", ClassDiagramGraph.class);
 				frame.addGraphType("sequence_diagram", SequenceDiagramGraph.class);
 				frame.addGraphType("state_diagram", StateDiagramGraph.class);
 			    frame.addGraphType("object_diagram", ObjectDiagramGraph.class);
 			    frame.addGraphType("usecase_diagram", UseCaseDiagramGraph.class);
 				frame.setVisible(true);
-				frame.readArgs(arguments);
-				frame.addWelcomeTab();
-				frame.setIcon();
+				
+				// Lets the empty window be painted before opening the files
+				SwingUtilities.invokeLater(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						frame.readArgs(arguments);
+						frame.addWelcomeTab();
+						frame.setIcon();
+						Instrumentation.setStartupTime(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+					}
+				});
 			}
 		});
    }
 	
+	/*
+	 * Starts a thread that creates the node prototypes of each type
+	 * of diagram, which loads their classes, and that draws and measures
+	 * a text, which loads the fonts, before they are needed to build the
+	 * tool bars and to draw the diagrams. The thread does not use Swing, 
+	 * whose components, including the labels that MultiLineString draws
+	 * with, must only be used from the event dispatch thread. On a single 
+	 * processor, this would only compete with the construction of the window.
+	 */
+	private static void startWarmUp()
+	{
+		if( Runtime.getRuntime().availableProcessors() < 2 )
+		{
+			return;
+		}
+		Thread thread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				Graph[] graphs = new Graph[] { new ClassDiagramGraph(), new SequenceDiagramGraph(), new StateDiagramGraph(),
+						new ObjectDiagramGraph(), new UseCaseDiagramGraph() };
+				for( Graph graph : graphs )
+				{
+					graph.getNodePrototypes();
+					graph.getEdgePrototypes();
+				}
+				BufferedImage image = new BufferedImage(WARM_UP_IMAGE_SIZE, WARM_UP_IMAGE_SIZE, BufferedImage.TYPE_INT_ARGB);
+				Graphics2D graphics = image.createGraphics();
+				graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+				graphics.getFontMetrics().stringWidth(WARM_UP_TEXT);
+				graphics.drawString(WARM_UP_TEXT, 0, WARM_UP_IMAGE_SIZE / 2);
+				graphics.dispose();
+			}
+		}, "JetUML warm-up");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+	
 	private static void setLookAndFeel()
 	{
 		try
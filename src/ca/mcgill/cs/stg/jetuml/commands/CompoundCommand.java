@@ -20,13 +20,18 @@
  *******************************************************************************/
 package ca.mcgill.cs.stg.jetuml.commands;
 
+import java.beans.DefaultPersistenceDelegate;
+import java.beans.Encoder;
+import java.beans.Statement;
+import java.util.Collections;
+import java.util.List;
 import java.util.Stack;
 
 /**
  * Holds multiple commands to be executed or undone.
  * @author EJBQ
  */
-public class CompoundCommand implements Command
+public class CompoundCommand implements MergeableCommand
 {
 	private Stack<Command> aCommands;
 
@@ -40,11 +45,21 @@ public class CompoundCommand implements Command
 
 	/**
 	 * Adds a command to the stack to be performed.
+	 * If the last command added can absorb pCommand, 
+	 * pCommand is merged into it instead.
 	 * @param pCommand The command to be added
 	 */
 	public void add(Command pCommand)
 	{
-		aCommands.push(pCommand);
+		if(!aCommands.empty() && aCommands.peek() instanceof MergeableCommand && 
+				((MergeableCommand)aCommands.peek()).canMerge(pCommand))
+		{
+			((MergeableCommand)aCommands.peek()).merge(pCommand);
+		}
+		else
+		{
+			aCommands.push(pCommand);
+		}
 	}
 
 	/**
@@ -55,6 +70,84 @@ public class CompoundCommand implements Command
 	{
 		return aCommands.size();
 	}
+	
+	/**
+	 * @return The commands in this compound command. The list is in 
+	 * execution order if this command was last executed, and in 
+	 * reverse order if it was last undone.
+	 */
+	public List<Command> getCommands()
+	{
+		return Collections.unmodifiableList(aCommands);
+	}
+
+	/**
+	 * A compound command can be merged with another compound command 
+	 * if both only contain mergeable commands, and if each command
+	 * of pCommand can be merged with one of the commands of this one.
+	 * This command must have been last executed.
+	 * @param pCommand The command to merge.
+	 * @return True if pCommand can be merged into this command.
+	 */
+	@Override
+	public boolean canMerge(Command pCommand)
+	{
+		if(!(pCommand instanceof CompoundCommand) || ((CompoundCommand)pCommand).size() == 0 || !isMergeable())
+		{
+			return false;
+		}
+		for(Command command : ((CompoundCommand)pCommand).aCommands)
+		{
+			if(!(command instanceof MergeableCommand) || findMergeTarget(command) == null)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Merges each command of pCommand into the command of this 
+	 * compound command that applies to the same element.
+	 * @param pCommand A compound command such that canMerge(pCommand) is true.
+	 */
+	@Override
+	public void merge(Command pCommand)
+	{
+		assert canMerge(pCommand);
+		for(Command command : ((CompoundCommand)pCommand).aCommands)
+		{
+			findMergeTarget(command).merge(command);
+		}
+	}
+	
+	/*
+	 * Only merge compound commands whose effects do not depend on 
+	 * the order in which their commands are executed.
+	 */
+	private boolean isMergeable()
+	{
+		for(Command command : aCommands)
+		{
+			if(!(command instanceof MergeableCommand) || command instanceof CompoundCommand)
+			{
+				return false;
+			}
+		}
+		return aCommands.size() > 0;
+	}
+	
+	private MergeableCommand findMergeTarget(Command pCommand)
+	{
+		for(Command command : aCommands)
+		{
+			if(((MergeableCommand)command).canMerge(pCommand))
+			{
+				return (MergeableCommand)command;
+			}
+		}
+		return null;
+	}
 
 	/**
 	 * Undoes each command on the stack.
@@ -87,4 +180,28 @@ public class CompoundCommand implements Command
 		}
 		aCommands = temp;
 	}
+	
+	/**
+	 * Adds a persistence delegate to a given encoder that
+	 * encodes the commands held by a compound command. Also
+	 * adds the delegates of the other commands in this package,
+	 * since a compound command can contain any of them.
+	 * @param pEncoder the encoder to which to add the delegate
+	 */
+	public static void setPersistenceDelegate(Encoder pEncoder)
+	{
+		pEncoder.setPersistenceDelegate(CompoundCommand.class, new DefaultPersistenceDelegate()
+		{
+			protected void initialize(Class<?> pType, Object pOldInstance, Object pNewInstance, Encoder pOut) 
+			{
+				super.initialize(pType, pOldInstance, pNewInstance, pOut);
+				for(Command command : ((CompoundCommand) pOldInstance).aCommands)
+				{
+					pOut.writeStatement( new Statement(pOldInstance, "add", new Object[]{ command }) );            
+				}
+			}
+		});
+		MoveCommand.setPersistenceDelegate(pEncoder);
+		GraphElementRelatedCommand.setPersistenceDelegate(pEncoder);
+	}
 }
@@ -20,6 +20,10 @@
  *******************************************************************************/
 package ca.mcgill.cs.stg.jetuml.commands;
 
+import java.beans.Encoder;
+import java.beans.Expression;
+import java.beans.PersistenceDelegate;
+
 import ca.mcgill.cs.stg.jetuml.graph.Graph;
 import ca.mcgill.cs.stg.jetuml.graph.GraphElement;
 
@@ -28,7 +32,7 @@ import ca.mcgill.cs.stg.jetuml.graph.GraphElement;
  * 
  * @author Martin P. Robillard
  */
-abstract class GraphElementRelatedCommand implements Command
+public abstract class GraphElementRelatedCommand implements Command
 {
 	protected GraphElement aElement;
 	protected Graph aGraph;
@@ -43,4 +47,43 @@ abstract class GraphElementRelatedCommand implements Command
 		aGraph = pGraph;
 		aElement = pElement;
 	}
+	
+	/**
+	 * @return The graph targeted by this command.
+	 */
+	public Graph getGraph()
+	{
+		return aGraph;
+	}
+	
+	/**
+	 * @return The element this command relates to.
+	 */
+	public GraphElement getElement()
+	{
+		return aElement;
+	}
+	
+	/**
+	 * Adds a persistence delegate to a given encoder for each
+	 * of the concrete commands that relate to a single element.
+	 * The commands are re-created through their constructor. 
+	 * @param pEncoder the encoder to which to add the delegates
+	 */
+	public static void setPersistenceDelegate(Encoder pEncoder)
+	{
+		PersistenceDelegate delegate = new PersistenceDelegate()
+		{
+			protected Expression instantiate(Object pOldInstance, Encoder pOut)
+			{
+				GraphElementRelatedCommand command = (GraphElementRelatedCommand) pOldInstance;
+				return new Expression(pOldInstance, pOldInstance.getClass(), "new", 
+						new Object[]{ command.aGraph, command.aElement });
+			}
+		};
+		pEncoder.setPersistenceDelegate(AddNodeCommand.class, delegate);
+		pEncoder.setPersistenceDelegate(DeleteNodeCommand.class, delegate);
+		pEncoder.setPersistenceDelegate(AddEdgeCommand.class, delegate);
+		pEncoder.setPersistenceDelegate(RemoveEdgeCommand.class, delegate);
+	}
 }
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.commands;
+
+/**
+ * A command that can absorb a command executed right after it,
+ * so that both can be undone and redone as a single command.
+ * This is used to keep a single entry in the undo history for
+ * a sequence of small edits of the same element, such as 
+ * repeated moves of a node.
+ */
+public interface MergeableCommand extends Command
+{
+	/**
+	 * @param pCommand A command executed right after this one.
+	 * @return True if merge(pCommand) can be called.
+	 */
+	boolean canMerge(Command pCommand);
+	
+	/**
+	 * Changes this command so that executing it has the same
+	 * effect as executing it then executing pCommand.
+	 * 
+	 * @param pCommand A command such that canMerge(pCommand) is true.
+	 */
+	void merge(Command pCommand);
+}
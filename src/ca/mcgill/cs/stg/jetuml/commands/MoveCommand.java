@@ -20,6 +20,10 @@
  *******************************************************************************/
 package ca.mcgill.cs.stg.jetuml.commands;
 
+import java.beans.Encoder;
+import java.beans.Expression;
+import java.beans.PersistenceDelegate;
+
 import ca.mcgill.cs.stg.jetuml.graph.Graph;
 import ca.mcgill.cs.stg.jetuml.graph.Node;
 
@@ -27,7 +31,7 @@ import ca.mcgill.cs.stg.jetuml.graph.Node;
  * Stores the moving of a node.
  * @author EJBQ
  */
-public class MoveCommand implements Command
+public class MoveCommand implements MergeableCommand
 {
 	private Node aNode;
 	private Graph aGraph;
@@ -66,5 +70,62 @@ public class MoveCommand implements Command
 		aNode.translate(aDX, aDY);
 		aGraph.layout();
 	}
-
+	
+	/**
+	 * A move can be merged with a subsequent move of the same node.
+	 * @param pCommand The command to merge.
+	 * @return True if pCommand moves the same node in the same graph.
+	 */
+	@Override
+	public boolean canMerge(Command pCommand)
+	{
+		return pCommand instanceof MoveCommand && ((MoveCommand)pCommand).aNode == aNode && 
+				((MoveCommand)pCommand).aGraph == aGraph;
+	}
+	
+	/**
+	 * Adds the displacement of pCommand to this move.
+	 * @param pCommand A move of the same node.
+	 */
+	@Override
+	public void merge(Command pCommand)
+	{
+		assert canMerge(pCommand);
+		aDX += ((MoveCommand)pCommand).aDX;
+		aDY += ((MoveCommand)pCommand).aDY;
+	}
+	
+	/**
+	 * @return The graph containing the moved node.
+	 */
+	public Graph getGraph()
+	{
+		return aGraph;
+	}
+	
+	/**
+	 * @return The node being moved.
+	 */
+	public Node getNode()
+	{
+		return aNode;
+	}
+	
+	/**
+	 * Adds a persistence delegate to a given encoder that
+	 * re-creates move commands through their constructor.
+	 * @param pEncoder the encoder to which to add the delegate
+	 */
+	public static void setPersistenceDelegate(Encoder pEncoder)
+	{
+		pEncoder.setPersistenceDelegate(MoveCommand.class, new PersistenceDelegate()
+		{
+			protected Expression instantiate(Object pOldInstance, Encoder pOut)
+			{
+				MoveCommand command = (MoveCommand) pOldInstance;
+				return new Expression(pOldInstance, MoveCommand.class, "new", 
+						new Object[]{ command.aGraph, command.aNode, command.aDX, command.aDY });
+			}
+		});
+	}
 }
@@ -45,6 +45,7 @@ import ca.mcgill.cs.stg.jetuml.graph.PackageNode;
  */
 public class ClassDiagramGraph extends Graph
 {
+	private static final ResourceBundle RESOURCES = ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.UMLEditorStrings");
 	private static final Node[] NODE_PROTOTYPES = new Node[] {new ClassNode(), 
 															  new InterfaceNode(), 
 															  new PackageNode(), 
@@ -73,13 +74,13 @@ public class ClassDiagramGraph extends Graph
 	@Override
 	public String getFileExtension() 
 	{
-		return ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.UMLEditorStrings").getString("class.extension");
+		return RESOURCES.getString("class.extension");
 	}
 
 	@Override
 	public String getDescription() 
 	{
-		return ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.UMLEditorStrings").getString("class.name");
+		return RESOURCES.getString("class.name");
 	}
 
 	private static boolean canAddNodeAsChild(Node pPotentialChild)
@@ -161,6 +162,30 @@ public class ClassDiagramGraph extends Graph
 		super.addNode(pNode, pPoint);
 		return true;
 	}
+	
+	@Override
+	public boolean canArrangeInLayers()
+	{
+		return true;
+	}
+	
+	/*
+	 * Superclasses and interfaces are placed above the types 
+	 * that extend them, and dependencies point downwards.
+	 */
+	@Override
+	public int getLayerOrder(Edge pEdge)
+	{
+		if( pEdge instanceof GeneralizationEdge )
+		{
+			return -1;
+		}
+		else if( pEdge instanceof DependencyEdge )
+		{
+			return 1;
+		}
+		return 0;
+	}
 }
 
 
@@ -42,6 +42,7 @@ import ca.mcgill.cs.stg.jetuml.graph.ObjectReferenceEdge;
  */
 public class ObjectDiagramGraph extends Graph
 {
+	private static final ResourceBundle RESOURCES = ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.UMLEditorStrings");
 	private static final Node[] NODE_PROTOTYPES = new Node[3];
 	private static final Edge[] EDGE_PROTOTYPES = new Edge[3];
 	
@@ -183,13 +184,19 @@ public class ObjectDiagramGraph extends Graph
 	@Override
 	public String getFileExtension() 
 	{
-		return ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.UMLEditorStrings").getString("object.extension");
+		return RESOURCES.getString("object.extension");
 	}
 
 	@Override
 	public String getDescription() 
 	{
-		return ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.UMLEditorStrings").getString("object.name");
+		return RESOURCES.getString("object.name");
+	}
+	
+	@Override
+	public boolean canArrangeByForces()
+	{
+		return true;
 	}
 }
 
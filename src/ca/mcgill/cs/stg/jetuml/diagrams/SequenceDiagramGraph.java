@@ -45,6 +45,7 @@ import ca.mcgill.cs.stg.jetuml.graph.ReturnEdge;
  */
 public class SequenceDiagramGraph extends Graph
 {
+	private static final ResourceBundle RESOURCES = ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.UMLEditorStrings");
 	private static final ImplicitParameterNode IMPLICIT_PARAMETER_NODE = new ImplicitParameterNode();
 	private static final Node[] NODE_PROTOTYPES = new Node[]{IMPLICIT_PARAMETER_NODE, new CallNode(), new NoteNode()};
 	private static final Edge[] EDGE_PROTOTYPES = new Edge[]{new CallEdge(), new ReturnEdge(), new NoteEdge()};
@@ -406,13 +407,13 @@ public class SequenceDiagramGraph extends Graph
 	@Override
 	public String getFileExtension() 
 	{
-		return ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.UMLEditorStrings").getString("sequence.extension");
+		return RESOURCES.getString("sequence.extension");
 	}
 
 	@Override
 	public String getDescription() 
 	{
-		return ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.UMLEditorStrings").getString("sequence.name");
+		return RESOURCES.getString("sequence.name");
 	}
 
 	@Override
@@ -38,6 +38,7 @@ import ca.mcgill.cs.stg.jetuml.graph.StateTransitionEdge;
  */
 public class StateDiagramGraph extends Graph
 {
+	private static final ResourceBundle RESOURCES = ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.UMLEditorStrings");
 	private static final Node[] NODE_PROTOTYPES = new Node[]{new StateNode(), new CircularStateNode(), new CircularStateNode(), new NoteNode()};
 	private static final Edge[] EDGE_PROTOTYPES = new Edge[]{new StateTransitionEdge(), new NoteEdge()};
 	
@@ -61,13 +62,13 @@ public class StateDiagramGraph extends Graph
 	@Override
 	public String getFileExtension() 
 	{
-		return ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.UMLEditorStrings").getString("state.extension");
+		return RESOURCES.getString("state.extension");
 	}
 
 	@Override
 	public String getDescription() 
 	{
-		return ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.UMLEditorStrings").getString("state.name");
+		return RESOURCES.getString("state.name");
 	}
 	
 	// CSOFF:
@@ -124,6 +125,22 @@ public class StateDiagramGraph extends Graph
 		}
 		return lReturn;
 	}
+	
+	@Override
+	public boolean canArrangeInLayers()
+	{
+		return true;
+	}
+	
+	@Override
+	public int getLayerOrder(Edge pEdge)
+	{
+		if( pEdge instanceof StateTransitionEdge )
+		{
+			return 1;
+		}
+		return 0;
+	}
 }
 
 
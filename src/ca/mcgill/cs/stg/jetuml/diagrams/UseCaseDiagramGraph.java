@@ -40,6 +40,7 @@ import ca.mcgill.cs.stg.jetuml.graph.UseCaseNode;
  */
 public class UseCaseDiagramGraph extends Graph
 {
+	private static final ResourceBundle RESOURCES = ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.UMLEditorStrings");
 	private static final Node[] NODE_PROTOTYPES = new Node[]{new ActorNode(), new UseCaseNode(), new NoteNode()};
 	private static final Edge[] EDGE_PROTOTYPES = new Edge[]{new UseCaseAssociationEdge(),
 															 new UseCaseDependencyEdge(UseCaseDependencyEdge.Type.Extend),
@@ -62,13 +63,13 @@ public class UseCaseDiagramGraph extends Graph
 	@Override
 	public String getFileExtension() 
 	{
-		return ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.UMLEditorStrings").getString("usecase.extension");
+		return RESOURCES.getString("usecase.extension");
 	}
 
 	@Override
 	public String getDescription() 
 	{
-		return ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.UMLEditorStrings").getString("usecase.name");
+		return RESOURCES.getString("usecase.name");
 	}
 	
 	@Override
@@ -85,6 +86,12 @@ public class UseCaseDiagramGraph extends Graph
 		
 		return true;
 	}
+	
+	@Override
+	public boolean canArrangeByForces()
+	{
+		return true;
+	}
 }
 
 
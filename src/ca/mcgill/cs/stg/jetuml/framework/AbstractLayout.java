@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.mcgill.cs.stg.jetuml.commands.CompoundCommand;
+import ca.mcgill.cs.stg.jetuml.commands.MoveCommand;
+import ca.mcgill.cs.stg.jetuml.graph.ChildNode;
+import ca.mcgill.cs.stg.jetuml.graph.Edge;
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
+import ca.mcgill.cs.stg.jetuml.graph.Node;
+import ca.mcgill.cs.stg.jetuml.graph.NoteEdge;
+import ca.mcgill.cs.stg.jetuml.graph.PointNode;
+
+/**
+ * Common state of the automatic arrangements of the nodes of 
+ * a graph. Only root nodes are arranged: children move with their 
+ * parent, and point nodes with the note they are attached to.
+ * Subclasses compute the new position of each arranged node, from
+ * which a command that moves the nodes is created.
+ */
+abstract class AbstractLayout
+{
+	private static final double GRID_SIZE = 10; // Positions are rounded to the grid
+	
+	protected final Graph aGraph;
+	protected final List<Node> aNodes = new ArrayList<>(); // The arranged nodes
+	protected final double[] aWidths;
+	protected final double[] aHeights;
+	protected final double[] aX; // The new left of each arranged node
+	protected final double[] aY; // The new top of each arranged node
+	private final Map<Node, Integer> aIndices = new IdentityHashMap<>();
+	
+	/**
+	 * Collects the nodes of pGraph to arrange, and their size.
+	 * @param pGraph The graph to arrange. Its nodes must have been laid out.
+	 */
+	protected AbstractLayout(Graph pGraph)
+	{
+		aGraph = pGraph;
+		for( Node node : aGraph.getRootNodes() )
+		{
+			if( !(node instanceof PointNode) )
+			{
+				aIndices.put(node, aNodes.size());
+				aNodes.add(node);
+			}
+		}
+		int count = aNodes.size();
+		aWidths = new double[count];
+		aHeights = new double[count];
+		aX = new double[count];
+		aY = new double[count];
+		for( int i = 0; i < count; i++ )
+		{
+			Rectangle2D bounds = aNodes.get(i).getBounds();
+			aWidths[i] = bounds.getWidth();
+			aHeights[i] = bounds.getHeight();
+		}
+	}
+	
+	/**
+	 * @param pNode A node of the graph.
+	 * @return The index of the arranged node that is pNode or that 
+	 * contains it, or -1 if pNode is not arranged.
+	 */
+	protected int indexOf(Node pNode)
+	{
+		Node node = pNode;
+		while( node instanceof ChildNode && ((ChildNode)node).getParent() != null )
+		{
+			node = ((ChildNode)node).getParent();
+		}
+		Integer index = aIndices.get(node);
+		if( index == null )
+		{
+			return -1;
+		}
+		return index;
+	}
+	
+	/**
+	 * @return A command that moves each arranged node to its new 
+	 * position, rounded to the grid, and the point nodes along with 
+	 * the notes they are attached to.
+	 */
+	protected CompoundCommand createCommand()
+	{
+		CompoundCommand command = new CompoundCommand();
+		Map<Node, Point2D> moves = new IdentityHashMap<>();
+		for( int i = 0; i < aNodes.size(); i++ )
+		{
+			Node node = aNodes.get(i);
+			Rectangle2D bounds = node.getBounds();
+			double dx = Math.round(aX[i] / GRID_SIZE) * GRID_SIZE - bounds.getX();
+			double dy = Math.round(aY[i] / GRID_SIZE) * GRID_SIZE - bounds.getY();
+			if( dx != 0 || dy != 0 )
+			{
+				command.add(new MoveCommand(aGraph, node, dx, dy));
+				moves.put(node, new Point2D.Double(dx, dy));
+			}
+		}
+		for( Edge edge : aGraph.getEdges() )
+		{
+			if( edge instanceof NoteEdge && edge.getEnd() instanceof PointNode && moves.containsKey(edge.getStart()) )
+			{
+				Point2D move = moves.get(edge.getStart());
+				command.add(new MoveCommand(aGraph, edge.getEnd(), move.getX(), move.getY()));
+			}
+		}
+		return command;
+	}
+}
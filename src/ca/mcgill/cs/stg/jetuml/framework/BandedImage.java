@@ -0,0 +1,292 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Vector;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
+
+/**
+ * An image of a graph that is rendered one horizontal band 
+ * at a time, when the pixels of the band are requested. Only
+ * the last band rendered is kept in memory, so writers that
+ * read an image sequentially, such as the PNG writer, can 
+ * export graphs of any size in bounded memory.
+ */
+final class BandedImage implements RenderedImage
+{
+	private static final int BAND_PIXELS = 1 << 20; // The maximum number of pixels in a band
+	
+	private final Graph aGraph;
+	private final Rectangle2D aBounds;
+	private final int aMargin;
+	private final int aWidth;
+	private final int aHeight;
+	private final int aBandHeight;
+	private final ColorModel aColorModel;
+	private final SampleModel aSampleModel; // The sample model of a band
+	private BufferedImage aBand;
+	private int aBandIndex = -1; // The index of the band rendered in aBand
+	
+	/**
+	 * Creates an image of pGraph with pMargin pixels around it.
+	 * 
+	 * @param pGraph The graph to render.
+	 * @param pMargin The number of pixels to leave around the graph.
+	 */
+	BandedImage(Graph pGraph, int pMargin)
+	{
+		aGraph = pGraph;
+		aBounds = pGraph.getBounds();
+		aMargin = pMargin;
+		aWidth = Math.max(1, (int) (aBounds.getWidth() + pMargin * 2));
+		aHeight = Math.max(1, (int) (aBounds.getHeight() + pMargin * 2));
+		aBandHeight = Math.max(1, Math.min(aHeight, BAND_PIXELS / aWidth));
+		aBand = new BufferedImage(aWidth, aBandHeight, BufferedImage.TYPE_INT_RGB);
+		aColorModel = aBand.getColorModel();
+		aSampleModel = aBand.getSampleModel();
+	}
+	
+	/**
+	 * Writes pGraph to pOut in PNG format, one band at a time.
+	 * pOut is not closed.
+	 * 
+	 * @param pGraph The graph to export.
+	 * @param pMargin The number of pixels to leave around the graph.
+	 * @param pOut The stream to write to.
+	 * @throws IOException If the image cannot be written.
+	 */
+	static void writePNG(Graph pGraph, int pMargin, OutputStream pOut) throws IOException
+	{
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("png");
+		if( !writers.hasNext() )
+		{
+			throw new IOException("No PNG writer");
+		}
+		ImageWriter writer = writers.next();
+		try( ImageOutputStream out = ImageIO.createImageOutputStream(pOut) )
+		{
+			writer.setOutput(out);
+			writer.write(null, new IIOImage(new BandedImage(pGraph, pMargin), null, null), writer.getDefaultWriteParam());
+		}
+		finally
+		{
+			writer.dispose();
+		}
+	}
+	
+	/*
+	 * Renders the band at pIndex into aBand, unless it is already there.
+	 */
+	private void renderBand(int pIndex)
+	{
+		if( pIndex == aBandIndex )
+		{
+			return;
+		}
+		Graphics2D g2 = aBand.createGraphics();
+		g2.setColor(Color.WHITE);
+		g2.fillRect(0, 0, aWidth, aBandHeight);
+		g2.clipRect(0, 0, aWidth, aBandHeight);
+		g2.translate(aMargin - aBounds.getX(), aMargin - aBounds.getY() - pIndex * aBandHeight);
+		g2.setColor(Color.BLACK);
+		g2.setBackground(Color.WHITE);
+		aGraph.draw(g2, null);
+		g2.dispose();
+		aBandIndex = pIndex;
+	}
+	
+	@Override
+	public Vector<RenderedImage> getSources()
+	{
+		return null;
+	}
+
+	@Override
+	public Object getProperty(String pName)
+	{
+		return Image.UndefinedProperty;
+	}
+
+	@Override
+	public String[] getPropertyNames()
+	{
+		return null;
+	}
+
+	@Override
+	public ColorModel getColorModel()
+	{
+		return aColorModel;
+	}
+
+	@Override
+	public SampleModel getSampleModel()
+	{
+		return aSampleModel;
+	}
+
+	@Override
+	public int getWidth()
+	{
+		return aWidth;
+	}
+
+	@Override
+	public int getHeight()
+	{
+		return aHeight;
+	}
+
+	@Override
+	public int getMinX()
+	{
+		return 0;
+	}
+
+	@Override
+	public int getMinY()
+	{
+		return 0;
+	}
+
+	@Override
+	public int getNumXTiles()
+	{
+		return 1;
+	}
+
+	@Override
+	public int getNumYTiles()
+	{
+		return (aHeight + aBandHeight - 1) / aBandHeight;
+	}
+
+	@Override
+	public int getMinTileX()
+	{
+		return 0;
+	}
+
+	@Override
+	public int getMinTileY()
+	{
+		return 0;
+	}
+
+	@Override
+	public int getTileWidth()
+	{
+		return aWidth;
+	}
+
+	@Override
+	public int getTileHeight()
+	{
+		return aBandHeight;
+	}
+
+	@Override
+	public int getTileGridXOffset()
+	{
+		return 0;
+	}
+
+	@Override
+	public int getTileGridYOffset()
+	{
+		return 0;
+	}
+
+	/**
+	 * Returns the band at pTileY. The raster returned 
+	 * is only valid until another band is requested.
+	 * 
+	 * @param pTileX Must be 0.
+	 * @param pTileY The index of the band.
+	 * @return The pixels of the band.
+	 */
+	@Override
+	public Raster getTile(int pTileX, int pTileY)
+	{
+		assert pTileX == 0 && pTileY >= 0 && pTileY < getNumYTiles();
+		renderBand(pTileY);
+		return aBand.getRaster().createTranslatedChild(0, pTileY * aBandHeight);
+	}
+
+	/**
+	 * Renders the whole image. This defeats the purpose of this 
+	 * class and should only be used for small graphs.
+	 * 
+	 * @return A raster holding all the pixels of the image.
+	 */
+	@Override
+	public Raster getData()
+	{
+		return getData(new Rectangle(0, 0, aWidth, aHeight));
+	}
+
+	@Override
+	public Raster getData(Rectangle pRectangle)
+	{
+		WritableRaster raster = Raster.createWritableRaster(
+				aSampleModel.createCompatibleSampleModel(pRectangle.width, pRectangle.height), 
+				new Point(pRectangle.x, pRectangle.y));
+		return copyData(raster);
+	}
+
+	@Override
+	public WritableRaster copyData(WritableRaster pRaster)
+	{
+		WritableRaster raster = pRaster;
+		if( raster == null )
+		{
+			raster = aColorModel.createCompatibleWritableRaster(aWidth, aHeight);
+		}
+		int first = Math.max(0, raster.getMinY() / aBandHeight);
+		int last = Math.min(getNumYTiles() - 1, (raster.getMinY() + raster.getHeight() - 1) / aBandHeight);
+		for( int i = first; i <= last; i++ )
+		{
+			raster.setRect(getTile(0, i));
+		}
+		return raster;
+	}
+}
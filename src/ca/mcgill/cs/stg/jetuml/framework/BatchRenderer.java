@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
+
+/**
+ * Renders or converts diagram files without a user interface.
+ * Each file is loaded, laid out on an offscreen image, and
+ * exported to an image or saved again. Files are processed 
+ * independently by a pool of worker threads. Each image or SVG
+ * document is drawn on its own graphics context, but text is 
+ * measured and drawn with Swing labels one thread at a time.
+ */
+public final class BatchRenderer
+{
+	private static final int MARGIN_IMAGE = 2; // Number of pixels to leave around the graph
+	private static final String[] FORMATS = { "png", "svg", "jet" };
+	
+	private final String aExtension;
+	private final ResourceBundle aEditorResources;
+	private String aFormat = FORMATS[0];
+	private int aThreads = Runtime.getRuntime().availableProcessors();
+	private File aOutputDirectory;
+	private List<File> aFiles = new ArrayList<>();
+	
+	/**
+	 * Creates a renderer for the diagram files of an application.
+	 * 
+	 * @param pAppClass The class of the application, whose resources 
+	 * define the extension of diagram files.
+	 */
+	public BatchRenderer(Class<?> pAppClass)
+	{
+		aExtension = ResourceBundle.getBundle(pAppClass.getName() + "Strings").getString("files.extension");
+		aEditorResources = ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.framework.EditorStrings");
+	}
+	
+	/**
+	 * Processes the files described by the command-line arguments 
+	 * and reports the time taken for each file on pOut.
+	 * 
+	 * @param pArgs The options and the files or directories to process.
+	 * @param pOut The stream on which to report progress.
+	 * @return 0 if all the files were processed, 1 if some failed, 
+	 * and 2 if the arguments are invalid.
+	 */
+	public int run(String[] pArgs, PrintStream pOut)
+	{
+		if( !parse(pArgs) )
+		{
+			pOut.println(aEditorResources.getString("batch.usage"));
+			return 2;
+		}
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(aThreads);
+		ExecutorCompletionService<String> completion = new ExecutorCompletionService<>(executor);
+		for( final File file : aFiles )
+		{
+			completion.submit(new Callable<String>()
+			{
+				@Override
+				public String call() throws IOException
+				{
+					try
+					{
+						return process(file);
+					}
+					catch( IOException | RuntimeException exception )
+					{
+						throw new IOException(file.getPath(), exception);
+					}
+				}
+			});
+		}
+		int failures = 0;
+		try
+		{
+			for( int i = 0; i < aFiles.size(); i++ )
+			{
+				try
+				{
+					pOut.println(completion.take().get());
+				}
+				catch( ExecutionException exception )
+				{
+					failures++;
+					pOut.println(MessageFormat.format(aEditorResources.getString("batch.error"), 
+							exception.getCause().getMessage(), exception.getCause().getCause()));
+				}
+			}
+		}
+		catch( InterruptedException exception )
+		{
+			Thread.currentThread().interrupt();
+			failures = aFiles.size();
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		pOut.println(MessageFormat.format(aEditorResources.getString("batch.summary"), 
+				aFiles.size(), failures, (System.nanoTime() - start) / 1000000));
+		return failures == 0 ? 0 : 1;
+	}
+	
+	/*
+	 * Reads the options and collects the files to process. 
+	 * Returns false if the arguments are invalid.
+	 */
+	private boolean parse(String[] pArgs)
+	{
+		int i = 0;
+		for( ; i < pArgs.length && pArgs[i].startsWith("-"); i++ )
+		{
+			if( i + 1 == pArgs.length )
+			{
+				return false;
+			}
+			String value = pArgs[++i];
+			switch( pArgs[i - 1] )
+			{
+			case "-format":
+				aFormat = value.toLowerCase();
+				if( !isFormat(aFormat) )
+				{
+					return false;
+				}
+				break;
+			case "-threads":
+				try
+				{
+					aThreads = Integer.parseInt(value);
+				}
+				catch( NumberFormatException exception )
+				{
+					return false;
+				}
+				if( aThreads < 1 )
+				{
+					return false;
+				}
+				break;
+			case "-output":
+				aOutputDirectory = new File(value);
+				if( !aOutputDirectory.isDirectory() && !aOutputDirectory.mkdirs() )
+				{
+					return false;
+				}
+				break;
+			default:
+				return false;
+			}
+		}
+		if( i == pArgs.length )
+		{
+			return false;
+		}
+		for( ; i < pArgs.length; i++ )
+		{
+			File file = new File(pArgs[i]);
+			if( !file.exists() )
+			{
+				return false;
+			}
+			collect(file);
+		}
+		return true;
+	}
+	
+	private static boolean isFormat(String pFormat)
+	{
+		for( String format : FORMATS )
+		{
+			if( format.equals(pFormat) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/*
+	 * Adds pFile, or all the diagram files under pFile if it is a directory.
+	 */
+	private void collect(File pFile)
+	{
+		if( pFile.isDirectory() )
+		{
+			File[] files = pFile.listFiles();
+			if( files != null )
+			{
+				for( File file : files )
+				{
+					if( file.isDirectory() || file.getName().endsWith(aExtension) )
+					{
+						collect(file);
+					}
+				}
+			}
+		}
+		else
+		{
+			aFiles.add(pFile);
+		}
+	}
+	
+	/*
+	 * Renders or converts pFile and returns the report line for it.
+	 */
+	private String process(File pFile) throws IOException
+	{
+		long start = System.nanoTime();
+		Graph graph = PersistenceService.read(new FileInputStream(pFile));
+		if( graph == null )
+		{
+			throw new IOException(aEditorResources.getString("batch.invalid"));
+		}
+		// Lay out the graph as the editor would when displaying it
+		graph.draw(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics(), new Grid());
+		
+		File output = getOutputFile(pFile);
+		try( OutputStream out = new FileOutputStream(output) )
+		{
+			if( aFormat.equals("png") )
+			{
+				BandedImage.writePNG(graph, MARGIN_IMAGE, out);
+			}
+			else if( aFormat.equals("svg") )
+			{
+				SVGGraphics2D.write(graph, MARGIN_IMAGE, out);
+			}
+			else
+			{
+				PersistenceService.saveFile(graph, out);
+			}
+		}
+		return MessageFormat.format(aEditorResources.getString("batch.file"), 
+				pFile.getPath(), output.getPath(), (System.nanoTime() - start) / 1000000);
+	}
+	
+	private File getOutputFile(File pFile)
+	{
+		String name = EditorFrame.replaceExtension(pFile.getName(), aExtension, "." + aFormat);
+		if( name.equals(pFile.getName()) && !aFormat.equals("jet") )
+		{
+			name = name + "." + aFormat;
+		}
+		File directory = aOutputDirectory == null ? pFile.getAbsoluteFile().getParentFile() : aOutputDirectory;
+		return new File(directory, name);
+	}
+}
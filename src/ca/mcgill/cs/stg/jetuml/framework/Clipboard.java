@@ -20,11 +20,21 @@
  *******************************************************************************/
 package ca.mcgill.cs.stg.jetuml.framework;
 
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import ca.mcgill.cs.stg.jetuml.graph.ChildNode;
 import ca.mcgill.cs.stg.jetuml.graph.Edge;
@@ -40,14 +50,18 @@ import ca.mcgill.cs.stg.jetuml.graph.ParentNode;
  * accept edges unless both end-points are also being copied.
  * 
  * The Clipboard is a singleton. This is necessary to allow copying elements
- * between diagrams of the same type.
+ * between diagrams of the same type. To copy elements between different
+ * instances of the application, the content of the clip-board can also be
+ * exported to and imported from the system clipboard.
  */
 public final class Clipboard 
 {
 	private static final Clipboard INSTANCE = new Clipboard();
 	
 	private List<Node> aNodes = new ArrayList<Node>();
+	private Set<Node> aNodeSet = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>()); // The elements of aNodes
 	private List<Edge> aEdges = new ArrayList<Edge>();
+	private Transferable aExported; // The last content exported to the system clipboard
 
 	/**
 	 * Creates an empty clip-board.
@@ -83,6 +97,7 @@ public final class Clipboard
 	{
 		assert pSelection != null;
 		aNodes.clear();
+		aNodeSet.clear();
 		aEdges.clear();
 		
 		// First copy the edges so we can assign their end-points when copying nodes.
@@ -95,7 +110,8 @@ public final class Clipboard
 			}
 		}
 		
-		// Clone the nodes and re-route their edges
+		// Clone the nodes and map them to their clones
+		Map<Node, Node> clones = new IdentityHashMap<>();
 		for( GraphElement element : pSelection )
 		{
 			if( element instanceof Node )
@@ -106,23 +122,91 @@ public final class Clipboard
 				}
 				Node cloned = ((Node) element).clone();
 				aNodes.add(cloned);
-				reassignEdges(aEdges, (Node)element, cloned);
+				aNodeSet.add(cloned);
+				mapClones((Node)element, cloned, clones);
 			}
 		}
 		
-		// Delete any edge whose parent is not in aNodes
-		List<Edge> toDelete = new ArrayList<>();
-		for( Edge edge : aEdges )
+		// Re-route the edges and delete any edge whose end-points were not copied
+		for( Iterator<Edge> iterator = aEdges.iterator(); iterator.hasNext(); )
 		{
-			if( !recursivelyContains(edge.getStart()) || !recursivelyContains(edge.getEnd()))
+			if( !reassignEdge(iterator.next(), clones) )
 			{
-				toDelete.add(edge);
+				iterator.remove();
 			}
 		}
-		for( Edge edge : toDelete )
+	}
+	
+	/**
+	 * Makes the content of the clip-board available to other applications
+	 * through the system clipboard, if there is one. The content is only
+	 * serialized if another application requests it.
+	 * 
+	 * @param pGraph The graph from which the content of the clip-board was copied.
+	 */
+	public void exportToSystemClipboard(Graph pGraph)
+	{
+		assert pGraph != null;
+		if( GraphicsEnvironment.isHeadless() || aNodes.isEmpty() )
 		{
-			aEdges.remove(edge);
+			return;
 		}
+		aExported = new FragmentTransferable(pGraph.getClass(), aNodes, aEdges);
+		try
+		{
+			Toolkit.getDefaultToolkit().getSystemClipboard().setContents(aExported, null);
+		}
+		catch( IllegalStateException exception )
+		{
+			// The system clipboard is not available: keep the content local.
+		}
+	}
+	
+	/**
+	 * Replaces the content of the clip-board with a diagram fragment 
+	 * exported by another instance of the application, if the system
+	 * clipboard holds one. Otherwise the content of the clip-board is
+	 * left unchanged.
+	 */
+	public void importFromSystemClipboard()
+	{
+		if( GraphicsEnvironment.isHeadless() )
+		{
+			return;
+		}
+		try
+		{
+			Transferable contents = Toolkit.getDefaultToolkit().getSystemClipboard().getContents(null);
+			if( contents == null || contents == aExported || 
+					!contents.isDataFlavorSupported(FragmentTransferable.FRAGMENT_FLAVOR))
+			{
+				return;
+			}
+			load((InputStream)contents.getTransferData(FragmentTransferable.FRAGMENT_FLAVOR));
+			aExported = contents;
+		}
+		catch( IllegalStateException | UnsupportedFlavorException | IOException exception )
+		{
+			// The content cannot be read: keep the current content.
+		}
+	}
+	
+	/**
+	 * Replaces the content of the clip-board with the fragment
+	 * read from pIn, then closes pIn.
+	 * 
+	 * @param pIn A stream in the format of FragmentTransferable.FRAGMENT_FLAVOR.
+	 * @throws IOException If the fragment cannot be read.
+	 */
+	void load(InputStream pIn) throws IOException
+	{
+		Graph graph = FragmentTransferable.read(pIn);
+		aNodes.clear();
+		aNodeSet.clear();
+		aEdges.clear();
+		aNodes.addAll(graph.getRootNodes());
+		aNodeSet.addAll(aNodes);
+		aEdges.addAll(graph.getEdges());
 	}
 	
 	/**
@@ -139,75 +223,81 @@ public final class Clipboard
 		pPanel.removeSelected();
 	}
 	
-	private boolean recursivelyContains(Node pNode)
+	/*
+	 * Returns a new graph of type pType that contains clones of pNodes
+	 * and of the edges in pEdges, which must connect nodes in pNodes.
+	 */
+	static Graph createGraph(Class<? extends Graph> pType, List<Node> pNodes, List<Edge> pEdges) 
+			throws ReflectiveOperationException
 	{
-		for( Node node : aNodes )
+		Graph graph = pType.getDeclaredConstructor().newInstance();
+		List<Node> clonedRootNodes = new ArrayList<>();
+		Map<Node, Node> clones = new IdentityHashMap<>();
+		for( Node node : pNodes )
 		{
-			if( node == pNode )
-			{
-				return true;
-			}
-			else if( node instanceof ParentNode )
-			{
-				if( recursivelyContains( pNode, ((ParentNode)node).getChildren()) )
-				{
-					return true;
-				}
-			}
+			Node cloned = node.clone();
+			clonedRootNodes.add(cloned);
+			mapClones(node, cloned, clones);
 		}
-		return false;
-	}
-	
-	private boolean recursivelyContains(Node pNode, List<ChildNode> pNodes)
-	{
-		for( Node node : pNodes )
+		removeDanglingReferencesToParents(clonedRootNodes);
+		for( Node node : clonedRootNodes )
 		{
-			if( node == pNode )
-			{
-				return true;
-			}
-			else if( node instanceof ParentNode )
-			{
-				if(  recursivelyContains( pNode, ((ParentNode)node).getChildren()) )
-				{
-					return true;
-				}
-			}
+			graph.restoreRootNode(node);
 		}
-		return false;
+		for( Edge edge : pEdges )
+		{
+			Edge cloned = (Edge) edge.clone();
+			graph.restoreEdge(cloned, clones.get(edge.getStart()), clones.get(edge.getEnd()));
+		}
+		return graph;
 	}
 	
-	private void reassignEdges(List<Edge> pEdges, Node pOld, Node pNew)
+	/*
+	 * Maps pOld and each of its descendants to the corresponding
+	 * node in pNew, its clone. A node that is already mapped
+	 * keeps its first clone.
+	 */
+	private static void mapClones(Node pOld, Node pNew, Map<Node, Node> pClones)
 	{
-		for( Edge edge : pEdges )
+		if( pClones.containsKey(pOld) )
 		{
-			if( edge.getStart() == pOld )
-			{
-				edge.connect(pNew, edge.getEnd(), edge.getGraph());
-			}
-			if( edge.getEnd() == pOld)
-			{
-				edge.connect(edge.getStart(), pNew, edge.getGraph());
-			}
+			return;
 		}
+		pClones.put(pOld, pNew);
 		if( pOld instanceof ParentNode )
 		{
 			List<ChildNode> oldChildren = ((ParentNode) pOld).getChildren();
 			List<ChildNode> newChildren = ((ParentNode) pNew).getChildren();
 			for( int i = 0; i < oldChildren.size(); i++)
 			{
-				reassignEdges(pEdges, oldChildren.get(i), newChildren.get(i));
+				mapClones(oldChildren.get(i), newChildren.get(i), pClones);
 			}
 		}
 	}
 	
+	/*
+	 * Connects pEdge to the clones of its end-points. Returns false
+	 * if one of the end-points was not cloned, in which case the edge is 
+	 * connected to the clone of the other end-point, if any.
+	 */
+	private static boolean reassignEdge(Edge pEdge, Map<Node, Node> pClones)
+	{
+		Node start = pClones.get(pEdge.getStart());
+		Node end = pClones.get(pEdge.getEnd());
+		if( start != null || end != null )
+		{
+			pEdge.connect(start == null ? pEdge.getStart() : start, end == null ? pEdge.getEnd() : end, pEdge.getGraph());
+		}
+		return start != null && end != null;
+	}
+	
 	/*
 	 * Returns true of pNode needs a parent that isn't in 
 	 * the clipboard.
 	 */
 	private boolean missingParent(Node pNode)
 	{
-		return pNode instanceof ChildNode && ((ChildNode)pNode).requiresParent() && !aNodes.contains(((ChildNode)pNode).getParent()) ;
+		return pNode instanceof ChildNode && ((ChildNode)pNode).requiresParent() && !aNodeSet.contains(((ChildNode)pNode).getParent()) ;
 	}
 	
 	/**
@@ -223,54 +313,66 @@ public final class Clipboard
 			return new SelectionList();
 		}
 		
-		pPanel.startCompoundGraphOperation();
+		Graph graph = pPanel.getGraph();
 		List<Edge> clonedEdges = new ArrayList<>();
-		for( Edge edge : aEdges )
-		{
-			clonedEdges.add((Edge) edge.clone());
-		}
-		
 		List<Node> clonedRootNodes = new ArrayList<>();
-		Rectangle2D bounds = null;
-
-		for( Node node : aNodes )
+		graph.beginBatch(aNodes.size(), aEdges.size());
+		try
 		{
-			Node cloned = node.clone();
-			clonedRootNodes.add(cloned);
-			reassignEdges(clonedEdges, node, cloned);
-			bounds = updateBounds(bounds, node);
+			for( Edge edge : aEdges )
+			{
+				clonedEdges.add((Edge) edge.clone());
+			}
+			
+			Map<Node, Node> clones = new IdentityHashMap<>();
+			Rectangle2D bounds = null;
 
-		}
-		
-		removeDanglingReferencesToParents(clonedRootNodes);
-		
-		for( Node node : clonedRootNodes )
-		{
-			pPanel.getGraph().insertNode(node);
-		}
-		for( Edge edge : clonedEdges )
-		{
-			// Verify that the nodes were correctly added.
-			// It is possible that some nodes could not be 
-			// pasted (e.g., children nodes without their parent)
-			// so some edges might no longer be relevant.
-			if( pPanel.getGraph().contains( edge.getStart() ) && pPanel.getGraph().contains(edge.getEnd()))
+			for( Node node : aNodes )
 			{
-				pPanel.getGraph().insertEdge(edge);
+				Node cloned = node.clone();
+				clonedRootNodes.add(cloned);
+				mapClones(node, cloned, clones);
+				bounds = updateBounds(bounds, node);
+
 			}
+			for( Edge edge : clonedEdges )
+			{
+				reassignEdge(edge, clones);
+			}
+			
+			removeDanglingReferencesToParents(clonedRootNodes);
+			
+			for( Node node : clonedRootNodes )
+			{
+				graph.insertNode(node);
+			}
+			for( Edge edge : clonedEdges )
+			{
+				// Verify that the nodes were correctly added.
+				// It is possible that some nodes could not be 
+				// pasted (e.g., children nodes without their parent)
+				// so some edges might no longer be relevant.
+				if( graph.contains( edge.getStart() ) && graph.contains(edge.getEnd()))
+				{
+					graph.insertEdge(edge);
+				}
+			}
+			
+			// Reposition the graph
+			for( Edge edge : clonedEdges )
+			{
+				bounds = updateBounds(bounds, edge);
+			}
+			for( Node node : clonedRootNodes )
+			{
+				node.translate(-bounds.getX(), -bounds.getY());
+			}
+			// End graph repositioning
 		}
-		
-		// Reposition the graph
-		for( Edge edge : clonedEdges )
-		{
-			bounds = updateBounds(bounds, edge);
-		}
-		for( Node node : clonedRootNodes )
+		finally
 		{
-			node.translate(-bounds.getX(), -bounds.getY());
+			graph.commitBatch();
 		}
-		// End graph repositioning
-		pPanel.finishCompoundGraphOperation();
 		
 		SelectionList selectionList  = new SelectionList();
 		for( Edge edge : clonedEdges )
@@ -288,11 +390,13 @@ public final class Clipboard
 	// of any node who does not have a parent in the pNodes list
 	private static void removeDanglingReferencesToParents(List<Node> pNodes)
 	{
+		Set<Node> nodes = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+		nodes.addAll(pNodes);
 		for( Node node : pNodes )
 		{
 			if( node instanceof ChildNode && ((ChildNode)node).getParent() != null )
 			{
-				if( !pNodes.contains(((ChildNode)node).getParent()))
+				if( !nodes.contains(((ChildNode)node).getParent()))
 				{
 					((ChildNode)node).getParent().removeChild((ChildNode)node);
 				}
@@ -38,6 +38,8 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.beans.PropertyVetoException;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -47,9 +49,12 @@ import java.io.OutputStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
 import java.util.prefs.Preferences;
 
 import javax.imageio.ImageIO;
@@ -65,6 +70,7 @@ import javax.swing.JOptionPane;
 import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
+import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.MenuEvent;
@@ -82,6 +88,10 @@ import ca.mcgill.cs.stg.jetuml.graph.Graph;
 /**
  * This desktop frame contains panes that show graphs.
  * 
+ * The graph frames that are not shown for some time, or all those
+ * that are not shown when memory runs low, are hibernated to release
+ * their memory, and woken up when they are selected again.
+ * 
  * @author Cay S. Horstmann - Original code
  * @author Martin P. Robillard - Refactorings, file handling, menu management.
  */
@@ -93,8 +103,12 @@ public class EditorFrame extends JFrame
 	private static final int MAX_RECENT_FILES = 8;
 	private static final int MARGIN_SCREEN = 8; // Fraction of the screen to leave around the sides
 	private static final int MARGIN_IMAGE = 2; // Number of pixels to leave around the graph when exporting it as an image
+	private static final String SVG_FORMAT = "svg";
 	private static final int HELP_MENU_TEXT_WIDTH = 10; //Number of pixels to give to the width of the  text area of the Help Menu.
 	private static final int HELP_MENU_TEXT_HEIGHT = 40; //Number of pixels to give to the height of the text area of the Help Menu.
+	private static final long HIBERNATION_DELAY = TimeUnit.MINUTES.toMillis(10); // Time after which a graph frame not shown is hibernated
+	private static final int HIBERNATION_PERIOD = (int) TimeUnit.MINUTES.toMillis(1); // Time between checks for frames to hibernate
+	private static final double MEMORY_PRESSURE = 0.75; // Fraction of the maximum memory above which all frames not shown are hibernated
 	
 	private MenuFactory aAppFactory;
 	private ResourceBundle aAppResources;
@@ -160,9 +174,23 @@ public class EditorFrame extends JFrame
 				{
 					menuItem.setEnabled(!noGraphFrame);
 				}
+				if( !noGraphFrame )
+				{
+					GraphFrame frame = (GraphFrame) aTabbedPane.getSelectedComponent();
+					frame.wake();
+					frame.setShown();
+				}
 			}
 		});
 		setContentPane(aTabbedPane);
+		new Timer(HIBERNATION_PERIOD, new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent pEvent)
+			{
+				hibernateFrames();
+			}
+		}).start();
 
      	setJMenuBar(new JMenuBar());
      	
@@ -263,6 +291,18 @@ public class EditorFrame extends JFrame
             }
          }));
      	
+     	editMenu.add(pFactory.createMenuItem("edit.arrange", new ActionListener()
+     	{
+     		public void actionPerformed(ActionEvent pEvent)
+            {
+     			if( noCurrentGraphFrame() )
+     			{
+     				return;
+     			}
+     			((GraphFrame) aTabbedPane.getSelectedComponent()).getGraphPanel().arrangeNodes();
+            }
+         }));
+     	
      	editMenu.add(pFactory.createMenuItem("edit.properties", new ActionListener()
      	{
      		public void actionPerformed(ActionEvent pEvent)
@@ -341,6 +381,35 @@ public class EditorFrame extends JFrame
             }
         });
      	viewMenu.add(hideGridItem);
+     	
+     	final JCheckBoxMenuItem instrumentationItem = (JCheckBoxMenuItem) pFactory.createCheckBoxMenuItem("view.show_instrumentation", 
+     			new ActionListener()
+     	{
+     		public void actionPerformed(ActionEvent pEvent)
+     		{
+     			if( noCurrentGraphFrame() )
+     			{
+     				return;
+     			}
+     			GraphPanel panel = ((GraphFrame)aTabbedPane.getSelectedComponent()).getGraphPanel();
+     			panel.setShowInstrumentation(((JCheckBoxMenuItem) pEvent.getSource()).isSelected());
+     		}
+     	});
+     	viewMenu.add(instrumentationItem);
+     	
+     	final JCheckBoxMenuItem minimapItem = (JCheckBoxMenuItem) pFactory.createCheckBoxMenuItem("view.show_minimap", new ActionListener()
+     	{
+     		public void actionPerformed(ActionEvent pEvent)
+     		{
+     			if( noCurrentGraphFrame() )
+     			{
+     				return;
+     			}
+     			GraphFrame frame = (GraphFrame)aTabbedPane.getSelectedComponent();
+     			frame.setShowMinimap(((JCheckBoxMenuItem) pEvent.getSource()).isSelected());
+     		}
+     	});
+     	viewMenu.add(minimapItem);
 
      	viewMenu.addMenuListener(new MenuListener()
      	{
@@ -357,6 +426,8 @@ public class EditorFrame extends JFrame
 				}
                 GraphPanel panel = frame.getGraphPanel();
                 hideGridItem.setSelected(panel.getHideGrid());  
+                instrumentationItem.setSelected(panel.getShowInstrumentation());
+                minimapItem.setSelected(frame.getShowMinimap());
             }
      		public void menuDeselected(MenuEvent pEvent)
             {}
@@ -613,6 +684,10 @@ public class EditorFrame extends JFrame
         {
             return;
         }
+        if( pInternalFrame instanceof GraphFrame )
+        {
+        	((GraphFrame) pInternalFrame).discardHibernatedGraph();
+        }
         JTabbedPane tp = aTabbedPane;
         int pos = aTabs.indexOf(pInternalFrame);
         tp.remove(pos);
@@ -740,7 +815,10 @@ public class EditorFrame extends JFrame
    	}
    	
    	/**
-   	 * Copies the current image to the clipboard.
+   	 * Copies the current image to the clipboard. The image is 
+   	 * only rendered when another application requests it, from 
+   	 * a copy of the graph taken now, so that it does not show 
+   	 * later edits and is not drawn while the graph is edited.
    	 */
    	public void copyToClipboard()
    	{
@@ -749,9 +827,13 @@ public class EditorFrame extends JFrame
    			return;
    		}
    		GraphFrame frame = (GraphFrame) aTabbedPane.getSelectedComponent();
-   		final BufferedImage image = getImage(frame.getGraph());
+   		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+   		PersistenceService.saveFile(frame.getGraph(), bytes);
+   		final byte[] snapshot = bytes.toByteArray();
         Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new Transferable()
 		{
+			private BufferedImage aImage;
+			
 			@Override
 			public boolean isDataFlavorSupported(DataFlavor pFlavor)
 			{
@@ -765,11 +847,18 @@ public class EditorFrame extends JFrame
 			}
 			
 			@Override
-			public Object getTransferData(DataFlavor pFlavor) throws UnsupportedFlavorException, IOException
+			public synchronized Object getTransferData(DataFlavor pFlavor) throws UnsupportedFlavorException, IOException
 			{
 				if(DataFlavor.imageFlavor.equals(pFlavor))
 		        {
-		            return image;
+					if( aImage == null )
+					{
+						Graph graph = PersistenceService.read(new ByteArrayInputStream(snapshot));
+						// Lays out the copy, which getImage draws without a grid
+						graph.draw(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics(), new Grid());
+						aImage = getImage(graph);
+					}
+		            return aImage;
 		        }
 		        else
 		        {
@@ -801,7 +890,7 @@ public class EditorFrame extends JFrame
         {
         	GraphFrame openFrame = (GraphFrame) curFrame;
         	// we only want to check attempts to close a frame
-			if(openFrame.getGraphPanel().isModified())
+			if(openFrame.isModified())
 			{                   
 				// ask user if it is ok to close
 				if(JOptionPane.showConfirmDialog(openFrame, 
@@ -830,7 +919,7 @@ public class EditorFrame extends JFrame
         {
         	GraphFrame openFrame = (GraphFrame) curFrame;
         	// we only want to check attempts to close a frame
-			if(openFrame.getGraphPanel().isModified())
+			if(openFrame.isModified())
 			{              
 				if(JOptionPane.showConfirmDialog(openFrame, 
 						aEditorResources.getString("dialog.close.ok"), null, JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) 
@@ -853,6 +942,7 @@ public class EditorFrame extends JFrame
    			return;
    		}
    		GraphFrame frame = (GraphFrame) aTabbedPane.getSelectedComponent();
+   		GraphPanel panel = frame.getGraphPanel(); // Wakes the frame first, which unbinds it from its file if that fails
    		File file = frame.getFileName(); 
    		if(file == null) 
    		{	
@@ -861,8 +951,8 @@ public class EditorFrame extends JFrame
    		}
    		try
    		{
-   			PersistenceService.saveFile(frame.getGraph(), new FileOutputStream(file));
-   			frame.getGraphPanel().setModified(false);
+   			PersistenceService.saveFile(panel.getGraph(), new FileOutputStream(file));
+   			panel.setModified(false);
    		}        
    		catch(Exception exception)
    		{
@@ -913,8 +1003,7 @@ public class EditorFrame extends JFrame
    				}
    				else
    				{
-   	        		ResourceBundle editorResources = ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.framework.EditorStrings");
-   	        		int theresult = JOptionPane.showConfirmDialog(this, editorResources.getString("dialog.overwrite"), 
+   	        		int theresult = JOptionPane.showConfirmDialog(this, aEditorResources.getString("dialog.overwrite"), 
    	        				null, JOptionPane.YES_NO_OPTION);
    	        		if(theresult == JOptionPane.YES_OPTION) 
    	        		{
@@ -988,7 +1077,7 @@ public class EditorFrame extends JFrame
    		// Validate the file format
    		String fileName = file.getPath();
 		String format  = fileName.substring(fileName.lastIndexOf(".") + 1);
-		if(!ImageIO.getImageWritersByFormatName(format).hasNext())
+		if(!format.equalsIgnoreCase(SVG_FORMAT) && !ImageIO.getImageWritersByFormatName(format).hasNext())
 		{
 			JOptionPane.showInternalMessageDialog(aTabbedPane, aEditorResources.getString("error.unsupported_image"),
 					aEditorResources.getString("error.unsupported_image.title"), JOptionPane.ERROR_MESSAGE);
@@ -999,7 +1088,18 @@ public class EditorFrame extends JFrame
    		
    		try( OutputStream out = new FileOutputStream(file))
    		{
-   			ImageIO.write(getImage(frame.getGraph()), format, out);
+   			if( format.equalsIgnoreCase("png") )
+   			{
+   				BandedImage.writePNG(frame.getGraph(), MARGIN_IMAGE, out);
+   			}
+   			else if( format.equalsIgnoreCase(SVG_FORMAT) )
+   			{
+   				SVGGraphics2D.write(frame.getGraph(), MARGIN_IMAGE, out);
+   			}
+   			else
+   			{
+   				ImageIO.write(getImage(frame.getGraph()), format, out);
+   			}
    		}
    		catch(IOException exception)
    		{
@@ -1015,6 +1115,7 @@ public class EditorFrame extends JFrame
    		{
    			formats.add(name.toLowerCase());
    		}
+   		formats.add(SVG_FORMAT);
    		String[] lReturn = formats.toArray(new String[formats.size()]);
    		Arrays.sort(lReturn);
    		return lReturn;
@@ -1099,8 +1200,7 @@ public class EditorFrame extends JFrame
 			return pFile;
 		}
 		
-		ResourceBundle editorResources = ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.framework.EditorStrings");
-		int result = JOptionPane.showConfirmDialog(this, editorResources.getString("dialog.overwrite"), null, JOptionPane.YES_NO_OPTION);
+		int result = JOptionPane.showConfirmDialog(this, aEditorResources.getString("dialog.overwrite"), null, JOptionPane.YES_NO_OPTION);
 		if(result == JOptionPane.YES_OPTION) 
 		{
 			return pFile;	     
@@ -1154,6 +1254,54 @@ public class EditorFrame extends JFrame
    		
    	}
 
+   	/*
+   	 * Hibernates the graph frame shown least recently if it has not
+   	 * been shown for HIBERNATION_DELAY, or all the graph frames that 
+   	 * are not shown if the memory used exceeds MEMORY_PRESSURE. 
+   	 * Writing a graph can take a second for large graphs, so frames
+   	 * are otherwise hibernated one at a time.
+   	 */
+   	private void hibernateFrames()
+   	{
+   		Runtime runtime = Runtime.getRuntime();
+   		boolean lowMemory = runtime.totalMemory() - runtime.freeMemory() > MEMORY_PRESSURE * runtime.maxMemory();
+   		List<GraphFrame> candidates = new ArrayList<>();
+   		for( JInternalFrame tab : aTabs )
+   		{
+   			if( tab instanceof GraphFrame )
+   			{
+   				GraphFrame frame = (GraphFrame) tab;
+   				if( frame == aTabbedPane.getSelectedComponent() )
+   				{
+   					frame.setShown();
+   				}
+   				else if( !frame.isHibernated() && (lowMemory || System.currentTimeMillis() - frame.getLastShown() > HIBERNATION_DELAY) )
+   				{
+   					candidates.add(frame);
+   				}
+   			}
+   		}
+   		Collections.sort(candidates, new Comparator<GraphFrame>()
+   		{
+   			@Override
+   			public int compare(GraphFrame pFrame1, GraphFrame pFrame2)
+   			{
+   				return Long.compare(pFrame1.getLastShown(), pFrame2.getLastShown());
+   			}
+   		});
+   		for( GraphFrame frame : candidates )
+   		{
+   			if( !frame.hibernate() )
+   			{
+   				frame.setShown(); // Retries after another delay
+   			}
+   			else if( !lowMemory )
+   			{
+   				return;
+   			}
+   		}
+   	}
+
    	/**
      * Exits the program if no graphs have been modified
      * or if the user agrees to abandon modified graphs.
@@ -1166,7 +1314,7 @@ public class EditorFrame extends JFrame
    			if(aTabs.get(i) instanceof GraphFrame)
    			{	
 				GraphFrame frame = (GraphFrame) aTabs.get(i);
-				if(frame.getGraphPanel().isModified()) 
+				if(frame.isModified()) 
 				{
 					modcount++;
 				}
@@ -0,0 +1,534 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ca.mcgill.cs.stg.jetuml.commands.CompoundCommand;
+import ca.mcgill.cs.stg.jetuml.graph.Edge;
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
+
+/**
+ * Arranges the root nodes of a graph by simulating forces between
+ * them: all nodes repel each other, connected nodes attract each other,
+ * and a weak gravity keeps the components of the graph together. The
+ * nodes move along their velocity, which is limited by a temperature
+ * that decreases until the arrangement settles, after which the 
+ * remaining overlaps are removed.
+ * 
+ * The repulsion between all pairs of nodes is approximated with
+ * a Barnes-Hut quadtree: the nodes of a cell that is far enough from
+ * a node repel it as a single mass at their center, so an iteration 
+ * takes O(n log n) time. The forces on the nodes of large graphs are
+ * accumulated in parallel, and the state of the simulation is kept in 
+ * arrays of primitive values.
+ */
+public final class ForceDirectedLayout extends AbstractLayout
+{
+	private static final double EDGE_GAP = 60; // Added to the average size of the nodes to get the ideal edge length
+	private static final double NODE_GAP = 20; // Minimum distance between two nodes, once overlaps are removed
+	private static final double MARGIN = 20; // Between the nodes and the origin
+	private static final double THETA = 1.0; // Cells smaller than THETA times their distance to a node act as a single mass
+	private static final double GRAVITY = 4;
+	private static final double DAMPING = 0.5; // Fraction of the velocity kept from one iteration to the next
+	private static final double GOLDEN_ANGLE = Math.PI * (3 - Math.sqrt(5));
+	private static final int ITERATIONS = 150;
+	private static final int OVERLAP_PASSES = 100;
+	private static final int PARALLEL_SIZE = 512; // Nodes
+	private static final int SEQUENTIAL_SIZE = 128; // Nodes
+	private static final long LOW_BITS = 0xffffffffL; // The y coordinate in a position key
+	
+	private final double[] aCentersX;
+	private final double[] aCentersY;
+	private final double[] aVelocitiesX;
+	private final double[] aVelocitiesY;
+	private final double[] aForcesX;
+	private final double[] aForcesY;
+	private final int[] aNeighborStarts;
+	private final int[] aNeighbors;
+	private final QuadTree aTree = new QuadTree();
+	private double aIdealLength;
+	private double aGravityX;
+	private double aGravityY;
+	
+	private ForceDirectedLayout(Graph pGraph)
+	{
+		super(pGraph);
+		int count = aNodes.size();
+		aCentersX = new double[count];
+		aCentersY = new double[count];
+		aVelocitiesX = new double[count];
+		aVelocitiesY = new double[count];
+		aForcesX = new double[count];
+		aForcesY = new double[count];
+		aNeighborStarts = new int[count + 1];
+		aNeighbors = findNeighbors();
+	}
+	
+	/**
+	 * Computes an arrangement of the nodes of pGraph by simulating 
+	 * forces between them. The graph is not modified.
+	 * 
+	 * @param pGraph The graph to arrange. Its nodes must have been 
+	 * laid out.
+	 * @return A command that moves the nodes of pGraph to their 
+	 * position in the arrangement when executed, and back when undone.
+	 * The command is empty if no node needs to be moved.
+	 */
+	public static CompoundCommand arrange(Graph pGraph)
+	{
+		ForceDirectedLayout layout = new ForceDirectedLayout(pGraph);
+		if( layout.aNodes.size() > 0 )
+		{
+			layout.initialize();
+			layout.simulate();
+			layout.removeOverlaps();
+		}
+		return layout.createCommand();
+	}
+	
+	/*
+	 * Returns the nodes connected to each node, in compressed form, 
+	 * with the start of the neighbors of each node in aNeighborStarts.
+	 */
+	private int[] findNeighbors()
+	{
+		int[] ends = new int[2 * aGraph.getEdges().size()];
+		int count = 0;
+		for( Edge edge : aGraph.getEdges() )
+		{
+			int start = indexOf(edge.getStart());
+			int end = indexOf(edge.getEnd());
+			if( start >= 0 && end >= 0 && start != end )
+			{
+				ends[count++] = start;
+				ends[count++] = end;
+				aNeighborStarts[start + 1]++;
+				aNeighborStarts[end + 1]++;
+			}
+		}
+		for( int i = 0; i < aNodes.size(); i++ )
+		{
+			aNeighborStarts[i + 1] += aNeighborStarts[i];
+		}
+		int[] next = Arrays.copyOf(aNeighborStarts, aNodes.size());
+		int[] neighbors = new int[count];
+		for( int i = 0; i < count; i += 2 )
+		{
+			neighbors[next[ends[i]]++] = ends[i + 1];
+			neighbors[next[ends[i + 1]]++] = ends[i];
+		}
+		return neighbors;
+	}
+	
+	/*
+	 * Starts the simulation from the current position of the nodes.
+	 * The nodes that are at the same position as a previous node, 
+	 * such as nodes all created at the origin, are spread on a spiral
+	 * around it.
+	 */
+	private void initialize()
+	{
+		int count = aNodes.size();
+		double size = 0;
+		for( int i = 0; i < count; i++ )
+		{
+			size += (aWidths[i] + aHeights[i]) / 2;
+		}
+		aIdealLength = size / count + EDGE_GAP;
+		
+		Set<Long> positions = new HashSet<>();
+		int stacked = 0;
+		for( int i = 0; i < count; i++ )
+		{
+			aCentersX[i] = aNodes.get(i).getBounds().getCenterX();
+			aCentersY[i] = aNodes.get(i).getBounds().getCenterY();
+			if( !positions.add(Math.round(aCentersX[i]) << Integer.SIZE | (Math.round(aCentersY[i]) & LOW_BITS)) )
+			{
+				stacked++;
+				double radius = aIdealLength * Math.sqrt(stacked);
+				aCentersX[i] += radius * Math.cos(stacked * GOLDEN_ANGLE);
+				aCentersY[i] += radius * Math.sin(stacked * GOLDEN_ANGLE);
+			}
+			aGravityX += aCentersX[i] / count;
+			aGravityY += aCentersY[i] / count;
+		}
+	}
+	
+	/*
+	 * Moves the nodes along their velocity, which accumulates the
+	 * forces on the nodes, and is limited by a temperature that 
+	 * decreases linearly to 0.
+	 */
+	private void simulate()
+	{
+		int count = aNodes.size();
+		double initialTemperature = 2 * aIdealLength;
+		for( int iteration = 0; iteration < ITERATIONS; iteration++ )
+		{
+			aTree.build(aCentersX, aCentersY, count);
+			if( count >= PARALLEL_SIZE )
+			{
+				ForkJoinPool.commonPool().invoke(new ForceTask(0, count));
+			}
+			else
+			{
+				computeForces(0, count, new int[QuadTree.STACK_SIZE]);
+			}
+			double temperature = initialTemperature * (ITERATIONS - iteration) / ITERATIONS;
+			for( int i = 0; i < count; i++ )
+			{
+				aVelocitiesX[i] = DAMPING * aVelocitiesX[i] + aForcesX[i];
+				aVelocitiesY[i] = DAMPING * aVelocitiesY[i] + aForcesY[i];
+				double speed = Math.sqrt(aVelocitiesX[i] * aVelocitiesX[i] + aVelocitiesY[i] * aVelocitiesY[i]);
+				if( speed > temperature )
+				{
+					aVelocitiesX[i] *= temperature / speed;
+					aVelocitiesY[i] *= temperature / speed;
+				}
+				aCentersX[i] += aVelocitiesX[i];
+				aCentersY[i] += aVelocitiesY[i];
+			}
+		}
+	}
+	
+	/*
+	 * Computes the forces on the nodes in [pStart, pEnd), from the 
+	 * current quadtree and positions, which are not modified.
+	 */
+	private void computeForces(int pStart, int pEnd, int[] pStack)
+	{
+		double squaredLength = aIdealLength * aIdealLength;
+		for( int i = pStart; i < pEnd; i++ )
+		{
+			aForcesX[i] = -GRAVITY * (aCentersX[i] - aGravityX);
+			aForcesY[i] = -GRAVITY * (aCentersY[i] - aGravityY);
+			aTree.addRepulsion(i, aCentersX[i], aCentersY[i], squaredLength, aForcesX, aForcesY, pStack);
+			for( int j = aNeighborStarts[i]; j < aNeighborStarts[i + 1]; j++ )
+			{
+				double dx = aCentersX[aNeighbors[j]] - aCentersX[i];
+				double dy = aCentersY[aNeighbors[j]] - aCentersY[i];
+				double distance = Math.sqrt(dx * dx + dy * dy);
+				aForcesX[i] += dx * distance / aIdealLength;
+				aForcesY[i] += dy * distance / aIdealLength;
+			}
+		}
+	}
+	
+	/*
+	 * Converts the centers to the top left corner of the nodes, 
+	 * separates the nodes that are closer than NODE_GAP along the
+	 * axis where they overlap the least, and moves the arrangement 
+	 * next to the origin.
+	 */
+	private void removeOverlaps()
+	{
+		int count = aNodes.size();
+		for( int i = 0; i < count; i++ )
+		{
+			aX[i] = aCentersX[i] - aWidths[i] / 2;
+			aY[i] = aCentersY[i] - aHeights[i] / 2;
+		}
+		long[] entries = new long[count];
+		boolean overlap = true;
+		for( int pass = 0; pass < OVERLAP_PASSES && overlap; pass++ )
+		{
+			overlap = false;
+			for( int i = 0; i < count; i++ )
+			{
+				int bits = Float.floatToIntBits((float)aX[i]);
+				bits ^= (bits >> (Integer.SIZE - 1)) & Integer.MAX_VALUE;
+				entries[i] = (long)bits << Integer.SIZE | i;
+			}
+			Arrays.sort(entries);
+			for( int k = 0; k < count; k++ )
+			{
+				int first = (int)entries[k];
+				for( int l = k + 1; l < count && aX[(int)entries[l]] < aX[first] + aWidths[first] + NODE_GAP; l++ )
+				{
+					overlap |= separate(first, (int)entries[l]);
+				}
+			}
+		}
+		double left = Double.MAX_VALUE;
+		double top = Double.MAX_VALUE;
+		for( int i = 0; i < count; i++ )
+		{
+			left = Math.min(left, aX[i]);
+			top = Math.min(top, aY[i]);
+		}
+		for( int i = 0; i < count; i++ )
+		{
+			aX[i] += MARGIN - left;
+			aY[i] += MARGIN - top;
+		}
+	}
+	
+	/*
+	 * Moves pNode1 and pNode2 away from each other by half of 
+	 * the smallest of their horizontal and vertical overlaps, 
+	 * if they overlap. Returns whether they did.
+	 */
+	private boolean separate(int pNode1, int pNode2)
+	{
+		double overlapX = Math.min(aX[pNode1] + aWidths[pNode1], aX[pNode2] + aWidths[pNode2]) - 
+				Math.max(aX[pNode1], aX[pNode2]) + NODE_GAP;
+		double overlapY = Math.min(aY[pNode1] + aHeights[pNode1], aY[pNode2] + aHeights[pNode2]) - 
+				Math.max(aY[pNode1], aY[pNode2]) + NODE_GAP;
+		if( overlapX <= 0 || overlapY <= 0 )
+		{
+			return false;
+		}
+		if( overlapX < overlapY )
+		{
+			double shift = overlapX / 2;
+			if( aX[pNode1] + aWidths[pNode1] / 2 > aX[pNode2] + aWidths[pNode2] / 2 )
+			{
+				shift = -shift;
+			}
+			aX[pNode1] -= shift;
+			aX[pNode2] += shift;
+		}
+		else
+		{
+			double shift = overlapY / 2;
+			if( aY[pNode1] + aHeights[pNode1] / 2 > aY[pNode2] + aHeights[pNode2] / 2 )
+			{
+				shift = -shift;
+			}
+			aY[pNode1] -= shift;
+			aY[pNode2] += shift;
+		}
+		return true;
+	}
+	
+	/*
+	 * A quadtree over the centers of the nodes, stored in arrays 
+	 * that are reused from one iteration to the next. Each cell 
+	 * holds the number and the sum of the positions of the nodes
+	 * it contains, and a leaf holds the index of its first node. 
+	 * Cells smaller than MIN_SIZE are not divided any further.
+	 */
+	private static final class QuadTree
+	{
+		static final int STACK_SIZE = 256; // Four cells per level, for at least 60 levels
+		private static final double MIN_SIZE = 0.01;
+		private static final int INITIAL_CAPACITY = 64;
+		
+		private int aCellCount;
+		private double[] aCentersX = new double[INITIAL_CAPACITY]; // Of the area of each cell
+		private double[] aCentersY = new double[INITIAL_CAPACITY];
+		private double[] aHalfSizes = new double[INITIAL_CAPACITY];
+		private int[] aMasses = new int[INITIAL_CAPACITY];
+		private double[] aSumsX = new double[INITIAL_CAPACITY];
+		private double[] aSumsY = new double[INITIAL_CAPACITY];
+		private int[] aFirstChildren = new int[INITIAL_CAPACITY]; // The four children are consecutive
+		private int[] aBodies = new int[INITIAL_CAPACITY];
+		
+		void build(double[] pX, double[] pY, int pCount)
+		{
+			double minX = Double.MAX_VALUE;
+			double minY = Double.MAX_VALUE;
+			double maxX = -Double.MAX_VALUE;
+			double maxY = -Double.MAX_VALUE;
+			for( int i = 0; i < pCount; i++ )
+			{
+				minX = Math.min(minX, pX[i]);
+				minY = Math.min(minY, pY[i]);
+				maxX = Math.max(maxX, pX[i]);
+				maxY = Math.max(maxY, pY[i]);
+			}
+			aCellCount = 0;
+			createCell((minX + maxX) / 2, (minY + maxY) / 2, Math.max(maxX - minX, maxY - minY) / 2 + 1);
+			for( int i = 0; i < pCount; i++ )
+			{
+				insert(i, pX[i], pY[i]);
+			}
+		}
+		
+		private int createCell(double pCenterX, double pCenterY, double pHalfSize)
+		{
+			if( aCellCount == aMasses.length )
+			{
+				int capacity = 2 * aCellCount;
+				aCentersX = Arrays.copyOf(aCentersX, capacity);
+				aCentersY = Arrays.copyOf(aCentersY, capacity);
+				aHalfSizes = Arrays.copyOf(aHalfSizes, capacity);
+				aMasses = Arrays.copyOf(aMasses, capacity);
+				aSumsX = Arrays.copyOf(aSumsX, capacity);
+				aSumsY = Arrays.copyOf(aSumsY, capacity);
+				aFirstChildren = Arrays.copyOf(aFirstChildren, capacity);
+				aBodies = Arrays.copyOf(aBodies, capacity);
+			}
+			int cell = aCellCount++;
+			aCentersX[cell] = pCenterX;
+			aCentersY[cell] = pCenterY;
+			aHalfSizes[cell] = pHalfSize;
+			aMasses[cell] = 0;
+			aSumsX[cell] = 0;
+			aSumsY[cell] = 0;
+			aFirstChildren[cell] = -1;
+			aBodies[cell] = -1;
+			return cell;
+		}
+		
+		private int childAt(int pCell, double pX, double pY)
+		{
+			int child = aFirstChildren[pCell];
+			if( pX >= aCentersX[pCell] )
+			{
+				child += 1;
+			}
+			if( pY >= aCentersY[pCell] )
+			{
+				child += 2;
+			}
+			return child;
+		}
+		
+		private void insert(int pBody, double pX, double pY)
+		{
+			int cell = 0;
+			while( true )
+			{
+				if( aFirstChildren[cell] < 0 && aMasses[cell] == 1 && aHalfSizes[cell] >= MIN_SIZE )
+				{
+					divide(cell);
+				}
+				aMasses[cell]++;
+				aSumsX[cell] += pX;
+				aSumsY[cell] += pY;
+				if( aFirstChildren[cell] < 0 )
+				{
+					if( aMasses[cell] == 1 )
+					{
+						aBodies[cell] = pBody;
+					}
+					return;
+				}
+				cell = childAt(cell, pX, pY);
+			}
+		}
+		
+		/*
+		 * Creates the four children of a leaf that holds a 
+		 * single node, and moves the node to one of them.
+		 */
+		private void divide(int pCell)
+		{
+			double half = aHalfSizes[pCell] / 2;
+			aFirstChildren[pCell] = createCell(aCentersX[pCell] - half, aCentersY[pCell] - half, half);
+			createCell(aCentersX[pCell] + half, aCentersY[pCell] - half, half);
+			createCell(aCentersX[pCell] - half, aCentersY[pCell] + half, half);
+			createCell(aCentersX[pCell] + half, aCentersY[pCell] + half, half);
+			int child = childAt(pCell, aSumsX[pCell], aSumsY[pCell]);
+			aMasses[child] = 1;
+			aSumsX[child] = aSumsX[pCell];
+			aSumsY[child] = aSumsY[pCell];
+			aBodies[child] = aBodies[pCell];
+			aBodies[pCell] = -1;
+		}
+		
+		/*
+		 * Adds to the force on pBody, at (pX, pY), the repulsion of 
+		 * the other nodes: pSquaredLength times their number over
+		 * their distance, in the direction opposite to them. The 
+		 * nodes of a cell that is far enough, or of a leaf, are
+		 * considered to be at their center of mass.
+		 */
+		void addRepulsion(int pBody, double pX, double pY, double pSquaredLength, double[] pForcesX, double[] pForcesY, 
+				int[] pStack)
+		{
+			double forceX = 0;
+			double forceY = 0;
+			int size = 0;
+			pStack[size++] = 0;
+			while( size > 0 )
+			{
+				int cell = pStack[--size];
+				if( aMasses[cell] == 0 || aBodies[cell] == pBody )
+				{
+					continue;
+				}
+				double dx = pX - aSumsX[cell] / aMasses[cell];
+				double dy = pY - aSumsY[cell] / aMasses[cell];
+				double squaredDistance = dx * dx + dy * dy;
+				double cellSize = 2 * aHalfSizes[cell];
+				if( aFirstChildren[cell] < 0 || cellSize * cellSize < THETA * THETA * squaredDistance )
+				{
+					if( squaredDistance > 0 )
+					{
+						double factor = pSquaredLength * aMasses[cell] / squaredDistance;
+						forceX += dx * factor;
+						forceY += dy * factor;
+					}
+				}
+				else
+				{
+					int first = aFirstChildren[cell];
+					for( int child = first; child < first + 4; child++ )
+					{
+						pStack[size++] = child;
+					}
+				}
+			}
+			pForcesX[pBody] += forceX;
+			pForcesY[pBody] += forceY;
+		}
+	}
+	
+	/*
+	 * Computes the forces on a range of nodes, splitting it 
+	 * in halves until it is small enough. Each node only 
+	 * writes to its own force.
+	 */
+	private final class ForceTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private final int aStart;
+		private final int aEnd;
+		
+		ForceTask(int pStart, int pEnd)
+		{
+			aStart = pStart;
+			aEnd = pEnd;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if( aEnd - aStart <= SEQUENTIAL_SIZE )
+			{
+				computeForces(aStart, aEnd, new int[QuadTree.STACK_SIZE]);
+			}
+			else
+			{
+				int middle = (aStart + aEnd) / 2;
+				invokeAll(new ForceTask(aStart, middle), new ForceTask(middle, aEnd));
+			}
+		}
+	}
+}
@@ -0,0 +1,338 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.beans.XMLDecoder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import ca.mcgill.cs.stg.jetuml.graph.Edge;
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
+import ca.mcgill.cs.stg.jetuml.graph.Node;
+
+/**
+ * Transfers a fragment of a diagram through the system clipboard.
+ * The fragment is transferred as a compressed graph file holding
+ * only the copied nodes and edges. It is serialized the first time
+ * it is requested, which is never if no other application pastes it.
+ * 
+ * Because any application can put data of this flavor on the system
+ * clipboard, and because XMLDecoder can call any constructor or method,
+ * a fragment is only decoded if it uses nothing but the elements,
+ * classes and methods that the PersistenceService writes for a graph.
+ */
+final class FragmentTransferable implements Transferable
+{
+	/**
+	 * The data flavor of diagram fragments, read as a stream.
+	 */
+	static final DataFlavor FRAGMENT_FLAVOR = 
+			new DataFlavor("application/x-jetuml-fragment; class=java.io.InputStream", "JetUML Diagram Fragment");
+	
+	private static final int MAX_SIZE = 1 << 26; // Bytes of XML, compressed or not
+	private static final int BUFFER_SIZE = 8192;
+	private static final Set<String> ELEMENTS = new HashSet<>(Arrays.asList("java", "object", "void", "array", "class", 
+			"null", "string", "boolean", "char", "byte", "short", "int", "long", "float", "double"));
+	private static final Set<String> ATTRIBUTES = new HashSet<>(Arrays.asList("version", "class", "id", "idref", 
+			"method", "property", "field", "index", "length"));
+	private static final Set<String> METHODS = new HashSet<>(Arrays.asList("addNode", "restoreRootNode", "restoreEdge", 
+			"connect", "addChild", "translate", "setLocation", "getField", "set", "valueOf"));
+	private static final Set<String> CLASSES = new HashSet<>(Arrays.asList("java.awt.geom.Rectangle2D$Double", 
+			"java.awt.geom.Point2D$Double", "java.lang.Enum"));
+	private static final String[] PACKAGES = { "ca.mcgill.cs.stg.jetuml.graph.", "ca.mcgill.cs.stg.jetuml.diagrams." };
+	
+	private final Class<? extends Graph> aGraphType;
+	private final List<Node> aNodes;
+	private final List<Edge> aEdges;
+	private byte[] aData; // The serialized fragment, or null if it was not requested yet
+	
+	/**
+	 * Creates a transferable for the nodes and edges in the clip-board.
+	 * The nodes and edges must not be modified afterwards. 
+	 * 
+	 * @param pGraphType The type of graph the fragment was copied from.
+	 * @param pNodes The root nodes of the fragment.
+	 * @param pEdges The edges of the fragment, between nodes of the fragment.
+	 */
+	FragmentTransferable(Class<? extends Graph> pGraphType, List<Node> pNodes, List<Edge> pEdges)
+	{
+		aGraphType = pGraphType;
+		aNodes = new ArrayList<>(pNodes);
+		aEdges = new ArrayList<>(pEdges);
+	}
+	
+	/**
+	 * Reads a fragment written by a FragmentTransferable, then closes pIn.
+	 * 
+	 * @param pIn A stream of data of flavor FRAGMENT_FLAVOR.
+	 * @return A graph holding the fragment.
+	 * @throws IOException If the fragment cannot be read, or if it 
+	 * uses anything that a graph file does not need.
+	 */
+	static Graph read(InputStream pIn) throws IOException
+	{
+		try
+		{	// Only the compressed fragment is kept, and uncompressed once for each pass
+			byte[] data = readFully(pIn);
+			check(new BoundedInputStream(new GZIPInputStream(new ByteArrayInputStream(data))));
+			Graph graph = PersistenceService.read(new BoundedInputStream(new GZIPInputStream(new ByteArrayInputStream(data))));
+			if( graph == null )
+			{
+				throw new IOException("The fragment holds no graph");
+			}
+			return graph;
+		}
+		catch( ClassCastException | ArrayIndexOutOfBoundsException exception )
+		{
+			throw new IOException(exception);
+		}
+		finally
+		{
+			pIn.close();
+		}
+	}
+	
+	private static byte[] readFully(InputStream pIn) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		for( int read = pIn.read(buffer); read >= 0; read = pIn.read(buffer) )
+		{
+			bytes.write(buffer, 0, read);
+			if( bytes.size() > MAX_SIZE )
+			{
+				throw new IOException("The fragment is too large");
+			}
+		}
+		return bytes.toByteArray();
+	}
+	
+	/*
+	 * Parses pIn without decoding it, and throws an IOException
+	 * if it contains a document type declaration, or any element,
+	 * attribute, class or method that is not allowed.
+	 */
+	private static void check(InputStream pIn) throws IOException
+	{
+		try
+		{
+			SAXParserFactory factory = SAXParserFactory.newInstance();
+			factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+			factory.newSAXParser().parse(pIn, new ContentChecker());
+		}
+		catch( ParserConfigurationException | SAXException exception )
+		{
+			throw new IOException(exception);
+		}
+	}
+	
+	private static boolean isAllowedClass(String pName)
+	{
+		if( CLASSES.contains(pName) )
+		{
+			return true;
+		}
+		for( String prefix : PACKAGES )
+		{
+			if( pName.startsWith(prefix) && pName.indexOf('.', prefix.length()) < 0 )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	@Override
+	public DataFlavor[] getTransferDataFlavors()
+	{
+		return new DataFlavor[] { FRAGMENT_FLAVOR };
+	}
+
+	@Override
+	public boolean isDataFlavorSupported(DataFlavor pFlavor)
+	{
+		return FRAGMENT_FLAVOR.equals(pFlavor);
+	}
+
+	@Override
+	public Object getTransferData(DataFlavor pFlavor) throws UnsupportedFlavorException, IOException
+	{
+		if( !isDataFlavorSupported(pFlavor))
+		{
+			throw new UnsupportedFlavorException(pFlavor);
+		}
+		return new ByteArrayInputStream(getData());
+	}
+	
+	private synchronized byte[] getData() throws IOException
+	{
+		if( aData == null )
+		{
+			Graph graph;
+			try
+			{
+				graph = Clipboard.createGraph(aGraphType, aNodes, aEdges);
+			}
+			catch( ReflectiveOperationException exception )
+			{
+				throw new IOException(exception);
+			}
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			PersistenceService.saveFile(graph, new GZIPOutputStream(bytes));
+			aData = bytes.toByteArray();
+		}
+		return aData;
+	}
+	
+	/*
+	 * Fails once more than MAX_SIZE bytes are read, so that a
+	 * small compressed fragment cannot expand without bounds.
+	 */
+	private static final class BoundedInputStream extends FilterInputStream
+	{
+		private long aCount = 0;
+		
+		BoundedInputStream(InputStream pIn)
+		{
+			super(pIn);
+		}
+		
+		@Override
+		public int read() throws IOException
+		{
+			int result = super.read();
+			if( result >= 0 )
+			{
+				count(1);
+			}
+			return result;
+		}
+		
+		@Override
+		public int read(byte[] pBuffer, int pOffset, int pLength) throws IOException
+		{
+			int result = super.read(pBuffer, pOffset, pLength);
+			if( result > 0 )
+			{
+				count(result);
+			}
+			return result;
+		}
+		
+		private void count(int pBytes) throws IOException
+		{
+			aCount += pBytes;
+			if( aCount > MAX_SIZE )
+			{
+				throw new IOException("The fragment is too large");
+			}
+		}
+	}
+	
+	/*
+	 * Rejects the content that XMLDecoder would need to 
+	 * do anything else than create a graph.
+	 */
+	private static final class ContentChecker extends DefaultHandler
+	{
+		private StringBuilder aClassName; // The text of the current class element, if any
+		
+		@Override
+		public void startElement(String pUri, String pLocalName, String pName, Attributes pAttributes) throws SAXException
+		{
+			if( !ELEMENTS.contains(pName) )
+			{
+				throw new SAXException("Element not allowed: " + pName);
+			}
+			for( int i = 0; i < pAttributes.getLength(); i++ )
+			{
+				checkAttribute(pName, pAttributes.getQName(i), pAttributes.getValue(i));
+			}
+			if( pName.equals("class") )
+			{
+				aClassName = new StringBuilder();
+			}
+		}
+		
+		private static void checkAttribute(String pElement, String pName, String pValue) throws SAXException
+		{
+			boolean allowed = ATTRIBUTES.contains(pName);
+			if( pName.equals("class") )
+			{
+				allowed = pElement.equals("java") ? pValue.equals(XMLDecoder.class.getName()) : isAllowedClass(pValue);
+			}
+			else if( pName.equals("method") )
+			{
+				allowed = METHODS.contains(pValue);
+			}
+			else if( pName.equals("property") )
+			{
+				allowed = !pValue.equals("class");
+			}
+			if( !allowed )
+			{
+				throw new SAXException("Attribute not allowed: " + pName + "=" + pValue);
+			}
+		}
+		
+		@Override
+		public void characters(char[] pCharacters, int pStart, int pLength)
+		{
+			if( aClassName != null )
+			{
+				aClassName.append(pCharacters, pStart, pLength);
+			}
+		}
+		
+		@Override
+		public void endElement(String pUri, String pLocalName, String pName) throws SAXException
+		{
+			if( aClassName != null )
+			{
+				if( !isAllowedClass(aClassName.toString().trim()) )
+				{
+					throw new SAXException("Class not allowed: " + aClassName);
+				}
+				aClassName = null;
+			}
+		}
+	}
+}
@@ -23,9 +23,14 @@ package ca.mcgill.cs.stg.jetuml.framework;
 
 import java.awt.BorderLayout;
 import java.awt.Container;
+import java.awt.GraphicsEnvironment;
 import java.io.File;
+import java.io.IOException;
+import java.util.ResourceBundle;
 
-import javax.swing.JInternalFrame;
+import javax.swing.JInternalFrame;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
 
@@ -33,13 +38,21 @@ import ca.mcgill.cs.stg.jetuml.graph.Graph;
 
 /**
  *A frame for showing a graphical editor.
+ *
+ *While it is not shown, the frame can be hibernated: its graph is 
+ *written to a temporary file and its components are released. The
+ *frame wakes up as soon as its graph or panel is requested.
  */
 @SuppressWarnings("serial")
 public class GraphFrame extends JInternalFrame
 {
 	private JTabbedPane aTabbedPane;
-	private GraphPanel aPanel;
+	private GraphPanel aPanel; // Null while hibernated
 	private File aFile; // The file associated with this graph
+	private HibernatedGraph aHibernatedGraph; // Null unless hibernated
+	private long aLastShown = System.currentTimeMillis();
+	private Minimap aMinimap; // Null while hibernated
+	private boolean aShowMinimap = false;
 	
 	/**
      * Constructs a graph frame with an empty tool bar.
@@ -49,12 +62,46 @@ public class GraphFrame extends JInternalFrame
 	public GraphFrame(Graph pGraph, JTabbedPane pTabbedPane)
 	{
 		aTabbedPane = pTabbedPane;
+		createPanel(pGraph);
+		setComponentPopupMenu( null ); // Removes the system pop-up menu full of disabled buttons.
+	}
+	
+	private void createPanel(Graph pGraph)
+	{
 		ToolBar sideBar = new ToolBar(pGraph);
 		aPanel = new GraphPanel(pGraph, sideBar);
+		JScrollPane scrollPane = new JScrollPane(aPanel);
+		aMinimap = new Minimap(aPanel, scrollPane.getViewport());
+		aMinimap.setVisible(aShowMinimap);
+		JPanel eastPanel = new JPanel(new BorderLayout());
+		eastPanel.add(sideBar, BorderLayout.CENTER);
+		eastPanel.add(aMinimap, BorderLayout.SOUTH);
 		Container contentPane = getContentPane();
-		contentPane.add(sideBar, BorderLayout.EAST);
-		contentPane.add(new JScrollPane(aPanel), BorderLayout.CENTER);
-		setComponentPopupMenu( null ); // Removes the system pop-up menu full of disabled buttons.
+		contentPane.add(eastPanel, BorderLayout.EAST);
+		contentPane.add(scrollPane, BorderLayout.CENTER);
+	}
+	
+	/**
+	 * Shows or hides the overview of the graph under the tool bar.
+	 * The setting is kept while the frame is hibernated.
+	 * @param pShow True to show the overview.
+	 */
+	public void setShowMinimap(boolean pShow)
+	{
+		aShowMinimap = pShow;
+		if( aMinimap != null )
+		{
+			aMinimap.setVisible(pShow);
+			revalidate();
+		}
+	}
+	
+	/**
+	 * @return True if the overview of the graph is shown.
+	 */
+	public boolean getShowMinimap()
+	{
+		return aShowMinimap;
 	}
 
 	/**
@@ -63,18 +110,137 @@ public class GraphFrame extends JInternalFrame
 	 */
 	public Graph getGraph()
 	{
-		return aPanel.getGraph();
+		return getGraphPanel().getGraph();
 	}
 
 	/**
-     * Gets the graph panel that is contained in this frame.
+     * Gets the graph panel that is contained in this frame,
+     * waking up the frame if it is hibernated.
      * @return the graph panel
 	 */
 	public GraphPanel getGraphPanel()
    	{
+		wake();
 		return aPanel;
    	}
 	
+	/**
+	 * Checks whether the graph has been modified since it was last 
+	 * saved, without waking up the frame.
+	 * @return true if the graph has been modified
+	 */
+	public boolean isModified()
+	{
+		if( aHibernatedGraph != null )
+		{
+			return aHibernatedGraph.isModified();
+		}
+		return aPanel.isModified();
+	}
+	
+	/**
+	 * @return True if the graph of this frame is in a temporary file.
+	 */
+	boolean isHibernated()
+	{
+		return aHibernatedGraph != null;
+	}
+	
+	/**
+	 * Records that the frame is shown at this time.
+	 */
+	void setShown()
+	{
+		aLastShown = System.currentTimeMillis();
+	}
+	
+	/**
+	 * @return The last time the frame was recorded as shown, 
+	 * in milliseconds since the epoch.
+	 */
+	long getLastShown()
+	{
+		return aLastShown;
+	}
+	
+	/**
+	 * Writes the graph and its undo history to a temporary file, 
+	 * and releases the panel and the tool bar. Does nothing if
+	 * the graph cannot be written.
+	 * 
+	 * @return True if the frame is hibernated.
+	 */
+	boolean hibernate()
+	{
+		if( aHibernatedGraph == null )
+		{
+			aHibernatedGraph = HibernatedGraph.write(aPanel);
+			if( aHibernatedGraph != null )
+			{
+				aPanel = null;
+				aMinimap = null;
+				getContentPane().removeAll();
+			}
+		}
+		return aHibernatedGraph != null;
+	}
+	
+	/**
+	 * Reads back the graph of a hibernated frame and recreates its
+	 * panel and tool bar. If the graph cannot be read back, the 
+	 * error is reported and the frame shows an empty graph.
+	 */
+	void wake()
+	{
+		if( aHibernatedGraph == null )
+		{
+			return;
+		}
+		HibernatedGraph hibernatedGraph = aHibernatedGraph;
+		aHibernatedGraph = null;
+		try
+		{
+			createPanel(hibernatedGraph.read());
+			hibernatedGraph.restore(aPanel);
+		}
+		catch(IOException exception)
+		{
+			// The empty graph shown instead must not be saved over the file of the diagram, 
+			// nor closed without warning.
+			hibernatedGraph.discard();
+			try
+			{
+				createPanel(hibernatedGraph.getGraphClass().getDeclaredConstructor().newInstance());
+			}
+			catch(ReflectiveOperationException instantiationException)
+			{
+				throw new IllegalStateException(instantiationException);
+			}
+			aFile = null;
+			aPanel.setModified(true);
+			if( !GraphicsEnvironment.isHeadless() )
+			{
+				JOptionPane.showMessageDialog(aTabbedPane, 
+						ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.framework.EditorStrings").getString("error.hibernation"), 
+						getTitle(), JOptionPane.ERROR_MESSAGE);
+			}
+		}
+		revalidate();
+		repaint();
+	}
+	
+	/**
+	 * Deletes the temporary file of a hibernated frame 
+	 * that is closed.
+	 */
+	void discardHibernatedGraph()
+	{
+		if( aHibernatedGraph != null )
+		{
+			aHibernatedGraph.discard();
+		}
+	}
+	
 	/**
 	 * This association and getter method are needed to display messages using the copy to clipboard
 	 * functionality of the Optional ToolBar.
@@ -87,4 +87,13 @@ public interface GraphModificationListener
 	 * @param pNewValue The value of the property after the change.
 	 */
 	void propertyChanged(Graph pGraph, GraphElement pElement, String pProperty, Object pOldValue, Object pNewValue);
+	
+	/**
+	 * Notifies implementers that the graph was laid out or that
+	 * its edges were routed again, for example after nodes were 
+	 * moved, so that the bounds of its elements may have changed.
+	 * 
+	 * @param pGraph The target graph.
+	 */
+	void layoutChanged(Graph pGraph);
 }
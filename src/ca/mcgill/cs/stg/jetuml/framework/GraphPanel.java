@@ -24,8 +24,10 @@ package ca.mcgill.cs.stg.jetuml.framework;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.event.InputEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -33,7 +35,9 @@ import java.awt.event.MouseMotionAdapter;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.Stack;
@@ -50,6 +54,7 @@ import ca.mcgill.cs.stg.jetuml.commands.DeleteNodeCommand;
 import ca.mcgill.cs.stg.jetuml.commands.RemoveEdgeCommand;
 import ca.mcgill.cs.stg.jetuml.graph.ChildNode;
 import ca.mcgill.cs.stg.jetuml.graph.Edge;
+import ca.mcgill.cs.stg.jetuml.graph.GeometryStore;
 import ca.mcgill.cs.stg.jetuml.graph.Graph;
 import ca.mcgill.cs.stg.jetuml.graph.GraphElement;
 import ca.mcgill.cs.stg.jetuml.graph.ImplicitParameterNode;
@@ -71,19 +76,24 @@ public class GraphPanel extends JPanel
 	private static final Color GRABBER_COLOR = new Color(77, 115, 153);
 	private static final Color GRABBER_FILL_COLOR = new Color(173, 193, 214);
 	private static final Color GRABBER_FILL_COLOR_TRANSPARENT = new Color(173, 193, 214, 75);
+	private static final Color INSTRUMENTATION_COLOR = new Color(255, 255, 225, 220);
+	private static final int INSTRUMENTATION_MARGIN = 5;
 	
 	private Graph aGraph;
 	private ToolBar aSideBar;
 	private double aZoom;	
 	private boolean aHideGrid;
+	private boolean aShowInstrumentation;
 	private boolean aModified;
 	private SelectionList aSelectedElements = new SelectionList();
 	private Point2D aLastMousePoint;
 	private Point2D aMouseDownPoint;   
 	private DragMode aDragMode;
 	private UndoManager aUndoManager = new UndoManager();
+	private GraphSnapshot aSnapshot = GraphSnapshot.EMPTY; // The last snapshot taken of aGraph
 	private final MoveTracker aMoveTracker = new MoveTracker();
 	private final PropertyChangeTracker aPropertyChangeTracker = new PropertyChangeTracker();
+	private final List<ChangeListener> aChangeListeners = new ArrayList<>();
 	
 	/**
 	 * Constructs the panel, assigns the graph to it, and registers
@@ -111,14 +121,18 @@ public class GraphPanel extends JPanel
 		if( aSelectedElements.size() > 0 )
 		{
 			Clipboard.instance().copy(aSelectedElements);
+			Clipboard.instance().exportToSystemClipboard(aGraph);
 		}
 	}
 	
 	/**
 	 * Pastes the content of the clip board into the graph managed by this panel.
+	 * If another instance of the application copied a diagram fragment
+	 * to the system clipboard, this fragment is pasted instead.
 	 */
 	public void paste()
 	{
+		Clipboard.instance().importFromSystemClipboard();
 		aSelectedElements = Clipboard.instance().paste(this);
 	}
 	
@@ -131,6 +145,7 @@ public class GraphPanel extends JPanel
 		if( aSelectedElements.size() > 0 )
 		{
 			Clipboard.instance().cut(this);
+			Clipboard.instance().exportToSystemClipboard(aGraph);
 		}
 	}
 	
@@ -175,25 +190,31 @@ public class GraphPanel extends JPanel
 	 */
 	public void removeSelected()
 	{
-		aUndoManager.startTracking();
-		Stack<Node> nodes = new Stack<Node>();
-		for( GraphElement element : aSelectedElements )
+		aGraph.beginBatch();
+		try
 		{
-			if(element instanceof Node)
+			Stack<Node> nodes = new Stack<Node>();
+			for( GraphElement element : aSelectedElements )
 			{
-				aGraph.removeAllEdgesConnectedTo((Node)element);
-				nodes.add((Node) element);
+				if(element instanceof Node)
+				{
+					aGraph.removeAllEdgesConnectedTo((Node)element);
+					nodes.add((Node) element);
+				}
+				else if(element instanceof Edge)
+				{
+					aGraph.removeEdge((Edge) element);
+				}
 			}
-			else if(element instanceof Edge)
+			while(!nodes.empty())
 			{
-				aGraph.removeEdge((Edge) element);
+				aGraph.removeNode(nodes.pop());
 			}
 		}
-		while(!nodes.empty())
+		finally
 		{
-			aGraph.removeNode(nodes.pop());
+			aGraph.commitBatch();
 		}
-		aUndoManager.endTracking();
 		if(aSelectedElements.size() > 0)
 		{
 			setModified(true);
@@ -237,6 +258,19 @@ public class GraphPanel extends JPanel
 		return aGraph;
 	}
 	
+	/**
+	 * Takes a snapshot of the graph in this panel, which can then be
+	 * read from any thread while the graph continues to be edited. 
+	 * Must be called on the event dispatch thread.
+	 * 
+	 * @return A snapshot of the current state of the graph.
+	 */
+	public GraphSnapshot getSnapshot()
+	{
+		aSnapshot = aSnapshot.update(aGraph);
+		return aSnapshot;
+	}
+	
 	/**
 	 * Collects all coming calls into single undo - redo command.
 	 */
@@ -295,10 +329,41 @@ public class GraphPanel extends JPanel
 		aSideBar.setToolToBeSelect();
 		repaint();
 	}
+	
+	/**
+	 * Arranges the nodes of the graph in layers, or by simulating
+	 * forces between them, depending on what the graph supports. 
+	 * The arrangement is undone as a single command.
+	 */
+	public void arrangeNodes()
+	{
+		CompoundCommand command;
+		if( aGraph.canArrangeInLayers() )
+		{
+			command = LayeredLayout.arrange(aGraph);
+		}
+		else if( aGraph.canArrangeByForces() )
+		{
+			command = ForceDirectedLayout.arrange(aGraph);
+		}
+		else
+		{
+			return;
+		}
+		if( command.size() > 0 )
+		{
+			command.execute();
+			aUndoManager.add(command);
+			setModified(true);
+		}
+		revalidate();
+		repaint();
+	}
 
 	@Override
 	public void paintComponent(Graphics pGraphics)
 	{
+		long start = System.nanoTime();
 		super.paintComponent(pGraphics);
 		Graphics2D g2 = (Graphics2D) pGraphics;
 		g2.scale(aZoom, aZoom);
@@ -320,11 +385,12 @@ public class GraphPanel extends JPanel
 			}
 			else if(selected instanceof Node)
 			{
-				Rectangle2D grabberBounds = ((Node) selected).getBounds();
-				drawGrabber(g2, grabberBounds.getMinX(), grabberBounds.getMinY());
-				drawGrabber(g2, grabberBounds.getMinX(), grabberBounds.getMaxY());
-				drawGrabber(g2, grabberBounds.getMaxX(), grabberBounds.getMinY());
-				drawGrabber(g2, grabberBounds.getMaxX(), grabberBounds.getMaxY());
+				GeometryStore geometry = aGraph.getGeometry();
+				Node node = (Node) selected;
+				drawGrabber(g2, geometry.getX(node), geometry.getY(node));
+				drawGrabber(g2, geometry.getX(node), geometry.getMaxY(node));
+				drawGrabber(g2, geometry.getMaxX(node), geometry.getY(node));
+				drawGrabber(g2, geometry.getMaxX(node), geometry.getMaxY(node));
 			}
 			else if(selected instanceof Edge)
 			{
@@ -361,6 +427,41 @@ public class GraphPanel extends JPanel
 			g2.fill(lasso);
 			g2.setColor(oldColor);
 		}      
+		Instrumentation.PAINT.recordSince(start);
+		
+		if( aShowInstrumentation )
+		{
+			g2.scale(1 / aZoom, 1 / aZoom);
+			drawInstrumentation(g2);
+		}
+	}
+	
+	/*
+	 * Draws the measurements of Instrumentation in the top left
+	 * corner of the visible part of the panel, at the actual size.
+	 */
+	private void drawInstrumentation(Graphics2D pGraphics2D)
+	{
+		List<String> lines = Instrumentation.getSummary();
+		FontMetrics metrics = pGraphics2D.getFontMetrics();
+		int width = 0;
+		for( String line : lines )
+		{
+			width = Math.max(width, metrics.stringWidth(line));
+		}
+		Rectangle visible = getVisibleRect();
+		Color oldColor = pGraphics2D.getColor();
+		pGraphics2D.setColor(INSTRUMENTATION_COLOR);
+		pGraphics2D.fillRect(visible.x, visible.y, width + 2 * INSTRUMENTATION_MARGIN, 
+				lines.size() * metrics.getHeight() + 2 * INSTRUMENTATION_MARGIN);
+		pGraphics2D.setColor(Color.BLACK);
+		int y = visible.y + INSTRUMENTATION_MARGIN + metrics.getAscent();
+		for( String line : lines )
+		{
+			pGraphics2D.drawString(line, visible.x + INSTRUMENTATION_MARGIN, y);
+			y += metrics.getHeight();
+		}
+		pGraphics2D.setColor(oldColor);
 	}
 
 	/**
@@ -387,6 +488,66 @@ public class GraphPanel extends JPanel
 		return new Dimension((int) (aZoom * bounds.getMaxX()), (int) (aZoom * bounds.getMaxY()));
 	}
 
+	/**
+	 * Registers a listener to be notified when the graph may have 
+	 * changed: when the graph reports a modification, and when it is
+	 * laid out or its edges are routed again, for example after nodes
+	 * were moved. Painting the panel alone does not notify listeners.
+	 * Listeners are notified on the event dispatch thread and should
+	 * return quickly.
+	 * 
+	 * @param pListener The listener to register.
+	 */
+	public void addChangeListener(ChangeListener pListener)
+	{
+		aChangeListeners.add(pListener);
+	}
+	
+	private void fireGraphChanged()
+	{
+		ChangeEvent event = new ChangeEvent(this);
+		for( ChangeListener listener : aChangeListeners )
+		{
+			listener.stateChanged(event);
+		}
+	}
+	
+	/**
+	 * @return The zoom of this panel.
+	 */
+	double getZoom()
+	{
+		return aZoom;
+	}
+	
+	/**
+	 * @param pZoom The new zoom of this panel.
+	 */
+	void setZoom(double pZoom)
+	{
+		aZoom = pZoom;
+		revalidate();
+		repaint();
+	}
+	
+	/**
+	 * @return The undo manager of this panel.
+	 */
+	UndoManager getUndoManager()
+	{
+		return aUndoManager;
+	}
+	
+	/**
+	 * Replaces the undo manager of this panel, for example by the
+	 * one of a panel previously showing the same graph.
+	 * @param pUndoManager The new undo manager.
+	 */
+	void setUndoManager(UndoManager pUndoManager)
+	{
+		aUndoManager = pUndoManager;
+	}
+
 	/**
 	 * Changes the zoom of this panel. The zoom is 1 by default and is multiplied
 	 * by sqrt(2) for each positive stem or divided by sqrt(2) for each negative step.
@@ -465,6 +626,26 @@ public class GraphPanel extends JPanel
 		return aHideGrid;
 	}
 	
+	/**
+	 * Shows or hides the measurements of Instrumentation 
+	 * over the graph.
+	 * @param pShow true if the measurements are shown
+	 */
+	public void setShowInstrumentation(boolean pShow)
+	{
+		aShowInstrumentation = pShow;
+		repaint();
+	}
+	
+	/**
+	 * @return true if the measurements of Instrumentation are
+	 * shown over the graph
+	 */
+	public boolean getShowInstrumentation()
+	{
+		return aShowInstrumentation;
+	}
+	
 	/**
 	 * @return the currently SelectedElements from the GraphPanel.
 	 */
@@ -742,10 +923,10 @@ public class GraphPanel extends JPanel
 		{
 			Point2D mousePoint = new Point2D.Double(pEvent.getX() / aZoom, pEvent.getY() / aZoom);
 			boolean isCtrl = (pEvent.getModifiersEx() & InputEvent.CTRL_DOWN_MASK) != 0; 
-
+
 			if(aDragMode == DragMode.DRAG_MOVE && aSelectedElements.getLastNode()!=null)
 			{               
-				Node lastNode = aSelectedElements.getLastNode();
+				Node lastNode = aSelectedElements.getLastNode();
 				Rectangle2D bounds = lastNode.getBounds();
 				double dx = mousePoint.getX() - aLastMousePoint.getX();
 				double dy = mousePoint.getY() - aLastMousePoint.getY();
@@ -780,6 +961,7 @@ public class GraphPanel extends JPanel
 						n.translate(dx, dy); 
 					}
 				}
+				aGraph.route();
 			}
 			else if(aDragMode == DragMode.DRAG_LASSO)
 			{
@@ -814,11 +996,12 @@ public class GraphPanel extends JPanel
 		
 		private void selectNode( boolean pCtrl, Node pNode, Rectangle2D.Double pLasso )
 		{
-			if(!pCtrl && !pLasso.contains(pNode.getBounds())) 
+			boolean inside = aGraph.getGeometry().isInside(pNode, pLasso);
+			if(!pCtrl && !inside) 
 			{
 				aSelectedElements.remove(pNode);
 			}
-			else if(pLasso.contains(pNode.getBounds())) 
+			else if(inside) 
 			{
 				aSelectedElements.add(pNode);
 			}
@@ -850,30 +1033,41 @@ public class GraphPanel extends JPanel
 		public void nodeAdded(Graph pGraph, Node pNode)
 		{
 			aUndoManager.add(new AddNodeCommand(pGraph, pNode));
+			fireGraphChanged();
 		}
 		
 		@Override
 		public void nodeRemoved(Graph pGraph, Node pNode)
 		{
 			aUndoManager.add(new DeleteNodeCommand(pGraph, pNode));
+			fireGraphChanged();
 		}
 		
 		@Override
 		public void edgeAdded(Graph pGraph, Edge pEdge)
 		{
 			aUndoManager.add(new AddEdgeCommand(pGraph, pEdge));
+			fireGraphChanged();
 		}
 		
 		@Override
 		public void edgeRemoved(Graph pGraph, Edge pEdge)
 		{
 			aUndoManager.add(new RemoveEdgeCommand(pGraph, pEdge));
+			fireGraphChanged();
 		}
 
 		@Override
 		public void propertyChanged(Graph pGraph, GraphElement pElement, String pProperty, Object pOldValue, Object pNewValue)
 		{
 			aUndoManager.add(PropertyChangeTracker.createPropertyChangeCommand(pGraph, pElement, pProperty, pOldValue, pNewValue));
+			fireGraphChanged();
+		}
+		
+		@Override
+		public void layoutChanged(Graph pGraph)
+		{
+			fireGraphChanged();
 		}
 	}
 }
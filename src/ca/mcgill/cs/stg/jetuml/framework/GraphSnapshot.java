@@ -0,0 +1,455 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.beans.IntrospectionException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.mcgill.cs.stg.jetuml.graph.ChildNode;
+import ca.mcgill.cs.stg.jetuml.graph.Edge;
+import ca.mcgill.cs.stg.jetuml.graph.GeometryStore;
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
+import ca.mcgill.cs.stg.jetuml.graph.GraphElement;
+import ca.mcgill.cs.stg.jetuml.graph.Node;
+import ca.mcgill.cs.stg.jetuml.graph.ParentNode;
+
+/**
+ * An immutable view of the nodes, edges, geometry and properties 
+ * of a graph at one point in time. A snapshot is taken on the thread
+ * that edits the graph, and can then be read from any thread, for 
+ * example to export or save the diagram, while the graph continues 
+ * to be edited.
+ * 
+ * A snapshot is normally obtained by updating the previous snapshot
+ * of the same graph. Only the elements whose bounds, properties or
+ * children have changed since are copied: the view of an unchanged
+ * element is shared by the two snapshots. Like Graph.getRootNodes,
+ * a snapshot includes the elements removed since the last layout.
+ * 
+ * The views give access to the live elements so that they can be 
+ * identified, but these must only be used on the thread that edits
+ * the graph.
+ */
+public final class GraphSnapshot
+{
+	static final GraphSnapshot EMPTY = new GraphSnapshot(Collections.<NodeSnapshot>emptyList(), 
+			Collections.<EdgeSnapshot>emptyList(), Collections.<GraphElement, ElementSnapshot>emptyMap());
+	
+	private final List<NodeSnapshot> aRootNodes;
+	private final List<EdgeSnapshot> aEdges;
+	private final Map<GraphElement, ElementSnapshot> aViews; // Identity-based
+	
+	private GraphSnapshot(List<NodeSnapshot> pRootNodes, List<EdgeSnapshot> pEdges, Map<GraphElement, ElementSnapshot> pViews)
+	{
+		aRootNodes = pRootNodes;
+		aEdges = pEdges;
+		aViews = pViews;
+	}
+	
+	/**
+	 * Takes a snapshot of pGraph that shares nothing with previous
+	 * snapshots. Must be called on the thread that edits pGraph.
+	 * 
+	 * @param pGraph The graph to take a snapshot of.
+	 * @return A snapshot of the current state of pGraph.
+	 */
+	public static GraphSnapshot of(Graph pGraph)
+	{
+		return EMPTY.update(pGraph);
+	}
+	
+	/**
+	 * Takes a snapshot of pGraph that shares the views of the 
+	 * elements that have not changed with this snapshot. Must be 
+	 * called on the thread that edits pGraph.
+	 * 
+	 * @param pGraph The graph this snapshot was taken of.
+	 * @return A snapshot of the current state of pGraph, which is
+	 * this snapshot if nothing has changed.
+	 */
+	public GraphSnapshot update(Graph pGraph)
+	{
+		Map<GraphElement, ElementSnapshot> views = new IdentityHashMap<>();
+		GeometryStore geometry = pGraph.getGeometry();
+		boolean changed = pGraph.getRootNodes().size() != aRootNodes.size() || pGraph.getEdges().size() != aEdges.size();
+		
+		List<NodeSnapshot> rootNodes = new ArrayList<>(pGraph.getRootNodes().size());
+		for( Node node : pGraph.getRootNodes() )
+		{
+			NodeSnapshot view = update(node, geometry, views);
+			changed = changed || view != aRootNodes.get(rootNodes.size());
+			rootNodes.add(view);
+		}
+		List<EdgeSnapshot> edges = new ArrayList<>(pGraph.getEdges().size());
+		for( Edge edge : pGraph.getEdges() )
+		{
+			EdgeSnapshot view = update(edge, views);
+			changed = changed || view != aEdges.get(edges.size());
+			edges.add(view);
+		}
+		if( !changed )
+		{
+			return this;
+		}
+		return new GraphSnapshot(Collections.unmodifiableList(rootNodes), Collections.unmodifiableList(edges), views);
+	}
+	
+	private NodeSnapshot update(Node pNode, GeometryStore pGeometry, Map<GraphElement, ElementSnapshot> pViews)
+	{
+		ElementSnapshot previous = aViews.get(pNode);
+		List<NodeSnapshot> children = Collections.emptyList();
+		boolean sameChildren = true;
+		if( pNode instanceof ParentNode )
+		{
+			List<ChildNode> nodes = ((ParentNode) pNode).getChildren();
+			children = new ArrayList<>(nodes.size());
+			sameChildren = previous instanceof NodeSnapshot && ((NodeSnapshot) previous).aChildren.size() == nodes.size();
+			for( ChildNode child : nodes )
+			{
+				NodeSnapshot view = update(child, pGeometry, pViews);
+				sameChildren = sameChildren && view == ((NodeSnapshot) previous).aChildren.get(children.size());
+				children.add(view);
+			}
+		}
+		Object[] properties = readProperties(pNode);
+		NodeSnapshot view;
+		if( previous instanceof NodeSnapshot && sameChildren && Arrays.equals(previous.aProperties, properties) &&
+				previous.hasBounds(pGeometry.getX(pNode), pGeometry.getY(pNode), pGeometry.getWidth(pNode), pGeometry.getHeight(pNode)) )
+		{
+			view = (NodeSnapshot) previous;
+		}
+		else
+		{
+			view = new NodeSnapshot(pNode, pGeometry, properties, 
+					sameChildren && previous instanceof NodeSnapshot ? ((NodeSnapshot) previous).aChildren : Collections.unmodifiableList(children));
+		}
+		pViews.put(pNode, view);
+		return view;
+	}
+	
+	private EdgeSnapshot update(Edge pEdge, Map<GraphElement, ElementSnapshot> pViews)
+	{
+		ElementSnapshot previous = aViews.get(pEdge);
+		Object[] properties = readProperties(pEdge);
+		Rectangle2D bounds = pEdge.getBounds();
+		Line2D connectionPoints = pEdge.getConnectionPoints();
+		EdgeSnapshot view;
+		if( previous instanceof EdgeSnapshot && ((EdgeSnapshot) previous).hasEndpoints(pEdge, connectionPoints) && 
+				Arrays.equals(previous.aProperties, properties) &&
+				previous.hasBounds(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight()))
+		{
+			view = (EdgeSnapshot) previous;
+		}
+		else
+		{
+			view = new EdgeSnapshot(pEdge, bounds, connectionPoints, properties);
+		}
+		pViews.put(pEdge, view);
+		return view;
+	}
+	
+	/*
+	 * Returns the values of the editable properties of pElement, with
+	 * the other properties set to null. The bounds and the properties 
+	 * that refer to other elements are not part of the values.
+	 */
+	private static Object[] readProperties(GraphElement pElement)
+	{
+		try
+		{
+			PropertyAccessors accessors = PropertyAccessors.forClass(pElement.getClass());
+			Object[] values = new Object[accessors.size()];
+			for( int i = 0; i < values.length; i++ )
+			{
+				if( isCaptured(accessors, i) )
+				{
+					values[i] = copyIfNecessary(accessors.get(pElement, i));
+				}
+			}
+			return values;
+		}
+		catch(IntrospectionException | InvocationTargetException exception)
+		{
+			return new Object[0];
+		}
+	}
+	
+	private static boolean isCaptured(PropertyAccessors pAccessors, int pIndex)
+	{
+		Class<?> type = pAccessors.getDescriptor(pIndex).getPropertyType();
+		return pAccessors.isReadable(pIndex) && pAccessors.isWritable(pIndex) && type != null && 
+				!GraphElement.class.isAssignableFrom(type) && !Rectangle2D.class.isAssignableFrom(type);
+	}
+	
+	private static Object copyIfNecessary(Object pObject)
+	{
+		if( pObject instanceof MultiLineString )
+		{
+			return ((MultiLineString) pObject).clone();
+		}
+		return pObject;
+	}
+	
+	/**
+	 * @return The views of the root nodes of the graph, in the 
+	 * order of Graph.getRootNodes.
+	 */
+	public List<NodeSnapshot> getRootNodes()
+	{
+		return aRootNodes;
+	}
+	
+	/**
+	 * @return The views of the edges of the graph, in the
+	 * order of Graph.getEdges.
+	 */
+	public List<EdgeSnapshot> getEdges()
+	{
+		return aEdges;
+	}
+	
+	/**
+	 * @param pNode A node.
+	 * @return The view of pNode in this snapshot, or null if 
+	 * pNode was not in the graph when the snapshot was taken.
+	 */
+	public NodeSnapshot getNode(Node pNode)
+	{
+		ElementSnapshot view = aViews.get(pNode);
+		if( view instanceof NodeSnapshot )
+		{
+			return (NodeSnapshot) view;
+		}
+		return null;
+	}
+	
+	/**
+	 * @param pEdge An edge.
+	 * @return The view of pEdge in this snapshot, or null if 
+	 * pEdge was not in the graph when the snapshot was taken.
+	 */
+	public EdgeSnapshot getEdge(Edge pEdge)
+	{
+		ElementSnapshot view = aViews.get(pEdge);
+		if( view instanceof EdgeSnapshot )
+		{
+			return (EdgeSnapshot) view;
+		}
+		return null;
+	}
+	
+	/**
+	 * The bounds and editable properties of a graph element.
+	 */
+	public abstract static class ElementSnapshot
+	{
+		private final GraphElement aElement;
+		private final double aX;
+		private final double aY;
+		private final double aWidth;
+		private final double aHeight;
+		private final Object[] aProperties;
+		
+		ElementSnapshot(GraphElement pElement, double pX, double pY, double pWidth, double pHeight, Object[] pProperties)
+		{
+			aElement = pElement;
+			aX = pX;
+			aY = pY;
+			aWidth = pWidth;
+			aHeight = pHeight;
+			aProperties = pProperties;
+		}
+		
+		boolean hasBounds(double pX, double pY, double pWidth, double pHeight)
+		{
+			return aX == pX && aY == pY && aWidth == pWidth && aHeight == pHeight;
+		}
+		
+		/**
+		 * @return The live element. Must only be used on the thread
+		 * that edits the graph.
+		 */
+		public GraphElement getElement()
+		{
+			return aElement;
+		}
+		
+		/**
+		 * @return The bounds of the element when the snapshot was taken.
+		 */
+		public Rectangle2D getBounds()
+		{
+			return new Rectangle2D.Double(aX, aY, aWidth, aHeight);
+		}
+		
+		/**
+		 * @param pName The name of a property of the element.
+		 * @return The value of the property when the snapshot was taken,
+		 * or null if there is no such editable property.
+		 */
+		public Object getProperty(String pName)
+		{
+			try
+			{
+				int index = PropertyAccessors.forClass(aElement.getClass()).indexOf(pName);
+				if( index < 0 || index >= aProperties.length )
+				{
+					return null;
+				}
+				return copyIfNecessary(aProperties[index]);
+			}
+			catch(IntrospectionException exception)
+			{
+				return null;
+			}
+		}
+		
+		/**
+		 * @return The names of the editable properties of the element.
+		 */
+		public List<String> getPropertyNames()
+		{
+			List<String> names = new ArrayList<>();
+			try
+			{
+				PropertyAccessors accessors = PropertyAccessors.forClass(aElement.getClass());
+				for( int i = 0; i < aProperties.length; i++ )
+				{
+					if( isCaptured(accessors, i) )
+					{
+						names.add(accessors.getDescriptor(i).getName());
+					}
+				}
+			}
+			catch(IntrospectionException exception)
+			{
+				return Collections.emptyList();
+			}
+			return names;
+		}
+	}
+	
+	/**
+	 * The view of a node in a snapshot.
+	 */
+	public static final class NodeSnapshot extends ElementSnapshot
+	{
+		private final List<NodeSnapshot> aChildren;
+		
+		NodeSnapshot(Node pNode, GeometryStore pGeometry, Object[] pProperties, List<NodeSnapshot> pChildren)
+		{
+			super(pNode, pGeometry.getX(pNode), pGeometry.getY(pNode), pGeometry.getWidth(pNode), pGeometry.getHeight(pNode), pProperties);
+			aChildren = pChildren;
+		}
+		
+		/**
+		 * @return The live node. Must only be used on the thread
+		 * that edits the graph.
+		 */
+		public Node getNode()
+		{
+			return (Node) getElement();
+		}
+		
+		/**
+		 * @return The views of the children of the node.
+		 */
+		public List<NodeSnapshot> getChildren()
+		{
+			return aChildren;
+		}
+	}
+	
+	/**
+	 * The view of an edge in a snapshot.
+	 */
+	public static final class EdgeSnapshot extends ElementSnapshot
+	{
+		private final Node aStart;
+		private final Node aEnd;
+		private final double aStartX;
+		private final double aStartY;
+		private final double aEndX;
+		private final double aEndY;
+		
+		EdgeSnapshot(Edge pEdge, Rectangle2D pBounds, Line2D pConnectionPoints, Object[] pProperties)
+		{
+			super(pEdge, pBounds.getX(), pBounds.getY(), pBounds.getWidth(), pBounds.getHeight(), pProperties);
+			aStart = pEdge.getStart();
+			aEnd = pEdge.getEnd();
+			aStartX = pConnectionPoints.getX1();
+			aStartY = pConnectionPoints.getY1();
+			aEndX = pConnectionPoints.getX2();
+			aEndY = pConnectionPoints.getY2();
+		}
+		
+		boolean hasEndpoints(Edge pEdge, Line2D pConnectionPoints)
+		{
+			return aStart == pEdge.getStart() && aEnd == pEdge.getEnd() && 
+					aStartX == pConnectionPoints.getX1() && aStartY == pConnectionPoints.getY1() &&
+					aEndX == pConnectionPoints.getX2() && aEndY == pConnectionPoints.getY2();
+		}
+		
+		/**
+		 * @return The live edge. Must only be used on the thread
+		 * that edits the graph.
+		 */
+		public Edge getEdge()
+		{
+			return (Edge) getElement();
+		}
+		
+		/**
+		 * @return The start node of the edge, to be looked up 
+		 * with GraphSnapshot.getNode.
+		 */
+		public Node getStart()
+		{
+			return aStart;
+		}
+		
+		/**
+		 * @return The end node of the edge, to be looked up 
+		 * with GraphSnapshot.getNode.
+		 */
+		public Node getEnd()
+		{
+			return aEnd;
+		}
+		
+		/**
+		 * @return The points where the edge connects to its
+		 * nodes when the snapshot was taken.
+		 */
+		public Line2D getConnectionPoints()
+		{
+			return new Line2D.Double(aStartX, aStartY, aEndX, aEndY);
+		}
+	}
+}
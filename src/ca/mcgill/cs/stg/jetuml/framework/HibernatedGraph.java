@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import java.beans.ExceptionListener;
+import java.beans.XMLDecoder;
+import java.beans.XMLEncoder;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import ca.mcgill.cs.stg.jetuml.commands.CompoundCommand;
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
+
+/**
+ * The graph of a GraphPanel and its undo history, written to a
+ * compressed temporary file so that the panel can be released 
+ * while the graph is not shown.
+ * 
+ * The graph, the commands of the undo history held in memory, and 
+ * the elements that the spilled commands refer to are written in 
+ * a single stream, so that the commands read back refer to the 
+ * elements of the graph read back. The undo manager itself is kept, 
+ * as its spilled commands remain in their own files. 
+ */
+final class HibernatedGraph
+{
+	private final File aFile;
+	private final Class<? extends Graph> aGraphClass;
+	private final UndoManager aUndoManager;
+	private final double aZoom;
+	private final boolean aHideGrid;
+	private final boolean aShowInstrumentation;
+	private final boolean aModified;
+	
+	private HibernatedGraph(File pFile, GraphPanel pPanel)
+	{
+		aFile = pFile;
+		aGraphClass = pPanel.getGraph().getClass();
+		aUndoManager = pPanel.getUndoManager();
+		aZoom = pPanel.getZoom();
+		aHideGrid = pPanel.getHideGrid();
+		aShowInstrumentation = pPanel.getShowInstrumentation();
+		aModified = pPanel.isModified();
+	}
+	
+	/**
+	 * Writes the graph and the undo history of pPanel to a temporary 
+	 * file, and releases the commands held in memory by its undo manager. 
+	 * The file is read back once to check that the graph can be restored. 
+	 * 
+	 * @param pPanel The panel to hibernate, which must not be used 
+	 * afterwards. 
+	 * @return The hibernated graph, or null if it could not be written, 
+	 * in which case pPanel is left unchanged.
+	 */
+	static HibernatedGraph write(GraphPanel pPanel)
+	{
+		List<Object> state = pPanel.getUndoManager().getMemoryState();
+		if( state == null )
+		{
+			return null;
+		}
+		List<Object> contents = new ArrayList<>();
+		contents.add(pPanel.getGraph());
+		contents.addAll(state);
+		File file = null;
+		try
+		{
+			file = File.createTempFile("jetuml-tab", ".xml.gz");
+			file.deleteOnExit();
+			final boolean[] failed = new boolean[1];
+			XMLEncoder encoder = new XMLEncoder(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file))));
+			encoder.setExceptionListener(new ExceptionListener()
+			{
+				@Override
+				public void exceptionThrown(Exception pException)
+				{
+					failed[0] = true;
+				}
+			});
+			PersistenceService.setPersistenceDelegates(encoder);
+			CompoundCommand.setPersistenceDelegate(encoder);
+			PropertyChangeTracker.setPersistenceDelegate(encoder);
+			encoder.writeObject(contents);
+			encoder.close();
+			if( failed[0] )
+			{
+				throw new IOException("Graph could not be encoded");
+			}
+			read(file);
+		}
+		catch(IOException exception)
+		{
+			if( file != null )
+			{
+				file.delete();
+			}
+			return null;
+		}
+		HibernatedGraph hibernated = new HibernatedGraph(file, pPanel);
+		pPanel.getUndoManager().setMemoryState(null);
+		return hibernated;
+	}
+	
+	/**
+	 * @return The class of the hibernated graph.
+	 */
+	Class<? extends Graph> getGraphClass()
+	{
+		return aGraphClass;
+	}
+	
+	/**
+	 * @return True if the graph was modified since it was last saved.
+	 */
+	boolean isModified()
+	{
+		return aModified;
+	}
+	
+	/**
+	 * @return The number of bytes taken on disk by the graph.
+	 */
+	long getSize()
+	{
+		return aFile.length();
+	}
+	
+	/**
+	 * Reads back the graph and the commands of its undo history,
+	 * and deletes the file.
+	 * 
+	 * @return The graph, to be shown in a new GraphPanel passed to restore.
+	 * @throws IOException If the graph cannot be read.
+	 */
+	Graph read() throws IOException
+	{
+		List<Object> contents = read(aFile);
+		aUndoManager.setMemoryState(contents.subList(1, contents.size()));
+		aFile.delete();
+		return (Graph) contents.get(0);
+	}
+	
+	/**
+	 * Gives pPanel the undo history and the settings of the
+	 * panel that was hibernated.
+	 * 
+	 * @param pPanel A panel showing the graph returned by read.
+	 */
+	void restore(GraphPanel pPanel)
+	{
+		pPanel.setUndoManager(aUndoManager);
+		pPanel.setZoom(aZoom);
+		pPanel.setHideGrid(aHideGrid);
+		pPanel.setShowInstrumentation(aShowInstrumentation);
+		pPanel.setModified(aModified);
+	}
+	
+	/**
+	 * Deletes the file without reading it back, and the files
+	 * of the commands spilled by the undo manager.
+	 */
+	void discard()
+	{
+		aFile.delete();
+		aUndoManager.clear();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static List<Object> read(File pFile) throws IOException
+	{
+		final boolean[] failed = new boolean[1];
+		List<Object> contents = null;
+		try( XMLDecoder decoder = new XMLDecoder(new GZIPInputStream(new BufferedInputStream(new FileInputStream(pFile))), null, 
+				new ExceptionListener()
+				{
+					@Override
+					public void exceptionThrown(Exception pException)
+					{
+						failed[0] = true;
+					}
+				}))
+		{
+			contents = (List<Object>) decoder.readObject();
+		}
+		catch(RuntimeException exception)
+		{
+			failed[0] = true;
+		}
+		if( failed[0] || contents == null )
+		{
+			throw new IOException("Graph could not be decoded");
+		}
+		return contents;
+	}
+}
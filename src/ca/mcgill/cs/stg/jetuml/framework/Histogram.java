@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations, in nanoseconds, with a bounded 
+ * relative error. Values smaller than 32 are counted exactly; larger 
+ * values are counted in one of 32 buckets per power of two, so that 
+ * the percentiles are accurate within about 3%, whatever their 
+ * magnitude. Recording a value does not allocate memory or take 
+ * locks, so durations can be recorded from several threads.
+ * 
+ * A histogram created with an event name also commits a Flight 
+ * Recorder OperationEvent for each duration measured with 
+ * recordSince, if the runtime provides jdk.jfr.
+ */
+public final class Histogram implements HistogramMBean
+{
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_SHIFT = Long.SIZE - 1 - SUB_BUCKET_BITS;
+	private static final double NANOS_PER_MILLI = 1000000.0;
+	private static final double PERCENT = 100.0;
+	private static final double MEDIAN = 50.0;
+	private static final double HIGH_PERCENTILE = 99.0;
+	private static final boolean FLIGHT_RECORDER = isFlightRecorderAvailable();
+	
+	private final String aEventName; // Null if no events are committed
+	private final AtomicLongArray aCounts = new AtomicLongArray(SUB_BUCKETS * (MAX_SHIFT + 1));
+	private final AtomicLong aCount = new AtomicLong();
+	private final AtomicLong aSum = new AtomicLong();
+	private final AtomicLong aMax = new AtomicLong();
+	
+	/**
+	 * Creates an empty histogram that commits no events.
+	 */
+	public Histogram()
+	{
+		this(null);
+	}
+	
+	/**
+	 * Creates an empty histogram that commits events named pEventName.
+	 * @param pEventName The name of the measured operation in events, 
+	 * or null to commit no events.
+	 */
+	Histogram(String pEventName)
+	{
+		aEventName = pEventName;
+	}
+	
+	/*
+	 * jdk.jfr was added in Java 11 and backported to Java 8u262.
+	 */
+	private static boolean isFlightRecorderAvailable()
+	{
+		try
+		{
+			Class.forName("jdk.jfr.Event");
+			return true;
+		}
+		catch( ClassNotFoundException | LinkageError exception )
+		{
+			return false;
+		}
+	}
+	
+	/**
+	 * Records a duration.
+	 * @param pNanos A duration in nanoseconds. Negative durations, which
+	 * can be measured if the clock is adjusted, are recorded as 0.
+	 */
+	public void record(long pNanos)
+	{
+		long value = Math.max(0, pNanos);
+		aCounts.incrementAndGet(indexOf(value));
+		aCount.incrementAndGet();
+		aSum.addAndGet(value);
+		long max = aMax.get();
+		while( value > max && !aMax.compareAndSet(max, value) )
+		{
+			max = aMax.get();
+		}
+	}
+	
+	/**
+	 * Records the duration elapsed since pStart.
+	 * @param pStart A value of System.nanoTime().
+	 */
+	public void recordSince(long pStart)
+	{
+		long elapsed = System.nanoTime() - pStart;
+		record(elapsed);
+		if( aEventName != null && FLIGHT_RECORDER )
+		{
+			OperationEvent.commit(aEventName, elapsed);
+		}
+	}
+	
+	@Override
+	public long getCount()
+	{
+		return aCount.get();
+	}
+	
+	/**
+	 * @return The largest duration recorded, in nanoseconds.
+	 */
+	public long getMax()
+	{
+		return aMax.get();
+	}
+	
+	/**
+	 * @return The mean of the durations recorded, in nanoseconds, 
+	 * or 0 if none was recorded.
+	 */
+	public double getMean()
+	{
+		long count = aCount.get();
+		if( count == 0 )
+		{
+			return 0;
+		}
+		return aSum.get() / (double) count;
+	}
+	
+	/**
+	 * @param pPercentile A percentile, between 0 and 100.
+	 * @return The smallest duration, in nanoseconds, that is greater than 
+	 * or equal to pPercentile percent of the durations recorded, within
+	 * the precision of the histogram, or 0 if none was recorded.
+	 */
+	public long getPercentile(double pPercentile)
+	{
+		assert pPercentile >= 0 && pPercentile <= PERCENT;
+		long count = aCount.get();
+		if( count == 0 )
+		{
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(pPercentile / PERCENT * count));
+		long seen = 0;
+		for( int i = 0; i < aCounts.length(); i++ )
+		{
+			seen += aCounts.get(i);
+			if( seen >= rank )
+			{
+				return Math.min(highestValueOf(i), aMax.get());
+			}
+		}
+		return aMax.get();
+	}
+	
+	@Override
+	public double getMeanMillis()
+	{
+		return getMean() / NANOS_PER_MILLI;
+	}
+	
+	@Override
+	public double getMedianMillis()
+	{
+		return getPercentile(MEDIAN) / NANOS_PER_MILLI;
+	}
+	
+	@Override
+	public double getPercentile99Millis()
+	{
+		return getPercentile(HIGH_PERCENTILE) / NANOS_PER_MILLI;
+	}
+	
+	@Override
+	public double getMaxMillis()
+	{
+		return getMax() / NANOS_PER_MILLI;
+	}
+	
+	@Override
+	public void reset()
+	{
+		for( int i = 0; i < aCounts.length(); i++ )
+		{
+			aCounts.set(i, 0);
+		}
+		aCount.set(0);
+		aSum.set(0);
+		aMax.set(0);
+	}
+	
+	@Override
+	public String toString()
+	{
+		return String.format("n=%d mean=%.2fms p50=%.2fms p99=%.2fms max=%.2fms", 
+				getCount(), getMeanMillis(), getMedianMillis(), getPercentile99Millis(), getMaxMillis());
+	}
+	
+	/*
+	 * The values of [2^k, 2^(k+1)) for k >= SUB_BUCKET_BITS are split
+	 * in SUB_BUCKETS buckets of width 2^(k - SUB_BUCKET_BITS). Smaller
+	 * values have a bucket each.
+	 */
+	static int indexOf(long pValue)
+	{
+		int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(pValue) - SUB_BUCKET_BITS;
+		if( shift < 0 )
+		{
+			return (int) pValue;
+		}
+		return SUB_BUCKETS * (shift + 1) + (int) (pValue >>> shift) - SUB_BUCKETS;
+	}
+	
+	static long highestValueOf(int pIndex)
+	{
+		if( pIndex < SUB_BUCKETS )
+		{
+			return pIndex;
+		}
+		int shift = pIndex / SUB_BUCKETS - 1;
+		long lowest = (long) (pIndex % SUB_BUCKETS + SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
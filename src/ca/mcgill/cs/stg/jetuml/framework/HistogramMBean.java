@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+/**
+ * The attributes and operations of a Histogram that are
+ * published through JMX.
+ */
+public interface HistogramMBean
+{
+	/**
+	 * @return The number of durations recorded.
+	 */
+	long getCount();
+	
+	/**
+	 * @return The mean of the durations recorded, in milliseconds.
+	 */
+	double getMeanMillis();
+	
+	/**
+	 * @return The median of the durations recorded, in milliseconds.
+	 */
+	double getMedianMillis();
+	
+	/**
+	 * @return The 99th percentile of the durations recorded, in milliseconds.
+	 */
+	double getPercentile99Millis();
+	
+	/**
+	 * @return The largest duration recorded, in milliseconds.
+	 */
+	double getMaxMillis();
+	
+	/**
+	 * Forgets the durations recorded so far.
+	 */
+	void reset();
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Measures the operations of the editor whose cost grows with 
+ * the size of diagrams, so that it can be reported why the editor
+ * is slow on a given diagram. Durations are recorded in histograms, 
+ * and events in counters, which cost a few atomic operations per 
+ * measurement.
+ * 
+ * The measurements are published as MBeans in the 
+ * "ca.mcgill.cs.stg.jetuml" domain once register() is called, and
+ * can be shown over a diagram by GraphPanel. Painting, layout, reading
+ * and saving are also committed as Flight Recorder events of type
+ * "ca.mcgill.cs.stg.jetuml.Operation" when the runtime supports it.
+ */
+public final class Instrumentation implements InstrumentationMBean
+{
+	/** The time taken to paint a GraphPanel. */
+	public static final Histogram PAINT = new Histogram("Paint");
+	
+	/** The time taken to lay out a graph before drawing it. */
+	public static final Histogram LAYOUT = new Histogram("Layout");
+	
+	/** 
+	 * The time taken to compute the path of an edge with a SegmentationStyle.
+	 * It is measured for each edge, too often for events to be committed.
+	 */
+	public static final Histogram ROUTING = new Histogram();
+	
+	/** The time taken to read a graph with PersistenceService. */
+	public static final Histogram READ = new Histogram("Read");
+	
+	/** The time taken to save a graph with PersistenceService. */
+	public static final Histogram SAVE = new Histogram("Save");
+	
+	private static final String DOMAIN = "ca.mcgill.cs.stg.jetuml";
+	private static final AtomicLong TEXT_MEASUREMENTS = new AtomicLong();
+	private static final AtomicLong BYTES_READ = new AtomicLong();
+	private static final AtomicLong BYTES_SAVED = new AtomicLong();
+	private static final AtomicLong UNDO_HISTORY_SIZE = new AtomicLong();
+	private static final AtomicLong STARTUP_TIME = new AtomicLong();
+	
+	private Instrumentation() {}
+	
+	/**
+	 * Publishes the measurements in the platform MBean server. Does 
+	 * nothing if they are already published or if they cannot be.
+	 */
+	public static void register()
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try
+		{
+			ObjectName name = new ObjectName(DOMAIN + ":type=Instrumentation");
+			if( server.isRegistered(name) )
+			{
+				return;
+			}
+			server.registerMBean(new Instrumentation(), name);
+			server.registerMBean(PAINT, histogramName("Paint"));
+			server.registerMBean(LAYOUT, histogramName("Layout"));
+			server.registerMBean(ROUTING, histogramName("Routing"));
+			server.registerMBean(READ, histogramName("Read"));
+			server.registerMBean(SAVE, histogramName("Save"));
+		}
+		catch(JMException exception)
+		{
+			// The measurements are still shown by the editor
+		}
+	}
+	
+	private static ObjectName histogramName(String pName) throws JMException
+	{
+		return new ObjectName(DOMAIN + ":type=Histogram,name=" + pName);
+	}
+	
+	/**
+	 * Counts one measurement of the size of a text.
+	 */
+	public static void countTextMeasurement()
+	{
+		TEXT_MEASUREMENTS.incrementAndGet();
+	}
+	
+	/**
+	 * @param pBytes A number of bytes read by PersistenceService.
+	 */
+	public static void addBytesRead(long pBytes)
+	{
+		BYTES_READ.addAndGet(pBytes);
+	}
+	
+	/**
+	 * @param pBytes A number of bytes saved by PersistenceService.
+	 */
+	public static void addBytesSaved(long pBytes)
+	{
+		BYTES_SAVED.addAndGet(pBytes);
+	}
+	
+	/**
+	 * @param pSize The number of commands that can be undone in 
+	 * the diagram that was modified last.
+	 */
+	public static void setUndoHistorySize(int pSize)
+	{
+		UNDO_HISTORY_SIZE.set(pSize);
+	}
+	
+	/**
+	 * @param pMilliseconds The number of milliseconds from the launch 
+	 * of the editor until its window could be used.
+	 */
+	public static void setStartupTime(long pMilliseconds)
+	{
+		STARTUP_TIME.set(pMilliseconds);
+	}
+	
+	/**
+	 * @return The measurements, one per line, in a form 
+	 * that can be shown to users.
+	 */
+	public static List<String> getSummary()
+	{
+		List<String> lines = new ArrayList<>();
+		lines.add("Paint: " + PAINT);
+		lines.add("Layout: " + LAYOUT);
+		lines.add("Routing: " + ROUTING);
+		lines.add("Read: " + READ + " bytes=" + BYTES_READ.get());
+		lines.add("Save: " + SAVE + " bytes=" + BYTES_SAVED.get());
+		lines.add("Text measurements: " + TEXT_MEASUREMENTS.get());
+		lines.add("Undo history: " + UNDO_HISTORY_SIZE.get());
+		lines.add("Startup: " + STARTUP_TIME.get() + " ms");
+		return lines;
+	}
+	
+	/**
+	 * Forgets all the measurements, except for the size
+	 * of the undo history, which is a current value, and
+	 * the startup time, which is only measured once.
+	 */
+	public static void resetAll()
+	{
+		PAINT.reset();
+		LAYOUT.reset();
+		ROUTING.reset();
+		READ.reset();
+		SAVE.reset();
+		TEXT_MEASUREMENTS.set(0);
+		BYTES_READ.set(0);
+		BYTES_SAVED.set(0);
+	}
+	
+	@Override
+	public long getTextMeasurements()
+	{
+		return TEXT_MEASUREMENTS.get();
+	}
+	
+	@Override
+	public long getBytesRead()
+	{
+		return BYTES_READ.get();
+	}
+	
+	@Override
+	public long getBytesSaved()
+	{
+		return BYTES_SAVED.get();
+	}
+	
+	@Override
+	public long getUndoHistorySize()
+	{
+		return UNDO_HISTORY_SIZE.get();
+	}
+	
+	@Override
+	public long getStartupTime()
+	{
+		return STARTUP_TIME.get();
+	}
+	
+	@Override
+	public void reset()
+	{
+		resetAll();
+	}
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+/**
+ * The counters of Instrumentation that are published through
+ * JMX. The durations are published as separate histograms.
+ */
+public interface InstrumentationMBean
+{
+	/**
+	 * @return The number of times the size of a text was measured.
+	 */
+	long getTextMeasurements();
+	
+	/**
+	 * @return The number of bytes of diagrams read.
+	 */
+	long getBytesRead();
+	
+	/**
+	 * @return The number of bytes of diagrams saved.
+	 */
+	long getBytesSaved();
+	
+	/**
+	 * @return The number of commands that can be undone in
+	 * the diagram that was modified last.
+	 */
+	long getUndoHistorySize();
+	
+	/**
+	 * @return The number of milliseconds from the launch of the 
+	 * editor until its window could be used, or 0 if unknown.
+	 */
+	long getStartupTime();
+	
+	/**
+	 * Forgets all the measurements.
+	 */
+	void reset();
+}
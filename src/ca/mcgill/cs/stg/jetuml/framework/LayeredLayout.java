@@ -0,0 +1,819 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ca.mcgill.cs.stg.jetuml.commands.CompoundCommand;
+import ca.mcgill.cs.stg.jetuml.graph.Edge;
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
+
+/**
+ * Arranges the root nodes of a graph in horizontal layers, so that 
+ * the edges that order their nodes, as indicated by Graph.getLayerOrder,
+ * all point in the same direction.
+ * 
+ * The arrangement follows the Sugiyama method. Cycles are broken by 
+ * reversing the edges that lead back to a node being visited in a
+ * depth-first search, and nodes are assigned to layers by longest path.
+ * Edges that span several layers are split by bend points, one per
+ * layer crossed. The nodes of each layer are then ordered to reduce
+ * crossings, by sweeping the layers down and up and sorting each layer
+ * by the barycenter of the neighbors of its nodes in the previous layer.
+ * Finally, each node is centered over its neighbors as far as the 
+ * order of its layer allows.
+ * 
+ * The connected components of the graph are arranged independently, 
+ * in parallel, and then packed in rows. The barycenters of the nodes
+ * of large layers are also computed in parallel.
+ */
+public final class LayeredLayout extends AbstractLayout
+{
+	private static final double HORIZONTAL_GAP = 40; // Between two nodes of a layer
+	private static final double BEND_GAP = 10; // Between a bend point and its neighbors in a layer
+	private static final double VERTICAL_GAP = 60; // Between two layers
+	private static final double COMPONENT_GAP = 80; // Between two components
+	private static final double MARGIN = 20; // Between the components and the origin
+	private static final double ASPECT_RATIO = 1.5; // Width of the rows of components over the height of the diagram
+	private static final int ORDERING_SWEEPS = 6;
+	private static final int PLACEMENT_SWEEPS = 4;
+	private static final int PARALLEL_LAYER_SIZE = 1024; // Nodes and bend points
+	private static final int SEQUENTIAL_LAYER_SIZE = 256; // Nodes and bend points
+	private static final int SEQUENTIAL_COMPONENTS_SIZE = 256; // Nodes
+	
+	private final int[] aLocalIndices; // The index of each node in its component
+	
+	private LayeredLayout(Graph pGraph)
+	{
+		super(pGraph);
+		aLocalIndices = new int[aNodes.size()];
+	}
+	
+	/**
+	 * Computes an arrangement of the nodes of pGraph in layers. 
+	 * The graph is not modified.
+	 * 
+	 * @param pGraph The graph to arrange. Its nodes must have been 
+	 * laid out.
+	 * @return A command that moves the nodes of pGraph to their 
+	 * position in the arrangement when executed, and back when undone.
+	 * The command is empty if no node needs to be moved.
+	 */
+	public static CompoundCommand arrange(Graph pGraph)
+	{
+		LayeredLayout layout = new LayeredLayout(pGraph);
+		List<Component> components = layout.findComponents();
+		ForkJoinPool.commonPool().invoke(layout.new ArrangementTask(components, 0, components.size()));
+		layout.pack(components);
+		return layout.createCommand();
+	}
+	
+	/*
+	 * Groups the nodes connected by any edge, and the edges that 
+	 * order them, with the start of each edge above its end. The 
+	 * components are sorted by decreasing number of nodes.
+	 */
+	private List<Component> findComponents()
+	{
+		int count = aNodes.size();
+		int[] representatives = new int[count];
+		for( int i = 0; i < count; i++ )
+		{
+			representatives[i] = i;
+		}
+		int[] edges = new int[2 * aGraph.getEdges().size()];
+		int edgeCount = 0;
+		for( Edge edge : aGraph.getEdges() )
+		{
+			int start = indexOf(edge.getStart());
+			int end = indexOf(edge.getEnd());
+			if( start < 0 || end < 0 || start == end )
+			{
+				continue;
+			}
+			representatives[find(representatives, start)] = find(representatives, end);
+			int order = aGraph.getLayerOrder(edge);
+			if( order != 0 )
+			{
+				edges[2 * edgeCount] = order > 0 ? start : end;
+				edges[2 * edgeCount + 1] = order > 0 ? end : start;
+				edgeCount++;
+			}
+		}
+		
+		int[] componentIndices = new int[count];
+		Arrays.fill(componentIndices, -1);
+		int componentCount = 0;
+		for( int i = 0; i < count; i++ )
+		{
+			int representative = find(representatives, i);
+			if( componentIndices[representative] < 0 )
+			{
+				componentIndices[representative] = componentCount++;
+			}
+			componentIndices[i] = componentIndices[representative];
+		}
+		int[] memberCounts = new int[componentCount];
+		int[] edgeCounts = new int[componentCount];
+		for( int i = 0; i < count; i++ )
+		{
+			memberCounts[componentIndices[i]]++;
+		}
+		for( int i = 0; i < edgeCount; i++ )
+		{
+			edgeCounts[componentIndices[edges[2 * i]]]++;
+		}
+		int[][] members = new int[componentCount][];
+		int[][] componentEdges = new int[componentCount][];
+		for( int i = 0; i < componentCount; i++ )
+		{
+			members[i] = new int[memberCounts[i]];
+			componentEdges[i] = new int[2 * edgeCounts[i]];
+		}
+		Arrays.fill(memberCounts, 0);
+		Arrays.fill(edgeCounts, 0);
+		for( int i = 0; i < count; i++ )
+		{
+			int component = componentIndices[i];
+			members[component][memberCounts[component]++] = i;
+		}
+		for( int i = 0; i < edgeCount; i++ )
+		{
+			int component = componentIndices[edges[2 * i]];
+			componentEdges[component][edgeCounts[component]++] = edges[2 * i];
+			componentEdges[component][edgeCounts[component]++] = edges[2 * i + 1];
+		}
+		
+		List<Component> components = new ArrayList<>();
+		for( int i = 0; i < componentCount; i++ )
+		{
+			components.add(new Component(members[i], componentEdges[i]));
+		}
+		Collections.sort(components, new Comparator<Component>()
+		{
+			@Override
+			public int compare(Component pComponent1, Component pComponent2)
+			{
+				return Integer.compare(pComponent2.aMembers.length, pComponent1.aMembers.length);
+			}
+		});
+		return components;
+	}
+	
+	private static int find(int[] pRepresentatives, int pIndex)
+	{
+		int index = pIndex;
+		while( pRepresentatives[index] != index )
+		{
+			pRepresentatives[index] = pRepresentatives[pRepresentatives[index]];
+			index = pRepresentatives[index];
+		}
+		return index;
+	}
+	
+	/*
+	 * Places the arranged components in rows, from the 
+	 * largest to the smallest, so that the diagram is 
+	 * about ASPECT_RATIO times wider than it is high.
+	 */
+	private void pack(List<Component> pComponents)
+	{
+		double area = 0;
+		double maxWidth = 0;
+		for( Component component : pComponents )
+		{
+			area += (component.aWidth + COMPONENT_GAP) * (component.aHeight + COMPONENT_GAP);
+			maxWidth = Math.max(maxWidth, component.aWidth);
+		}
+		double rowWidth = Math.max(maxWidth, Math.sqrt(area * ASPECT_RATIO));
+		double x = 0;
+		double y = 0;
+		double rowHeight = 0;
+		for( Component component : pComponents )
+		{
+			if( x > 0 && x + component.aWidth > rowWidth )
+			{
+				x = 0;
+				y += rowHeight + COMPONENT_GAP;
+				rowHeight = 0;
+			}
+			component.aLeft = x;
+			component.aTop = y;
+			x += component.aWidth + COMPONENT_GAP;
+			rowHeight = Math.max(rowHeight, component.aHeight);
+		}
+		for( Component component : pComponents )
+		{
+			for( int member : component.aMembers )
+			{
+				aX[member] += MARGIN + component.aLeft;
+				aY[member] += MARGIN + component.aTop;
+			}
+		}
+	}
+	
+	/*
+	 * The neighbors of the nodes and bend points of a component 
+	 * in the layer above or below them, in compressed form.
+	 */
+	private static final class Neighbors
+	{
+		private final int[] aStarts;
+		private final int[] aNeighbors;
+		
+		Neighbors(int pCount, int[] pFrom, int[] pTo, int pLinkCount)
+		{
+			aStarts = new int[pCount + 1];
+			aNeighbors = new int[pLinkCount];
+			for( int i = 0; i < pLinkCount; i++ )
+			{
+				aStarts[pFrom[i] + 1]++;
+			}
+			for( int i = 0; i < pCount; i++ )
+			{
+				aStarts[i + 1] += aStarts[i];
+			}
+			int[] next = Arrays.copyOf(aStarts, pCount);
+			for( int i = 0; i < pLinkCount; i++ )
+			{
+				aNeighbors[next[pFrom[i]]++] = pTo[i];
+			}
+		}
+		
+		int degree(int pNode)
+		{
+			return aStarts[pNode + 1] - aStarts[pNode];
+		}
+		
+		/*
+		 * Returns the average of pValues over the neighbors of 
+		 * pNode, or pDefault if pNode has no neighbors.
+		 */
+		double average(int pNode, double[] pValues, double pDefault)
+		{
+			if( degree(pNode) == 0 )
+			{
+				return pDefault;
+			}
+			double sum = 0;
+			for( int i = aStarts[pNode]; i < aStarts[pNode + 1]; i++ )
+			{
+				sum += pValues[aNeighbors[i]];
+			}
+			return sum / degree(pNode);
+		}
+	}
+	
+	/*
+	 * A set of connected nodes, arranged independently of the
+	 * other components. Nodes are identified by their index in
+	 * the component, and bend points follow the nodes.
+	 */
+	private final class Component
+	{
+		private final int[] aMembers;
+		private final int[] aEdges; // Pairs of node indices, from the node above to the node below
+		private double aWidth;
+		private double aHeight;
+		private double aLeft;
+		private double aTop;
+		
+		private int[] aLayerIndices; // Of nodes and bend points
+		private int[][] aLayers;
+		private double[] aPositions; // In the layer, of nodes and bend points
+		private double[] aCenters; // Horizontal, of nodes and bend points
+		private Neighbors aAbove;
+		private Neighbors aBelow;
+		
+		Component(int[] pMembers, int[] pEdges)
+		{
+			aMembers = pMembers;
+			aEdges = pEdges;
+		}
+		
+		void arrange()
+		{
+			for( int i = 0; i < aMembers.length; i++ )
+			{
+				aLocalIndices[aMembers[i]] = i;
+			}
+			int edgeCount = aEdges.length / 2;
+			int[] from = new int[edgeCount];
+			int[] to = new int[edgeCount];
+			for( int i = 0; i < edgeCount; i++ )
+			{
+				from[i] = aLocalIndices[aEdges[2 * i]];
+				to[i] = aLocalIndices[aEdges[2 * i + 1]];
+			}
+			removeCycles(from, to);
+			edgeCount = removeDuplicates(from, to);
+			assignLayers(from, to, edgeCount);
+			insertBendPoints(from, to, edgeCount);
+			orderLayers();
+			assignCoordinates();
+			aLayerIndices = null;
+			aLayers = null;
+			aPositions = null;
+			aCenters = null;
+			aAbove = null;
+			aBelow = null;
+		}
+		
+		/*
+		 * Reverses the edges that lead to a node on the stack
+		 * of a depth-first search, which leaves no cycle.
+		 */
+		private void removeCycles(int[] pFrom, int[] pTo)
+		{
+			int count = aMembers.length;
+			int[] edgeIndices = new int[pFrom.length];
+			for( int i = 0; i < edgeIndices.length; i++ )
+			{
+				edgeIndices[i] = i;
+			}
+			Neighbors outgoing = new Neighbors(count, pFrom, edgeIndices, pFrom.length);
+			int[] next = Arrays.copyOf(outgoing.aStarts, count);
+			byte[] states = new byte[count]; // 0: not visited, 1: on the stack, 2: visited
+			int[] stack = new int[count];
+			for( int root = 0; root < count; root++ )
+			{
+				if( states[root] != 0 )
+				{
+					continue;
+				}
+				int size = 0;
+				stack[size++] = root;
+				states[root] = 1;
+				while( size > 0 )
+				{
+					int node = stack[size - 1];
+					if( next[node] < outgoing.aStarts[node + 1] )
+					{
+						int edge = outgoing.aNeighbors[next[node]++];
+						int target = pTo[edge];
+						if( states[target] == 1 )
+						{
+							pTo[edge] = pFrom[edge];
+							pFrom[edge] = target;
+						}
+						else if( states[target] == 0 )
+						{
+							states[target] = 1;
+							stack[size++] = target;
+						}
+					}
+					else
+					{
+						states[node] = 2;
+						size--;
+					}
+				}
+			}
+		}
+		
+		/*
+		 * Moves the distinct edges to the front of the arrays
+		 * and returns their number.
+		 */
+		private int removeDuplicates(int[] pFrom, int[] pTo)
+		{
+			Set<Long> edges = new HashSet<>();
+			int count = 0;
+			for( int i = 0; i < pFrom.length; i++ )
+			{
+				if( edges.add((long)pFrom[i] * aMembers.length + pTo[i]) )
+				{
+					pFrom[count] = pFrom[i];
+					pTo[count] = pTo[i];
+					count++;
+				}
+			}
+			return count;
+		}
+		
+		/*
+		 * Places each node one layer below the lowest of its 
+		 * predecessors, then moves the nodes without predecessors
+		 * down to one layer above their highest successor.
+		 */
+		private void assignLayers(int[] pFrom, int[] pTo, int pEdgeCount)
+		{
+			int count = aMembers.length;
+			Neighbors successors = new Neighbors(count, pFrom, pTo, pEdgeCount);
+			int[] predecessorCounts = new int[count];
+			for( int i = 0; i < pEdgeCount; i++ )
+			{
+				predecessorCounts[pTo[i]]++;
+			}
+			int[] remaining = Arrays.copyOf(predecessorCounts, count);
+			int[] queue = new int[count];
+			int size = 0;
+			for( int i = 0; i < count; i++ )
+			{
+				if( remaining[i] == 0 )
+				{
+					queue[size++] = i;
+				}
+			}
+			aLayerIndices = new int[count];
+			for( int head = 0; head < size; head++ )
+			{
+				int node = queue[head];
+				for( int i = successors.aStarts[node]; i < successors.aStarts[node + 1]; i++ )
+				{
+					int successor = successors.aNeighbors[i];
+					aLayerIndices[successor] = Math.max(aLayerIndices[successor], aLayerIndices[node] + 1);
+					if( --remaining[successor] == 0 )
+					{
+						queue[size++] = successor;
+					}
+				}
+			}
+			assert size == count;
+			for( int node = 0; node < count; node++ )
+			{
+				if( predecessorCounts[node] == 0 && successors.degree(node) > 0 )
+				{
+					int layer = Integer.MAX_VALUE;
+					for( int i = successors.aStarts[node]; i < successors.aStarts[node + 1]; i++ )
+					{
+						layer = Math.min(layer, aLayerIndices[successors.aNeighbors[i]]);
+					}
+					aLayerIndices[node] = layer - 1;
+				}
+			}
+		}
+		
+		/*
+		 * Splits the edges that span several layers with one 
+		 * bend point per layer crossed, creates the layers, and
+		 * orders them by the current position of the nodes.
+		 */
+		private void insertBendPoints(int[] pFrom, int[] pTo, int pEdgeCount)
+		{
+			int count = aMembers.length;
+			int total = count;
+			int layerCount = 1;
+			for( int i = 0; i < pEdgeCount; i++ )
+			{
+				total += aLayerIndices[pTo[i]] - aLayerIndices[pFrom[i]] - 1;
+			}
+			for( int i = 0; i < count; i++ )
+			{
+				layerCount = Math.max(layerCount, aLayerIndices[i] + 1);
+			}
+			int[] layerIndices = Arrays.copyOf(aLayerIndices, total);
+			double[] keys = new double[total];
+			for( int i = 0; i < count; i++ )
+			{
+				keys[i] = aNodes.get(aMembers[i]).getBounds().getCenterX();
+			}
+			int linkCount = pEdgeCount + total - count;
+			int[] uppers = new int[linkCount];
+			int[] lowers = new int[linkCount];
+			int links = 0;
+			int bendPoint = count;
+			for( int i = 0; i < pEdgeCount; i++ )
+			{
+				int upper = pFrom[i];
+				for( int layer = aLayerIndices[pFrom[i]] + 1; layer < aLayerIndices[pTo[i]]; layer++ )
+				{
+					layerIndices[bendPoint] = layer;
+					keys[bendPoint] = (keys[pFrom[i]] + keys[pTo[i]]) / 2;
+					uppers[links] = upper;
+					lowers[links] = bendPoint;
+					links++;
+					upper = bendPoint++;
+				}
+				uppers[links] = upper;
+				lowers[links] = pTo[i];
+				links++;
+			}
+			aLayerIndices = layerIndices;
+			aAbove = new Neighbors(total, lowers, uppers, linkCount);
+			aBelow = new Neighbors(total, uppers, lowers, linkCount);
+			
+			int[] sizes = new int[layerCount];
+			for( int i = 0; i < total; i++ )
+			{
+				sizes[aLayerIndices[i]]++;
+			}
+			int[][] layers = new int[layerCount][];
+			for( int i = 0; i < layerCount; i++ )
+			{
+				layers[i] = new int[sizes[i]];
+			}
+			Arrays.fill(sizes, 0);
+			for( int i = 0; i < total; i++ )
+			{
+				layers[aLayerIndices[i]][sizes[aLayerIndices[i]]++] = i;
+			}
+			aLayers = new int[layerCount][];
+			aPositions = new double[total];
+			for( int i = 0; i < layerCount; i++ )
+			{
+				sort(layers[i], keys, i);
+			}
+		}
+		
+		/*
+		 * Sorts the nodes of layer pLayer by increasing key, keeping
+		 * the current order between equal keys. Each node is sorted 
+		 * as a long made of its key, as a float whose bits are 
+		 * compared as an int, followed by its current position.
+		 */
+		private void sort(int[] pNodes, double[] pKeys, int pLayer)
+		{
+			long[] entries = new long[pNodes.length];
+			for( int i = 0; i < entries.length; i++ )
+			{
+				int bits = Float.floatToIntBits((float)pKeys[pNodes[i]]);
+				bits ^= (bits >> (Integer.SIZE - 1)) & Integer.MAX_VALUE;
+				entries[i] = (long)bits << Integer.SIZE | i;
+			}
+			Arrays.sort(entries);
+			int[] layer = new int[pNodes.length];
+			for( int i = 0; i < layer.length; i++ )
+			{
+				layer[i] = pNodes[(int)entries[i]];
+				aPositions[layer[i]] = i;
+			}
+			aLayers[pLayer] = layer;
+		}
+		
+		/*
+		 * Sweeps the layers down and up, sorting each layer by the 
+		 * barycenter of the positions of the neighbors of its nodes
+		 * in the previous layer.
+		 */
+		private void orderLayers()
+		{
+			double[] barycenters = new double[aPositions.length];
+			for( int sweep = 0; sweep < ORDERING_SWEEPS; sweep++ )
+			{
+				for( int layer = 1; layer < aLayers.length; layer++ )
+				{
+					order(layer, aAbove, barycenters);
+				}
+				for( int layer = aLayers.length - 2; layer >= 0; layer-- )
+				{
+					order(layer, aBelow, barycenters);
+				}
+			}
+		}
+		
+		private void order(int pLayer, Neighbors pNeighbors, double[] pBarycenters)
+		{
+			int[] layer = aLayers[pLayer];
+			if( layer.length >= PARALLEL_LAYER_SIZE )
+			{
+				new BarycenterTask(layer, 0, layer.length, pNeighbors, aPositions, pBarycenters).invoke();
+			}
+			else
+			{
+				computeBarycenters(layer, 0, layer.length, pNeighbors, aPositions, pBarycenters);
+			}
+			sort(layer, pBarycenters, pLayer);
+		}
+		
+		/*
+		 * Stacks the layers and places the nodes of each layer from
+		 * left to right, then repeatedly moves each node towards the 
+		 * average center of its neighbors in the previous layer, 
+		 * without changing the order of the layer.
+		 */
+		private void assignCoordinates()
+		{
+			int count = aMembers.length;
+			double[] widths = new double[aLayerIndices.length];
+			for( int i = 0; i < count; i++ )
+			{
+				widths[i] = aWidths[aMembers[i]];
+			}
+			aCenters = new double[widths.length];
+			for( int[] layer : aLayers )
+			{
+				for( int i = 1; i < layer.length; i++ )
+				{
+					aCenters[layer[i]] = aCenters[layer[i - 1]] + separation(layer[i - 1], layer[i], widths);
+				}
+			}
+			for( int sweep = 0; sweep < PLACEMENT_SWEEPS; sweep++ )
+			{
+				for( int layer = 1; layer < aLayers.length; layer++ )
+				{
+					place(aLayers[layer], aAbove, widths);
+				}
+				for( int layer = aLayers.length - 2; layer >= 0; layer-- )
+				{
+					place(aLayers[layer], aBelow, widths);
+				}
+			}
+			
+			double left = Double.MAX_VALUE;
+			double right = -Double.MAX_VALUE;
+			for( int i = 0; i < aCenters.length; i++ )
+			{
+				left = Math.min(left, aCenters[i] - widths[i] / 2);
+				right = Math.max(right, aCenters[i] + widths[i] / 2);
+			}
+			double top = 0;
+			for( int[] layer : aLayers )
+			{
+				double height = 0;
+				for( int node : layer )
+				{
+					if( node < count )
+					{
+						height = Math.max(height, aHeights[aMembers[node]]);
+					}
+				}
+				for( int node : layer )
+				{
+					if( node < count )
+					{
+						int member = aMembers[node];
+						aX[member] = aCenters[node] - widths[node] / 2 - left;
+						aY[member] = top + (height - aHeights[member]) / 2;
+					}
+				}
+				top += height + VERTICAL_GAP;
+			}
+			aWidth = right - left;
+			aHeight = top - VERTICAL_GAP;
+		}
+		
+		private double separation(int pLeft, int pRight, double[] pWidths)
+		{
+			int count = aMembers.length;
+			double gap = BEND_GAP;
+			if( pLeft < count && pRight < count )
+			{
+				gap = HORIZONTAL_GAP;
+			}
+			return pWidths[pLeft] / 2 + gap + pWidths[pRight] / 2;
+		}
+		
+		/*
+		 * Places the nodes of pLayer as close as possible to their
+		 * desired center, by averaging the placement that pushes 
+		 * overlapping nodes to the right with the one that pushes 
+		 * them to the left. Both keep the nodes separated, and so 
+		 * does their average.
+		 */
+		private void place(int[] pLayer, Neighbors pNeighbors, double[] pWidths)
+		{
+			int size = pLayer.length;
+			double[] desired = new double[size];
+			double[] rightmost = new double[size];
+			for( int i = 0; i < size; i++ )
+			{
+				desired[i] = pNeighbors.average(pLayer[i], aCenters, aCenters[pLayer[i]]);
+				rightmost[i] = desired[i];
+				if( i > 0 )
+				{
+					rightmost[i] = Math.max(desired[i], rightmost[i - 1] + separation(pLayer[i - 1], pLayer[i], pWidths));
+				}
+			}
+			double leftmost = 0;
+			for( int i = size - 1; i >= 0; i-- )
+			{
+				if( i == size - 1 )
+				{
+					leftmost = desired[i];
+				}
+				else
+				{
+					leftmost = Math.min(desired[i], leftmost - separation(pLayer[i], pLayer[i + 1], pWidths));
+				}
+				aCenters[pLayer[i]] = (leftmost + rightmost[i]) / 2;
+			}
+		}
+	}
+	
+	/*
+	 * Computes the barycenters of the neighbors of the nodes 
+	 * in pLayer[pStart, pEnd) from their positions, or their 
+	 * own position if they have no neighbor.
+	 */
+	private static void computeBarycenters(int[] pLayer, int pStart, int pEnd, Neighbors pNeighbors, 
+			double[] pPositions, double[] pBarycenters)
+	{
+		for( int i = pStart; i < pEnd; i++ )
+		{
+			pBarycenters[pLayer[i]] = pNeighbors.average(pLayer[i], pPositions, pPositions[pLayer[i]]);
+		}
+	}
+	
+	/*
+	 * Computes the barycenters of the nodes of a large layer,
+	 * splitting it in halves until it is small enough. The 
+	 * barycenter of a node only depends on the positions of
+	 * nodes in another layer, which are not modified.
+	 */
+	private static final class BarycenterTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private final int[] aLayer;
+		private final int aStart;
+		private final int aEnd;
+		private final transient Neighbors aNeighbors;
+		private final double[] aPositions;
+		private final double[] aBarycenters;
+		
+		BarycenterTask(int[] pLayer, int pStart, int pEnd, Neighbors pNeighbors, double[] pPositions, double[] pBarycenters)
+		{
+			aLayer = pLayer;
+			aStart = pStart;
+			aEnd = pEnd;
+			aNeighbors = pNeighbors;
+			aPositions = pPositions;
+			aBarycenters = pBarycenters;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if( aEnd - aStart <= SEQUENTIAL_LAYER_SIZE )
+			{
+				computeBarycenters(aLayer, aStart, aEnd, aNeighbors, aPositions, aBarycenters);
+			}
+			else
+			{
+				int middle = (aStart + aEnd) / 2;
+				invokeAll(new BarycenterTask(aLayer, aStart, middle, aNeighbors, aPositions, aBarycenters),
+						new BarycenterTask(aLayer, middle, aEnd, aNeighbors, aPositions, aBarycenters));
+			}
+		}
+	}
+	
+	/*
+	 * Arranges a range of components, splitting it in halves
+	 * until it is small enough to be arranged sequentially.
+	 * Components only write to the entries of their own nodes.
+	 */
+	private final class ArrangementTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private final transient List<Component> aComponents;
+		private final int aStart;
+		private final int aEnd;
+		
+		ArrangementTask(List<Component> pComponents, int pStart, int pEnd)
+		{
+			aComponents = pComponents;
+			aStart = pStart;
+			aEnd = pEnd;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			int size = 0;
+			for( int i = aStart; i < aEnd; i++ )
+			{
+				size += aComponents.get(i).aMembers.length;
+			}
+			if( aEnd - aStart <= 1 || size <= SEQUENTIAL_COMPONENTS_SIZE )
+			{
+				for( int i = aStart; i < aEnd; i++ )
+				{
+					aComponents.get(i).arrange();
+				}
+			}
+			else
+			{
+				int middle = (aStart + aEnd) / 2;
+				invokeAll(new ArrangementTask(aComponents, aStart, middle), new ArrangementTask(aComponents, middle, aEnd));
+			}
+		}
+	}
+}
@@ -0,0 +1,463 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import ca.mcgill.cs.stg.jetuml.framework.GraphSnapshot.EdgeSnapshot;
+import ca.mcgill.cs.stg.jetuml.framework.GraphSnapshot.ElementSnapshot;
+import ca.mcgill.cs.stg.jetuml.framework.GraphSnapshot.NodeSnapshot;
+
+/**
+ * An overview of the whole graph of a GraphPanel, in which the part
+ * of the graph visible in the panel is outlined. Pressing or dragging
+ * the mouse in the overview scrolls the panel to that point.
+ * 
+ * The overview is a thumbnail in which nodes are drawn as boxes and 
+ * edges as straight lines. It is drawn from snapshots of the graph on
+ * a background thread, at most once per RENDER_DELAY. Each time, only
+ * the regions covered by the elements that were added, removed or 
+ * changed since the previous snapshot are redrawn. The whole thumbnail
+ * is only redrawn when the graph outgrows it or becomes much smaller.
+ */
+@SuppressWarnings("serial")
+public class Minimap extends JComponent
+{
+	private static final int SIZE = 160; // Pixels
+	private static final int RENDER_DELAY = 200; // Milliseconds
+	private static final double HEADROOM = 1.25; // Growth of the graph allowed before the whole thumbnail is redrawn
+	private static final int MAX_REGIONS = 16; // Number of regions to redraw above which they are merged
+	private static final Color NODE_COLOR = new Color(173, 193, 214);
+	private static final Color NODE_BORDER_COLOR = new Color(77, 115, 153);
+	private static final Color EDGE_COLOR = Color.GRAY;
+	private static final Color VIEWPORT_COLOR = Color.RED;
+	
+	private static final ExecutorService RENDERER = Executors.newSingleThreadExecutor(new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(Runnable pRunnable)
+		{
+			Thread thread = new Thread(pRunnable, "JetUML minimap");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	private final GraphPanel aPanel;
+	private final JViewport aViewport;
+	private final Timer aTimer;
+	private boolean aStale = true; // True if the graph may have changed while the minimap was not shown
+	private final AtomicReference<GraphSnapshot> aLatest = new AtomicReference<>(GraphSnapshot.EMPTY);
+	private final AtomicBoolean aRenderScheduled = new AtomicBoolean();
+	
+	// Only used by the rendering thread
+	private GraphSnapshot aRendered = GraphSnapshot.EMPTY;
+	private Set<ElementSnapshot> aRenderedViews = newIdentitySet();
+	private BufferedImage aBuffer;
+	private double aBufferScale;
+	private double aCoveredWidth; // The part of the graph covered by aBuffer
+	private double aCoveredHeight;
+	
+	private final Object aLock = new Object();
+	private BufferedImage aImage; // A copy of aBuffer to paint, guarded by aLock
+	private double aScale; // The scale of aImage, guarded by aLock
+	
+	/**
+	 * Creates an overview of the graph of pPanel.
+	 * 
+	 * @param pPanel The panel showing the graph.
+	 * @param pViewport The viewport that shows pPanel.
+	 */
+	public Minimap(GraphPanel pPanel, JViewport pViewport)
+	{
+		aPanel = pPanel;
+		aViewport = pViewport;
+		setPreferredSize(new Dimension(SIZE, SIZE));
+		setMinimumSize(new Dimension(SIZE, SIZE));
+		aTimer = new Timer(RENDER_DELAY, new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent pEvent)
+			{
+				requestRender();
+			}
+		});
+		aTimer.setRepeats(false);
+		aPanel.addChangeListener(new ChangeListener()
+		{
+			@Override
+			public void stateChanged(ChangeEvent pEvent)
+			{
+				graphChanged();
+			}
+		});
+		aViewport.addChangeListener(new ChangeListener()
+		{
+			@Override
+			public void stateChanged(ChangeEvent pEvent)
+			{
+				repaint();
+			}
+		});
+		MouseAdapter mouseListener = new MouseAdapter()
+		{
+			@Override
+			public void mousePressed(MouseEvent pEvent)
+			{
+				scrollTo(pEvent.getPoint());
+			}
+			
+			@Override
+			public void mouseDragged(MouseEvent pEvent)
+			{
+				scrollTo(pEvent.getPoint());
+			}
+		};
+		addMouseListener(mouseListener);
+		addMouseMotionListener(mouseListener);
+	}
+	
+	/*
+	 * Schedules a rendering at most RENDER_DELAY from now, 
+	 * or when the minimap is next shown.
+	 */
+	private void graphChanged()
+	{
+		if( !isShowing() )
+		{
+			aStale = true;
+		}
+		else if( !aTimer.isRunning() )
+		{
+			aTimer.start();
+		}
+	}
+	
+	/*
+	 * Takes a snapshot of the graph and passes it to the rendering 
+	 * thread, unless that thread has yet to render the previous one.
+	 */
+	private void requestRender()
+	{
+		aLatest.set(aPanel.getSnapshot());
+		if( aRenderScheduled.compareAndSet(false, true) )
+		{
+			RENDERER.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					aRenderScheduled.set(false);
+					if( render(aLatest.get()) )
+					{
+						repaint();
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Updates the thumbnail to show pSnapshot. Must only be called
+	 * by one thread at a time.
+	 * 
+	 * @param pSnapshot A snapshot of the graph.
+	 * @return True if the thumbnail has changed.
+	 */
+	boolean render(GraphSnapshot pSnapshot)
+	{
+		if( pSnapshot == aRendered )
+		{
+			return false;
+		}
+		Set<ElementSnapshot> views = newIdentitySet();
+		double width = 1;
+		double height = 1;
+		for( NodeSnapshot node : pSnapshot.getRootNodes() )
+		{
+			collect(node, views);
+		}
+		views.addAll(pSnapshot.getEdges());
+		for( ElementSnapshot view : views )
+		{
+			Rectangle2D bounds = boundsOf(view);
+			width = Math.max(width, bounds.getMaxX());
+			height = Math.max(height, bounds.getMaxY());
+		}
+		
+		if( aBuffer == null || width > aCoveredWidth || height > aCoveredHeight || 
+				width * HEADROOM * HEADROOM < aCoveredWidth && height * HEADROOM * HEADROOM < aCoveredHeight )
+		{
+			aCoveredWidth = width * HEADROOM;
+			aCoveredHeight = height * HEADROOM;
+			aBufferScale = Math.min(SIZE / aCoveredWidth, SIZE / aCoveredHeight);
+			aBuffer = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+			redraw(pSnapshot, new Rectangle2D.Double(0, 0, SIZE / aBufferScale, SIZE / aBufferScale));
+		}
+		else
+		{
+			for( Rectangle2D region : damagedRegions(views) )
+			{
+				redraw(pSnapshot, region);
+			}
+		}
+		aRendered = pSnapshot;
+		aRenderedViews = views;
+		publish();
+		return true;
+	}
+	
+	/*
+	 * Returns the bounds of the views that are in only one of 
+	 * pViews and aRenderedViews, merged if there are too many.
+	 */
+	private List<Rectangle2D> damagedRegions(Set<ElementSnapshot> pViews)
+	{
+		List<Rectangle2D> regions = new ArrayList<>();
+		for( ElementSnapshot view : pViews )
+		{
+			if( !aRenderedViews.contains(view) )
+			{
+				regions.add(boundsOf(view));
+			}
+		}
+		for( ElementSnapshot view : aRenderedViews )
+		{
+			if( !pViews.contains(view) )
+			{
+				regions.add(boundsOf(view));
+			}
+		}
+		if( regions.size() > MAX_REGIONS )
+		{
+			Rectangle2D union = regions.get(0);
+			for( Rectangle2D region : regions )
+			{
+				union.add(region);
+			}
+			return Collections.singletonList(union);
+		}
+		return regions;
+	}
+	
+	/*
+	 * Clears pRegion of the graph in aBuffer and draws 
+	 * the elements of pSnapshot that intersect it.
+	 */
+	private void redraw(GraphSnapshot pSnapshot, Rectangle2D pRegion)
+	{
+		Rectangle clip = new Rectangle((int) Math.floor(pRegion.getX() * aBufferScale) - 1, (int) Math.floor(pRegion.getY() * aBufferScale) - 1,
+				(int) Math.ceil(pRegion.getWidth() * aBufferScale) + 3, (int) Math.ceil(pRegion.getHeight() * aBufferScale) + 3);
+		Rectangle2D region = new Rectangle2D.Double(clip.getX() / aBufferScale, clip.getY() / aBufferScale, 
+				clip.getWidth() / aBufferScale, clip.getHeight() / aBufferScale);
+		Graphics2D graphics = aBuffer.createGraphics();
+		graphics.setClip(clip);
+		graphics.setColor(Color.WHITE);
+		graphics.fill(clip);
+		for( NodeSnapshot node : pSnapshot.getRootNodes() )
+		{
+			drawNode(graphics, node, region);
+		}
+		graphics.setColor(EDGE_COLOR);
+		for( EdgeSnapshot edge : pSnapshot.getEdges() )
+		{
+			if( boundsOf(edge).intersects(region) )
+			{
+				Line2D line = edge.getConnectionPoints();
+				graphics.drawLine((int) (line.getX1() * aBufferScale), (int) (line.getY1() * aBufferScale), 
+						(int) (line.getX2() * aBufferScale), (int) (line.getY2() * aBufferScale));
+			}
+		}
+		graphics.dispose();
+	}
+	
+	private void drawNode(Graphics2D pGraphics, NodeSnapshot pNode, Rectangle2D pRegion)
+	{
+		Rectangle2D bounds = pNode.getBounds();
+		if( bounds.intersects(pRegion) )
+		{
+			int x = (int) (bounds.getX() * aBufferScale);
+			int y = (int) (bounds.getY() * aBufferScale);
+			int width = Math.max(1, (int) (bounds.getWidth() * aBufferScale));
+			int height = Math.max(1, (int) (bounds.getHeight() * aBufferScale));
+			pGraphics.setColor(NODE_COLOR);
+			pGraphics.fillRect(x, y, width, height);
+			pGraphics.setColor(NODE_BORDER_COLOR);
+			pGraphics.drawRect(x, y, width, height);
+		}
+		for( NodeSnapshot child : pNode.getChildren() )
+		{
+			drawNode(pGraphics, child, pRegion);
+		}
+	}
+	
+	/*
+	 * Copies aBuffer to the image painted on the event dispatch thread.
+	 */
+	private void publish()
+	{
+		synchronized(aLock)
+		{
+			if( aImage == null )
+			{
+				aImage = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+			}
+			Graphics2D graphics = aImage.createGraphics();
+			graphics.drawImage(aBuffer, 0, 0, null);
+			graphics.dispose();
+			aScale = aBufferScale;
+		}
+	}
+	
+	/**
+	 * @return A copy of the thumbnail, or null if it has not been drawn yet.
+	 */
+	BufferedImage getThumbnail()
+	{
+		synchronized(aLock)
+		{
+			if( aImage == null )
+			{
+				return null;
+			}
+			BufferedImage copy = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+			Graphics2D graphics = copy.createGraphics();
+			graphics.drawImage(aImage, 0, 0, null);
+			graphics.dispose();
+			return copy;
+		}
+	}
+	
+	/**
+	 * @return The number of pixels of the thumbnail per unit of the graph.
+	 */
+	double getScale()
+	{
+		synchronized(aLock)
+		{
+			return aScale;
+		}
+	}
+	
+	@Override
+	protected void paintComponent(Graphics pGraphics)
+	{
+		if( aStale )
+		{
+			aStale = false;
+			graphChanged();
+		}
+		pGraphics.setColor(Color.WHITE);
+		pGraphics.fillRect(0, 0, getWidth(), getHeight());
+		double scale;
+		synchronized(aLock)
+		{
+			if( aImage == null )
+			{
+				return;
+			}
+			pGraphics.drawImage(aImage, 0, 0, null);
+			scale = aScale;
+		}
+		Rectangle view = aViewport.getViewRect();
+		double factor = scale / aPanel.getZoom();
+		pGraphics.setColor(VIEWPORT_COLOR);
+		pGraphics.drawRect((int) (view.getX() * factor), (int) (view.getY() * factor), 
+				(int) (view.getWidth() * factor), (int) (view.getHeight() * factor));
+	}
+	
+	/*
+	 * Scrolls the panel so that the point of the graph shown at 
+	 * pPoint of the thumbnail is at the center of the viewport.
+	 */
+	private void scrollTo(Point pPoint)
+	{
+		double scale = getScale();
+		if( scale == 0 )
+		{
+			return;
+		}
+		double factor = aPanel.getZoom() / scale;
+		Dimension extent = aViewport.getExtentSize();
+		Dimension size = aViewport.getViewSize();
+		int x = (int) (pPoint.getX() * factor) - extent.width / 2;
+		int y = (int) (pPoint.getY() * factor) - extent.height / 2;
+		x = Math.max(0, Math.min(x, size.width - extent.width));
+		y = Math.max(0, Math.min(y, size.height - extent.height));
+		aViewport.setViewPosition(new Point(x, y));
+	}
+	
+	private static void collect(NodeSnapshot pNode, Set<ElementSnapshot> pViews)
+	{
+		pViews.add(pNode);
+		for( NodeSnapshot child : pNode.getChildren() )
+		{
+			collect(child, pViews);
+		}
+	}
+	
+	/*
+	 * The bounds of an edge do not always include its connection
+	 * points, which are used to draw it.
+	 */
+	private static Rectangle2D boundsOf(ElementSnapshot pView)
+	{
+		Rectangle2D bounds = pView.getBounds();
+		if( pView instanceof EdgeSnapshot )
+		{
+			bounds.add(((EdgeSnapshot) pView).getConnectionPoints().getBounds2D());
+		}
+		return bounds;
+	}
+	
+	private static Set<ElementSnapshot> newIdentitySet()
+	{
+		return Collections.newSetFromMap(new IdentityHashMap<ElementSnapshot, Boolean>());
+	}
+}
@@ -45,6 +45,15 @@ public class MultiLineString implements Cloneable
 	public static final int CENTER = 1;
 	public static final int RIGHT = 2;
 	
+	/**
+	 * Guards all the Swing labels used to measure and draw text. 
+	 * Swing is not thread-safe, and graphs can be laid out and
+	 * drawn outside of the event dispatch thread, for example by
+	 * the batch renderer, so text is only measured or drawn with 
+	 * a label while holding this lock.
+	 */
+	public static final Object LABEL_LOCK = new Object();
+	
 	private String aText = "";
 	private Align aJustification = Align.CENTER;
 	private boolean aBold = false;
@@ -74,7 +83,10 @@ public class MultiLineString implements Cloneable
 	public void setText(String pText)
 	{ 
 		aText = pText; 
-		getLabel(); 
+		synchronized(LABEL_LOCK)
+		{
+			getLabel();
+		}
 	}
    
 	/**
@@ -216,7 +228,12 @@ public class MultiLineString implements Cloneable
 		{
 			return new Rectangle2D.Double();
 		}
-		Dimension dim = getLabel().getPreferredSize();       
+		Instrumentation.countTextMeasurement();
+		Dimension dim;
+		synchronized(LABEL_LOCK)
+		{
+			dim = getLabel().getPreferredSize();
+		}
 		return new Rectangle2D.Double(0, 0, dim.getWidth(), dim.getHeight());
 	}
 
@@ -227,12 +244,15 @@ public class MultiLineString implements Cloneable
 	 */
 	public void draw(Graphics2D pGraphics2D, Rectangle2D pRectangle)
 	{
-		JLabel label = getLabel();
-		label.setFont(pGraphics2D.getFont());
-		label.setBounds(0, 0, (int) pRectangle.getWidth(), (int) pRectangle.getHeight());
-		pGraphics2D.translate(pRectangle.getX(), pRectangle.getY());
-		label.paint(pGraphics2D);
-		pGraphics2D.translate(-pRectangle.getX(), -pRectangle.getY());        
+		synchronized(LABEL_LOCK)
+		{
+			JLabel label = getLabel();
+			label.setFont(pGraphics2D.getFont());
+			label.setBounds(0, 0, (int) pRectangle.getWidth(), (int) pRectangle.getHeight());
+			pGraphics2D.translate(pRectangle.getX(), pRectangle.getY());
+			label.paint(pGraphics2D);
+			pGraphics2D.translate(-pRectangle.getX(), -pRectangle.getY());
+		}
 	}
 	
 	@Override
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event committed each time Instrumentation 
+ * measures an operation, so that the operations of the editor 
+ * appear in recordings next to garbage collections, allocations
+ * and the activity of threads.
+ * 
+ * This class must only be loaded when jdk.jfr is available,
+ * which Histogram checks before using it.
+ */
+@Name("ca.mcgill.cs.stg.jetuml.Operation")
+@Label("JetUML Operation")
+@Category("JetUML")
+@Description("An operation of the editor measured by Instrumentation")
+@StackTrace(false)
+final class OperationEvent extends Event
+{
+	@Name("operation")
+	@Label("Operation")
+	private String aOperation;
+	
+	@Name("elapsed")
+	@Label("Elapsed Time")
+	@Timespan(Timespan.NANOSECONDS)
+	private long aElapsed;
+	
+	private OperationEvent(String pOperation, long pElapsed)
+	{
+		aOperation = pOperation;
+		aElapsed = pElapsed;
+	}
+	
+	/**
+	 * Commits an event if events of this type are being recorded.
+	 * 
+	 * @param pOperation The name of the operation.
+	 * @param pElapsed The duration of the operation, in nanoseconds.
+	 */
+	static void commit(String pOperation, long pElapsed)
+	{
+		OperationEvent event = new OperationEvent(pOperation, pElapsed);
+		if( event.isEnabled() )
+		{
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,757 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import ca.mcgill.cs.stg.jetuml.framework.SegmentationStyle.Side;
+import ca.mcgill.cs.stg.jetuml.graph.ChildNode;
+import ca.mcgill.cs.stg.jetuml.graph.Edge;
+import ca.mcgill.cs.stg.jetuml.graph.GeometryStore;
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
+import ca.mcgill.cs.stg.jetuml.graph.Node;
+import ca.mcgill.cs.stg.jetuml.graph.ParentNode;
+import ca.mcgill.cs.stg.jetuml.graph.PointNode;
+
+/**
+ * Computes orthogonal paths that go around the nodes of a graph.
+ * 
+ * The path of an edge is searched in a corridor around its two 
+ * endpoints. The corridor is divided by a sparse grid made of the 
+ * lines that run along the sides of the nodes it contains, kept at a
+ * distance GAP from the nodes, and the path is found with an A* search
+ * over the points of this grid, which penalizes bends. If no path exists
+ * in the corridor, the corridor is enlarged, up to the whole graph.
+ * 
+ * The path of each edge is kept along with the nodes of its corridor,
+ * and is only searched again if the endpoints of the edge or the nodes 
+ * in its corridor have changed. The memory used by a search is kept
+ * in a per-thread arena, so that searching does not allocate memory
+ * once the arena is large enough.
+ */
+final class OrthogonalRouter
+{
+	private static final double GAP = 10; // Minimum distance between a path and the nodes it avoids
+	private static final double BEND_PENALTY = 30; // Cost of a bend, in pixels of path length
+	private static final double TIE_BREAKING = 1.001; // Favors the states closest to the target among equally good ones
+	private static final int DIRECTIONS = 4; // East, West, South, North
+	private static final int[] OPPOSITE = { 1, 0, 3, 2 };
+	private static final int KEY_HEADER = 10; // Values of a route key that precede the obstacles
+	
+	private static final ThreadLocal<SearchArena> ARENA = new ThreadLocal<SearchArena>()
+	{
+		@Override
+		protected SearchArena initialValue()
+		{
+			return new SearchArena();
+		}
+	};
+	
+	private static final Map<Edge, Route> ROUTES = Collections.synchronizedMap(new WeakHashMap<Edge, Route>());
+	
+	private OrthogonalRouter() {}
+	
+	/**
+	 * Computes an orthogonal path between two connection points 
+	 * of an edge that avoids the nodes of pGraph.
+	 * 
+	 * @param pEdge The edge to route.
+	 * @param pStart The connection point on the start node.
+	 * @param pStartSide The side of the start node where pStart is.
+	 * @param pEnd The connection point on the end node.
+	 * @param pEndSide The side of the end node where pEnd is.
+	 * @param pGraph The graph of the edge. Can be null, in which case only
+	 * the endpoints of the edge are avoided.
+	 * @return The points of the path, from pStart to pEnd.
+	 */
+	static Point2D[] route(Edge pEdge, Point2D pStart, Side pStartSide, Point2D pEnd, Side pEndSide, Graph pGraph)
+	{
+		SearchArena arena = ARENA.get();
+		arena.collectObstacles(pGraph, pEdge.getStart(), pEdge.getEnd());
+		arena.setEndpoints(pStart, pStartSide, pEdge.getStart().getBounds(), pEnd, pEndSide, pEdge.getEnd().getBounds());
+		
+		Route route = ROUTES.get(pEdge);
+		if( route != null && arena.matches(route.aKey) )
+		{
+			return route.aPath.clone();
+		}
+		
+		Point2D[] path = null;
+		Rectangle2D corridor = arena.closeCorridor(arena.getEndpointBounds());
+		for( int attempt = 0; attempt < 3 && path == null; attempt++ )
+		{
+			if( attempt == 1 )
+			{
+				double growth = Math.max(corridor.getWidth(), corridor.getHeight()) / 2;
+				corridor = arena.closeCorridor(new Rectangle2D.Double(corridor.getX() - growth, corridor.getY() - growth, 
+						corridor.getWidth() + 2 * growth, corridor.getHeight() + 2 * growth));
+			}
+			else if( attempt == 2 )
+			{
+				corridor = arena.getAllObstacleBounds(corridor);
+			}
+			path = arena.search(corridor);
+		}
+		if( path == null )
+		{
+			path = createFallbackPath(pStart, pStartSide, pEnd);
+		}
+		ROUTES.put(pEdge, new Route(arena.createKey(corridor), path));
+		return path.clone();
+	}
+	
+	/*
+	 * A path with two bends, used when the endpoints cannot 
+	 * be connected without crossing a node.
+	 */
+	private static Point2D[] createFallbackPath(Point2D pStart, Side pStartSide, Point2D pEnd)
+	{
+		if( pStartSide.isEastWest() )
+		{
+			double middle = (pStart.getX() + pEnd.getX()) / 2;
+			return new Point2D[] { pStart, new Point2D.Double(middle, pStart.getY()), 
+					new Point2D.Double(middle, pEnd.getY()), pEnd };
+		}
+		else
+		{
+			double middle = (pStart.getY() + pEnd.getY()) / 2;
+			return new Point2D[] { pStart, new Point2D.Double(pStart.getX(), middle), 
+					new Point2D.Double(pEnd.getX(), middle), pEnd };
+		}
+	}
+	
+	private static int directionOf(Side pSide)
+	{
+		switch(pSide)
+		{
+		case EAST:
+			return 0;
+		case WEST:
+			return 1;
+		case SOUTH:
+			return 2;
+		default:
+			return 3;
+		}
+	}
+	
+	/*
+	 * The path found for an edge, and the key that describes
+	 * the endpoints and the corridor for which it was found.
+	 */
+	private static final class Route
+	{
+		private final double[] aKey;
+		private final Point2D[] aPath;
+		
+		Route(double[] pKey, Point2D[] pPath)
+		{
+			aKey = pKey;
+			aPath = pPath;
+		}
+	}
+	
+	/*
+	 * The memory used by the searches of a thread. Arrays are 
+	 * only reallocated when a search needs more space.
+	 */
+	private static final class SearchArena
+	{
+		// The nodes to avoid, as rectangles enlarged by GAP: minX, minY, maxX, maxY
+		private double[] aObstacles = new double[64];
+		private int aObstacleCount;
+		private final List<Node> aAncestors = new ArrayList<>();
+		
+		// The endpoints of the edge and the points where the path leaves them
+		private final double[] aEndpoints = new double[6]; // start x, y, side, end x, y, side
+		private int aSourceDirection;
+		private int aTargetDirection;
+		private double aSourceX;
+		private double aSourceY;
+		private double aTargetX;
+		private double aTargetY;
+		
+		// The grid of the corridor and its blocked cells
+		private double[] aXs = new double[16];
+		private double[] aYs = new double[16];
+		private int aXCount;
+		private int aYCount;
+		private boolean[] aBlocked = new boolean[256];
+		
+		// The A* search state, for each grid point and direction of arrival
+		private double[] aCosts = new double[256];
+		private int[] aParents = new int[256];
+		private int[] aSeen = new int[256];
+		private int[] aClosed = new int[256];
+		private int aGeneration;
+		private int[] aHeapStates = new int[256];
+		private double[] aHeapKeys = new double[256];
+		private int aHeapSize;
+		
+		/*
+		 * Collects the nodes that the path must avoid: all the nodes 
+		 * except the ones that contain an endpoint. The children of a 
+		 * node that contains an endpoint are avoided individually.
+		 */
+		void collectObstacles(Graph pGraph, Node pStart, Node pEnd)
+		{
+			aObstacleCount = 0;
+			aAncestors.clear();
+			addAncestors(pStart);
+			addAncestors(pEnd);
+			if( pGraph == null )
+			{
+				GeometryStore geometry = new GeometryStore();
+				collect(pStart, pStart, pEnd, geometry);
+				if( pEnd != pStart )
+				{
+					collect(pEnd, pStart, pEnd, geometry);
+				}
+			}
+			else
+			{
+				for( Node node : pGraph.getRootNodes() )
+				{
+					collect(node, pStart, pEnd, pGraph.getGeometry());
+				}
+			}
+		}
+		
+		private void addAncestors(Node pNode)
+		{
+			Node node = pNode;
+			while( node instanceof ChildNode && ((ChildNode)node).getParent() != null )
+			{
+				node = ((ChildNode)node).getParent();
+				aAncestors.add(node);
+			}
+		}
+		
+		private void collect(Node pNode, Node pStart, Node pEnd, GeometryStore pGeometry)
+		{
+			if( pNode instanceof PointNode )
+			{
+				return;
+			}
+			if( aAncestors.contains(pNode) )
+			{
+				for( ChildNode child : ((ParentNode)pNode).getChildren() )
+				{
+					collect(child, pStart, pEnd, pGeometry);
+				}
+				return;
+			}
+			if( aObstacleCount * 4 + 4 > aObstacles.length )
+			{
+				aObstacles = Arrays.copyOf(aObstacles, aObstacles.length * 2);
+			}
+			aObstacles[aObstacleCount * 4] = pGeometry.getX(pNode) - GAP;
+			aObstacles[aObstacleCount * 4 + 1] = pGeometry.getY(pNode) - GAP;
+			aObstacles[aObstacleCount * 4 + 2] = pGeometry.getMaxX(pNode) + GAP;
+			aObstacles[aObstacleCount * 4 + 3] = pGeometry.getMaxY(pNode) + GAP;
+			aObstacleCount++;
+		}
+		
+		/*
+		 * The path leaves each endpoint perpendicularly to its side,
+		 * until it is at a distance GAP from the node.
+		 */
+		void setEndpoints(Point2D pStart, Side pStartSide, Rectangle2D pStartBounds, 
+				Point2D pEnd, Side pEndSide, Rectangle2D pEndBounds)
+		{
+			aEndpoints[0] = pStart.getX();
+			aEndpoints[1] = pStart.getY();
+			aEndpoints[2] = pStartSide.ordinal();
+			aEndpoints[3] = pEnd.getX();
+			aEndpoints[4] = pEnd.getY();
+			aEndpoints[5] = pEndSide.ordinal();
+			aSourceDirection = directionOf(pStartSide);
+			aTargetDirection = directionOf(pEndSide);
+			Point2D source = leave(pStart, pStartSide, pStartBounds);
+			Point2D target = leave(pEnd, pEndSide, pEndBounds);
+			aSourceX = source.getX();
+			aSourceY = source.getY();
+			aTargetX = target.getX();
+			aTargetY = target.getY();
+		}
+		
+		private static Point2D leave(Point2D pPoint, Side pSide, Rectangle2D pBounds)
+		{
+			switch(pSide)
+			{
+			case EAST:
+				return new Point2D.Double(pBounds.getMaxX() + GAP, pPoint.getY());
+			case WEST:
+				return new Point2D.Double(pBounds.getMinX() - GAP, pPoint.getY());
+			case SOUTH:
+				return new Point2D.Double(pPoint.getX(), pBounds.getMaxY() + GAP);
+			default:
+				return new Point2D.Double(pPoint.getX(), pBounds.getMinY() - GAP);
+			}
+		}
+		
+		Rectangle2D getEndpointBounds()
+		{
+			Rectangle2D bounds = new Rectangle2D.Double(aSourceX, aSourceY, 0, 0);
+			bounds.add(aTargetX, aTargetY);
+			return bounds;
+		}
+		
+		/*
+		 * Enlarges pCorridor until it contains every obstacle it 
+		 * intersects, so that no obstacle crosses its border.
+		 */
+		Rectangle2D closeCorridor(Rectangle2D pCorridor)
+		{
+			double minX = pCorridor.getMinX();
+			double minY = pCorridor.getMinY();
+			double maxX = pCorridor.getMaxX();
+			double maxY = pCorridor.getMaxY();
+			boolean grown = true;
+			while( grown )
+			{
+				grown = false;
+				for( int i = 0; i < aObstacleCount * 4; i += 4 )
+				{
+					if( intersects(i, minX, minY, maxX, maxY) && (aObstacles[i] < minX || aObstacles[i + 1] < minY || 
+							aObstacles[i + 2] > maxX || aObstacles[i + 3] > maxY) )
+					{
+						minX = Math.min(minX, aObstacles[i]);
+						minY = Math.min(minY, aObstacles[i + 1]);
+						maxX = Math.max(maxX, aObstacles[i + 2]);
+						maxY = Math.max(maxY, aObstacles[i + 3]);
+						grown = true;
+					}
+				}
+			}
+			return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+		}
+		
+		Rectangle2D getAllObstacleBounds(Rectangle2D pCorridor)
+		{
+			Rectangle2D bounds = (Rectangle2D) pCorridor.clone();
+			for( int i = 0; i < aObstacleCount * 4; i += 4 )
+			{
+				bounds.add(new Rectangle2D.Double(aObstacles[i], aObstacles[i + 1], 
+						aObstacles[i + 2] - aObstacles[i], aObstacles[i + 3] - aObstacles[i + 1]));
+			}
+			return bounds;
+		}
+		
+		private boolean intersects(int pIndex, double pMinX, double pMinY, double pMaxX, double pMaxY)
+		{
+			return aObstacles[pIndex] <= pMaxX && aObstacles[pIndex + 2] >= pMinX && 
+					aObstacles[pIndex + 1] <= pMaxY && aObstacles[pIndex + 3] >= pMinY;
+		}
+		
+		/*
+		 * The key of a route: the endpoints, the corridor, and 
+		 * the obstacles in the corridor.
+		 */
+		double[] createKey(Rectangle2D pCorridor)
+		{
+			int count = 0;
+			for( int i = 0; i < aObstacleCount * 4; i += 4 )
+			{
+				if( intersects(i, pCorridor.getMinX(), pCorridor.getMinY(), pCorridor.getMaxX(), pCorridor.getMaxY()) )
+				{
+					count++;
+				}
+			}
+			double[] key = new double[KEY_HEADER + count * 4];
+			System.arraycopy(aEndpoints, 0, key, 0, aEndpoints.length);
+			key[6] = pCorridor.getMinX();
+			key[7] = pCorridor.getMinY();
+			key[8] = pCorridor.getMaxX();
+			key[9] = pCorridor.getMaxY();
+			int next = KEY_HEADER;
+			for( int i = 0; i < aObstacleCount * 4; i += 4 )
+			{
+				if( intersects(i, key[6], key[7], key[8], key[9]) )
+				{
+					System.arraycopy(aObstacles, i, key, next, 4);
+					next += 4;
+				}
+			}
+			return key;
+		}
+		
+		/*
+		 * True if the endpoints and the obstacles in the corridor
+		 * of pKey are the same as the current ones.
+		 */
+		boolean matches(double[] pKey)
+		{
+			for( int i = 0; i < aEndpoints.length; i++ )
+			{
+				if( pKey[i] != aEndpoints[i] )
+				{
+					return false;
+				}
+			}
+			int next = KEY_HEADER;
+			for( int i = 0; i < aObstacleCount * 4; i += 4 )
+			{
+				if( intersects(i, pKey[6], pKey[7], pKey[8], pKey[9]) )
+				{
+					if( next == pKey.length || pKey[next] != aObstacles[i] || pKey[next + 1] != aObstacles[i + 1] || 
+							pKey[next + 2] != aObstacles[i + 2] || pKey[next + 3] != aObstacles[i + 3] )
+					{
+						return false;
+					}
+					next += 4;
+				}
+			}
+			return next == pKey.length;
+		}
+		
+		/*
+		 * Searches for a path in pCorridor, which must contain
+		 * all the obstacles it intersects. Returns null if there is none.
+		 */
+		Point2D[] search(Rectangle2D pCorridor)
+		{
+			buildGrid(pCorridor);
+			int source = indexOf(aXs, aXCount, aSourceX) + aXCount * indexOf(aYs, aYCount, aSourceY);
+			int target = indexOf(aXs, aXCount, aTargetX) + aXCount * indexOf(aYs, aYCount, aTargetY);
+			int goal = aXCount * aYCount * DIRECTIONS; // A virtual state reached from the target
+			int arrival = OPPOSITE[aTargetDirection];
+			startSearch(goal + 1);
+			
+			relax(source * DIRECTIONS + aSourceDirection, 0, -1, source);
+			while( aHeapSize > 0 )
+			{
+				int state = pop();
+				if( state == goal )
+				{
+					return createPath(goal);
+				}
+				if( aClosed[state] == aGeneration )
+				{
+					continue;
+				}
+				aClosed[state] = aGeneration;
+				int point = state / DIRECTIONS;
+				int direction = state % DIRECTIONS;
+				double cost = aCosts[state];
+				if( point == target )
+				{
+					relax(goal, cost + (direction == arrival ? 0 : BEND_PENALTY), state, -1);
+				}
+				for( int next = 0; next < DIRECTIONS; next++ )
+				{
+					if( next == OPPOSITE[direction] )
+					{
+						continue;
+					}
+					int neighbor = step(point, next);
+					if( neighbor >= 0 )
+					{
+						double length = Math.abs(aXs[neighbor % aXCount] - aXs[point % aXCount]) + 
+								Math.abs(aYs[neighbor / aXCount] - aYs[point / aXCount]);
+						relax(neighbor * DIRECTIONS + next, cost + length + (next == direction ? 0 : BEND_PENALTY), state, neighbor);
+					}
+				}
+			}
+			return null;
+		}
+		
+		/*
+		 * The lines of the grid are the sides of the corridor and of 
+		 * the obstacles, and the lines through the points where the 
+		 * path leaves its endpoints.
+		 */
+		private void buildGrid(Rectangle2D pCorridor)
+		{
+			aXCount = 0;
+			aYCount = 0;
+			addX(pCorridor.getMinX());
+			addX(pCorridor.getMaxX());
+			addX(aSourceX);
+			addX(aTargetX);
+			addY(pCorridor.getMinY());
+			addY(pCorridor.getMaxY());
+			addY(aSourceY);
+			addY(aTargetY);
+			for( int i = 0; i < aObstacleCount * 4; i += 4 )
+			{
+				if( intersects(i, pCorridor.getMinX(), pCorridor.getMinY(), pCorridor.getMaxX(), pCorridor.getMaxY()) )
+				{
+					addX(aObstacles[i]);
+					addX(aObstacles[i + 2]);
+					addY(aObstacles[i + 1]);
+					addY(aObstacles[i + 3]);
+				}
+			}
+			aXCount = sortUnique(aXs, aXCount);
+			aYCount = sortUnique(aYs, aYCount);
+			
+			int cells = (aXCount - 1) * (aYCount - 1);
+			if( cells > aBlocked.length )
+			{
+				aBlocked = new boolean[Math.max(cells, aBlocked.length * 2)];
+			}
+			Arrays.fill(aBlocked, 0, cells, false);
+			for( int i = 0; i < aObstacleCount * 4; i += 4 )
+			{
+				if( intersects(i, pCorridor.getMinX(), pCorridor.getMinY(), pCorridor.getMaxX(), pCorridor.getMaxY()) )
+				{
+					int minX = indexOf(aXs, aXCount, aObstacles[i]);
+					int maxX = indexOf(aXs, aXCount, aObstacles[i + 2]);
+					int minY = indexOf(aYs, aYCount, aObstacles[i + 1]);
+					int maxY = indexOf(aYs, aYCount, aObstacles[i + 3]);
+					for( int y = minY; y < maxY; y++ )
+					{
+						Arrays.fill(aBlocked, y * (aXCount - 1) + minX, y * (aXCount - 1) + maxX, true);
+					}
+				}
+			}
+		}
+		
+		private void addX(double pX)
+		{
+			if( aXCount == aXs.length )
+			{
+				aXs = Arrays.copyOf(aXs, aXs.length * 2);
+			}
+			aXs[aXCount++] = pX;
+		}
+		
+		private void addY(double pY)
+		{
+			if( aYCount == aYs.length )
+			{
+				aYs = Arrays.copyOf(aYs, aYs.length * 2);
+			}
+			aYs[aYCount++] = pY;
+		}
+		
+		private static int sortUnique(double[] pValues, int pCount)
+		{
+			Arrays.sort(pValues, 0, pCount);
+			int count = 0;
+			for( int i = 0; i < pCount; i++ )
+			{
+				if( count == 0 || pValues[i] != pValues[count - 1] )
+				{
+					pValues[count++] = pValues[i];
+				}
+			}
+			return count;
+		}
+		
+		private static int indexOf(double[] pValues, int pCount, double pValue)
+		{
+			return Arrays.binarySearch(pValues, 0, pCount, pValue);
+		}
+		
+		private boolean isBlocked(int pX, int pY)
+		{
+			return pX >= 0 && pY >= 0 && pX < aXCount - 1 && pY < aYCount - 1 && aBlocked[pY * (aXCount - 1) + pX];
+		}
+		
+		/*
+		 * The grid point next to pPoint in pDirection, or -1 if there is 
+		 * none or if the segment between them is inside an obstacle, 
+		 * that is, if the cells on both of its sides are blocked.
+		 */
+		private int step(int pPoint, int pDirection)
+		{
+			int x = pPoint % aXCount;
+			int y = pPoint / aXCount;
+			switch(pDirection)
+			{
+			case 0:
+				return x + 1 < aXCount && !(isBlocked(x, y - 1) && isBlocked(x, y)) ? pPoint + 1 : -1;
+			case 1:
+				return x > 0 && !(isBlocked(x - 1, y - 1) && isBlocked(x - 1, y)) ? pPoint - 1 : -1;
+			case 2:
+				return y + 1 < aYCount && !(isBlocked(x - 1, y) && isBlocked(x, y)) ? pPoint + aXCount : -1;
+			default:
+				return y > 0 && !(isBlocked(x - 1, y - 1) && isBlocked(x, y - 1)) ? pPoint - aXCount : -1;
+			}
+		}
+		
+		private void startSearch(int pStates)
+		{
+			if( pStates > aCosts.length )
+			{
+				int size = Math.max(pStates, aCosts.length * 2);
+				aCosts = new double[size];
+				aParents = new int[size];
+				aSeen = new int[size];
+				aClosed = new int[size];
+				aGeneration = 0;
+			}
+			aGeneration++;
+			if( aGeneration == Integer.MAX_VALUE )
+			{
+				Arrays.fill(aSeen, 0);
+				Arrays.fill(aClosed, 0);
+				aGeneration = 1;
+			}
+			aHeapSize = 0;
+		}
+		
+		/*
+		 * Records pCost as the cost of pState if it is lower than the 
+		 * known one, and queues pState with an estimate of the remaining 
+		 * cost: the Manhattan distance from pPoint to the target, plus the 
+		 * least number of bends needed to arrive in the right direction.
+		 */
+		private void relax(int pState, double pCost, int pParent, int pPoint)
+		{
+			if( aSeen[pState] == aGeneration && aCosts[pState] <= pCost )
+			{
+				return;
+			}
+			aSeen[pState] = aGeneration;
+			aCosts[pState] = pCost;
+			aParents[pState] = pParent;
+			double estimate = 0;
+			if( pPoint >= 0 )
+			{
+				double dx = aTargetX - aXs[pPoint % aXCount];
+				double dy = aTargetY - aYs[pPoint / aXCount];
+				estimate = Math.abs(dx) + Math.abs(dy) + countBends(pState % DIRECTIONS, dx, dy) * BEND_PENALTY;
+			}
+			push(pState, pCost + estimate * TIE_BREAKING);
+		}
+		
+		/*
+		 * The least number of bends of a path that starts in pDirection and 
+		 * reaches the target at (pDX, pDY) in the direction of arrival.
+		 */
+		private int countBends(int pDirection, double pDX, double pDY)
+		{
+			int arrival = OPPOSITE[aTargetDirection];
+			if( pDirection == arrival )
+			{
+				boolean ahead = pDirection == 0 && pDY == 0 && pDX >= 0 || pDirection == 1 && pDY == 0 && pDX <= 0 ||
+						pDirection == 2 && pDX == 0 && pDY >= 0 || pDirection == 3 && pDX == 0 && pDY <= 0;
+				return ahead ? 0 : 2;
+			}
+			else if( pDirection == OPPOSITE[arrival] )
+			{
+				return 2;
+			}
+			else
+			{
+				return 1;
+			}
+		}
+		
+		private void push(int pState, double pKey)
+		{
+			if( aHeapSize == aHeapStates.length )
+			{
+				aHeapStates = Arrays.copyOf(aHeapStates, aHeapSize * 2);
+				aHeapKeys = Arrays.copyOf(aHeapKeys, aHeapSize * 2);
+			}
+			int child = aHeapSize++;
+			while( child > 0 && aHeapKeys[(child - 1) / 2] > pKey )
+			{
+				int parent = (child - 1) / 2;
+				aHeapStates[child] = aHeapStates[parent];
+				aHeapKeys[child] = aHeapKeys[parent];
+				child = parent;
+			}
+			aHeapStates[child] = pState;
+			aHeapKeys[child] = pKey;
+		}
+		
+		private int pop()
+		{
+			int top = aHeapStates[0];
+			aHeapSize--;
+			int state = aHeapStates[aHeapSize];
+			double key = aHeapKeys[aHeapSize];
+			int parent = 0;
+			while( 2 * parent + 1 < aHeapSize )
+			{
+				int child = 2 * parent + 1;
+				if( child + 1 < aHeapSize && aHeapKeys[child + 1] < aHeapKeys[child] )
+				{
+					child++;
+				}
+				if( aHeapKeys[child] >= key )
+				{
+					break;
+				}
+				aHeapStates[parent] = aHeapStates[child];
+				aHeapKeys[parent] = aHeapKeys[child];
+				parent = child;
+			}
+			aHeapStates[parent] = state;
+			aHeapKeys[parent] = key;
+			return top;
+		}
+		
+		/*
+		 * Follows the parents of the goal state back to the source,
+		 * and keeps the points where the path bends.
+		 */
+		private Point2D[] createPath(int pGoal)
+		{
+			List<Point2D> points = new ArrayList<>();
+			points.add(new Point2D.Double(aEndpoints[3], aEndpoints[4]));
+			for( int state = aParents[pGoal]; state >= 0; state = aParents[state] )
+			{
+				int point = state / DIRECTIONS;
+				addBend(points, aXs[point % aXCount], aYs[point / aXCount]);
+			}
+			addBend(points, aEndpoints[0], aEndpoints[1]);
+			Collections.reverse(points);
+			return points.toArray(new Point2D[points.size()]);
+		}
+		
+		/*
+		 * Adds a point, replacing the last point if the last 
+		 * two points and the new one are aligned.
+		 */
+		private static void addBend(List<Point2D> pPoints, double pX, double pY)
+		{
+			int size = pPoints.size();
+			Point2D last = pPoints.get(size - 1);
+			if( last.getX() == pX && last.getY() == pY )
+			{
+				return;
+			}
+			if( size >= 2 )
+			{
+				Point2D previous = pPoints.get(size - 2);
+				if( previous.getX() == last.getX() && last.getX() == pX || previous.getY() == last.getY() && last.getY() == pY )
+				{
+					pPoints.set(size - 1, new Point2D.Double(pX, pY));
+					return;
+				}
+			}
+			pPoints.add(new Point2D.Double(pX, pY));
+		}
+	}
+}
@@ -26,6 +26,8 @@ import java.beans.Expression;
 import java.beans.PersistenceDelegate;
 import java.beans.XMLDecoder;
 import java.beans.XMLEncoder;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -42,6 +44,8 @@ import ca.mcgill.cs.stg.jetuml.graph.PointNode;
 /**
  * Services for saving and loading Graph objects (i.e., UML diagrams).
  * We use long-term bean persistence to save the graph data. 
+ * The time taken and the number of bytes transferred are 
+ * recorded in Instrumentation.
  * 
  * @author Martin P. Robillard
  */
@@ -89,7 +93,9 @@ public final class PersistenceService
 	public static Graph read(InputStream pIn) throws IOException
 	{
 		assert pIn != null;
-		try( XMLDecoder reader = new XMLDecoder(pIn) )
+		long start = System.nanoTime();
+		CountingInputStream in = new CountingInputStream(pIn);
+		try( XMLDecoder reader = new XMLDecoder(in) )
 		{
 			Graph graph = (Graph) reader.readObject();
 			return graph;
@@ -97,6 +103,8 @@ public final class PersistenceService
 		finally
 		{
 			pIn.close();
+			Instrumentation.READ.recordSince(start);
+			Instrumentation.addBytesRead(in.aCount);
 		}
 	}
 	
@@ -108,18 +116,103 @@ public final class PersistenceService
      */
 	public static void saveFile(Graph pGraph, OutputStream pOut)
 	{
-		XMLEncoder encoder = new XMLEncoder(pOut);
-		encoder.setPersistenceDelegate(LineStyle.class, staticFieldDelegate);
-		encoder.setPersistenceDelegate(ArrowHead.class, staticFieldDelegate);
-      
-		Graph.setPersistenceDelegate(encoder);
-		AbstractNode.setPersistenceDelegate(encoder);
-		PackageNode.setPersistenceDelegate(encoder);
-		PointNode.setPersistenceDelegate(encoder);
-		ObjectNode.setPersistenceDelegate(encoder);
-		ImplicitParameterNode.setPersistenceDelegate(encoder);
-		
+		long start = System.nanoTime();
+		CountingOutputStream out = new CountingOutputStream(pOut);
+		XMLEncoder encoder = new XMLEncoder(out);
+		setPersistenceDelegates(encoder);
 		encoder.writeObject(pGraph);
 		encoder.close();
+		Instrumentation.SAVE.recordSince(start);
+		Instrumentation.addBytesSaved(out.aCount);
 	}
+
+	/**
+	 * Adds to pEncoder all the persistence delegates required to
+	 * encode graphs and their elements.
+	 * 
+	 * @param pEncoder The encoder to configure.
+	 */
+	static void setPersistenceDelegates(Encoder pEncoder)
+	{
+		pEncoder.setPersistenceDelegate(LineStyle.class, staticFieldDelegate);
+		pEncoder.setPersistenceDelegate(ArrowHead.class, staticFieldDelegate);
+      
+		Graph.setPersistenceDelegate(pEncoder);
+		AbstractNode.setPersistenceDelegate(pEncoder);
+		PackageNode.setPersistenceDelegate(pEncoder);
+		PointNode.setPersistenceDelegate(pEncoder);
+		ObjectNode.setPersistenceDelegate(pEncoder);
+		ImplicitParameterNode.setPersistenceDelegate(pEncoder);
+	}
+	
+	private static final class CountingInputStream extends FilterInputStream
+	{
+		private long aCount;
+		
+		CountingInputStream(InputStream pIn)
+		{
+			super(pIn);
+		}
+		
+		@Override
+		public int read() throws IOException
+		{
+			int result = super.read();
+			if( result >= 0 )
+			{
+				aCount++;
+			}
+			return result;
+		}
+		
+		@Override
+		public int read(byte[] pBuffer, int pOffset, int pLength) throws IOException
+		{
+			int result = super.read(pBuffer, pOffset, pLength);
+			if( result > 0 )
+			{
+				aCount += result;
+			}
+			return result;
+		}
+		
+		@Override
+		public long skip(long pLength) throws IOException
+		{
+			long result = super.skip(pLength);
+			aCount += result;
+			return result;
+		}
+		
+		@Override
+		public boolean markSupported()
+		{
+			return false;
+		}
+	}
+	
+	private static final class CountingOutputStream extends FilterOutputStream
+	{
+		private long aCount;
+		
+		CountingOutputStream(OutputStream pOut)
+		{
+			super(pOut);
+		}
+		
+		@Override
+		public void write(int pByte) throws IOException
+		{
+			out.write(pByte);
+			aCount++;
+		}
+		
+		@Override
+		public void write(byte[] pBuffer, int pOffset, int pLength) throws IOException
+		{
+			out.write(pBuffer, pOffset, pLength);
+			aCount += pLength;
+		}
+	}
+	
 }
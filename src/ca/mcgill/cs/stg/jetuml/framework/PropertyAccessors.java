@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import ca.mcgill.cs.stg.jetuml.graph.PropertyOrder;
+
+/**
+ * The JavaBeans properties of a class, with method handles 
+ * to read and write them. The properties of a class are 
+ * introspected once and the result is shared by all the 
+ * users of the class.
+ * 
+ * Properties are identified by their index in the array returned
+ * by BeanInfo.getPropertyDescriptors for the class.
+ */
+final class PropertyAccessors
+{
+	private static final ConcurrentMap<Class<?>, PropertyAccessors> ACCESSORS = new ConcurrentHashMap<>();
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+	
+	private final PropertyDescriptor[] aDescriptors;
+	private final MethodHandle[] aGetters; // null elements for write-only properties
+	private final MethodHandle[] aSetters; // null elements for read-only properties
+	private final int[] aPresentationOrder;
+	
+	private PropertyAccessors(final Class<?> pClass) throws IntrospectionException
+	{
+		aDescriptors = Introspector.getBeanInfo(pClass).getPropertyDescriptors().clone();
+		aGetters = new MethodHandle[aDescriptors.length];
+		aSetters = new MethodHandle[aDescriptors.length];
+		Integer[] order = new Integer[aDescriptors.length];
+		for(int i = 0; i < aDescriptors.length; i++)
+		{
+			aGetters[i] = createHandle(aDescriptors[i].getReadMethod(), GETTER_TYPE);
+			aSetters[i] = createHandle(aDescriptors[i].getWriteMethod(), SETTER_TYPE);
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			public int compare(Integer pIndex1, Integer pIndex2)
+			{
+				String name1 = aDescriptors[pIndex1].getName();
+				String name2 = aDescriptors[pIndex2].getName();
+				int index1 = PropertyOrder.getInstance().getIndex(pClass, name1);
+				int index2 = PropertyOrder.getInstance().getIndex(pClass, name2);
+				if( index1 == index2 )
+				{
+					return name1.compareTo(name2);
+				}
+				else
+				{
+					return index1 - index2;
+				}
+			}
+		});
+		aPresentationOrder = new int[order.length];
+		for(int i = 0; i < order.length; i++)
+		{
+			aPresentationOrder[i] = order[i];
+		}
+	}
+	
+	/**
+	 * @param pClass The class whose properties are needed.
+	 * @return The accessors of the properties of pClass.
+	 * @throws IntrospectionException If pClass cannot be introspected.
+	 */
+	static PropertyAccessors forClass(Class<?> pClass) throws IntrospectionException
+	{
+		PropertyAccessors accessors = ACCESSORS.get(pClass);
+		if( accessors == null )
+		{
+			accessors = new PropertyAccessors(pClass);
+			PropertyAccessors previous = ACCESSORS.putIfAbsent(pClass, accessors);
+			if( previous != null )
+			{
+				accessors = previous;
+			}
+		}
+		return accessors;
+	}
+	
+	/*
+	 * Returns a handle of type pType on pMethod, or null if pMethod is null
+	 * or cannot be accessed. Properties declared in non-public classes
+	 * can only be accessed once the method is made accessible.
+	 */
+	private static MethodHandle createHandle(Method pMethod, MethodType pType)
+	{
+		if( pMethod == null )
+		{
+			return null;
+		}
+		try
+		{
+			return MethodHandles.publicLookup().unreflect(pMethod).asType(pType);
+		}
+		catch(IllegalAccessException exception)
+		{
+			try
+			{
+				pMethod.setAccessible(true);
+				return MethodHandles.lookup().unreflect(pMethod).asType(pType);
+			}
+			catch(IllegalAccessException | SecurityException exception2)
+			{
+				return null;
+			}
+		}
+	}
+	
+	/**
+	 * @return The number of properties.
+	 */
+	int size()
+	{
+		return aDescriptors.length;
+	}
+	
+	/**
+	 * @param pIndex The index of a property.
+	 * @return The descriptor of the property. Must not be modified.
+	 */
+	PropertyDescriptor getDescriptor(int pIndex)
+	{
+		return aDescriptors[pIndex];
+	}
+	
+	/**
+	 * @param pName The name of a property.
+	 * @return The index of the property, or -1 if there is no such property.
+	 */
+	int indexOf(String pName)
+	{
+		for(int i = 0; i < aDescriptors.length; i++)
+		{
+			if( aDescriptors[i].getName().equals(pName))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return The indices of the properties, in the order in which
+	 * they should be presented to the user. Must not be modified.
+	 */
+	int[] getPresentationOrder()
+	{
+		return aPresentationOrder;
+	}
+	
+	/**
+	 * @param pIndex The index of a property.
+	 * @return True if the property can be read.
+	 */
+	boolean isReadable(int pIndex)
+	{
+		return aGetters[pIndex] != null;
+	}
+	
+	/**
+	 * @param pIndex The index of a property.
+	 * @return True if the property can be written.
+	 */
+	boolean isWritable(int pIndex)
+	{
+		return aSetters[pIndex] != null;
+	}
+	
+	/**
+	 * @param pBean The object whose property is read.
+	 * @param pIndex The index of a readable property.
+	 * @return The value of the property.
+	 * @throws InvocationTargetException If the getter throws an exception.
+	 */
+	Object get(Object pBean, int pIndex) throws InvocationTargetException
+	{
+		assert isReadable(pIndex);
+		try
+		{
+			return (Object) aGetters[pIndex].invokeExact(pBean);
+		}
+		catch(Throwable exception)
+		{
+			throw new InvocationTargetException(exception);
+		}
+	}
+	
+	/**
+	 * @param pBean The object whose property is written.
+	 * @param pIndex The index of a writable property.
+	 * @param pValue The new value of the property.
+	 * @throws InvocationTargetException If the setter throws an exception.
+	 */
+	void set(Object pBean, int pIndex, Object pValue) throws InvocationTargetException
+	{
+		assert isWritable(pIndex);
+		try
+		{
+			aSetters[pIndex].invokeExact(pBean, pValue);
+		}
+		catch(Throwable exception)
+		{
+			throw new InvocationTargetException(exception);
+		}
+	}
+}
@@ -20,14 +20,15 @@
  *******************************************************************************/
 package ca.mcgill.cs.stg.jetuml.framework;
 
+import java.beans.Encoder;
+import java.beans.Expression;
 import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
+import java.beans.PersistenceDelegate;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 
 import ca.mcgill.cs.stg.jetuml.commands.Command;
 import ca.mcgill.cs.stg.jetuml.commands.CompoundCommand;
+import ca.mcgill.cs.stg.jetuml.commands.MergeableCommand;
 import ca.mcgill.cs.stg.jetuml.graph.Graph;
 import ca.mcgill.cs.stg.jetuml.graph.GraphElement;
 
@@ -40,6 +41,7 @@ public class PropertyChangeTracker
 {
 	private Object[] aPropertyValues;
 	private GraphElement aEdited;
+	private PropertyAccessors aAccessors;
 
 	/**
 	 * Records the value of the properties of pEdited.
@@ -52,11 +54,11 @@ public class PropertyChangeTracker
 		try 
 		{
 			aEdited = pEdited;
-			PropertyDescriptor[] oldDescriptors = Introspector.getBeanInfo(pEdited.getClass()).getPropertyDescriptors();
-			aPropertyValues = new Object[oldDescriptors.length];
+			aAccessors = PropertyAccessors.forClass(pEdited.getClass());
+			aPropertyValues = new Object[aAccessors.size()];
 			for(int i = 0; i< aPropertyValues.length; i++)
 			{
-				aPropertyValues[i] = getPropertyValue(oldDescriptors[i]);
+				aPropertyValues[i] = getPropertyValue(i);
 			}
 		} 
 		catch( IntrospectionException | IllegalArgumentException e ) 
@@ -67,13 +69,14 @@ public class PropertyChangeTracker
 	}
 	
 	/*
-	 * Returns the value of the property represented by pDescriptor on pEdited, or null
-	 * if the property cannot be read for any reason.
+	 * Returns the value of the property at pIndex on pEdited, or null
+	 * if the property cannot be read for any reason. Read-only properties,
+	 * such as derived geometry, are not tracked because they cannot be 
+	 * restored by undoing.
 	 */
-	private Object getPropertyValue(PropertyDescriptor pDescriptor)
+	private Object getPropertyValue(int pIndex)
 	{
-		final Method getter = pDescriptor.getReadMethod();
-		if( getter == null )
+		if( !aAccessors.isReadable(pIndex) || !aAccessors.isWritable(pIndex) )
 		{
 			return null;
 		}
@@ -81,9 +84,9 @@ public class PropertyChangeTracker
 		{
 			try
 			{
-				return copyIfNecessary(getter.invoke( aEdited ));
+				return copyIfNecessary(aAccessors.get(aEdited, pIndex));
 			}
-			catch(IllegalAccessException | IllegalArgumentException | InvocationTargetException e)
+			catch(InvocationTargetException e)
 			{
 				return null;
 			}
@@ -121,15 +124,12 @@ public class PropertyChangeTracker
 	{
 		try
 		{
-			PropertyDescriptor[] descriptors = Introspector.getBeanInfo(pElement.getClass()).getPropertyDescriptors();
-			for(int i = 0; i < descriptors.length; i++)
+			int index = PropertyAccessors.forClass(pElement.getClass()).indexOf(pProperty);
+			if( index < 0 )
 			{
-				if( descriptors[i].getName().equals(pProperty))
-				{
-					return new PropertyChangeCommand(pGraph, pElement, copyIfNecessary(pOldValue), copyIfNecessary(pNewValue), i);
-				}
+				return null;
 			}
-			return null;
+			return new PropertyChangeCommand(pGraph, pElement, copyIfNecessary(pOldValue), copyIfNecessary(pNewValue), index);
 		}
 		catch(IntrospectionException e)
 		{
@@ -150,10 +150,9 @@ public class PropertyChangeTracker
 		try 
 		{
 			CompoundCommand command = new CompoundCommand();
-			PropertyDescriptor[] descriptors = Introspector.getBeanInfo(aEdited.getClass()).getPropertyDescriptors();  
-			for(int i = 0; i < descriptors.length; i++)
+			for(int i = 0; i < aPropertyValues.length; i++)
 			{
-				Object propVal = getPropertyValue(descriptors[i]);
+				Object propVal = getPropertyValue(i);
 				if(!equals(propVal, aPropertyValues[i]))
 				{
 					command.add(new PropertyChangeCommand(pGraph, aEdited, aPropertyValues[i], copyIfNecessary(propVal), i));
@@ -162,13 +161,32 @@ public class PropertyChangeTracker
 			}
 			return command;
 		}
-		catch(IntrospectionException | IllegalArgumentException e) 
+		catch(IllegalArgumentException e) 
 		{
 			assert false;
 			return null;
 		}
 	}
 	
+	/**
+	 * Adds a persistence delegate to a given encoder that re-creates
+	 * property change commands through createPropertyChangeCommand.
+	 * @param pEncoder the encoder to which to add the delegate
+	 */
+	static void setPersistenceDelegate(Encoder pEncoder)
+	{
+		pEncoder.setPersistenceDelegate(PropertyChangeCommand.class, new PersistenceDelegate()
+		{
+			protected Expression instantiate(Object pOldInstance, Encoder pOut)
+			{
+				PropertyChangeCommand command = (PropertyChangeCommand) pOldInstance;
+				return new Expression(pOldInstance, PropertyChangeTracker.class, "createPropertyChangeCommand", 
+						new Object[]{ command.aGraph, command.aObject, command.getPropertyName(), 
+								command.aPrevPropValue, command.aNewPropValue });
+			}
+		});
+	}
+	
 	/*
 	 * Equality taking null equality into account.
 	 */
@@ -191,7 +209,7 @@ public class PropertyChangeTracker
 	 * @author EJBQ
 	 * @author Martin P. Robillard
 	 */
-	static class PropertyChangeCommand implements Command
+	static class PropertyChangeCommand implements MergeableCommand
 	{
 		private Graph aGraph;
 		private GraphElement aObject;
@@ -216,44 +234,91 @@ public class PropertyChangeTracker
 			aNewPropValue = pNewPropValue;
 			aIndex = pIndex;
 		}
-
+		
 		/**
-		 * Changes the property of the Object to the old value.
+		 * @return The graph of the object being changed.
 		 */
-		public void undo() 
+		Graph getGraph()
 		{
-			try 
+			return aGraph;
+		}
+		
+		/**
+		 * @return The graph element whose property changed.
+		 */
+		GraphElement getElement()
+		{
+			return aObject;
+		}
+		
+		/**
+		 * A property change can be merged with a subsequent change
+		 * of the same property of the same element.
+		 * @param pCommand The command to merge.
+		 * @return True if pCommand changes the same property.
+		 */
+		@Override
+		public boolean canMerge(Command pCommand)
+		{
+			return pCommand instanceof PropertyChangeCommand && ((PropertyChangeCommand)pCommand).aObject == aObject &&
+					((PropertyChangeCommand)pCommand).aIndex == aIndex && ((PropertyChangeCommand)pCommand).aGraph == aGraph;
+		}
+		
+		/**
+		 * Keeps the initial value of this command and the
+		 * final value of pCommand.
+		 * @param pCommand A change of the same property.
+		 */
+		@Override
+		public void merge(Command pCommand)
+		{
+			assert canMerge(pCommand);
+			aNewPropValue = ((PropertyChangeCommand)pCommand).aNewPropValue;
+		}
+		
+		/*
+		 * Returns the name of the changed property, or null if
+		 * it cannot be determined.
+		 */
+		private String getPropertyName()
+		{
+			try
 			{
-				PropertyDescriptor[] descriptors = Introspector.getBeanInfo(aObject.getClass()).getPropertyDescriptors().clone();  
-				final Method setter = descriptors[aIndex].getWriteMethod();
-				if(setter != null)
-				{
-					setter.invoke(aObject, new Object[] {aPrevPropValue});
-				}
+				return PropertyAccessors.forClass(aObject.getClass()).getDescriptor(aIndex).getName();
 			}
-			catch(IntrospectionException | IllegalAccessException | IllegalArgumentException | InvocationTargetException exception) 
+			catch(IntrospectionException exception)
 			{
-				assert false;
-				return;
+				return null;
 			}
-			aGraph.layout();
+		}
+
+		/**
+		 * Changes the property of the Object to the old value.
+		 */
+		public void undo() 
+		{
+			setPropertyValue(aPrevPropValue);
 		}
 
 		/**
 		 * Changes the property of the Object.
 		 */
 		public void execute() 
+		{
+			setPropertyValue(aNewPropValue);
+		}
+		
+		private void setPropertyValue(Object pValue)
 		{
 			try 
 			{
-				PropertyDescriptor[] descriptors = Introspector.getBeanInfo(aObject.getClass()).getPropertyDescriptors().clone();  
-				final Method setter = descriptors[aIndex].getWriteMethod();
-				if(setter!= null)
+				PropertyAccessors accessors = PropertyAccessors.forClass(aObject.getClass());
+				if(accessors.isWritable(aIndex))
 				{
-					setter.invoke(aObject, aNewPropValue);
+					accessors.set(aObject, aIndex, pValue);
 				}
 			}
-			catch(IntrospectionException | IllegalAccessException | IllegalArgumentException | InvocationTargetException exception) 
+			catch(IntrospectionException | InvocationTargetException exception) 
 			{
 				assert false;
 				return;
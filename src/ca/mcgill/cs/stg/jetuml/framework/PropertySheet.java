@@ -25,7 +25,6 @@ import java.awt.Component;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.beans.IntrospectionException;
-import java.beans.Introspector;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyDescriptor;
@@ -33,10 +32,7 @@ import java.beans.PropertyEditor;
 import java.beans.PropertyEditorManager;
 import java.beans.PropertyEditorSupport;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.ResourceBundle;
@@ -50,8 +46,6 @@ import javax.swing.event.ChangeListener;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 
-import ca.mcgill.cs.stg.jetuml.graph.PropertyOrder;
-
 /**
  *  A GUI component that can present the properties of an 
  *  object detected through the JavaBeans framework and 
@@ -92,27 +86,11 @@ public class PropertySheet extends JPanel
 		setLayout(new FormLayout());
 		try
 		{
-			PropertyDescriptor[] descriptors = Introspector.getBeanInfo(pBean.getClass()).getPropertyDescriptors().clone();
-			Arrays.sort(descriptors, new Comparator<PropertyDescriptor>()
-			{
-				public int compare(PropertyDescriptor pDescriptor1, PropertyDescriptor pDescriptor2)
-				{
-					int index1 = PropertyOrder.getInstance().getIndex(pBean.getClass(), pDescriptor1.getName());
-					int index2 = PropertyOrder.getInstance().getIndex(pBean.getClass(), pDescriptor2.getName());
-					if( index1 == index2 )
-					{
-						return pDescriptor1.getName().compareTo(pDescriptor2.getName());
-					}
-					else
-					{
-						return index1 - index2;
-					}
-				}
-			});
-			
-			for(PropertyDescriptor descriptor : descriptors)
+			PropertyAccessors accessors = PropertyAccessors.forClass(pBean.getClass());
+			for(int index : accessors.getPresentationOrder())
 			{
-				PropertyEditor editor = getEditor(pBean, descriptor);
+				PropertyDescriptor descriptor = accessors.getDescriptor(index);
+				PropertyEditor editor = getEditor(pBean, accessors, index);
 				String propertyName = getPropertyName(pBean.getClass(), descriptor.getName());
 				if(editor != null && !propertyName.equals(INVISIBLE_PROPERTY_MARKER))
 				{
@@ -139,16 +117,37 @@ public class PropertySheet extends JPanel
 	{
 		try
 		{
-			final Method getter = pDescriptor.getReadMethod();
-			final Method setter = pDescriptor.getWriteMethod();
-			if(getter == null || setter == null )
+			PropertyAccessors accessors = PropertyAccessors.forClass(pBean.getClass());
+			int index = accessors.indexOf(pDescriptor.getName());
+			if( index < 0 )
+			{
+				return null;
+			}
+			return getEditor(pBean, accessors, index);
+		}
+		catch(IntrospectionException exception)
+		{
+			return null;
+		}
+	}
+	
+	/*
+	 * Returns an editor for the property at pIndex in pAccessors, or null
+	 * if the property cannot be edited.
+	 */
+	private PropertyEditor getEditor(final Object pBean, final PropertyAccessors pAccessors, final int pIndex)
+	{
+		try
+		{
+			if(!pAccessors.isReadable(pIndex) || !pAccessors.isWritable(pIndex))
 			{
 				return null;
 			}
 			
-			Class<?> type = pDescriptor.getPropertyType();
+			PropertyDescriptor descriptor = pAccessors.getDescriptor(pIndex);
+			Class<?> type = descriptor.getPropertyType();
 			final PropertyEditor editor;
-			Class<?> editorClass = pDescriptor.getPropertyEditorClass();
+			Class<?> editorClass = descriptor.getPropertyEditorClass();
 			if(editorClass == null && editors.containsKey(type))
 			{
 				editorClass = editors.get(type);
@@ -166,7 +165,7 @@ public class PropertySheet extends JPanel
 				return null;
 			}
 
-			Object value = getter.invoke(pBean, new Object[] {});
+			Object value = pAccessors.get(pBean, pIndex);
 			editor.setValue(value);
 			editor.addPropertyChangeListener(new PropertyChangeListener()
 			{
@@ -174,10 +173,10 @@ public class PropertySheet extends JPanel
 				{
 					try
 					{	
-						setter.invoke(pBean, new Object[] { editor.getValue() });
+						pAccessors.set(pBean, pIndex, editor.getValue());
 						fireStateChanged(null);
 					}
-					catch(IllegalAccessException | InvocationTargetException exception)
+					catch(InvocationTargetException exception)
 					{
 						exception.printStackTrace();
 					}
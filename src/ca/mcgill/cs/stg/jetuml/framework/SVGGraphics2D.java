@@ -0,0 +1,1063 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.AttributedCharacterIterator;
+import java.util.Base64;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
+
+/**
+ * A graphics context that writes what is drawn on it as SVG 
+ * elements, as soon as it is drawn. No document is built in 
+ * memory. Text is written as text elements, so it remains 
+ * selectable, and is measured with the same font metrics as 
+ * in the editor.
+ * 
+ * Only solid colors are supported, and clips are not written:
+ * they only limit what the components drawn on this context 
+ * decide to draw.
+ */
+final class SVGGraphics2D extends Graphics2D
+{
+	private static final double PRECISION = 100; // Coordinates are written with two decimals
+	
+	private final PrintWriter aOut; // Shared by all the contexts created from the same document
+	private final Graphics2D aMeasure; // Measures text, shared by all the contexts created from the same document
+	private AffineTransform aTransform;
+	private Shape aClip; // In device space, or null if there is no clip
+	private Color aColor = Color.BLACK;
+	private Paint aPaint = Color.BLACK;
+	private Color aBackground = Color.WHITE;
+	private Stroke aStroke = new BasicStroke();
+	private Font aFont;
+	private Composite aComposite = AlphaComposite.SrcOver;
+	private RenderingHints aHints = new RenderingHints(null);
+	
+	private SVGGraphics2D(PrintWriter pOut)
+	{
+		aOut = pOut;
+		aMeasure = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+		aTransform = new AffineTransform();
+		aFont = aMeasure.getFont();
+	}
+	
+	private SVGGraphics2D(SVGGraphics2D pGraphics)
+	{
+		aOut = pGraphics.aOut;
+		aMeasure = pGraphics.aMeasure;
+		aTransform = new AffineTransform(pGraphics.aTransform);
+		aClip = pGraphics.aClip;
+		aColor = pGraphics.aColor;
+		aPaint = pGraphics.aPaint;
+		aBackground = pGraphics.aBackground;
+		aStroke = pGraphics.aStroke;
+		aFont = pGraphics.aFont;
+		aComposite = pGraphics.aComposite;
+		aHints = (RenderingHints) pGraphics.aHints.clone();
+	}
+	
+	/**
+	 * Writes pGraph to pOut as an SVG document with pMargin 
+	 * pixels around it. pOut is not closed.
+	 * 
+	 * @param pGraph The graph to export.
+	 * @param pMargin The number of pixels to leave around the graph.
+	 * @param pOut The stream to write to.
+	 * @throws IOException If the document cannot be written.
+	 */
+	static void write(Graph pGraph, int pMargin, OutputStream pOut) throws IOException
+	{
+		Rectangle2D bounds = pGraph.getBounds();
+		int width = (int) (bounds.getWidth() + pMargin * 2);
+		int height = (int) (bounds.getHeight() + pMargin * 2);
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(pOut, StandardCharsets.UTF_8)));
+		out.print("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		out.print("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" version=\"1.1\"");
+		out.print(" width=\"" + width + "\" height=\"" + height + "\" viewBox=\"0 0 " + width + " " + height + "\"");
+		out.print(" xml:space=\"preserve\">\n");
+		out.print("<g stroke-linecap=\"square\" stroke-miterlimit=\"10\">\n");
+		SVGGraphics2D graphics = new SVGGraphics2D(out);
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(0, 0, width, height);
+		graphics.translate(pMargin - bounds.getX(), pMargin - bounds.getY());
+		graphics.setColor(Color.BLACK);
+		graphics.setBackground(Color.WHITE);
+		pGraph.draw(graphics, null);
+		graphics.dispose();
+		graphics.aMeasure.dispose();
+		out.print("</g>\n</svg>\n");
+		out.flush();
+		if( out.checkError() )
+		{
+			throw new IOException("Cannot write the SVG document");
+		}
+	}
+	
+	/*
+	 * Writes a number with at most two decimals.
+	 */
+	private void writeNumber(double pNumber)
+	{
+		long rounded = Math.round(pNumber * PRECISION);
+		if( rounded < 0 )
+		{
+			aOut.print('-');
+			rounded = -rounded;
+		}
+		aOut.print(rounded / (long) PRECISION);
+		long decimals = rounded % (long) PRECISION;
+		if( decimals != 0 )
+		{
+			aOut.print('.');
+			if( decimals < PRECISION / 10 )
+			{
+				aOut.print('0');
+			}
+			aOut.print(decimals % 10 == 0 ? decimals / 10 : decimals);
+		}
+	}
+	
+	private void writeAttribute(String pName, double pValue)
+	{
+		aOut.print(' ');
+		aOut.print(pName);
+		aOut.print("=\"");
+		writeNumber(pValue);
+		aOut.print('"');
+	}
+	
+	private void writeAttribute(String pName, String pValue)
+	{
+		aOut.print(' ');
+		aOut.print(pName);
+		aOut.print("=\"");
+		aOut.print(pValue);
+		aOut.print('"');
+	}
+	
+	private void writeText(String pText)
+	{
+		for( int i = 0; i < pText.length(); i++ )
+		{
+			char character = pText.charAt(i);
+			switch( character )
+			{
+			case '&': aOut.print("&amp;"); break;
+			case '<': aOut.print("&lt;"); break;
+			case '>': aOut.print("&gt;"); break;
+			case '"': aOut.print("&quot;"); break;
+			default: 
+				if( character >= ' ' || character == '\t' )
+				{
+					aOut.print(character);
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Writes the color attribute pName and its opacity, taking the 
+	 * composite into account.
+	 */
+	private void writeColor(String pName)
+	{
+		Color color = aPaint instanceof Color ? (Color) aPaint : aColor;
+		aOut.print(' ');
+		aOut.print(pName);
+		aOut.print("=\"#");
+		String hex = Integer.toHexString(color.getRGB() & 0xffffff);
+		for( int i = hex.length(); i < 6; i++ )
+		{
+			aOut.print('0');
+		}
+		aOut.print(hex);
+		aOut.print('"');
+		double opacity = color.getAlpha() / 255.0;
+		if( aComposite instanceof AlphaComposite )
+		{
+			opacity *= ((AlphaComposite) aComposite).getAlpha();
+		}
+		if( opacity < 1 )
+		{
+			writeAttribute(pName + "-opacity", opacity);
+		}
+	}
+	
+	private void writeTransform(AffineTransform pTransform)
+	{
+		double[] matrix = new double[6];
+		pTransform.getMatrix(matrix);
+		aOut.print(" transform=\"matrix(");
+		for( int i = 0; i < matrix.length; i++ )
+		{
+			if( i > 0 )
+			{
+				aOut.print(' ');
+			}
+			writeNumber(matrix[i]);
+		}
+		aOut.print(")\"");
+	}
+	
+	private boolean isTranslation()
+	{
+		return (aTransform.getType() & ~AffineTransform.TYPE_TRANSLATION) == 0;
+	}
+	
+	/*
+	 * Writes pShape in device space, as a basic shape if possible,
+	 * filled with the current paint or outlined with the current stroke.
+	 */
+	private void writeShape(Shape pShape, boolean pFill)
+	{
+		if( isTranslation() && pShape instanceof Rectangle2D )
+		{
+			Rectangle2D rectangle = (Rectangle2D) pShape;
+			aOut.print("<rect");
+			writeAttribute("x", rectangle.getX() + aTransform.getTranslateX());
+			writeAttribute("y", rectangle.getY() + aTransform.getTranslateY());
+			writeAttribute("width", rectangle.getWidth());
+			writeAttribute("height", rectangle.getHeight());
+		}
+		else if( isTranslation() && pShape instanceof Line2D )
+		{
+			Line2D line = (Line2D) pShape;
+			aOut.print("<line");
+			writeAttribute("x1", line.getX1() + aTransform.getTranslateX());
+			writeAttribute("y1", line.getY1() + aTransform.getTranslateY());
+			writeAttribute("x2", line.getX2() + aTransform.getTranslateX());
+			writeAttribute("y2", line.getY2() + aTransform.getTranslateY());
+		}
+		else if( isTranslation() && pShape instanceof Ellipse2D )
+		{
+			Ellipse2D ellipse = (Ellipse2D) pShape;
+			aOut.print("<ellipse");
+			writeAttribute("cx", ellipse.getCenterX() + aTransform.getTranslateX());
+			writeAttribute("cy", ellipse.getCenterY() + aTransform.getTranslateY());
+			writeAttribute("rx", ellipse.getWidth() / 2);
+			writeAttribute("ry", ellipse.getHeight() / 2);
+		}
+		else
+		{
+			aOut.print("<path d=\"");
+			writePath(pShape.getPathIterator(aTransform));
+			aOut.print('"');
+			if( pFill && pShape.getPathIterator(null).getWindingRule() == PathIterator.WIND_EVEN_ODD )
+			{
+				aOut.print(" fill-rule=\"evenodd\"");
+			}
+		}
+		if( pFill )
+		{
+			writeColor("fill");
+		}
+		else
+		{
+			aOut.print(" fill=\"none\"");
+			writeColor("stroke");
+			BasicStroke stroke = (BasicStroke) aStroke;
+			double scale = Math.sqrt(Math.abs(aTransform.getDeterminant()));
+			if( stroke.getLineWidth() * scale != 1 )
+			{
+				writeAttribute("stroke-width", stroke.getLineWidth() * scale);
+			}
+			if( stroke.getEndCap() != BasicStroke.CAP_SQUARE )
+			{
+				writeAttribute("stroke-linecap", stroke.getEndCap() == BasicStroke.CAP_BUTT ? "butt" : "round");
+			}
+			if( stroke.getLineJoin() != BasicStroke.JOIN_MITER )
+			{
+				writeAttribute("stroke-linejoin", stroke.getLineJoin() == BasicStroke.JOIN_BEVEL ? "bevel" : "round");
+			}
+			float[] dashes = stroke.getDashArray();
+			if( dashes != null )
+			{
+				aOut.print(" stroke-dasharray=\"");
+				for( int i = 0; i < dashes.length; i++ )
+				{
+					if( i > 0 )
+					{
+						aOut.print(' ');
+					}
+					writeNumber(dashes[i] * scale);
+				}
+				aOut.print('"');
+				if( stroke.getDashPhase() != 0 )
+				{
+					writeAttribute("stroke-dashoffset", stroke.getDashPhase() * scale);
+				}
+			}
+		}
+		aOut.print("/>\n");
+	}
+	
+	private void writePath(PathIterator pIterator)
+	{
+		double[] coordinates = new double[6];
+		String[] commands = { "M", "L", "Q", "C", "Z" };
+		int[] counts = { 2, 2, 4, 6, 0 };
+		boolean first = true;
+		while( !pIterator.isDone() )
+		{
+			int segment = pIterator.currentSegment(coordinates);
+			if( !first )
+			{
+				aOut.print(' ');
+			}
+			first = false;
+			aOut.print(commands[segment]);
+			for( int i = 0; i < counts[segment]; i++ )
+			{
+				if( i > 0 )
+				{
+					aOut.print(' ');
+				}
+				writeNumber(coordinates[i]);
+			}
+			pIterator.next();
+		}
+	}
+	
+	/*
+	 * Returns the generic SVG family of the logical Java fonts, or the
+	 * quoted name of the family for the other fonts.
+	 */
+	private static String getFamily(Font pFont)
+	{
+		String family = pFont.getFamily();
+		if( family.equals(Font.DIALOG) || family.equals(Font.SANS_SERIF) )
+		{
+			return "sans-serif";
+		}
+		else if( family.equals(Font.SERIF) )
+		{
+			return "serif";
+		}
+		else if( family.equals(Font.MONOSPACED) || family.equals(Font.DIALOG_INPUT) )
+		{
+			return "monospace";
+		}
+		else
+		{
+			return "'" + family.replace("'", "") + "'";
+		}
+	}
+	
+	/*
+	 * Returns true if drawing pShape, in user space, could change anything
+	 * within the current clip.
+	 */
+	private boolean isVisible(Shape pShape)
+	{
+		if( aClip == null )
+		{
+			return true;
+		}
+		Rectangle2D bounds = aTransform.createTransformedShape(pShape).getBounds2D();
+		double margin = aStroke instanceof BasicStroke ? ((BasicStroke)aStroke).getLineWidth() : 1;
+		bounds.setRect(bounds.getX() - margin, bounds.getY() - margin, bounds.getWidth() + 2 * margin, bounds.getHeight() + 2 * margin);
+		return aClip.intersects(bounds);
+	}
+	
+	@Override
+	public void draw(Shape pShape)
+	{
+		if( !isVisible(pShape) )
+		{
+			return;
+		}
+		if( aStroke instanceof BasicStroke )
+		{
+			writeShape(pShape, false);
+		}
+		else
+		{
+			writeShape(aStroke.createStrokedShape(pShape), true);
+		}
+	}
+
+	@Override
+	public void fill(Shape pShape)
+	{
+		if( isVisible(pShape) )
+		{
+			writeShape(pShape, true);
+		}
+	}
+
+	@Override
+	public void drawString(String pString, float pX, float pY)
+	{
+		if( pString.isEmpty() || !isVisible(new Rectangle2D.Float(pX, pY - aFont.getSize2D(), 
+				getFontMetrics().stringWidth(pString), aFont.getSize2D() * 2)) )
+		{
+			return;
+		}
+		aOut.print("<text");
+		if( isTranslation() )
+		{
+			writeAttribute("x", pX + aTransform.getTranslateX());
+			writeAttribute("y", pY + aTransform.getTranslateY());
+		}
+		else
+		{
+			writeAttribute("x", pX);
+			writeAttribute("y", pY);
+			writeTransform(aTransform);
+		}
+		writeAttribute("font-family", getFamily(aFont));
+		writeAttribute("font-size", aFont.getSize2D());
+		if( aFont.isBold() )
+		{
+			aOut.print(" font-weight=\"bold\"");
+		}
+		if( aFont.isItalic() )
+		{
+			aOut.print(" font-style=\"italic\"");
+		}
+		writeColor("fill");
+		aOut.print('>');
+		writeText(pString);
+		aOut.print("</text>\n");
+	}
+	
+	@Override
+	public void drawString(String pString, int pX, int pY)
+	{
+		drawString(pString, (float) pX, (float) pY);
+	}
+
+	@Override
+	public void drawString(AttributedCharacterIterator pIterator, float pX, float pY)
+	{
+		StringBuilder text = new StringBuilder();
+		for( char character = pIterator.first(); character != AttributedCharacterIterator.DONE; character = pIterator.next() )
+		{
+			text.append(character);
+		}
+		drawString(text.toString(), pX, pY);
+	}
+	
+	@Override
+	public void drawString(AttributedCharacterIterator pIterator, int pX, int pY)
+	{
+		drawString(pIterator, (float) pX, (float) pY);
+	}
+
+	@Override
+	public void drawGlyphVector(GlyphVector pGlyphs, float pX, float pY)
+	{
+		fill(pGlyphs.getOutline(pX, pY));
+	}
+	
+	/*
+	 * Writes pImage, transformed by pTransform in user space, 
+	 * as an embedded PNG image.
+	 */
+	private void writeImage(RenderedImage pImage, AffineTransform pTransform)
+	{
+		AffineTransform transform = new AffineTransform(aTransform);
+		transform.concatenate(pTransform);
+		if( !isVisible(pTransform.createTransformedShape(new Rectangle(pImage.getWidth(), pImage.getHeight()))) )
+		{
+			return;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try
+		{
+			ImageIO.write(pImage, "png", bytes);
+		}
+		catch( IOException exception )
+		{
+			return;
+		}
+		aOut.print("<image");
+		writeAttribute("width", pImage.getWidth());
+		writeAttribute("height", pImage.getHeight());
+		writeTransform(transform);
+		aOut.print(" xlink:href=\"data:image/png;base64,");
+		aOut.print(Base64.getEncoder().encodeToString(bytes.toByteArray()));
+		aOut.print("\"/>\n");
+	}
+	
+	/*
+	 * Returns pImage as a buffered image, or null if it is not loaded yet.
+	 */
+	private static BufferedImage toBufferedImage(Image pImage, ImageObserver pObserver)
+	{
+		if( pImage instanceof BufferedImage )
+		{
+			return (BufferedImage) pImage;
+		}
+		int width = pImage.getWidth(pObserver);
+		int height = pImage.getHeight(pObserver);
+		if( width <= 0 || height <= 0 )
+		{
+			return null;
+		}
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D graphics = image.createGraphics();
+		boolean complete = graphics.drawImage(pImage, 0, 0, pObserver);
+		graphics.dispose();
+		return complete ? image : null;
+	}
+
+	@Override
+	public boolean drawImage(Image pImage, AffineTransform pTransform, ImageObserver pObserver)
+	{
+		BufferedImage image = toBufferedImage(pImage, pObserver);
+		if( image == null )
+		{
+			return false;
+		}
+		writeImage(image, pTransform == null ? new AffineTransform() : pTransform);
+		return true;
+	}
+
+	@Override
+	public void drawImage(BufferedImage pImage, BufferedImageOp pOperation, int pX, int pY)
+	{
+		BufferedImage image = pOperation == null ? pImage : pOperation.filter(pImage, null);
+		writeImage(image, AffineTransform.getTranslateInstance(pX, pY));
+	}
+
+	@Override
+	public void drawRenderedImage(RenderedImage pImage, AffineTransform pTransform)
+	{
+		writeImage(pImage, pTransform);
+	}
+
+	@Override
+	public void drawRenderableImage(RenderableImage pImage, AffineTransform pTransform)
+	{
+		drawRenderedImage(pImage.createDefaultRendering(), pTransform);
+	}
+	
+	@Override
+	public boolean drawImage(Image pImage, int pX, int pY, ImageObserver pObserver)
+	{
+		return drawImage(pImage, AffineTransform.getTranslateInstance(pX, pY), pObserver);
+	}
+
+	@Override
+	public boolean drawImage(Image pImage, int pX, int pY, int pWidth, int pHeight, ImageObserver pObserver)
+	{
+		BufferedImage image = toBufferedImage(pImage, pObserver);
+		if( image == null )
+		{
+			return false;
+		}
+		AffineTransform transform = AffineTransform.getTranslateInstance(pX, pY);
+		transform.scale(pWidth / (double) image.getWidth(), pHeight / (double) image.getHeight());
+		writeImage(image, transform);
+		return true;
+	}
+
+	@Override
+	public boolean drawImage(Image pImage, int pX, int pY, Color pBackground, ImageObserver pObserver)
+	{
+		BufferedImage image = toBufferedImage(pImage, pObserver);
+		if( image == null )
+		{
+			return false;
+		}
+		fillBackground(pBackground, pX, pY, image.getWidth(), image.getHeight());
+		writeImage(image, AffineTransform.getTranslateInstance(pX, pY));
+		return true;
+	}
+
+	@Override
+	public boolean drawImage(Image pImage, int pX, int pY, int pWidth, int pHeight, Color pBackground, ImageObserver pObserver)
+	{
+		fillBackground(pBackground, pX, pY, pWidth, pHeight);
+		return drawImage(pImage, pX, pY, pWidth, pHeight, pObserver);
+	}
+
+	@Override
+	public boolean drawImage(Image pImage, int pDX1, int pDY1, int pDX2, int pDY2, int pSX1, int pSY1, int pSX2, int pSY2,
+			ImageObserver pObserver)
+	{
+		BufferedImage image = toBufferedImage(pImage, pObserver);
+		if( image == null )
+		{
+			return false;
+		}
+		int x = Math.max(0, Math.min(pSX1, pSX2));
+		int y = Math.max(0, Math.min(pSY1, pSY2));
+		int width = Math.min(image.getWidth(), Math.max(pSX1, pSX2)) - x;
+		int height = Math.min(image.getHeight(), Math.max(pSY1, pSY2)) - y;
+		if( width <= 0 || height <= 0 )
+		{
+			return true;
+		}
+		AffineTransform transform = AffineTransform.getTranslateInstance(pDX1, pDY1);
+		transform.scale((pDX2 - pDX1) / (double) (pSX2 - pSX1), (pDY2 - pDY1) / (double) (pSY2 - pSY1));
+		transform.translate(Math.min(pSX1, pSX2) == pSX1 ? x - pSX1 : pSX1 - x - width, 
+				Math.min(pSY1, pSY2) == pSY1 ? y - pSY1 : pSY1 - y - height);
+		writeImage(image.getSubimage(x, y, width, height), transform);
+		return true;
+	}
+
+	@Override
+	public boolean drawImage(Image pImage, int pDX1, int pDY1, int pDX2, int pDY2, int pSX1, int pSY1, int pSX2, int pSY2,
+			Color pBackground, ImageObserver pObserver)
+	{
+		fillBackground(pBackground, Math.min(pDX1, pDX2), Math.min(pDY1, pDY2), Math.abs(pDX2 - pDX1), Math.abs(pDY2 - pDY1));
+		return drawImage(pImage, pDX1, pDY1, pDX2, pDY2, pSX1, pSY1, pSX2, pSY2, pObserver);
+	}
+	
+	private void fillBackground(Color pBackground, int pX, int pY, int pWidth, int pHeight)
+	{
+		if( pBackground != null )
+		{
+			Paint paint = aPaint;
+			aPaint = pBackground;
+			fillRect(pX, pY, pWidth, pHeight);
+			aPaint = paint;
+		}
+	}
+
+	@Override
+	public boolean hit(Rectangle pRectangle, Shape pShape, boolean pOnStroke)
+	{
+		Shape shape = pOnStroke ? aStroke.createStrokedShape(pShape) : pShape;
+		return aTransform.createTransformedShape(shape).intersects(pRectangle);
+	}
+
+	@Override
+	public GraphicsConfiguration getDeviceConfiguration()
+	{
+		return aMeasure.getDeviceConfiguration();
+	}
+
+	@Override
+	public void setComposite(Composite pComposite)
+	{
+		aComposite = pComposite;
+	}
+
+	@Override
+	public void setPaint(Paint pPaint)
+	{
+		if( pPaint != null )
+		{
+			aPaint = pPaint;
+			if( pPaint instanceof Color )
+			{
+				aColor = (Color) pPaint;
+			}
+		}
+	}
+
+	@Override
+	public void setStroke(Stroke pStroke)
+	{
+		aStroke = pStroke;
+	}
+
+	@Override
+	public void setRenderingHint(RenderingHints.Key pKey, Object pValue)
+	{
+		aHints.put(pKey, pValue);
+	}
+
+	@Override
+	public Object getRenderingHint(RenderingHints.Key pKey)
+	{
+		return aHints.get(pKey);
+	}
+
+	@Override
+	public void setRenderingHints(Map<?, ?> pHints)
+	{
+		aHints.clear();
+		aHints.putAll(pHints);
+	}
+
+	@Override
+	public void addRenderingHints(Map<?, ?> pHints)
+	{
+		aHints.putAll(pHints);
+	}
+
+	@Override
+	public RenderingHints getRenderingHints()
+	{
+		return (RenderingHints) aHints.clone();
+	}
+
+	@Override
+	public void translate(int pX, int pY)
+	{
+		aTransform.translate(pX, pY);
+	}
+
+	@Override
+	public void translate(double pX, double pY)
+	{
+		aTransform.translate(pX, pY);
+	}
+
+	@Override
+	public void rotate(double pTheta)
+	{
+		aTransform.rotate(pTheta);
+	}
+
+	@Override
+	public void rotate(double pTheta, double pX, double pY)
+	{
+		aTransform.rotate(pTheta, pX, pY);
+	}
+
+	@Override
+	public void scale(double pX, double pY)
+	{
+		aTransform.scale(pX, pY);
+	}
+
+	@Override
+	public void shear(double pX, double pY)
+	{
+		aTransform.shear(pX, pY);
+	}
+
+	@Override
+	public void transform(AffineTransform pTransform)
+	{
+		aTransform.concatenate(pTransform);
+	}
+
+	@Override
+	public void setTransform(AffineTransform pTransform)
+	{
+		aTransform = new AffineTransform(pTransform);
+	}
+
+	@Override
+	public AffineTransform getTransform()
+	{
+		return new AffineTransform(aTransform);
+	}
+
+	@Override
+	public Paint getPaint()
+	{
+		return aPaint;
+	}
+
+	@Override
+	public Composite getComposite()
+	{
+		return aComposite;
+	}
+
+	@Override
+	public void setBackground(Color pColor)
+	{
+		aBackground = pColor;
+	}
+
+	@Override
+	public Color getBackground()
+	{
+		return aBackground;
+	}
+
+	@Override
+	public Stroke getStroke()
+	{
+		return aStroke;
+	}
+
+	@Override
+	public void clip(Shape pShape)
+	{
+		if( pShape == null )
+		{
+			aClip = null;
+			return;
+		}
+		Shape shape = aTransform.createTransformedShape(pShape);
+		if( aClip == null )
+		{
+			aClip = shape;
+		}
+		else if( aClip instanceof Rectangle2D && shape instanceof Rectangle2D )
+		{
+			aClip = ((Rectangle2D) aClip).createIntersection((Rectangle2D) shape);
+		}
+		else
+		{
+			Area area = new Area(aClip);
+			area.intersect(new Area(shape));
+			aClip = area;
+		}
+	}
+
+	@Override
+	public FontRenderContext getFontRenderContext()
+	{
+		return aMeasure.getFontRenderContext();
+	}
+
+	@Override
+	public Graphics create()
+	{
+		return new SVGGraphics2D(this);
+	}
+
+	@Override
+	public Color getColor()
+	{
+		return aColor;
+	}
+
+	@Override
+	public void setColor(Color pColor)
+	{
+		if( pColor != null )
+		{
+			aColor = pColor;
+			aPaint = pColor;
+		}
+	}
+
+	@Override
+	public void setPaintMode()
+	{
+		aComposite = AlphaComposite.SrcOver;
+	}
+
+	@Override
+	public void setXORMode(Color pColor)
+	{
+		// Not supported: drawing continues in paint mode.
+	}
+
+	@Override
+	public Font getFont()
+	{
+		return aFont;
+	}
+
+	@Override
+	public void setFont(Font pFont)
+	{
+		if( pFont != null )
+		{
+			aFont = pFont;
+		}
+	}
+
+	@Override
+	public FontMetrics getFontMetrics(Font pFont)
+	{
+		return aMeasure.getFontMetrics(pFont);
+	}
+
+	@Override
+	public Rectangle getClipBounds()
+	{
+		Shape clip = getClip();
+		return clip == null ? null : clip.getBounds();
+	}
+
+	@Override
+	public void clipRect(int pX, int pY, int pWidth, int pHeight)
+	{
+		clip(new Rectangle(pX, pY, pWidth, pHeight));
+	}
+
+	@Override
+	public void setClip(int pX, int pY, int pWidth, int pHeight)
+	{
+		setClip(new Rectangle(pX, pY, pWidth, pHeight));
+	}
+
+	@Override
+	public Shape getClip()
+	{
+		if( aClip == null )
+		{
+			return null;
+		}
+		try
+		{
+			return aTransform.createInverse().createTransformedShape(aClip);
+		}
+		catch( NoninvertibleTransformException exception )
+		{
+			return null;
+		}
+	}
+
+	@Override
+	public void setClip(Shape pClip)
+	{
+		aClip = null;
+		clip(pClip);
+	}
+
+	@Override
+	public void copyArea(int pX, int pY, int pWidth, int pHeight, int pDX, int pDY)
+	{
+		// Not supported: what was written cannot be read back.
+	}
+
+	@Override
+	public void drawLine(int pX1, int pY1, int pX2, int pY2)
+	{
+		draw(new Line2D.Float(pX1, pY1, pX2, pY2));
+	}
+
+	@Override
+	public void fillRect(int pX, int pY, int pWidth, int pHeight)
+	{
+		fill(new Rectangle(pX, pY, pWidth, pHeight));
+	}
+	
+	@Override
+	public void drawRect(int pX, int pY, int pWidth, int pHeight)
+	{
+		draw(new Rectangle(pX, pY, pWidth, pHeight));
+	}
+
+	@Override
+	public void clearRect(int pX, int pY, int pWidth, int pHeight)
+	{
+		fillBackground(aBackground, pX, pY, pWidth, pHeight);
+	}
+
+	@Override
+	public void drawRoundRect(int pX, int pY, int pWidth, int pHeight, int pArcWidth, int pArcHeight)
+	{
+		draw(new RoundRectangle2D.Float(pX, pY, pWidth, pHeight, pArcWidth, pArcHeight));
+	}
+
+	@Override
+	public void fillRoundRect(int pX, int pY, int pWidth, int pHeight, int pArcWidth, int pArcHeight)
+	{
+		fill(new RoundRectangle2D.Float(pX, pY, pWidth, pHeight, pArcWidth, pArcHeight));
+	}
+
+	@Override
+	public void drawOval(int pX, int pY, int pWidth, int pHeight)
+	{
+		draw(new Ellipse2D.Float(pX, pY, pWidth, pHeight));
+	}
+
+	@Override
+	public void fillOval(int pX, int pY, int pWidth, int pHeight)
+	{
+		fill(new Ellipse2D.Float(pX, pY, pWidth, pHeight));
+	}
+
+	@Override
+	public void drawArc(int pX, int pY, int pWidth, int pHeight, int pStartAngle, int pArcAngle)
+	{
+		draw(new Arc2D.Float(pX, pY, pWidth, pHeight, pStartAngle, pArcAngle, Arc2D.OPEN));
+	}
+
+	@Override
+	public void fillArc(int pX, int pY, int pWidth, int pHeight, int pStartAngle, int pArcAngle)
+	{
+		fill(new Arc2D.Float(pX, pY, pWidth, pHeight, pStartAngle, pArcAngle, Arc2D.PIE));
+	}
+
+	@Override
+	public void drawPolyline(int[] pXPoints, int[] pYPoints, int pNumberOfPoints)
+	{
+		if( pNumberOfPoints < 2 )
+		{
+			return;
+		}
+		Path2D path = new Path2D.Float();
+		path.moveTo(pXPoints[0], pYPoints[0]);
+		for( int i = 1; i < pNumberOfPoints; i++ )
+		{
+			path.lineTo(pXPoints[i], pYPoints[i]);
+		}
+		draw(path);
+	}
+
+	@Override
+	public void drawPolygon(int[] pXPoints, int[] pYPoints, int pNumberOfPoints)
+	{
+		draw(new Polygon(pXPoints, pYPoints, pNumberOfPoints));
+	}
+
+	@Override
+	public void fillPolygon(int[] pXPoints, int[] pYPoints, int pNumberOfPoints)
+	{
+		fill(new Polygon(pXPoints, pYPoints, pNumberOfPoints));
+	}
+
+	@Override
+	public void dispose()
+	{
+		aOut.flush();
+	}
+}
@@ -30,6 +30,7 @@ import ca.mcgill.cs.stg.jetuml.framework.SegmentationStyle.Side;
 import ca.mcgill.cs.stg.jetuml.graph.AggregationEdge;
 import ca.mcgill.cs.stg.jetuml.graph.ClassRelationshipEdge;
 import ca.mcgill.cs.stg.jetuml.graph.Edge;
+import ca.mcgill.cs.stg.jetuml.graph.GeometryStore;
 import ca.mcgill.cs.stg.jetuml.graph.GeneralizationEdge;
 import ca.mcgill.cs.stg.jetuml.graph.Graph;
 import ca.mcgill.cs.stg.jetuml.graph.Node;
@@ -57,7 +58,7 @@ public final class SegmentationStyleFactory
 	 */
 	public static SegmentationStyle createStraightStrategy()
 	{
-		return new Straight();
+		return new Timed(new Straight());
 	}
 	
 	/**
@@ -69,7 +70,7 @@ public final class SegmentationStyleFactory
 	 */
 	public static SegmentationStyle createHVHStrategy()
 	{
-		return new HVH();
+		return new Timed(new HVH());
 	}
 	
 	/**
@@ -81,7 +82,55 @@ public final class SegmentationStyleFactory
 	 */
 	public static SegmentationStyle createVHVStrategy()
 	{
-		return new VHV();
+		return new Timed(new VHV());
+	}
+	
+	/**
+	 * Creates a strategy that draws orthogonal lines that go around 
+	 * the other nodes of the graph, with as few bends as possible. The 
+	 * line leaves each node from the side that faces the other node.
+	 * @return A strategy for creating orthogonal lines that avoid nodes.
+	 */
+	public static SegmentationStyle createOrthogonalStrategy()
+	{
+		return new Timed(new Orthogonal());
+	}
+	
+	/*
+	 * Records the time taken by a strategy to compute a path in
+	 * Instrumentation.ROUTING. The strategies created by this factory
+	 * are wrapped, while those they delegate to are not, so that
+	 * each path is only measured once.
+	 */
+	private static final class Timed implements SegmentationStyle
+	{
+		private final SegmentationStyle aStyle;
+		
+		Timed(SegmentationStyle pStyle)
+		{
+			aStyle = pStyle;
+		}
+		
+		@Override
+		public boolean isPossible(Edge pEdge)
+		{
+			return aStyle.isPossible(pEdge);
+		}
+
+		@Override
+		public Point2D[] getPath(Edge pEdge, Graph pGraph)
+		{
+			long start = System.nanoTime();
+			Point2D[] path = aStyle.getPath(pEdge, pGraph);
+			Instrumentation.ROUTING.recordSince(start);
+			return path;
+		}
+
+		@Override
+		public Side getAttachedSide(Edge pEdge, Node pNode)
+		{
+			return aStyle.getAttachedSide(pEdge, pNode);
+		}
 	}
 	
 	/*
@@ -189,23 +238,24 @@ public final class SegmentationStyleFactory
 	{
 		assert pNode != null && pSide != null && pPosition != null && pGraph != null;
 		Point2D start = pNode.getConnectionPoint(pSide.getDirection());
+		GeometryStore geometry = pGraph.getGeometry();
 		if( pSide.isEastWest() )
 		{
-			double yPosition = start.getY()+ pPosition.computeNudge(pNode.getBounds().getHeight()); // Default
+			double yPosition = start.getY()+ pPosition.computeNudge(geometry.getHeight(pNode)); // Default
 			if( hasSelfEdge(pNode, pGraph) && pSide == Side.EAST )
 			{
-				double increment = (pNode.getBounds().getHeight() - MARGIN) / (pPosition.aTotal+1);
-				yPosition = pNode.getBounds().getMinY() + MARGIN + pPosition.getIndex() * increment;
+				double increment = (geometry.getHeight(pNode) - MARGIN) / (pPosition.aTotal+1);
+				yPosition = geometry.getY(pNode) + MARGIN + pPosition.getIndex() * increment;
 			}
 			return new Point2D.Double( start.getX(), yPosition);	
 		}
 		else
 		{
-			double xPosition = start.getX()+ pPosition.computeNudge(pNode.getBounds().getWidth());
+			double xPosition = start.getX()+ pPosition.computeNudge(geometry.getWidth(pNode));
 			if( hasSelfEdge(pNode, pGraph) && pSide == Side.NORTH )
 			{
-				double increment = (pNode.getBounds().getWidth() - MARGIN) / (pPosition.aTotal+1);
-				xPosition = pNode.getBounds().getMinX() + pPosition.getIndex() * increment;
+				double increment = (geometry.getWidth(pNode) - MARGIN) / (pPosition.aTotal+1);
+				xPosition = geometry.getX(pNode) + pPosition.getIndex() * increment;
 			}
 			return new Point2D.Double( xPosition, start.getY());
 		}
@@ -244,7 +294,7 @@ public final class SegmentationStyleFactory
 		}
 		final Node target = tempTarget;
 		List<Edge> edgesOnSelectedSide = getAllEdgesForSide(pGraph, target, pSide);
-		sortPositions(edgesOnSelectedSide, target, pSide);
+		sortPositions(edgesOnSelectedSide, target, pSide, pGraph.getGeometry());
 		
 		// Group identical edge ends
 		List<Edge> finalPositions = new ArrayList<>();
@@ -326,7 +376,7 @@ public final class SegmentationStyleFactory
 	}
 	
 	// Sort in terms of the position of the other node
-	private static void sortPositions(List<Edge> pEdges, Node pTarget, Side pSide)
+	private static void sortPositions(List<Edge> pEdges, Node pTarget, Side pSide, GeometryStore pGeometry)
 	{
 		Collections.sort(pEdges, (pEdge1, pEdge2) ->
 		{
@@ -342,11 +392,11 @@ public final class SegmentationStyleFactory
 						
 			if( pSide.isEastWest() )
 			{		
-				return (int)(otherNode1.getBounds().getCenterY() - otherNode2.getBounds().getCenterY());
+				return (int)(pGeometry.getCenterY(otherNode1) - pGeometry.getCenterY(otherNode2));
 			}
 			else
 			{
-				return (int)(otherNode1.getBounds().getCenterX() - otherNode2.getBounds().getCenterX());
+				return (int)(pGeometry.getCenterX(otherNode1) - pGeometry.getCenterX(otherNode2));
 			}
 		});
 	}
@@ -636,6 +686,84 @@ public final class SegmentationStyleFactory
 		}
 	}
 	
+	private static class Orthogonal implements SegmentationStyle
+	{
+		/*
+		 * The side facing the other node, on the axis 
+		 * along which the nodes are the farthest apart.
+		 */
+		@Override
+		public Side getAttachedSide(Edge pEdge, Node pNode)
+		{
+			if( pEdge.getStart() == pEdge.getEnd() )
+			{
+				if( pNode == pEdge.getStart() )
+				{
+					return Side.NORTH;
+				}
+				else
+				{
+					return Side.EAST;
+				}
+			}
+			GeometryStore geometry = new GeometryStore();
+			if( pEdge.getGraph() != null )
+			{
+				geometry = pEdge.getGraph().getGeometry();
+			}
+			Node other = otherNode(pEdge, pNode);
+			double horizontalGap = Math.max(geometry.getX(other) - geometry.getMaxX(pNode), geometry.getX(pNode) - geometry.getMaxX(other));
+			double verticalGap = Math.max(geometry.getY(other) - geometry.getMaxY(pNode), geometry.getY(pNode) - geometry.getMaxY(other));
+			if( horizontalGap >= verticalGap )
+			{
+				if( geometry.getCenterX(other) >= geometry.getCenterX(pNode) )
+				{
+					return Side.EAST;
+				}
+				else
+				{
+					return Side.WEST;
+				}
+			}
+			else if( geometry.getCenterY(other) >= geometry.getCenterY(pNode) )
+			{
+				return Side.SOUTH;
+			}
+			else
+			{
+				return Side.NORTH;
+			}
+		}
+		
+		@Override
+		public boolean isPossible(Edge pEdge)
+		{
+			return true;
+		}
+		
+		@Override
+		public Point2D[] getPath(Edge pEdge, Graph pGraph)
+		{
+			assert pEdge != null;
+			
+			if( pEdge.getStart() == pEdge.getEnd() )
+			{
+				return createSelfPath(pEdge.getStart());
+			}
+			
+			Side startSide = getAttachedSide(pEdge, pEdge.getStart());
+			Side endSide = getAttachedSide(pEdge, pEdge.getEnd());
+			Point2D start = pEdge.getStart().getConnectionPoint(startSide.getDirection());
+			Point2D end = pEdge.getEnd().getConnectionPoint(endSide.getDirection());
+			if( pGraph != null )
+			{
+				start = computePointPosition(pEdge.getStart(), startSide, computePosition(pEdge, startSide, pGraph, true), pGraph);
+				end = computePointPosition(pEdge.getEnd(), endSide, computePosition(pEdge, endSide, pGraph, false), pGraph);
+			}
+			return OrthogonalRouter.route(pEdge, start, startSide, end, endSide, pGraph);
+		}
+	}
+	
 	/** 
 	 * Indicates the total number of connection points
 	 * on the side of a rectangular node, and the index
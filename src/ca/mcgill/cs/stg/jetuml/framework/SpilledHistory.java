@@ -0,0 +1,508 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import java.beans.DefaultPersistenceDelegate;
+import java.beans.Encoder;
+import java.beans.ExceptionListener;
+import java.beans.PersistenceDelegate;
+import java.beans.Expression;
+import java.beans.Statement;
+import java.beans.XMLDecoder;
+import java.beans.XMLEncoder;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.mcgill.cs.stg.jetuml.commands.Command;
+import ca.mcgill.cs.stg.jetuml.commands.CompoundCommand;
+import ca.mcgill.cs.stg.jetuml.commands.GraphElementRelatedCommand;
+import ca.mcgill.cs.stg.jetuml.commands.MoveCommand;
+import ca.mcgill.cs.stg.jetuml.framework.PropertyChangeTracker.PropertyChangeCommand;
+import ca.mcgill.cs.stg.jetuml.graph.ChildNode;
+import ca.mcgill.cs.stg.jetuml.graph.Edge;
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
+import ca.mcgill.cs.stg.jetuml.graph.GraphElement;
+import ca.mcgill.cs.stg.jetuml.graph.ParentNode;
+
+/**
+ * The oldest part of the history of an UndoManager, stored in
+ * a ring of temporary files instead of in memory. Each file holds
+ * a segment, i.e., a run of consecutive commands written with the
+ * XML encoding of the PersistenceService.
+ *
+ * Commands refer to graphs and graph elements by identity. An element
+ * that is still in use when a segment is written, because it is in a
+ * graph or reachable from a command kept in memory or from another
+ * segment, is not written out: the segment refers to it by number,
+ * and this object, as the owner of the encoder and decoder, resolves
+ * the number back to the element. All other elements, such as deleted
+ * subgraphs, are written out in full and released from memory. Removed
+ * edges are written together with their end nodes.
+ *
+ * This class is public only so that XMLDecoder can call getElement.
+ */
+public final class SpilledHistory
+{
+	/*
+	 * Edges have no setters for their ends, which a graph restores
+	 * when it is decoded. An edge written outside of a graph, for
+	 * example a removed edge, is connected again once decoded.
+	 */
+	private static final PersistenceDelegate EDGE_DELEGATE = new DefaultPersistenceDelegate()
+	{
+		@Override
+		protected void initialize(Class<?> pType, Object pOldInstance, Object pNewInstance, Encoder pOut)
+		{
+			super.initialize(pType, pOldInstance, pNewInstance, pOut);
+			Edge edge = (Edge) pOldInstance;
+			if( pType == edge.getClass() && edge.getStart() != null )
+			{
+				pOut.writeStatement(new Statement(pOldInstance, "connect", 
+						new Object[] { edge.getStart(), edge.getEnd(), edge.getGraph() }));
+			}
+		}
+	};
+
+	private final int aMaxSegments;
+	private final ArrayDeque<Segment> aSegments = new ArrayDeque<>(); // Oldest segment first
+	private final Map<Integer, Object> aElements = new HashMap<>();
+	private final Map<Object, Integer> aIdentifiers = new IdentityHashMap<>();
+	private final Map<Integer, Integer> aReferenceCounts = new HashMap<>();
+	private int aNextIdentifier = 0;
+
+	/**
+	 * Creates an empty history.
+	 *
+	 * @param pMaxSegments The maximum number of files in the ring. When
+	 * a new segment would exceed this number, the oldest segment is
+	 * discarded. Must be greater than 0.
+	 */
+	SpilledHistory(int pMaxSegments)
+	{
+		assert pMaxSegments > 0;
+		aMaxSegments = pMaxSegments;
+	}
+
+	/**
+	 * Resolves a reference written in a segment. Only intended
+	 * to be called by XMLDecoder.
+	 *
+	 * @param pIdentifier The number of the element.
+	 * @return The element or graph with this number.
+	 */
+	public Object getElement(int pIdentifier)
+	{
+		return aElements.get(pIdentifier);
+	}
+
+	/**
+	 * @return The number of top-level commands stored in all segments.
+	 */
+	int getCommandCount()
+	{
+		int count = 0;
+		for( Segment segment : aSegments )
+		{
+			count += segment.aCommandCount;
+		}
+		return count;
+	}
+
+	/**
+	 * @return The number of bytes used on disk by all segments.
+	 */
+	long getSize()
+	{
+		long size = 0;
+		for( Segment segment : aSegments )
+		{
+			size += segment.aFile.length();
+		}
+		return size;
+	}
+
+	/**
+	 * @return The elements that the segments refer to by number,
+	 * indexed by their number.
+	 */
+	Map<Integer, Object> getElements()
+	{
+		return new HashMap<>(aElements);
+	}
+
+	/**
+	 * Replaces the elements that the segments refer to by number,
+	 * for example by copies read back from a file.
+	 *
+	 * @param pElements The new elements, indexed by their number.
+	 */
+	void setElements(Map<Integer, Object> pElements)
+	{
+		aElements.clear();
+		aIdentifiers.clear();
+		for( Map.Entry<Integer, Object> entry : pElements.entrySet() )
+		{
+			aElements.put(entry.getKey(), entry.getValue());
+			aIdentifiers.put(entry.getValue(), entry.getKey());
+		}
+	}
+
+	/**
+	 * Writes pCommands as the newest segment of this history. If
+	 * the segment cannot be written, the history is left unchanged.
+	 *
+	 * @param pCommands The commands to write, oldest first. These must all be
+	 * more recent than the commands already in this history.
+	 * @param pRetained All the commands that remain in memory.
+	 * @return True if the commands were written and can be released.
+	 */
+	boolean spill(List<Command> pCommands, Collection<Command> pRetained)
+	{
+		Set<Object> spilled = newIdentitySet();
+		for( Command command : pCommands )
+		{
+			collectElements(command, spilled);
+		}
+		Set<Object> shared = newIdentitySet();
+		for( Command command : pRetained )
+		{
+			collectElements(command, shared);
+		}
+		shared.addAll(aIdentifiers.keySet());
+		shared.remove(null);
+		shared = closure(shared);
+		List<Graph> graphs = new ArrayList<>();
+		for( Object object : spilled )
+		{
+			if( object instanceof Graph )
+			{
+				graphs.add((Graph)object);
+			}
+		}
+
+		Segment segment = new Segment();
+		try
+		{
+			segment.aFile = File.createTempFile("jetuml-undo", ".xml");
+			segment.aFile.deleteOnExit();
+			try( OutputStream out = new BufferedOutputStream(new FileOutputStream(segment.aFile)) )
+			{
+				SegmentEncoder encoder = new SegmentEncoder(out, shared, graphs, segment.aReferences);
+				encoder.writeObject(new ArrayList<>(pCommands));
+				encoder.close();
+				if( encoder.aFailed )
+				{
+					throw new IOException("Command could not be encoded");
+				}
+			}
+		}
+		catch(IOException exception)
+		{
+			if( segment.aFile != null )
+			{
+				segment.aFile.delete();
+			}
+			for( int identifier : segment.aReferences )
+			{
+				if( !aReferenceCounts.containsKey(identifier) )
+				{
+					aIdentifiers.remove(aElements.remove(identifier));
+				}
+			}
+			return false;
+		}
+		for( int identifier : segment.aReferences )
+		{
+			Integer count = aReferenceCounts.get(identifier);
+			aReferenceCounts.put(identifier, count == null ? 1 : count + 1);
+		}
+		segment.aCommandCount = pCommands.size();
+		aSegments.addLast(segment);
+		if( aSegments.size() > aMaxSegments )
+		{
+			release(aSegments.removeFirst());
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the newest segment from this history and returns its commands.
+	 *
+	 * @return The commands of the newest segment, oldest first. An empty list
+	 * if the history is empty or if the segment could not be read, in which
+	 * case the whole history is discarded.
+	 */
+	@SuppressWarnings("unchecked")
+	List<Command> restore()
+	{
+		if( aSegments.isEmpty() )
+		{
+			return Collections.emptyList();
+		}
+		Segment segment = aSegments.removeLast();
+		final boolean[] failed = new boolean[1];
+		List<Command> commands = null;
+		try( XMLDecoder decoder = new XMLDecoder(new BufferedInputStream(new FileInputStream(segment.aFile)), this,
+				new ExceptionListener()
+				{
+					@Override
+					public void exceptionThrown(Exception pException)
+					{
+						failed[0] = true;
+					}
+				}))
+		{
+			commands = (List<Command>) decoder.readObject();
+		}
+		catch(IOException | RuntimeException exception)
+		{
+			failed[0] = true;
+		}
+		release(segment);
+		if( failed[0] || commands == null )
+		{
+			clear();
+			return Collections.emptyList();
+		}
+		return commands;
+	}
+
+	/**
+	 * Discards all the segments of this history.
+	 */
+	void clear()
+	{
+		while( !aSegments.isEmpty() )
+		{
+			release(aSegments.removeFirst());
+		}
+		aElements.clear();
+		aIdentifiers.clear();
+		aReferenceCounts.clear();
+	}
+
+	/*
+	 * Deletes the file of pSegment and forgets the elements that are no
+	 * longer referred to by any segment.
+	 */
+	private void release(Segment pSegment)
+	{
+		pSegment.aFile.delete();
+		for( int identifier : pSegment.aReferences )
+		{
+			int count = aReferenceCounts.get(identifier) - 1;
+			if( count == 0 )
+			{
+				aReferenceCounts.remove(identifier);
+				aIdentifiers.remove(aElements.remove(identifier));
+			}
+			else
+			{
+				aReferenceCounts.put(identifier, count);
+			}
+		}
+	}
+
+	/*
+	 * Returns the number under which pObject can be referred to
+	 * in a segment, assigning a new number if needed.
+	 */
+	private int identify(Object pObject)
+	{
+		Integer identifier = aIdentifiers.get(pObject);
+		if( identifier == null )
+		{
+			identifier = aNextIdentifier++;
+			aIdentifiers.put(pObject, identifier);
+			aElements.put(identifier, pObject);
+		}
+		return identifier;
+	}
+
+	/*
+	 * Adds the graphs and graph elements pCommand refers to to pElements.
+	 */
+	private static void collectElements(Command pCommand, Set<Object> pElements)
+	{
+		if( pCommand instanceof CompoundCommand )
+		{
+			for( Command command : ((CompoundCommand)pCommand).getCommands() )
+			{
+				collectElements(command, pElements);
+			}
+		}
+		else if( pCommand instanceof GraphElementRelatedCommand )
+		{
+			pElements.add(((GraphElementRelatedCommand)pCommand).getGraph());
+			pElements.add(((GraphElementRelatedCommand)pCommand).getElement());
+		}
+		else if( pCommand instanceof MoveCommand )
+		{
+			pElements.add(((MoveCommand)pCommand).getGraph());
+			pElements.add(((MoveCommand)pCommand).getNode());
+		}
+		else if( pCommand instanceof PropertyChangeCommand )
+		{
+			pElements.add(((PropertyChangeCommand)pCommand).getGraph());
+			pElements.add(((PropertyChangeCommand)pCommand).getElement());
+		}
+	}
+
+	/*
+	 * Returns pElements together with all the elements linked to them,
+	 * through parent-child relations or edge ends. An element cannot be
+	 * written in full if any element it is linked to is shared.
+	 */
+	private static Set<Object> closure(Set<Object> pElements)
+	{
+		Set<Object> result = newIdentitySet();
+		ArrayDeque<Object> toVisit = new ArrayDeque<>(pElements);
+		while( !toVisit.isEmpty() )
+		{
+			Object element = toVisit.removeFirst();
+			if( !result.add(element) )
+			{
+				continue;
+			}
+			if( element instanceof ChildNode && ((ChildNode)element).getParent() != null )
+			{
+				toVisit.add(((ChildNode)element).getParent());
+			}
+			if( element instanceof ParentNode )
+			{
+				toVisit.addAll(((ParentNode)element).getChildren());
+			}
+			if( element instanceof Edge && ((Edge)element).getStart() != null )
+			{
+				toVisit.add(((Edge)element).getStart());
+				toVisit.add(((Edge)element).getEnd());
+			}
+		}
+		return result;
+	}
+
+	private static Set<Object> newIdentitySet()
+	{
+		return Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+	}
+
+	/*
+	 * A run of consecutive commands stored in a file.
+	 */
+	private static final class Segment
+	{
+		private File aFile;
+		private int aCommandCount;
+		private final List<Integer> aReferences = new ArrayList<>(); // Numbers of the shared elements in the file
+	}
+
+	/*
+	 * Encodes commands, replacing graphs and shared elements
+	 * by a call to getElement on the owner.
+	 */
+	private final class SegmentEncoder extends XMLEncoder
+	{
+		private final Set<Object> aShared;
+		private final List<Graph> aGraphs;
+		private final List<Integer> aReferences;
+		private boolean aFailed = false;
+
+		SegmentEncoder(OutputStream pOut, Set<Object> pShared, List<Graph> pGraphs, List<Integer> pReferences)
+		{
+			super(pOut);
+			aShared = pShared;
+			aGraphs = pGraphs;
+			aReferences = pReferences;
+			setOwner(SpilledHistory.this);
+			setExceptionListener(new ExceptionListener()
+			{
+				@Override
+				public void exceptionThrown(Exception pException)
+				{
+					aFailed = true;
+				}
+			});
+			PersistenceService.setPersistenceDelegates(this);
+			CompoundCommand.setPersistenceDelegate(this);
+			PropertyChangeTracker.setPersistenceDelegate(this);
+		}
+		
+		@Override
+		public PersistenceDelegate getPersistenceDelegate(Class<?> pType)
+		{
+			if( pType != null && Edge.class.isAssignableFrom(pType) )
+			{
+				return EDGE_DELEGATE;
+			}
+			return super.getPersistenceDelegate(pType);
+		}
+
+		@Override
+		public void writeObject(Object pObject)
+		{
+			if( isShared(pObject) )
+			{
+				if( get(pObject) == null )
+				{
+					int identifier = identify(pObject);
+					aReferences.add(identifier);
+					writeExpression(new Expression(pObject, getOwner(), "getElement", new Object[] { identifier }));
+				}
+				return;
+			}
+			super.writeObject(pObject);
+		}
+
+		private boolean isShared(Object pObject)
+		{
+			if( pObject instanceof Graph || aShared.contains(pObject) )
+			{
+				return true;
+			}
+			if( pObject instanceof GraphElement )
+			{
+				for( Graph graph : aGraphs )
+				{
+					if( graph.contains((GraphElement) pObject) )
+					{
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+	}
+}
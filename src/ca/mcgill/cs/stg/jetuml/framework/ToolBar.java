@@ -37,9 +37,13 @@ import java.awt.event.ActionListener;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
 
@@ -68,6 +72,11 @@ import ca.mcgill.cs.stg.jetuml.graph.PointNode;
  *  The tool bar also controls a pop-up menu with the same tools as 
  *  the tool bar.
  *  
+ *  Only the collapsed tool bar is built with the tool bar. The
+ *  expanded tool bar and the pop-up menu are built the first time 
+ *  they are shown. The icons of the node and edge prototypes are 
+ *  painted once into images that are shared by all the tool bars.
+ *  
  *  @author Martin P. Robillard
  */
 @SuppressWarnings("serial")
@@ -79,13 +88,18 @@ public class ToolBar extends JPanel
 	private static final int FONT_SIZE = 14;
 	private static final String EXPAND = "<<";
 	private static final String COLLAPSE = ">>";
+	private static final ResourceBundle RESOURCES = ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.framework.EditorStrings");
+	private static final Map<GraphElement, Icon> PROTOTYPE_ICONS = 
+			Collections.synchronizedMap(new IdentityHashMap<GraphElement, Icon>());
 	
 	private ArrayList<JToggleButton> aButtons = new ArrayList<>();
 	private ArrayList<JToggleButton> aButtonsEx = new ArrayList<>();
 	private JPanel aToolPanel = new JPanel(new VerticalLayout());
-	private JPanel aToolPanelEx = new JPanel(new VerticalLayout());
+	private JPanel aToolPanelEx; // Null until the tool bar is first expanded
 	private ArrayList<GraphElement> aTools = new ArrayList<>();
-	private JPopupMenu aPopupMenu = new JPopupMenu();
+	private ArrayList<Icon> aIcons = new ArrayList<>();
+	private ArrayList<String> aToolTips = new ArrayList<>();
+	private JPopupMenu aPopupMenu; // Null until the pop-up menu is first shown
 
 	/**
      * Constructs the tool bar.
@@ -94,11 +108,10 @@ public class ToolBar extends JPanel
 	public ToolBar(Graph pGraph)
 	{
 		ButtonGroup group = new ButtonGroup();
-		ButtonGroup groupEx = new ButtonGroup();
 		setLayout(new BorderLayout());
-		createSelectionTool(group, groupEx);
-		createNodesAndEdgesTools(pGraph, group, groupEx);
-		addCopyToClipboard();
+		createSelectionTool(group);
+		createNodesAndEdgesTools(pGraph, group);
+		addCopyToClipboard(aToolPanel, false);
 		createExpandButton();
 		freeCtrlTab();
 		add(aToolPanel, BorderLayout.CENTER);
@@ -126,6 +139,31 @@ public class ToolBar extends JPanel
 		};
 	}
 	
+	/*
+	 * Returns the icon of a node or edge prototype, which is shared by
+	 * all the tool bars.
+	 */
+	private static Icon getPrototypeIcon(GraphElement pPrototype)
+	{
+		synchronized(PROTOTYPE_ICONS)
+		{
+			Icon icon = PROTOTYPE_ICONS.get(pPrototype);
+			if( icon == null )
+			{
+				if( pPrototype instanceof Node )
+				{
+					icon = new CachedIcon(createNodeIcon((Node) pPrototype));
+				}
+				else
+				{
+					icon = new CachedIcon(createEdgeIcon((Edge) pPrototype));
+				}
+				PROTOTYPE_ICONS.put(pPrototype, icon);
+			}
+			return icon;
+		}
+	}
+	
 	private static Icon createNodeIcon( final Node pNode )
 	{
 		return new Icon()
@@ -202,48 +240,67 @@ public class ToolBar extends JPanel
         };
 	}
 	
-	private void createSelectionTool(ButtonGroup pGroup, ButtonGroup pGroupEx)
+	private void createSelectionTool(ButtonGroup pGroup)
 	{
-		installTool(createSelectionIcon(), 
-				ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.framework.EditorStrings").getString("grabber.tooltip"), 
-				null, true, pGroup, pGroupEx);
+		installTool(createSelectionIcon(), RESOURCES.getString("grabber.tooltip"), null, true, pGroup);
 	}
 	
 	/*
-	 * Adds a tool to the tool bars and menus.
+	 * Adds a tool to the collapsed tool bar, and records it for 
+	 * the expanded tool bar and the pop-up menu.
 	 * @param pIcon The icon for the tool
 	 * @param pToolTip the tool's tool tip
 	 * @param pTool the object representing the tool
 	 * @param pIsSelected true if the tool is initially selected.
 	 */
-	private void installTool( Icon pIcon, String pToolTip, GraphElement pTool, boolean pIsSelected, ButtonGroup pCollapsed, ButtonGroup pExpanded )
+	private void installTool( Icon pIcon, String pToolTip, GraphElement pTool, boolean pIsSelected, ButtonGroup pCollapsed )
 	{
-		final JToggleButton button = new JToggleButton(pIcon);
+		JToggleButton button = new JToggleButton(pIcon);
 		button.setToolTipText(pToolTip);
 		pCollapsed.add(button);
 		aButtons.add(button);
 		aToolPanel.add(button);
 		button.setSelected(pIsSelected);
 		aTools.add(pTool);
-		
-		final JToggleButton buttonEx = new JToggleButton(pIcon);
-		buttonEx.setToolTipText(pToolTip);
-		pExpanded.add(buttonEx);
-		aButtonsEx.add(buttonEx);
-		
-		aToolPanelEx.add(createExpandedRowElement(buttonEx, pToolTip));
-		buttonEx.setSelected(pIsSelected);
-      
-		JMenuItem item = new JMenuItem(pToolTip, pIcon);
-		item.addActionListener(new ActionListener()
+		aIcons.add(pIcon);
+		aToolTips.add(pToolTip);
+	}
+	
+	/*
+	 * Builds the expanded tool bar and the pop-up menu from the tools
+	 * of the collapsed tool bar, with the same tool selected.
+	 */
+	private void createExpandedTools()
+	{
+		if( aToolPanelEx != null )
 		{
-			public void actionPerformed(ActionEvent pEvent)
+			return;
+		}
+		aToolPanelEx = new JPanel(new VerticalLayout());
+		aPopupMenu = new JPopupMenu();
+		ButtonGroup group = new ButtonGroup();
+		for( int i = 0; i < aTools.size(); i++ )
+		{
+			final JToggleButton button = aButtons.get(i);
+			final JToggleButton buttonEx = new JToggleButton(aIcons.get(i));
+			buttonEx.setToolTipText(aToolTips.get(i));
+			group.add(buttonEx);
+			aButtonsEx.add(buttonEx);
+			aToolPanelEx.add(createExpandedRowElement(buttonEx, aToolTips.get(i)));
+			buttonEx.setSelected(button.isSelected());
+			
+			JMenuItem item = new JMenuItem(aToolTips.get(i), aIcons.get(i));
+			item.addActionListener(new ActionListener()
 			{
-				button.setSelected(true);
-				buttonEx.setSelected(true);
-			}
-		});
-		aPopupMenu.add(item);
+				public void actionPerformed(ActionEvent pEvent)
+				{
+					button.setSelected(true);
+					buttonEx.setSelected(true);
+				}
+			});
+			aPopupMenu.add(item);
+		}
+		addCopyToClipboard(aToolPanelEx, true);
 	}
 	
 	/*
@@ -261,22 +318,22 @@ public class ToolBar extends JPanel
 		return linePanel;
 	}
 	
-	private void createNodesAndEdgesTools(Graph pGraph, ButtonGroup pGroup, ButtonGroup pGroupEx)
+	private void createNodesAndEdgesTools(Graph pGraph, ButtonGroup pGroup)
 	{
 		ResourceBundle resources = ResourceBundle.getBundle(pGraph.getClass().getName() + "Strings");
 
 		Node[] nodeTypes = pGraph.getNodePrototypes();
 		for(int i = 0; i < nodeTypes.length; i++)
 		{
-			installTool(createNodeIcon(nodeTypes[i]), resources.getString("node" + (i + 1) + ".tooltip"), 
-					nodeTypes[i], false, pGroup, pGroupEx);
+			installTool(getPrototypeIcon(nodeTypes[i]), resources.getString("node" + (i + 1) + ".tooltip"), 
+					nodeTypes[i], false, pGroup);
 		}
 		
 		Edge[] edgeTypes = pGraph.getEdgePrototypes();
 		for(int i = 0; i < edgeTypes.length; i++)
 		{
-			installTool(createEdgeIcon(edgeTypes[i]), resources.getString("edge" + (i + 1) + ".tooltip"), 
-					edgeTypes[i], false, pGroup, pGroupEx);
+			installTool(getPrototypeIcon(edgeTypes[i]), resources.getString("edge" + (i + 1) + ".tooltip"), 
+					edgeTypes[i], false, pGroup);
 		}
 	}
 	
@@ -321,44 +378,37 @@ public class ToolBar extends JPanel
 			button.setSelected(false);
 		}
 		aButtons.get(0).setSelected(true);
-		aButtonsEx.get(0).setSelected(true);
+		if( !aButtonsEx.isEmpty() )
+		{
+			aButtonsEx.get(0).setSelected(true);
+		}
 	}
 
-	private void addCopyToClipboard()
+	/*
+	 * Adds the copy to clipboard button to pPanel, in a row with its
+	 * tool tip if pIsExpanded.
+	 */
+	private void addCopyToClipboard(JPanel pPanel, boolean pIsExpanded)
 	{
-		URL imageLocation = getClass().getClassLoader().
-				getResource(ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.framework.EditorStrings").
-						getString("toolbar.copyToClipBoard"));
-		String toolTip = ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.framework.EditorStrings").getString("file.copy_to_clipboard.text");
+		URL imageLocation = getClass().getClassLoader().getResource(RESOURCES.getString("toolbar.copyToClipBoard"));
+		String toolTip = RESOURCES.getString("file.copy_to_clipboard.text");
 		
-		final JButton button = new JButton(new ImageIcon(imageLocation));
+		JButton button = new JButton(new ImageIcon(imageLocation));
 		button.setToolTipText(toolTip);
 		if( aButtons.size() > 0 )
 		{
 			button.setPreferredSize(aButtons.get(0).getPreferredSize());
 		}
-		aToolPanel.add(button);
-
-		
-		final JButton buttonEx = new JButton(new ImageIcon(imageLocation));
-		buttonEx.setToolTipText(toolTip);
-		aToolPanelEx.add(createExpandedRowElement(buttonEx, toolTip));
-		
-		if( aButtons.size() > 0 )
+		if( pIsExpanded )
 		{
-			button.setPreferredSize(aButtons.get(0).getPreferredSize());
-			buttonEx.setPreferredSize(aButtons.get(0).getPreferredSize());
+			pPanel.add(createExpandedRowElement(button, toolTip));
 		}
-
-		button.addActionListener(new ActionListener()
+		else
 		{
-			public void actionPerformed(ActionEvent pEvent)
-			{
-				copyToClipboard();
-			}
-		});
+			pPanel.add(button);
+		}
 
-		buttonEx.addActionListener(new ActionListener()
+		button.addActionListener(new ActionListener()
 		{
 			public void actionPerformed(ActionEvent pEvent)
 			{
@@ -382,8 +432,8 @@ public class ToolBar extends JPanel
 	{
 		final JButton expandButton = new JButton(EXPAND);
 		expandButton.setAlignmentX(CENTER_ALIGNMENT);
-		final String expandString = ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.framework.EditorStrings").getString("toolbar.expand");
-		final String collapseString = ResourceBundle.getBundle("ca.mcgill.cs.stg.jetuml.framework.EditorStrings").getString("toolbar.collapse");
+		final String expandString = RESOURCES.getString("toolbar.expand");
+		final String collapseString = RESOURCES.getString("toolbar.collapse");
 		expandButton.setToolTipText(expandString);
 		expandButton.setPreferredSize(new Dimension(BUTTON_SIZE, BUTTON_SIZE));
 		expandButton.addActionListener(new ActionListener()
@@ -392,6 +442,7 @@ public class ToolBar extends JPanel
 			{
 				if(expandButton.getText().equals(EXPAND))
 				{
+					createExpandedTools();
 					synchronizeToolSelection();
 					expandButton.setText(COLLAPSE);
 					expandButton.setToolTipText(collapseString);
@@ -418,7 +469,10 @@ public class ToolBar extends JPanel
 		int index = getSelectedButtonIndex();
 		assert index >= 0;
 		aButtons.get(index).setSelected(true);
-		aButtonsEx.get(index).setSelected(true);
+		if( !aButtonsEx.isEmpty() )
+		{
+			aButtonsEx.get(index).setSelected(true);
+		}
 	}
 	
 	private int getSelectedButtonIndex()
@@ -463,6 +517,52 @@ public class ToolBar extends JPanel
 	 */
 	public void showPopup(GraphPanel pPanel, Point2D pPoint) 
 	{
+		createExpandedTools();
 		aPopupMenu.show(pPanel, (int) pPoint.getX(), (int) pPoint.getY());
 	}
+	
+	/*
+	 * An icon that paints another icon once into an image,
+	 * and then paints the image. The image is drawn at the scale
+	 * of the device it is painted on, so that the icon stays sharp
+	 * on high resolution displays, and redrawn if that scale changes.
+	 */
+	private static final class CachedIcon implements Icon
+	{
+		private final Icon aDelegate;
+		private BufferedImage aImage;
+		private double aScaleX;
+		private double aScaleY;
+		
+		CachedIcon(Icon pDelegate)
+		{
+			aDelegate = pDelegate;
+		}
+		
+		public int getIconHeight() 
+		{ return aDelegate.getIconHeight(); }
+		
+		public int getIconWidth() 
+		{ return aDelegate.getIconWidth(); }
+		
+		public void paintIcon(Component pComponent, Graphics pGraphics, int pX, int pY)
+		{
+			AffineTransform transform = ((Graphics2D) pGraphics).getTransform();
+			double scaleX = Math.hypot(transform.getScaleX(), transform.getShearY());
+			double scaleY = Math.hypot(transform.getShearX(), transform.getScaleY());
+			if( aImage == null || scaleX != aScaleX || scaleY != aScaleY )
+			{
+				aScaleX = scaleX;
+				aScaleY = scaleY;
+				aImage = new BufferedImage(Math.max(1, (int) Math.ceil(getIconWidth() * scaleX)), 
+						Math.max(1, (int) Math.ceil(getIconHeight() * scaleY)), 
+						BufferedImage.TYPE_INT_ARGB);
+				Graphics2D g2 = aImage.createGraphics();
+				g2.scale(scaleX, scaleY);
+				aDelegate.paintIcon(pComponent, g2, 0, 0);
+				g2.dispose();
+			}
+			pGraphics.drawImage(aImage, pX, pY, getIconWidth(), getIconHeight(), null);
+		}
+	}
 }
\ No newline at end of file
@@ -20,22 +20,48 @@
  *******************************************************************************/
 package ca.mcgill.cs.stg.jetuml.framework;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 
 import ca.mcgill.cs.stg.jetuml.commands.Command;
 import ca.mcgill.cs.stg.jetuml.commands.CompoundCommand;
+import ca.mcgill.cs.stg.jetuml.commands.MergeableCommand;
 
 /**
  * Performs the undoing and redoing of commands on a graph.
+ * 
+ * The memory used by the commands that can be undone is bounded
+ * by a budget, expressed as a number of primitive (non-compound)
+ * commands. When the budget is exceeded, the oldest commands are
+ * moved to a SpilledHistory on disk, from which they are read back
+ * when they need to be undone.
+ * 
+ * Commands added in quick succession that apply to the same 
+ * elements, such as consecutive moves of a node, are merged 
+ * into a single command if they are added within a coalescing 
+ * window of each other.
+ * 
  * @author EJBQ
  *
  */
 public class UndoManager 
 {
+	private static final int DEFAULT_MEMORY_BUDGET = 5000;
+	private static final int MAX_SPILLED_SEGMENTS = 32;
+	private static final long DEFAULT_COALESCING_WINDOW = 500;
+	
 	private Stack<Command> aPastCommands; //the commands that have been input and can be undone
 	private Stack<Command> aUndoneCommands; //the commands that have been undone and can be redone
 	private Stack<CompoundCommand> aTrackingCommands; //used for many commands coming at once
 	private boolean aHoldChanges = false; //turned on while undoing or redoing to prevent duplication
+	private SpilledHistory aSpilledHistory; // the commands older than aPastCommands
+	private int aMemoryBudget; // the maximum weight of aPastCommands
+	private int aWeight; // the number of primitive commands in aPastCommands
+	private long aCoalescingWindow = DEFAULT_COALESCING_WINDOW; // in milliseconds
+	private long aLastAddTime; // the time the top of aPastCommands was added, or 0 if it cannot be merged
 	
 	/**
 	 * Creates a new UndoManager with the GraphPanel.
@@ -43,14 +69,150 @@ public class UndoManager
 	 */
 	public UndoManager()
 	{
+		this(DEFAULT_MEMORY_BUDGET);
+	}
+	
+	/**
+	 * Creates a new UndoManager that keeps at most pMemoryBudget 
+	 * primitive commands in memory.
+	 * 
+	 * @param pMemoryBudget The maximum number of primitive commands
+	 * to keep in memory. Must be greater than 0.
+	 */
+	public UndoManager(int pMemoryBudget)
+	{
+		assert pMemoryBudget > 0;
 		aPastCommands = new Stack<Command>();
 		aUndoneCommands = new Stack<Command>();
 		aTrackingCommands = new Stack<CompoundCommand>();
+		aSpilledHistory = new SpilledHistory(MAX_SPILLED_SEGMENTS);
+		aMemoryBudget = pMemoryBudget;
+	}
+	
+	/**
+	 * Changes the maximum number of primitive commands kept in memory.
+	 * Commands in excess are spilled to disk the next time a command
+	 * is added.
+	 * 
+	 * @param pMemoryBudget The new budget. Must be greater than 0.
+	 */
+	public void setMemoryBudget(int pMemoryBudget)
+	{
+		assert pMemoryBudget > 0;
+		aMemoryBudget = pMemoryBudget;
+	}
+	
+	/**
+	 * Changes the maximum delay between two commands for them to 
+	 * be merged into one.
+	 * 
+	 * @param pMilliseconds The new delay. 0 disables merging.
+	 */
+	public void setCoalescingWindow(long pMilliseconds)
+	{
+		assert pMilliseconds >= 0;
+		aCoalescingWindow = pMilliseconds;
+	}
+	
+	/**
+	 * @return The number of commands that can be undone, including
+	 * those spilled to disk.
+	 */
+	public int getHistorySize()
+	{
+		return aPastCommands.size() + aSpilledHistory.getCommandCount();
+	}
+	
+	/**
+	 * @return The number of commands that can be undone and that 
+	 * are spilled to disk.
+	 */
+	public int getSpilledCommandCount()
+	{
+		return aSpilledHistory.getCommandCount();
+	}
+	
+	/**
+	 * @return The number of bytes taken on disk by the spilled commands.
+	 */
+	public long getSpilledSize()
+	{
+		return aSpilledHistory.getSize();
+	}
+	
+	/**
+	 * @return The number of primitive commands that can be undone
+	 * and that are kept in memory.
+	 */
+	public int getMemoryWeight()
+	{
+		return aWeight;
+	}
+
+	/**
+	 * Returns the objects that hold this history in memory, so that 
+	 * they can be written out together with the graph they refer to:
+	 * the commands that can be undone, the commands that can be redone,
+	 * and the elements that the spilled commands refer to.
+	 * 
+	 * @return The state of this history, or null if a compound 
+	 * command is being tracked.
+	 */
+	List<Object> getMemoryState()
+	{
+		if( !aTrackingCommands.empty() )
+		{
+			return null;
+		}
+		List<Object> state = new ArrayList<>();
+		state.add(new ArrayList<>(aPastCommands));
+		state.add(new ArrayList<>(aUndoneCommands));
+		state.add(aSpilledHistory.getElements());
+		return state;
+	}
+	
+	/**
+	 * Replaces the objects that hold this history in memory.
+	 * 
+	 * @param pState A state returned by getMemoryState, possibly
+	 * read back from a file, or null to release the objects held
+	 * in memory until the next call to this method.
+	 */
+	@SuppressWarnings("unchecked")
+	void setMemoryState(List<Object> pState)
+	{
+		aPastCommands.clear();
+		aUndoneCommands.clear();
+		aWeight = 0;
+		aLastAddTime = 0;
+		if( pState == null )
+		{
+			aSpilledHistory.setElements(Collections.<Integer, Object>emptyMap());
+			return;
+		}
+		for( Command command : (List<Command>) pState.get(0) )
+		{
+			aPastCommands.push(command);
+			aWeight += weightOf(command);
+		}
+		aUndoneCommands.addAll((List<Command>) pState.get(1));
+		aSpilledHistory.setElements((Map<Integer, Object>) pState.get(2));
+	}
+
+	/**
+	 * Forgets all the commands, and deletes the files of 
+	 * the spilled commands.
+	 */
+	void clear()
+	{
+		setMemoryState(null);
+		aSpilledHistory.clear();
 	}
 
 	/**
 	 * Adds a command to the stack to be undone.
 	 * Wipes the redone command if there is anything there.
+	 * Merges the command into the last one added if possible.
 	 * Will not add the command if changes are being held, which occurs 
 	 * when we are in the middle of executing a command.
 	 * @param pCommand The command to be added
@@ -62,6 +224,7 @@ public class UndoManager
 			if(!aUndoneCommands.empty())
 			{
 				aUndoneCommands.clear();
+				aLastAddTime = 0;
 			}
 			if(!aTrackingCommands.empty())
 			{
@@ -69,9 +232,113 @@ public class UndoManager
 			}
 			else
 			{
-				aPastCommands.push(pCommand);
+				long now = System.currentTimeMillis();
+				if(canCoalesce(pCommand, now))
+				{
+					((MergeableCommand)aPastCommands.peek()).merge(pCommand);
+				}
+				else
+				{
+					pushPastCommand(pCommand);
+				}
+				aLastAddTime = now;
+			}
+		}
+	}
+	
+	/*
+	 * A command can be merged into the last command added if it
+	 * comes within the coalescing window and if nothing was undone
+	 * or redone in between.
+	 */
+	private boolean canCoalesce(Command pCommand, long pTime)
+	{
+		return aCoalescingWindow > 0 && aLastAddTime > 0 && pTime - aLastAddTime <= aCoalescingWindow && !aPastCommands.empty() && 
+				aPastCommands.peek() instanceof MergeableCommand && ((MergeableCommand)aPastCommands.peek()).canMerge(pCommand);
+	}
+	
+	private void pushPastCommand(Command pCommand)
+	{
+		aPastCommands.push(pCommand);
+		aWeight += weightOf(pCommand);
+		if( aWeight > aMemoryBudget )
+		{
+			spill();
+		}
+		Instrumentation.setUndoHistorySize(getHistorySize());
+	}
+	
+	/*
+	 * Reads back the most recent spilled commands if no past 
+	 * command is left in memory. Returns null if there is no
+	 * command to undo.
+	 */
+	private Command popPastCommand()
+	{
+		if( aPastCommands.empty() )
+		{
+			for( Command command : aSpilledHistory.restore() )
+			{
+				aPastCommands.push(command);
+				aWeight += weightOf(command);
+			}
+		}
+		if( aPastCommands.empty() )
+		{
+			return null;
+		}
+		Command command = aPastCommands.pop();
+		aWeight -= weightOf(command);
+		Instrumentation.setUndoHistorySize(getHistorySize());
+		return command;
+	}
+	
+	/*
+	 * Moves the oldest past commands to disk until the remaining ones 
+	 * weigh at most half of the budget, keeping at least the most 
+	 * recent command in memory. If the commands cannot be written,
+	 * they are kept in memory.
+	 */
+	private void spill()
+	{
+		int count = 0;
+		int weight = 0;
+		while( count < aPastCommands.size() - 1 && aWeight - weight > aMemoryBudget / 2 )
+		{
+			weight += weightOf(aPastCommands.get(count));
+			count++;
+		}
+		if( count == 0 )
+		{
+			return;
+		}
+		List<Command> spilled = new ArrayList<>(aPastCommands.subList(0, count));
+		List<Command> retained = new ArrayList<>(aPastCommands.subList(count, aPastCommands.size()));
+		retained.addAll(aUndoneCommands);
+		retained.addAll(aTrackingCommands);
+		if( aSpilledHistory.spill(spilled, retained) )
+		{
+			aPastCommands.subList(0, count).clear();
+			aWeight -= weight;
+		}
+	}
+	
+	/*
+	 * Approximates the memory held by a command by the number
+	 * of primitive commands it contains.
+	 */
+	private static int weightOf(Command pCommand)
+	{
+		if( pCommand instanceof CompoundCommand )
+		{
+			int weight = 0;
+			for( Command command : ((CompoundCommand)pCommand).getCommands() )
+			{
+				weight += weightOf(command);
 			}
+			return Math.max(1, weight);
 		}
+		return 1;
 	}
 
 	/**
@@ -81,12 +348,13 @@ public class UndoManager
 	 */
 	public void undoCommand()
 	{
-		if(aPastCommands.empty())
+		Command toUndo = popPastCommand();
+		if(toUndo == null)
 		{
 			return;
 		}
+		aLastAddTime = 0;
 		aHoldChanges = true;
-		Command toUndo = aPastCommands.pop();
 		toUndo.undo();
 		aUndoneCommands.push(toUndo);
 		aHoldChanges = false;
@@ -104,9 +372,10 @@ public class UndoManager
 		{
 			return;
 		}
+		aLastAddTime = 0;
 		Command toRedo = aUndoneCommands.pop();
 		toRedo.execute();
-		aPastCommands.push(toRedo);
+		pushPastCommand(toRedo);
 		aHoldChanges = false;
 	}
 
@@ -21,7 +21,6 @@
 
 package ca.mcgill.cs.stg.jetuml.graph;
 
-import java.awt.BasicStroke;
 import java.awt.Shape;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
@@ -33,13 +32,10 @@ import ca.mcgill.cs.stg.jetuml.framework.Direction;
  *  Supplies convenience implementations for a number of methods
  *  in the Edge interface. In particular, the class implements
  *  support for "containment testing" of edges, i.e., testing
- *  whether a point falls on a edge. This is done by obtaining 
- *  the shape of the edge and stroking it with a fat stroke.
- *  NOTE: Ideally, you should be able to draw the same shape that
- *  is used for containment testing. However, in JDK 1.4, 
- *  BasicStroke.createStrokedShape returned shitty-looking shapes,
- *  so drawing the stroked shapes should be visually tested for 
- *  each edge type.
+ *  whether a point falls on a edge. This is done by computing 
+ *  the distance from the point to the segments of the shape of 
+ *  the edge, which are kept from one test to the next as long as 
+ *  the graph is not routed again and the end nodes do not change.
  */
 abstract class AbstractEdge implements Edge
 {  
@@ -48,6 +44,7 @@ abstract class AbstractEdge implements Edge
 	private Node aStart;
 	private Node aEnd;
 	private Graph aGraph;
+	private transient EdgeSegments aSegments; // The shape of the edge when it was last tested
 
 	/**
 	 * Returns the path that should be stroked to
@@ -66,15 +63,47 @@ abstract class AbstractEdge implements Edge
 	@Override
 	public boolean contains(Point2D pPoint)
 	{
+		EdgeSegments segments = getSegments();
 		// The end points may contain small nodes, so don't match them
-		Line2D conn = getConnectionPoints();
-		if(pPoint.distance(conn.getP1()) <= MAX_DISTANCE || pPoint.distance(conn.getP2()) <= MAX_DISTANCE)
+		if(segments.isNearConnectionPoint(pPoint.getX(), pPoint.getY(), MAX_DISTANCE))
 		{
 			return false;
 		}
-
-		Shape fatPath = new BasicStroke((float)(2 * MAX_DISTANCE)).createStrokedShape(getShape());
-		return fatPath.contains(pPoint);
+		return segments.isNear(pPoint.getX(), pPoint.getY(), MAX_DISTANCE);
+	}
+	
+	/*
+	 * Returns the segments of the shape of this edge, which are only
+	 * computed again if the graph was routed or if one of the end 
+	 * nodes changed since they were last computed. 
+	 */
+	EdgeSegments getSegments()
+	{
+		int routingVersion = -1;
+		if( aGraph != null )
+		{
+			routingVersion = aGraph.getRoutingVersion();
+		}
+		int startVersion = geometryVersionOf(aStart);
+		int endVersion = geometryVersionOf(aEnd);
+		if( aSegments == null )
+		{
+			aSegments = new EdgeSegments();
+		}
+		if( !aSegments.isCurrent(routingVersion, startVersion, endVersion) )
+		{
+			aSegments.set(getShape(), getConnectionPoints(), routingVersion, startVersion, endVersion);
+		}
+		return aSegments;
+	}
+	
+	private static int geometryVersionOf(Node pNode)
+	{
+		if( pNode instanceof AbstractNode )
+		{
+			return ((AbstractNode)pNode).getGeometryVersion();
+		}
+		return -1;
 	}
 
 	@Override
@@ -82,7 +111,9 @@ abstract class AbstractEdge implements Edge
 	{
 		try
 		{
-			return super.clone();
+			AbstractEdge cloned = (AbstractEdge) super.clone();
+			cloned.aSegments = null;
+			return cloned;
 		}
 		catch (CloneNotSupportedException exception)
 		{
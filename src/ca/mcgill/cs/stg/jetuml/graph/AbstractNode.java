@@ -23,6 +23,7 @@ package ca.mcgill.cs.stg.jetuml.graph;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Shape;
+import java.awt.geom.AffineTransform;
 import java.beans.DefaultPersistenceDelegate;
 import java.beans.Encoder;
 
@@ -38,6 +39,13 @@ public abstract class AbstractNode implements Node
 	public static final int SHADOW_GAP = 4;
 	
 	private static final Color SHADOW_COLOR = Color.LIGHT_GRAY;
+	
+	// Geometry cached between calls to draw. Only access through getShape(), 
+	// getShadow(), and invalidateShape().
+	private transient Shape aShape;
+	private transient Shape aShadow;
+	private transient int aGeometryVersion; // Changes whenever the shape is invalidated
+	private transient Graph aGraph; // The graph this node was last added to, if any
 
 	/**
      * Constructs a node.
@@ -52,6 +60,8 @@ public abstract class AbstractNode implements Node
 		try
 		{
 			AbstractNode cloned = (AbstractNode) super.clone();
+			cloned.aGraph = null;
+			cloned.invalidateShape();
 			return cloned;
 		}
 		catch(CloneNotSupportedException exception)
@@ -63,11 +73,14 @@ public abstract class AbstractNode implements Node
 	@Override
 	public void translate(double pDeltaX, double pDeltaY)
 	{
+		invalidateShape();
 	}
 	
 	@Override
 	public void layout(Graph pGraph, Graphics2D pGraphics2D, Grid pGrid)
-	{}
+	{
+		invalidateShape();
+	}
 
 	@Override
 	public void draw(Graphics2D pGraphics2D)
@@ -77,26 +90,88 @@ public abstract class AbstractNode implements Node
 		{
 			return;
 		}
-		/*
-      	Area shadow = new Area(shape);
-      	shadow.transform(AffineTransform.getTranslateInstance(SHADOW_GAP, SHADOW_GAP));
-      	shadow.subtract(new Area(shape));
-		 */
 		Color oldColor = pGraphics2D.getColor();
-		pGraphics2D.translate(SHADOW_GAP, SHADOW_GAP);      
 		pGraphics2D.setColor(SHADOW_COLOR);
-		pGraphics2D.fill(shape);
-		pGraphics2D.translate(-SHADOW_GAP, -SHADOW_GAP);
+		pGraphics2D.fill(getShadow());
 		pGraphics2D.setColor(pGraphics2D.getBackground());
 		pGraphics2D.fill(shape);      
 		pGraphics2D.setColor(oldColor);
 	}
    
 	/**
-     *  @return the shape to be used for computing the drop shadow
-    */
-	public Shape getShape() 
-	{ return null; }   
+	 * Returns the shape of this node. The shape is computed
+	 * once through computeShape() and reused until 
+	 * invalidateShape() is called. Clients should not modify
+	 * the returned object.
+	 * 
+     * @return the shape to be used for computing the drop shadow
+     */
+	public final Shape getShape() 
+	{ 
+		if( aShape == null )
+		{
+			aShape = computeShape();
+		}
+		return aShape;
+	}
+	
+	private Shape getShadow()
+	{
+		if( aShadow == null )
+		{
+			aShadow = AffineTransform.getTranslateInstance(SHADOW_GAP, SHADOW_GAP).createTransformedShape(getShape());
+		}
+		return aShadow;
+	}
+	
+	/**
+	 * Computes the shape of this node from its current geometry. 
+	 * Override to supply a shape; the default has none. 
+	 * 
+	 * @return the shape to be used for computing the drop shadow, 
+	 * or null if the node has no shadow.
+	 */
+	protected Shape computeShape()
+	{
+		return null;
+	}
+	
+	/**
+	 * Discards the cached shape and shadow of this node. Must be 
+	 * called whenever a change to the node affects the value
+	 * that computeShape() would return.
+	 */
+	protected void invalidateShape()
+	{
+		aShape = null;
+		aShadow = null;
+		aGeometryVersion++;
+	}
+	
+	/**
+	 * @return A number that changes whenever the geometry 
+	 * of this node changes.
+	 */
+	int getGeometryVersion()
+	{
+		return aGeometryVersion;
+	}
+	
+	/**
+	 * @return The graph this node is part of, or null if none.
+	 */
+	Graph getGraph()
+	{
+		return aGraph;
+	}
+	
+	/**
+	 * @param pGraph The graph this node becomes part of, or null.
+	 */
+	void setGraph(Graph pGraph)
+	{
+		aGraph = pGraph;
+	}
    
 	/**
      *  Adds a persistence delegate to a given encoder.
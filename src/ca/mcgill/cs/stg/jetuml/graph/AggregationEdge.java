@@ -89,7 +89,7 @@ public class AggregationEdge extends ClassRelationshipEdge
 	}
 
 	@Override
-	public SegmentationStyle obtainSegmentationStyle()
+	protected SegmentationStyle obtainDefaultSegmentationStyle()
 	{
 		return SegmentationStyleFactory.createHVHStrategy();
 	}
@@ -93,7 +93,7 @@ public class AssociationEdge extends ClassRelationshipEdge
 	}
 	
 	@Override
-	public SegmentationStyle obtainSegmentationStyle()
+	protected SegmentationStyle obtainDefaultSegmentationStyle()
 	{
 		return SegmentationStyleFactory.createHVHStrategy();
 	}
@@ -116,7 +116,7 @@ public class CircularStateNode extends RectangularNode
 	}
    
 	@Override
-	public Shape getShape()
+	protected Shape computeShape()
 	{
 		return new Ellipse2D.Double(getBounds().getX(), getBounds().getY(), getBounds().getWidth() - 1, getBounds().getHeight() - 1);
 	}
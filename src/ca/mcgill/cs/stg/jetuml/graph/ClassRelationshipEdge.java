@@ -24,6 +24,7 @@ package ca.mcgill.cs.stg.jetuml.graph;
 import java.awt.geom.Point2D;
 
 import ca.mcgill.cs.stg.jetuml.framework.SegmentationStyle;
+import ca.mcgill.cs.stg.jetuml.framework.SegmentationStyleFactory;
 
 /**
  *  An edge that is shaped like a line with up to 
@@ -32,9 +33,16 @@ import ca.mcgill.cs.stg.jetuml.framework.SegmentationStyle;
  */
 public abstract class ClassRelationshipEdge extends SegmentedLabeledEdge
 {	
+	/**
+	 * How the path of the edge is computed.
+	 */
+	public enum Routing 
+	{Default, Orthogonal}
+	
 	private String aStartLabel = "";
 	private String aMiddleLabel = "";
 	private String aEndLabel = "";
+	private Routing aRouting = Routing.Default;
 	
 	@Override
 	protected String obtainStartLabel()
@@ -102,8 +110,42 @@ public abstract class ClassRelationshipEdge extends SegmentedLabeledEdge
 		return aEndLabel;
 	}
 	
+	/**
+	 * @param pRouting The new way of computing the path of the edge.
+	 */
+	public void setRouting(Routing pRouting)
+	{
+		aRouting = pRouting;
+	}
+	
+	/**
+	 * @return How the path of the edge is computed.
+	 */
+	public Routing getRouting()
+	{
+		return aRouting;
+	}
+	
 	@Override
 	protected Point2D[] getPoints()
+	{
+		Point2D[] path = null;
+		if( getGraph() != null )
+		{
+			path = getGraph().getRoutedPath(this);
+		}
+		if( path == null )
+		{
+			path = computePath();
+		}
+		return path;
+	}
+	
+	/*
+	 * Computes the path of this edge from the current position
+	 * of the nodes. Called by the graph to route its edges.
+	 */
+	Point2D[] computePath()
 	{
 		return obtainSegmentationStyle().getPath(this, getGraph());
 	}
@@ -112,5 +154,18 @@ public abstract class ClassRelationshipEdge extends SegmentedLabeledEdge
 	 * @return The object that can draw the line corresponding
 	 * to this edge.
 	 */
-	public abstract SegmentationStyle obtainSegmentationStyle();
+	public SegmentationStyle obtainSegmentationStyle()
+	{
+		if( aRouting == Routing.Orthogonal )
+		{
+			return SegmentationStyleFactory.createOrthogonalStrategy();
+		}
+		return obtainDefaultSegmentationStyle();
+	}
+	
+	/**
+	 * @return The object that draws the line corresponding
+	 * to this edge when it uses the default routing.
+	 */
+	protected abstract SegmentationStyle obtainDefaultSegmentationStyle();
 }
@@ -55,7 +55,7 @@ public class DependencyEdge extends ClassRelationshipEdge
 	}
 	
 	@Override
-	public SegmentationStyle obtainSegmentationStyle()
+	protected SegmentationStyle obtainDefaultSegmentationStyle()
 	{
 		return SegmentationStyleFactory.createStraightStrategy();
 	}
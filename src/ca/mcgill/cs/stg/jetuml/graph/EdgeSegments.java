@@ -0,0 +1,362 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.graph;
+
+import java.awt.Shape;
+import java.awt.geom.Line2D;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+
+/**
+ * The path of an edge, stored as an array of line segments and
+ * quadratic curves, against which points can be tested without
+ * allocating memory. Points are tested with the analytic distance
+ * to each segment, after a test against the bounding box of the 
+ * path. Cubic curves, such as the arcs of self edges, are replaced 
+ * by line segments when the path is stored.
+ * 
+ * The path is tagged with the versions of the graph and nodes it 
+ * was computed from, so that edges can reuse it until it changes.
+ */
+final class EdgeSegments
+{
+	private static final int INITIAL_CAPACITY = 8;
+	private static final int STRIDE = 6; // x0, y0, x1, y1, x2, y2
+	private static final int LINE = 0;
+	private static final int QUAD = 1;
+	private static final int CUBIC_SEGMENTS = 8;
+	
+	private byte[] aTypes = new byte[INITIAL_CAPACITY];
+	private double[] aCoords = new double[INITIAL_CAPACITY * STRIDE];
+	private int aSize;
+	private double aMinX;
+	private double aMinY;
+	private double aMaxX;
+	private double aMaxY;
+	private double aX1; // The connection points
+	private double aY1;
+	private double aX2;
+	private double aY2;
+	private final double[] aCoefficients = new double[STRIDE]; // Read from the path iterator
+	private final double[] aRoots = new double[3];
+	private int aRoutingVersion = -1;
+	private int aStartVersion;
+	private int aEndVersion;
+	
+	/**
+	 * Replaces the stored path with pShape.
+	 * @param pShape The path of the edge.
+	 * @param pConnectionPoints The connection points of the edge.
+	 * @param pRoutingVersion The routing version of the graph of the
+	 * edge, or -1 if the path should not be reused.
+	 * @param pStartVersion The geometry version of the start node.
+	 * @param pEndVersion The geometry version of the end node.
+	 */
+	void set(Shape pShape, Line2D pConnectionPoints, int pRoutingVersion, int pStartVersion, int pEndVersion)
+	{
+		aSize = 0;
+		aMinX = Double.POSITIVE_INFINITY;
+		aMinY = Double.POSITIVE_INFINITY;
+		aMaxX = Double.NEGATIVE_INFINITY;
+		aMaxY = Double.NEGATIVE_INFINITY;
+		double moveX = 0;
+		double moveY = 0;
+		double x = 0;
+		double y = 0;
+		double[] c = aCoefficients;
+		for( PathIterator iterator = pShape.getPathIterator(null); !iterator.isDone(); iterator.next() )
+		{
+			switch( iterator.currentSegment(c) )
+			{
+			case PathIterator.SEG_MOVETO:
+				moveX = c[0];
+				moveY = c[1];
+				x = c[0];
+				y = c[1];
+				break;
+			case PathIterator.SEG_LINETO:
+				addLine(x, y, c[0], c[1]);
+				x = c[0];
+				y = c[1];
+				break;
+			case PathIterator.SEG_QUADTO:
+				addQuad(x, y, c[0], c[1], c[2], c[3]);
+				x = c[2];
+				y = c[3];
+				break;
+			case PathIterator.SEG_CUBICTO:
+				addCubic(x, y, c[0], c[1], c[2], c[3], c[4], c[5]);
+				x = c[4];
+				y = c[5];
+				break;
+			default: // SEG_CLOSE
+				addLine(x, y, moveX, moveY);
+				x = moveX;
+				y = moveY;
+			}
+		}
+		aX1 = pConnectionPoints.getX1();
+		aY1 = pConnectionPoints.getY1();
+		aX2 = pConnectionPoints.getX2();
+		aY2 = pConnectionPoints.getY2();
+		aRoutingVersion = pRoutingVersion;
+		aStartVersion = pStartVersion;
+		aEndVersion = pEndVersion;
+	}
+	
+	/**
+	 * @param pRoutingVersion The current routing version of the graph.
+	 * @param pStartVersion The current geometry version of the start node.
+	 * @param pEndVersion The current geometry version of the end node.
+	 * @return True if the stored path was computed from these versions. 
+	 * Negative versions are never current.
+	 */
+	boolean isCurrent(int pRoutingVersion, int pStartVersion, int pEndVersion)
+	{
+		return pRoutingVersion >= 0 && pStartVersion >= 0 && pEndVersion >= 0 && pRoutingVersion == aRoutingVersion && 
+				pStartVersion == aStartVersion && pEndVersion == aEndVersion;
+	}
+	
+	/**
+	 * @return The number of segments of the path.
+	 */
+	int size()
+	{
+		return aSize;
+	}
+	
+	/**
+	 * @param pX The x coordinate of a point.
+	 * @param pY The y coordinate of a point.
+	 * @param pDistance A distance.
+	 * @return True if the point is at most pDistance from one
+	 * of the connection points of the edge.
+	 */
+	boolean isNearConnectionPoint(double pX, double pY, double pDistance)
+	{
+		return squaredDistance(pX, pY, aX1, aY1) <= pDistance * pDistance || 
+				squaredDistance(pX, pY, aX2, aY2) <= pDistance * pDistance;
+	}
+	
+	/**
+	 * @param pX The x coordinate of a point.
+	 * @param pY The y coordinate of a point.
+	 * @param pDistance A distance.
+	 * @return True if the point is at most pDistance from the path.
+	 */
+	boolean isNear(double pX, double pY, double pDistance)
+	{
+		if( pX < aMinX - pDistance || pX > aMaxX + pDistance || pY < aMinY - pDistance || pY > aMaxY + pDistance )
+		{
+			return false;
+		}
+		double squaredDistance = pDistance * pDistance;
+		for( int i = 0; i < aSize; i++ )
+		{
+			int offset = i * STRIDE;
+			if( aTypes[i] == LINE )
+			{
+				if( squaredDistanceToLine(pX, pY, offset) <= squaredDistance )
+				{
+					return true;
+				}
+			}
+			else if( squaredDistanceToQuad(pX, pY, offset) <= squaredDistance )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private double squaredDistanceToLine(double pX, double pY, int pOffset)
+	{
+		double x0 = aCoords[pOffset];
+		double y0 = aCoords[pOffset + 1];
+		double dx = aCoords[pOffset + 2] - x0;
+		double dy = aCoords[pOffset + 3] - y0;
+		double length = dx * dx + dy * dy;
+		double t = 0;
+		if( length > 0 )
+		{
+			t = Math.max(0, Math.min(1, ((pX - x0) * dx + (pY - y0) * dy) / length));
+		}
+		return squaredDistance(pX, pY, x0 + t * dx, y0 + t * dy);
+	}
+	
+	/*
+	 * The closest point of the curve P(t) = A t^2 + B t + P0 is at one
+	 * of its ends or where (P(t) - Q).P'(t) = 0, which is a cubic 
+	 * equation in t.
+	 */
+	private double squaredDistanceToQuad(double pX, double pY, int pOffset)
+	{
+		double x0 = aCoords[pOffset];
+		double y0 = aCoords[pOffset + 1];
+		double x1 = aCoords[pOffset + 2];
+		double y1 = aCoords[pOffset + 3];
+		double x2 = aCoords[pOffset + 4];
+		double y2 = aCoords[pOffset + 5];
+		double ax = x0 - 2 * x1 + x2;
+		double ay = y0 - 2 * y1 + y2;
+		double bx = 2 * (x1 - x0);
+		double by = 2 * (y1 - y0);
+		double cx = x0 - pX;
+		double cy = y0 - pY;
+		double result = Math.min(squaredDistance(pX, pY, x0, y0), squaredDistance(pX, pY, x2, y2));
+		int roots = solveCubic(2 * (ax * ax + ay * ay), 3 * (ax * bx + ay * by), 
+				bx * bx + by * by + 2 * (ax * cx + ay * cy), bx * cx + by * cy);
+		for( int i = 0; i < roots; i++ )
+		{
+			double t = aRoots[i];
+			if( t > 0 && t < 1 )
+			{
+				result = Math.min(result, squaredDistance(pX, pY, (ax * t + bx) * t + x0, (ay * t + by) * t + y0));
+			}
+		}
+		return result;
+	}
+	
+	/*
+	 * Stores the real roots of a t^3 + b t^2 + c t + d = 0 in aRoots
+	 * and returns their number.
+	 */
+	private int solveCubic(double pA, double pB, double pC, double pD)
+	{
+		if( Math.abs(pA) < 1e-12 )
+		{
+			return solveQuadratic(pB, pC, pD);
+		}
+		double b = pB / pA;
+		double c = pC / pA;
+		double d = pD / pA;
+		double q = (3 * c - b * b) / 9;
+		double r = (9 * b * c - 27 * d - 2 * b * b * b) / 54;
+		double discriminant = q * q * q + r * r;
+		if( discriminant > 0 )
+		{
+			double s = Math.sqrt(discriminant);
+			aRoots[0] = -b / 3 + Math.cbrt(r + s) + Math.cbrt(r - s);
+			return 1;
+		}
+		if( q == 0 )
+		{
+			aRoots[0] = -b / 3;
+			return 1;
+		}
+		double theta = Math.acos(Math.max(-1, Math.min(1, r / Math.sqrt(-q * q * q))));
+		double m = 2 * Math.sqrt(-q);
+		aRoots[0] = m * Math.cos(theta / 3) - b / 3;
+		aRoots[1] = m * Math.cos((theta + 2 * Math.PI) / 3) - b / 3;
+		aRoots[2] = m * Math.cos((theta + 4 * Math.PI) / 3) - b / 3;
+		return 3;
+	}
+	
+	private int solveQuadratic(double pA, double pB, double pC)
+	{
+		if( Math.abs(pA) < 1e-12 )
+		{
+			if( Math.abs(pB) < 1e-12 )
+			{
+				return 0;
+			}
+			aRoots[0] = -pC / pB;
+			return 1;
+		}
+		double discriminant = pB * pB - 4 * pA * pC;
+		if( discriminant < 0 )
+		{
+			return 0;
+		}
+		double s = Math.sqrt(discriminant);
+		aRoots[0] = (-pB + s) / (2 * pA);
+		aRoots[1] = (-pB - s) / (2 * pA);
+		return 2;
+	}
+	
+	private static double squaredDistance(double pX1, double pY1, double pX2, double pY2)
+	{
+		double dx = pX2 - pX1;
+		double dy = pY2 - pY1;
+		return dx * dx + dy * dy;
+	}
+	
+	private void addLine(double pX0, double pY0, double pX1, double pY1)
+	{
+		int offset = add(LINE);
+		aCoords[offset] = pX0;
+		aCoords[offset + 1] = pY0;
+		aCoords[offset + 2] = pX1;
+		aCoords[offset + 3] = pY1;
+		include(pX0, pY0);
+		include(pX1, pY1);
+	}
+	
+	private void addQuad(double pX0, double pY0, double pX1, double pY1, double pX2, double pY2)
+	{
+		int offset = add(QUAD);
+		aCoords[offset] = pX0;
+		aCoords[offset + 1] = pY0;
+		aCoords[offset + 2] = pX1;
+		aCoords[offset + 3] = pY1;
+		aCoords[offset + 4] = pX2;
+		aCoords[offset + 5] = pY2;
+		include(pX0, pY0);
+		include(pX1, pY1); // The curve lies within the triangle of its control points
+		include(pX2, pY2);
+	}
+	
+	private void addCubic(double pX0, double pY0, double pX1, double pY1, double pX2, double pY2, double pX3, double pY3)
+	{
+		double x = pX0;
+		double y = pY0;
+		for( int i = 1; i <= CUBIC_SEGMENTS; i++ )
+		{
+			double t = i / (double) CUBIC_SEGMENTS;
+			double u = 1 - t;
+			double nextX = u * u * u * pX0 + 3 * u * u * t * pX1 + 3 * u * t * t * pX2 + t * t * t * pX3;
+			double nextY = u * u * u * pY0 + 3 * u * u * t * pY1 + 3 * u * t * t * pY2 + t * t * t * pY3;
+			addLine(x, y, nextX, nextY);
+			x = nextX;
+			y = nextY;
+		}
+	}
+	
+	private int add(int pType)
+	{
+		if( aSize == aTypes.length )
+		{
+			aTypes = Arrays.copyOf(aTypes, 2 * aSize);
+			aCoords = Arrays.copyOf(aCoords, 2 * aSize * STRIDE);
+		}
+		aTypes[aSize] = (byte) pType;
+		aSize++;
+		return (aSize - 1) * STRIDE;
+	}
+	
+	private void include(double pX, double pY)
+	{
+		aMinX = Math.min(aMinX, pX);
+		aMinY = Math.min(aMinY, pY);
+		aMaxX = Math.max(aMaxX, pX);
+		aMaxY = Math.max(aMaxY, pY);
+	}
+}
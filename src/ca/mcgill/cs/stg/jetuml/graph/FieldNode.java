@@ -41,8 +41,8 @@ public class FieldNode extends RectangularNode implements ChildNode
 	private double aAxisX;
 	private MultiLineString aName;
 	private MultiLineString aValue;
-	private Rectangle2D aNameBounds;
-	private Rectangle2D aValueBounds;
+	private double aValueWidth = DEFAULT_WIDTH / 2; // The width of the value, computed by layout
+	private double aMidWidth; // The width of the = sign, computed by layout
 	private boolean aBoxedValue;
 	private double aBoxWidth;
 	private ObjectNode aObject; // The object defining this field
@@ -67,34 +67,33 @@ public class FieldNode extends RectangularNode implements ChildNode
 		MultiLineString equal = new MultiLineString();
 		equal.setText(" = ");
 		double midWidth = equal.getBounds(pGraphics2D).getWidth();
-      
-		double rightWidth = aValue.getBounds(pGraphics2D).getWidth();
-		if(rightWidth == 0)
-		{
-			rightWidth = DEFAULT_WIDTH / 2;
-		}
-		rightWidth = Math.max(rightWidth, aBoxWidth - midWidth / 2);
 
-		aNameBounds = new Rectangle2D.Double(b.getX(), b.getY(), leftWidth, b.getHeight());
-		aName.draw(pGraphics2D, aNameBounds);
+		aName.draw(pGraphics2D, new Rectangle2D.Double(b.getX(), b.getY(), leftWidth, b.getHeight()));
 		Rectangle2D mid = new Rectangle2D.Double(b.getX() + leftWidth, b.getY(), midWidth, b.getHeight());
 		equal.draw(pGraphics2D, mid);
-		aValueBounds = new Rectangle2D.Double(b.getMaxX() - rightWidth, b.getY(), rightWidth, b.getHeight());
 		if(aBoxedValue)
 		{
-			aValue.setJustification(MultiLineString.CENTER);
+			Rectangle2D valueBounds = (Rectangle2D) getShape();
+			aValue.draw(pGraphics2D, valueBounds);
+			pGraphics2D.draw(valueBounds);
 		}
 		else
 		{
-			aName.setJustification(MultiLineString.LEFT);
-		}
-		aValue.draw(pGraphics2D, aValueBounds);
-		if(aBoxedValue)
-		{
-			pGraphics2D.draw(aValueBounds);
+			aValue.draw(pGraphics2D, computeValueBounds());
 		}
 	}
 	
+	/*
+	 * The value is drawn at the right of the node, in a box at 
+	 * least as wide as the box width set by the object node.
+	 */
+	private Rectangle2D computeValueBounds()
+	{
+		Rectangle2D b = getBounds();
+		double width = Math.max(aValueWidth, aBoxWidth - aMidWidth / 2);
+		return new Rectangle2D.Double(b.getMaxX() - width, b.getY(), width, b.getHeight());
+	}
+	
 	@Override
 	public Point2D getConnectionPoint(Direction pDirection)
 	{
@@ -105,27 +104,35 @@ public class FieldNode extends RectangularNode implements ChildNode
 	@Override
 	public void layout(Graph pGraph, Graphics2D pGraphics2D, Grid pGrid)
 	{
-		aNameBounds = aName.getBounds(pGraphics2D); 
-		aValueBounds = aValue.getBounds(pGraphics2D);
+		Rectangle2D nameBounds = aName.getBounds(pGraphics2D); 
+		Rectangle2D valueBounds = aValue.getBounds(pGraphics2D);
 		MultiLineString equal = new MultiLineString();
 		equal.setText(" = ");
 		Rectangle2D e = equal.getBounds(pGraphics2D);
-		double leftWidth = aNameBounds.getWidth();
+		double leftWidth = nameBounds.getWidth();
 		double midWidth = e.getWidth();
-		double rightWidth = aValueBounds.getWidth();
-		if(rightWidth == 0)
+		aValueWidth = valueBounds.getWidth();
+		if(aValueWidth == 0)
 		{
-			rightWidth = DEFAULT_WIDTH / 2;
+			aValueWidth = DEFAULT_WIDTH / 2;
 		}
-		rightWidth = Math.max(rightWidth, aBoxWidth - midWidth / 2);
+		aMidWidth = midWidth;
+		double rightWidth = Math.max(aValueWidth, aBoxWidth - midWidth / 2);
 		double width = leftWidth + midWidth + rightWidth;
-		double height = Math.max(aNameBounds.getHeight(), Math.max(aValueBounds.getHeight(), e.getHeight()));
+		double height = Math.max(nameBounds.getHeight(), Math.max(valueBounds.getHeight(), e.getHeight()));
 
 		Rectangle2D b = getBounds();
 		setBounds(new Rectangle2D.Double(b.getX(), b.getY(), width, height));
 		aAxisX = leftWidth + midWidth / 2;
-      
-		aValueBounds.setFrame(b.getMaxX() - rightWidth, b.getY(), aValueBounds.getWidth(), aValueBounds.getHeight());
+		if(aBoxedValue)
+		{
+			aValue.setJustification(MultiLineString.CENTER);
+		}
+		else
+		{
+			aName.setJustification(MultiLineString.LEFT);
+		}
+		invalidateShape();
 	}
 
 	/**
@@ -171,6 +178,7 @@ public class FieldNode extends RectangularNode implements ChildNode
 	public void setBoxWidth(double pBoxWidth)
 	{
 		aBoxWidth = pBoxWidth;
+		invalidateShape();
 	}
    
 	/**
@@ -180,6 +188,7 @@ public class FieldNode extends RectangularNode implements ChildNode
 	public void setBoxedValue(boolean pNewValue)
 	{
 		aBoxedValue = pNewValue;
+		invalidateShape();
 	}
 
 	/**
@@ -211,11 +220,11 @@ public class FieldNode extends RectangularNode implements ChildNode
 	}
    
 	@Override
-	public Shape getShape()
+	protected Shape computeShape()
 	{
 		if(aBoxedValue)
 		{
-			return aValueBounds;
+			return computeValueBounds();
 		}
 		else
 		{
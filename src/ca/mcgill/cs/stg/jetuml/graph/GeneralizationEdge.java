@@ -97,7 +97,7 @@ public class GeneralizationEdge extends ClassRelationshipEdge
 	}
 	
 	@Override
-	public SegmentationStyle obtainSegmentationStyle()
+	protected SegmentationStyle obtainDefaultSegmentationStyle()
 	{
 		return SegmentationStyleFactory.createVHVStrategy();
 	}
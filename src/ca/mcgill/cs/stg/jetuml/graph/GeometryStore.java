@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.graph;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The bounds of the nodes of a graph, stored in columns of primitive 
+ * values indexed by a dense identifier assigned to each node. Unlike
+ * Node.getBounds, which returns a copy of the bounds of a node, the 
+ * accessors of this class do not allocate memory, which makes them 
+ * suitable for code that reads the bounds of many nodes, such as 
+ * painting, hit testing, or the routing of edges.
+ * 
+ * The bounds of a node are copied again from the node when its 
+ * geometry has changed since they were stored, so the values read 
+ * are always current. Nodes that are not part of the graph when
+ * identifiers are assigned are read directly from their bounds.
+ */
+public final class GeometryStore
+{
+	private static final int INITIAL_CAPACITY = 64;
+	
+	private final Map<Node, Integer> aIds = new IdentityHashMap<>();
+	private Integer[] aIdObjects = new Integer[0]; // Reused from one assignment of identifiers to the next
+	private Node[] aNodes = new Node[INITIAL_CAPACITY];
+	private int[] aVersions = new int[INITIAL_CAPACITY]; // The geometry version of each node when it was stored
+	private double[] aX = new double[INITIAL_CAPACITY];
+	private double[] aY = new double[INITIAL_CAPACITY];
+	private double[] aWidths = new double[INITIAL_CAPACITY];
+	private double[] aHeights = new double[INITIAL_CAPACITY];
+	private int aSize;
+	
+	/**
+	 * Assigns identifiers to pRootNodes and their descendants,
+	 * and stores their bounds.
+	 * @param pRootNodes The root nodes of the graph.
+	 */
+	void setNodes(Collection<Node> pRootNodes)
+	{
+		aIds.clear();
+		Arrays.fill(aNodes, 0, aSize, null);
+		aSize = 0;
+		for( Node node : pRootNodes )
+		{
+			add(node);
+		}
+	}
+	
+	private void add(Node pNode)
+	{
+		if( aIds.containsKey(pNode) )
+		{
+			return;
+		}
+		if( aSize == aNodes.length )
+		{
+			int capacity = 2 * aSize;
+			aNodes = Arrays.copyOf(aNodes, capacity);
+			aVersions = Arrays.copyOf(aVersions, capacity);
+			aX = Arrays.copyOf(aX, capacity);
+			aY = Arrays.copyOf(aY, capacity);
+			aWidths = Arrays.copyOf(aWidths, capacity);
+			aHeights = Arrays.copyOf(aHeights, capacity);
+		}
+		if( aSize == aIdObjects.length )
+		{
+			aIdObjects = Arrays.copyOf(aIdObjects, Math.max(INITIAL_CAPACITY, 2 * aSize));
+		}
+		if( aIdObjects[aSize] == null )
+		{
+			aIdObjects[aSize] = aSize;
+		}
+		aIds.put(pNode, aIdObjects[aSize]);
+		aNodes[aSize] = pNode;
+		load(aSize);
+		aSize++;
+		if( pNode instanceof ParentNode )
+		{
+			for( ChildNode child : ((ParentNode)pNode).getChildren() )
+			{
+				add(child);
+			}
+		}
+	}
+	
+	/**
+	 * Copies the bounds of the nodes whose geometry has changed
+	 * since they were stored. After this call, and as long as no
+	 * node changes, reading from the store does not write to it, 
+	 * so it can be read from several threads.
+	 */
+	void refresh()
+	{
+		for( int i = 0; i < aSize; i++ )
+		{
+			if( !isCurrent(i) )
+			{
+				load(i);
+			}
+		}
+	}
+	
+	private boolean isCurrent(int pId)
+	{
+		return aNodes[pId] instanceof AbstractNode && ((AbstractNode)aNodes[pId]).getGeometryVersion() == aVersions[pId];
+	}
+	
+	private void load(int pId)
+	{
+		Node node = aNodes[pId];
+		if( node instanceof AbstractNode )
+		{
+			aVersions[pId] = ((AbstractNode)node).getGeometryVersion();
+		}
+		if( node instanceof RectangularNode )
+		{
+			((RectangularNode)node).storeBounds(this, pId);
+		}
+		else
+		{
+			Rectangle2D bounds = node.getBounds();
+			set(pId, bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+		}
+	}
+	
+	void set(int pId, double pX, double pY, double pWidth, double pHeight)
+	{
+		aX[pId] = pX;
+		aY[pId] = pY;
+		aWidths[pId] = pWidth;
+		aHeights[pId] = pHeight;
+	}
+	
+	/**
+	 * @param pNode A node.
+	 * @return The identifier of pNode in this store, or -1 if pNode
+	 * was not part of the graph when identifiers were last assigned.
+	 * Identifiers are consecutive, starting from 0.
+	 */
+	public int getId(Node pNode)
+	{
+		Integer id = aIds.get(pNode);
+		if( id == null )
+		{
+			return -1;
+		}
+		return id;
+	}
+	
+	/**
+	 * @return The number of nodes in this store.
+	 */
+	public int size()
+	{
+		return aSize;
+	}
+	
+	/*
+	 * Returns the identifier of pNode after making sure its bounds 
+	 * are current, or -1 if pNode is not in the store.
+	 */
+	private int find(Node pNode)
+	{
+		int id = getId(pNode);
+		if( id >= 0 && !isCurrent(id) )
+		{
+			load(id);
+		}
+		return id;
+	}
+	
+	/**
+	 * @param pNode A node.
+	 * @return The smallest x coordinate of the bounds of pNode.
+	 */
+	public double getX(Node pNode)
+	{
+		int id = find(pNode);
+		if( id < 0 )
+		{
+			return pNode.getBounds().getX();
+		}
+		return aX[id];
+	}
+	
+	/**
+	 * @param pNode A node.
+	 * @return The smallest y coordinate of the bounds of pNode.
+	 */
+	public double getY(Node pNode)
+	{
+		int id = find(pNode);
+		if( id < 0 )
+		{
+			return pNode.getBounds().getY();
+		}
+		return aY[id];
+	}
+	
+	/**
+	 * @param pNode A node.
+	 * @return The width of the bounds of pNode.
+	 */
+	public double getWidth(Node pNode)
+	{
+		int id = find(pNode);
+		if( id < 0 )
+		{
+			return pNode.getBounds().getWidth();
+		}
+		return aWidths[id];
+	}
+	
+	/**
+	 * @param pNode A node.
+	 * @return The height of the bounds of pNode.
+	 */
+	public double getHeight(Node pNode)
+	{
+		int id = find(pNode);
+		if( id < 0 )
+		{
+			return pNode.getBounds().getHeight();
+		}
+		return aHeights[id];
+	}
+	
+	/**
+	 * @param pNode A node.
+	 * @return The largest x coordinate of the bounds of pNode.
+	 */
+	public double getMaxX(Node pNode)
+	{
+		int id = find(pNode);
+		if( id < 0 )
+		{
+			return pNode.getBounds().getMaxX();
+		}
+		return aX[id] + aWidths[id];
+	}
+	
+	/**
+	 * @param pNode A node.
+	 * @return The largest y coordinate of the bounds of pNode.
+	 */
+	public double getMaxY(Node pNode)
+	{
+		int id = find(pNode);
+		if( id < 0 )
+		{
+			return pNode.getBounds().getMaxY();
+		}
+		return aY[id] + aHeights[id];
+	}
+	
+	/**
+	 * @param pNode A node.
+	 * @return The x coordinate of the center of the bounds of pNode.
+	 */
+	public double getCenterX(Node pNode)
+	{
+		int id = find(pNode);
+		if( id < 0 )
+		{
+			return pNode.getBounds().getCenterX();
+		}
+		return aX[id] + aWidths[id] / 2;
+	}
+	
+	/**
+	 * @param pNode A node.
+	 * @return The y coordinate of the center of the bounds of pNode.
+	 */
+	public double getCenterY(Node pNode)
+	{
+		int id = find(pNode);
+		if( id < 0 )
+		{
+			return pNode.getBounds().getCenterY();
+		}
+		return aY[id] + aHeights[id] / 2;
+	}
+	
+	/**
+	 * @param pNode A node.
+	 * @param pRectangle A rectangle.
+	 * @return True if the bounds of pNode intersect pRectangle.
+	 */
+	public boolean intersects(Node pNode, Rectangle2D pRectangle)
+	{
+		int id = find(pNode);
+		if( id < 0 )
+		{
+			return pRectangle.intersects(pNode.getBounds());
+		}
+		return pRectangle.intersects(aX[id], aY[id], aWidths[id], aHeights[id]);
+	}
+	
+	/**
+	 * @param pNode A node.
+	 * @param pRectangle A rectangle.
+	 * @return True if the bounds of pNode are entirely inside pRectangle.
+	 */
+	public boolean isInside(Node pNode, Rectangle2D pRectangle)
+	{
+		int id = find(pNode);
+		if( id < 0 )
+		{
+			return pRectangle.contains(pNode.getBounds());
+		}
+		return pRectangle.contains(aX[id], aY[id], aWidths[id], aHeights[id]);
+	}
+	
+	/**
+	 * Enlarges a rectangle so that it contains the bounds of a node.
+	 * @param pNode A node.
+	 * @param pRectangle The rectangle to enlarge.
+	 */
+	public void addTo(Node pNode, Rectangle2D pRectangle)
+	{
+		int id = find(pNode);
+		if( id < 0 )
+		{
+			pRectangle.add(pNode.getBounds());
+		}
+		else
+		{
+			pRectangle.add(aX[id], aY[id]);
+			pRectangle.add(aX[id] + aWidths[id], aY[id] + aHeights[id]);
+		}
+	}
+}
@@ -30,9 +30,16 @@ import java.beans.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import ca.mcgill.cs.stg.jetuml.framework.GraphModificationListener;
 import ca.mcgill.cs.stg.jetuml.framework.Grid;
+import ca.mcgill.cs.stg.jetuml.framework.Instrumentation;
 
 /**
  *  A graph consisting of nodes and edges.
@@ -50,15 +57,29 @@ import ca.mcgill.cs.stg.jetuml.framework.Grid;
  *    
  *  - Adding nodes or edges. This mode is used for adding completely new elements, typically
  *    through UI actions. See methods add{Node|Edge}, which trigger notifications.
+ *    
+ *  Insertions, additions and removals made between beginBatch and commitBatch, or 
+ *  through method batch, are notified as a single compound operation.
  */
 public abstract class Graph
 {
+	private static final int PARALLEL_LAYOUT_THRESHOLD = 256; // root nodes
+	private static final int PARALLEL_ROUTING_THRESHOLD = 256; // edges
+	
 	protected GraphModificationListener aModificationListener; // Only access from notify* methods and setter
 	protected ArrayList<Node> aRootNodes; // Only nodes without a parent are tracked by the graph.
 	protected ArrayList<Edge> aEdges;
-	protected transient ArrayList<Node> aNodesToBeRemoved;
-	protected transient ArrayList<Edge> aEdgesToBeRemoved;
+	protected transient ArrayList<Node> aNodesToBeRemoved; // A TombstoneList
+	protected transient ArrayList<Edge> aEdgesToBeRemoved; // A TombstoneList
+	private transient Map<Node, List<Edge>> aEdgesByNode; // The edges of each node while removing nodes, or null
+	private transient Set<GraphElement> aElements; // All the nodes, including children, and edges of the graph
 	private transient boolean aNeedsLayout;
+	private transient boolean aParallelLayout;
+	private transient boolean aNeedsRouting;
+	private transient Map<Edge, Point2D[]> aPaths; // The paths computed by the last routing of the edges
+	private transient int aRoutingVersion; // The number of times the edges were routed
+	private transient GeometryStore aGeometry;
+	private transient int aBatchDepth; // The number of batches begun and not yet committed
 
 	/**
 	 * Constructs a graph with no nodes or edges.
@@ -67,9 +88,12 @@ public abstract class Graph
 	{
 		aRootNodes = new ArrayList<>();
 		aEdges = new ArrayList<>();
-		aNodesToBeRemoved = new ArrayList<>();
-		aEdgesToBeRemoved = new ArrayList<>();
+		aNodesToBeRemoved = new TombstoneList<>();
+		aEdgesToBeRemoved = new TombstoneList<>();
+		aElements = Collections.newSetFromMap(new IdentityHashMap<GraphElement, Boolean>());
 		aNeedsLayout = true;
+		aPaths = new IdentityHashMap<>();
+		aGeometry = new GeometryStore();
 	}
 	
 	/**
@@ -121,9 +145,17 @@ public abstract class Graph
 		}
 	}
 	
-	private void notifyStartingCompoundOperation()
+	private void notifyLayoutChanged()
 	{
 		if( aModificationListener != null )
+		{
+			aModificationListener.layoutChanged(this);
+		}
+	}
+	
+	private void notifyStartingCompoundOperation()
+	{
+		if( aModificationListener != null && aBatchDepth == 0 )
 		{
 			aModificationListener.startingCompoundOperation();
 		}
@@ -131,7 +163,7 @@ public abstract class Graph
 	
 	private void notifyEndingCompoundOperation()
 	{
-		if( aModificationListener != null )
+		if( aModificationListener != null && aBatchDepth == 0 )
 		{
 			aModificationListener.finishingCompoundOperation();
 		}
@@ -219,11 +251,14 @@ public abstract class Graph
 		notifyStartingCompoundOperation();
 		completeEdgeAddition(node1, pEdge, pPoint1, pPoint2);
 		aEdges.add(pEdge);
+		aElements.add(pEdge);
+		indexEdge(pEdge);
 		notifyEdgeAdded(pEdge);
 		
-		if(!aRootNodes.contains(pEdge.getEnd()) && pEdge.getEnd() instanceof PointNode )
+		if(!contains(pEdge.getEnd()) && pEdge.getEnd() instanceof PointNode )
 		{
 			aRootNodes.add(pEdge.getEnd());
+			register(pEdge.getEnd());
 		}
 		aNeedsLayout = true;
 		notifyEndingCompoundOperation();
@@ -251,6 +286,7 @@ public abstract class Graph
 		if( !(pNode instanceof ChildNode) || ((ChildNode)pNode).getParent() == null )
 		{
 			aRootNodes.add(pNode);
+			register(pNode);
 		}
 		notifyNodeAdded( pNode );
 		aNeedsLayout = true;
@@ -271,6 +307,7 @@ public abstract class Graph
 		if( !(pNode instanceof ChildNode && ((ChildNode)pNode).getParent() != null) )
 		{	// The node does not have a parent, insert it as a root node
 			aRootNodes.add(pNode);
+			register(pNode);
 		}
 		else
 		{	// Re-insert the node as a child of its parent
@@ -369,7 +406,7 @@ public abstract class Graph
 		ArrayList<Edge> toRemove = new ArrayList<Edge>();
 		for(Edge edge : aEdges)
 		{
-			if((edge.getStart() == pNode || edge.getEnd() == pNode) && !aEdgesToBeRemoved.contains(edge))
+			if((edge.getStart() == pNode || edge.getEnd() == pNode) && !isRemoved(edge))
 			{
 				toRemove.add(edge);
 			}
@@ -411,7 +448,13 @@ public abstract class Graph
 	 */
 	public void draw(Graphics2D pGraphics2D, Grid pGrid)
 	{
+		boolean pending = aNeedsLayout || aNeedsRouting; // Otherwise there is no layout pass to measure
+		long start = System.nanoTime();
 		layout(pGraphics2D, pGrid);
+		if( pending )
+		{
+			Instrumentation.LAYOUT.recordSince(start);
+		}
 		
 		for( Node node : aRootNodes )
 		{
@@ -442,12 +485,17 @@ public abstract class Graph
 	 */
 	public void removeNode(Node pNode)
 	{
-		if(aNodesToBeRemoved.contains(pNode))
+		if(isRemoved(pNode))
 		{
 			return;
 		}
 		notifyStartingCompoundOperation();
 		aNodesToBeRemoved.add(pNode);
+		boolean indexing = aEdgesByNode == null;
+		if( indexing )
+		{
+			indexEdges();
+		}
 		
 		if(pNode instanceof ParentNode)
 		{
@@ -459,41 +507,76 @@ public abstract class Graph
 			}
 		}
 
-		// Notify all nodes that pNode is being removed.
-		for(Node node : aRootNodes)
+		if( pNode instanceof ChildNode && ((ChildNode) pNode).getParent() != null )
 		{
-			removeFromParent( node, pNode );
+			((ChildNode) pNode).getParent().getChildren().remove(pNode);
+			// We don't reassing the parent of the child to null in case the operation
+			// is undone, at which point we'll need to know who the parent was.
+			unregister(pNode);
 		}
 		
 		// Notify all edges that pNode is being removed.
-		for(Edge edge : aEdges)
+		List<Edge> edges = aEdgesByNode.get(pNode);
+		if( edges != null )
 		{
-			if(edge.getStart() == pNode || edge.getEnd() == pNode)
+			for( Edge edge : new ArrayList<>(edges) )
 			{
-				removeEdge(edge);
+				if(edge.getStart() == pNode || edge.getEnd() == pNode)
+				{
+					removeEdge(edge);
+				}
 			}
 		}
+		if( indexing && aBatchDepth == 0 )
+		{
+			aEdgesByNode = null;
+		}
 		notifyNodeRemoved(pNode);
 		notifyEndingCompoundOperation();
 		aNeedsLayout = true;
 	}
 	
-	private static void removeFromParent(Node pParent, Node pToRemove)
+	/*
+	 * Indexes the edges by their end nodes, so that removing k nodes
+	 * takes a single pass over the edges instead of k passes. The
+	 * index is kept until the outermost removal or batch completes.
+	 */
+	private void indexEdges()
 	{
-		if( pParent instanceof ParentNode )
+		aEdgesByNode = new IdentityHashMap<>();
+		for( Edge edge : aEdges )
 		{
-			if( pToRemove instanceof ChildNode && ((ChildNode) pToRemove).getParent() == pParent )
-			{
-				((ParentNode) pParent).getChildren().remove(pToRemove);
-				// We don't reassing the parent of the child to null in case the operation
-				// is undone, at which point we'll need to know who the parent was.
-			}
-			for( Node child : ((ParentNode) pParent).getChildren() )
+			indexEdge(edge);
+		}
+	}
+	
+	private void indexEdge(Edge pEdge)
+	{
+		if( aEdgesByNode == null )
+		{
+			return;
+		}
+		for( Node node : new Node[] { pEdge.getStart(), pEdge.getEnd() } )
+		{
+			List<Edge> edges = aEdgesByNode.get(node);
+			if( edges == null )
 			{
-				removeFromParent(child, pToRemove );
+				edges = new ArrayList<>();
+				aEdgesByNode.put(node, edges);
 			}
+			edges.add(pEdge);
 		}
 	}
+	
+	private boolean isRemoved(Node pNode)
+	{
+		return aNodesToBeRemoved.contains(pNode);
+	}
+	
+	private boolean isRemoved(Edge pEdge)
+	{
+		return aEdgesToBeRemoved.contains(pEdge);
+	}
 
 	/**
 	 * @param pElement The element we want to check is in the graph.
@@ -501,37 +584,84 @@ public abstract class Graph
 	 */
 	public boolean contains( GraphElement pElement )
 	{	
-		if( aEdges.contains( pElement ))
+		return aElements.contains(pElement);
+	}
+	
+	/*
+	 * Adds pNode and its descendants to the elements of the graph.
+	 */
+	private void register(Node pNode)
+	{
+		aElements.add(pNode);
+		if( pNode instanceof AbstractNode )
 		{
-			return true;
+			((AbstractNode) pNode).setGraph(this);
 		}
-		for( Node node : aRootNodes )
+		if( pNode instanceof ParentNode )
 		{
-			if( containsNode( node, pElement))
+			for( Node child : ((ParentNode) pNode).getChildren() )
 			{
-				return true;
+				register(child);
 			}
 		}
-		return false;
 	}
 	
-	private boolean containsNode(Node pTest, GraphElement pTarget)
+	/*
+	 * Removes pNode and its descendants from the elements of the graph.
+	 */
+	private void unregister(Node pNode)
 	{
-		if( pTest == pTarget )
+		aElements.remove(pNode);
+		if( pNode instanceof AbstractNode && ((AbstractNode) pNode).getGraph() == this )
 		{
-			return true;
+			((AbstractNode) pNode).setGraph(null);
 		}
-		else if( pTest instanceof ParentNode )
+		if( pNode instanceof ParentNode )
 		{
-			for( Node node : ((ParentNode) pTest).getChildren())
+			for( Node child : ((ParentNode) pNode).getChildren() )
 			{
-				if( containsNode(node, pTarget))
-				{
-					return true;
-				}
+				unregister(child);
+			}
+		}
+	}
+	
+	/**
+	 * Records that pChild was added to pParent, so that pChild 
+	 * becomes part of the graph of pParent, if any. To be called
+	 * by the implementations of ParentNode.addChild.
+	 * 
+	 * @param pParent The parent node.
+	 * @param pChild The node added to pParent.
+	 */
+	static void childAdded(ParentNode pParent, ChildNode pChild)
+	{
+		if( pParent instanceof AbstractNode )
+		{
+			Graph graph = ((AbstractNode) pParent).getGraph();
+			if( graph != null && graph.contains(pParent) )
+			{
+				graph.register(pChild);
+			}
+		}
+	}
+	
+	/**
+	 * Records that pChild was removed from its parent, so that it
+	 * is no longer part of a graph. To be called by the 
+	 * implementations of ParentNode.removeChild.
+	 * 
+	 * @param pChild The node removed from its parent.
+	 */
+	static void childRemoved(ChildNode pChild)
+	{
+		if( pChild instanceof AbstractNode )
+		{
+			Graph graph = ((AbstractNode) pChild).getGraph();
+			if( graph != null )
+			{
+				graph.unregister(pChild);
 			}
 		}
-		return false;
 	}
 
 	/**
@@ -540,22 +670,16 @@ public abstract class Graph
 	 */
 	public void removeEdge(Edge pEdge)
 	{
-		if (aEdgesToBeRemoved.contains(pEdge))
+		if (isRemoved(pEdge))
 		{
 			return;
 		}
 		aEdgesToBeRemoved.add(pEdge);
 		notifyEdgeRemoved(pEdge);
-		for(int i = aRootNodes.size() - 1; i >= 0; i--)
+		// Only checks the root nodes when the start node could match, so that removing k edges is linear
+		if( pEdge.getStart() instanceof NoteEdge && aRootNodes.contains(pEdge.getStart()) )
 		{
-			Node n = aRootNodes.get(i);
-			if( n instanceof NoteEdge )
-			{
-				if(pEdge.getStart() == n)
-				{
-					removeNode(pEdge.getEnd());
-				}
-			}
+			removeNode(pEdge.getEnd());
 		}
 		aNeedsLayout = true;
 	}
@@ -568,6 +692,100 @@ public abstract class Graph
 		aNeedsLayout = true;
 	}
 
+	/**
+	 * Causes the paths of the edges to be recomputed, without
+	 * recomputing the layout of the nodes. Call after moving nodes.
+	 */
+	public void route()
+	{
+		aNeedsRouting = true;
+	}
+	
+	/**
+	 * Starts a batch of modifications. Until the matching call
+	 * to commitBatch, the modifications of the graph are notified 
+	 * as part of a single compound operation, and the layout of
+	 * the graph is only recomputed once the batch is committed.
+	 * Batches can be nested, in which case only the outermost one
+	 * has an effect.
+	 */
+	public void beginBatch()
+	{
+		notifyStartingCompoundOperation();
+		aBatchDepth++;
+	}
+	
+	/**
+	 * Starts a batch of modifications that will add about pNodes
+	 * root nodes and pEdges edges to the graph, so that space for
+	 * them can be reserved in advance.
+	 * 
+	 * @param pNodes The expected number of root nodes to add.
+	 * @param pEdges The expected number of edges to add.
+	 */
+	public void beginBatch(int pNodes, int pEdges)
+	{
+		assert pNodes >= 0 && pEdges >= 0;
+		beginBatch();
+		aRootNodes.ensureCapacity(aRootNodes.size() + pNodes);
+		aEdges.ensureCapacity(aEdges.size() + pEdges);
+	}
+	
+	/**
+	 * Completes the batch of modifications started by the 
+	 * last call to beginBatch.
+	 */
+	public void commitBatch()
+	{
+		assert aBatchDepth > 0;
+		aBatchDepth--;
+		if( aBatchDepth == 0 )
+		{
+			aEdgesByNode = null;
+			aNeedsLayout = true;
+			notifyEndingCompoundOperation();
+		}
+	}
+	
+	/**
+	 * Performs pModifications as a single batch. The batch is
+	 * committed even if pModifications throws an exception.
+	 * 
+	 * @param pModifications The modifications to perform on the graph.
+	 */
+	public void batch(Runnable pModifications)
+	{
+		beginBatch();
+		try
+		{
+			pModifications.run();
+		}
+		finally
+		{
+			commitBatch();
+		}
+	}
+	
+	/**
+	 * Enables or disables the parallel layout of root nodes. When enabled,
+	 * the root nodes of large graphs, together with their children, are laid 
+	 * out concurrently. This requires the layout of each root node to depend 
+	 * only on the node itself and its descendants, and to only read from 
+	 * the graphics context. Layout steps that depend on other nodes or
+	 * on edges must be done by subclasses after calling 
+	 * <code>super.layout</code>, and are always sequential.
+	 * Text is measured with Swing labels, one thread at a time, so
+	 * the layout of nodes that mostly measure text does not get 
+	 * faster: the option is off by default and is not used by the
+	 * editor or the batch renderer.
+	 * 
+	 * @param pParallel True to lay out root nodes in parallel.
+	 */
+	public void setParallelLayout(boolean pParallel)
+	{
+		aParallelLayout = pParallel;
+	}
+
 	/**
 	 * Computes the layout of the graph.
 	 * If you override this method, you must first call 
@@ -579,21 +797,268 @@ public abstract class Graph
 	{
 		if(!aNeedsLayout)
 		{
+			if( aNeedsRouting )
+			{
+				routeEdges();
+			}
 			return;
 		}
-		aRootNodes.removeAll(aNodesToBeRemoved);
-		aEdges.removeAll(aEdgesToBeRemoved);
-		aNodesToBeRemoved.clear();
-		aEdgesToBeRemoved.clear();
+		compact();
 
-		for(int i = 0; i < aRootNodes.size(); i++)
+		if( aParallelLayout && aRootNodes.size() >= PARALLEL_LAYOUT_THRESHOLD )
 		{
-			Node n = aRootNodes.get(i);
-			n.layout(this, pGraphics2D, pGrid);
+			ForkJoinPool.commonPool().invoke(new RootLayoutTask(pGraphics2D, pGrid, 0, aRootNodes.size()));
+		}
+		else
+		{
+			for(int i = 0; i < aRootNodes.size(); i++)
+			{
+				Node n = aRootNodes.get(i);
+				n.layout(this, pGraphics2D, pGrid);
+			}
 		}
+		aGeometry.setNodes(aRootNodes);
 		aNeedsLayout = false;
+		routeEdges();
+	}
+	
+	/*
+	 * Removes the elements that were removed since the last layout, 
+	 * in a single pass over the root nodes and edges.
+	 */
+	private void compact()
+	{
+		if( !aNodesToBeRemoved.isEmpty() )
+		{
+			aRootNodes.removeAll(aNodesToBeRemoved);
+			for( Node node : aNodesToBeRemoved )
+			{	// Removed children were unregistered when detached from their parent
+				if( !(node instanceof ChildNode && ((ChildNode) node).getParent() != null) )
+				{
+					unregister(node);
+				}
+			}
+		}
+		if( !aEdgesToBeRemoved.isEmpty() )
+		{
+			aEdges.removeAll(aEdgesToBeRemoved);
+			aElements.removeAll(aEdgesToBeRemoved);
+		}
+		aNodesToBeRemoved.clear();
+		aEdgesToBeRemoved.clear();
+	}
+	
+	/*
+	 * Computes the path of every edge routed by the graph, in 
+	 * parallel for large graphs. The path of an edge only depends 
+	 * on the bounds of the nodes and on the other edges, which 
+	 * are not modified while routing.
+	 */
+	private void routeEdges()
+	{
+		aNeedsRouting = true; // Paths are not valid until routing is complete
+		aGeometry.refresh(); // So that the store is only read while routing in parallel
+		List<ClassRelationshipEdge> edges = new ArrayList<>();
+		for( Edge edge : aEdges )
+		{
+			if( edge instanceof ClassRelationshipEdge )
+			{
+				edges.add((ClassRelationshipEdge) edge);
+			}
+		}
+		Point2D[][] paths = new Point2D[edges.size()][];
+		if( edges.size() >= PARALLEL_ROUTING_THRESHOLD )
+		{
+			ForkJoinPool.commonPool().invoke(new RoutingTask(edges, paths, 0, edges.size()));
+		}
+		else
+		{
+			for( int i = 0; i < paths.length; i++ )
+			{
+				paths[i] = edges.get(i).computePath();
+			}
+		}
+		aPaths.clear();
+		for( int i = 0; i < paths.length; i++ )
+		{
+			aPaths.put(edges.get(i), paths[i]);
+		}
+		aRoutingVersion = (aRoutingVersion + 1) & Integer.MAX_VALUE;
+		aNeedsRouting = false;
+		notifyLayoutChanged();
+	}
+	
+	/**
+	 * @return A number that changes whenever the edges are routed,
+	 * or -1 if the shape of the edges may have changed since they 
+	 * were last routed.
+	 */
+	int getRoutingVersion()
+	{
+		if( aNeedsLayout || aNeedsRouting )
+		{
+			return -1;
+		}
+		return aRoutingVersion;
+	}
+	
+	/**
+	 * @param pEdge An edge of this graph.
+	 * @return The path computed for pEdge when the graph was last 
+	 * laid out, or null if the path of pEdge may have changed since.
+	 */
+	Point2D[] getRoutedPath(Edge pEdge)
+	{
+		if( aNeedsLayout || aNeedsRouting )
+		{
+			return null;
+		}
+		return aPaths.get(pEdge);
+	}
+	
+	/*
+	 * The elements waiting to be removed, indexed so that checking 
+	 * whether an element was removed since the last layout takes 
+	 * constant time. Subclasses can still modify the list directly: 
+	 * any change other than an addition, which the list detects 
+	 * through its modification count, causes the index to be rebuilt.
+	 */
+	private static final class TombstoneList<E> extends ArrayList<E>
+	{
+		private static final long serialVersionUID = 1L;
+		private final transient Set<Object> aIndex = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		private transient int aIndexedCount = modCount; // The modification count when aIndex was last updated
+		
+		@Override
+		public boolean add(E pElement)
+		{
+			boolean indexed = aIndexedCount == modCount;
+			super.add(pElement);
+			if( indexed )
+			{
+				aIndex.add(pElement);
+				aIndexedCount = modCount;
+			}
+			return true;
+		}
+		
+		@Override
+		public E set(int pIndex, E pElement)
+		{
+			modCount++; // Replacing an element is not otherwise counted
+			return super.set(pIndex, pElement);
+		}
+		
+		@Override
+		public boolean contains(Object pElement)
+		{
+			if( aIndexedCount != modCount )
+			{
+				aIndex.clear();
+				aIndex.addAll(this);
+				aIndexedCount = modCount;
+			}
+			return aIndex.contains(pElement);
+		}
+	}
+	
+	/*
+	 * Lays out a range of root nodes, splitting it in halves 
+	 * until it is small enough to be laid out sequentially.
+	 */
+	private final class RootLayoutTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private static final int SEQUENTIAL_SIZE = 32;
+		
+		private final transient Graphics2D aGraphics2D;
+		private final transient Grid aGrid;
+		private final int aStart;
+		private final int aEnd;
+		
+		RootLayoutTask(Graphics2D pGraphics2D, Grid pGrid, int pStart, int pEnd)
+		{
+			aGraphics2D = pGraphics2D;
+			aGrid = pGrid;
+			aStart = pStart;
+			aEnd = pEnd;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if( aEnd - aStart <= SEQUENTIAL_SIZE )
+			{
+				for( int i = aStart; i < aEnd; i++ )
+				{
+					aRootNodes.get(i).layout(Graph.this, aGraphics2D, aGrid);
+				}
+			}
+			else
+			{
+				int middle = (aStart + aEnd) >>> 1;
+				invokeAll(new RootLayoutTask(aGraphics2D, aGrid, aStart, middle), 
+						new RootLayoutTask(aGraphics2D, aGrid, middle, aEnd));
+			}
+		}
+	}
+	
+	/*
+	 * Computes the paths of a range of edges into the 
+	 * corresponding range of a path table. Like RootLayoutTask, 
+	 * it is a RecursiveAction rather than a parallel stream so that
+	 * it controls its sequential cut-off and writes each path at the
+	 * index of its edge, without collecting the results.
+	 */
+	private static final class RoutingTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private static final int SEQUENTIAL_SIZE = 64;
+		
+		private final transient List<ClassRelationshipEdge> aEdges;
+		private final transient Point2D[][] aPaths;
+		private final int aStart;
+		private final int aEnd;
+		
+		RoutingTask(List<ClassRelationshipEdge> pEdges, Point2D[][] pPaths, int pStart, int pEnd)
+		{
+			aEdges = pEdges;
+			aPaths = pPaths;
+			aStart = pStart;
+			aEnd = pEnd;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if( aEnd - aStart <= SEQUENTIAL_SIZE )
+			{
+				for( int i = aStart; i < aEnd; i++ )
+				{
+					aPaths[i] = aEdges.get(i).computePath();
+				}
+			}
+			else
+			{
+				int middle = (aStart + aEnd) >>> 1;
+				invokeAll(new RoutingTask(aEdges, aPaths, aStart, middle), 
+						new RoutingTask(aEdges, aPaths, middle, aEnd));
+			}
+		}
 	}
 
+	/**
+	 * Returns the bounds of the nodes of this graph, in a form that 
+	 * can be read without allocating memory. Nodes are assigned an
+	 * identifier in the store when the graph is laid out.
+	 * 
+	 * @return The geometry store of this graph.
+	 */
+	public GeometryStore getGeometry()
+	{
+		return aGeometry;
+	}
+	
 	/**
 	 * Gets the smallest rectangle enclosing the graph.
 	 * 
@@ -610,7 +1075,7 @@ public abstract class Graph
 			}
 			else
 			{
-				bounds.add(node.getBounds());
+				aGeometry.addTo(node, bounds);
 			}
 		}
 		for(Edge edge : aEdges)
@@ -639,6 +1104,42 @@ public abstract class Graph
 	 * @return an array of edge prototypes
 	 */   
 	public abstract Edge[] getEdgePrototypes();
+	
+	/**
+	 * @return True if the nodes of this graph can be automatically
+	 * arranged in layers, according to the order imposed by some of 
+	 * its edges. By default, graphs cannot be arranged in layers.
+	 * @see #getLayerOrder(Edge)
+	 */
+	public boolean canArrangeInLayers()
+	{
+		return false;
+	}
+	
+	/**
+	 * Indicates how an edge constrains the arrangement of the
+	 * nodes of this graph in layers.
+	 * @param pEdge An edge of this graph.
+	 * @return A positive value if the start node of pEdge should be
+	 * placed in a layer above its end node, a negative value if it 
+	 * should be placed below, and 0 if pEdge does not constrain the 
+	 * arrangement.
+	 */
+	public int getLayerOrder(Edge pEdge)
+	{
+		return 0;
+	}
+	
+	/**
+	 * @return True if the nodes of this graph can be automatically
+	 * arranged by simulating forces between connected nodes. This 
+	 * arrangement is only used for graphs that cannot be arranged 
+	 * in layers. By default, graphs cannot be arranged by forces.
+	 */
+	public boolean canArrangeByForces()
+	{
+		return false;
+	}
 
 	/**
 	 * Adds a persistence delegate to a given encoder that
@@ -714,6 +1215,7 @@ public abstract class Graph
 	public void restoreRootNode(Node pNode)
 	{
 		aRootNodes.add(pNode); 
+		register(pNode);
 	}
 	
 	/**
@@ -725,6 +1227,9 @@ public abstract class Graph
 	public void insertEdge(Edge pEdge)
 	{
 		aEdges.add(pEdge);
+		aElements.add(pEdge);
+		indexEdge(pEdge);
+		aNeedsRouting = true;
 		notifyEdgeAdded(pEdge);
 	}
 	
@@ -743,6 +1248,9 @@ public abstract class Graph
 	{
 		pEdge.connect(pStart, pEnd, this);
 		aEdges.add(pEdge);
+		aElements.add(pEdge);
+		indexEdge(pEdge);
+		aNeedsRouting = true;
 	}
 
 	/**
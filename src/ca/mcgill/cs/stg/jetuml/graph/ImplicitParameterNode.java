@@ -101,7 +101,7 @@ public class ImplicitParameterNode extends RectangularNode implements ParentNode
 	}
 
 	@Override
-	public Shape getShape()
+	protected Shape computeShape()
 	{ return getTopRectangle(); }
    
 	@Override
@@ -126,6 +126,7 @@ public class ImplicitParameterNode extends RectangularNode implements ParentNode
 		pGrid.snap(top);
 		setBounds(new Rectangle2D.Double(top.getX(), top.getY(), top.getWidth(), getBounds().getHeight()));
 		aTopHeight = top.getHeight();
+		invalidateShape();
 	}
 
 	/**
@@ -178,6 +179,7 @@ public class ImplicitParameterNode extends RectangularNode implements ParentNode
 		}
 		aCallNodes.add(pIndex, pNode);
 		pNode.setParent(this);
+		Graph.childAdded(this, pNode);
 	}
 	
 	/**
@@ -210,6 +212,7 @@ public class ImplicitParameterNode extends RectangularNode implements ParentNode
 		}
 		aCallNodes.remove(pNode);
 		pNode.setParent(null);
+		Graph.childRemoved(pNode);
 	}
 	
 	/**
@@ -109,7 +109,7 @@ public class NoteNode extends RectangularNode
 	}
    
 	@Override
-	public Shape getShape()
+	protected Shape computeShape()
 	{
 		Rectangle2D bounds = getBounds();
 		GeneralPath path = new GeneralPath();
@@ -41,7 +41,7 @@ public class ObjectCollaborationEdge extends ClassRelationshipEdge
 	{}
 	
 	@Override
-	public SegmentationStyle obtainSegmentationStyle()
+	protected SegmentationStyle obtainDefaultSegmentationStyle()
 	{
 		return SegmentationStyleFactory.createStraightStrategy();
 	}
@@ -183,6 +183,7 @@ public class ObjectNode extends RectangularNode implements ParentNode
 		}
 		aFields.add(pIndex, pNode);
 		pNode.setParent(this);
+		Graph.childAdded(this, pNode);
 		// prmr unclear why we need this
 //		Rectangle2D b = getBounds();
 //		b.add(new Rectangle2D.Double(b.getX(), b.getY() + b.getHeight(), FieldNode.DEFAULT_WIDTH, FieldNode.DEFAULT_HEIGHT));
@@ -204,6 +205,7 @@ public class ObjectNode extends RectangularNode implements ParentNode
 		}
 		aFields.remove(pNode);
 		pNode.setParent(null);
+		Graph.childRemoved(pNode);
 	}
 	
 	/**
@@ -52,7 +52,15 @@ public class PackageNode extends RectangularNode implements ParentNode, ChildNod
 	private static final int XGAP = 5;
 	private static final int YGAP = 5;
 	   
-	private static JLabel label = new JLabel();
+	// One label per thread, so that diagrams can be rendered concurrently
+	private static ThreadLocal<JLabel> label = new ThreadLocal<JLabel>()
+	{
+		@Override
+		protected JLabel initialValue()
+		{
+			return new JLabel();
+		}
+	};
 
 	private String aName;
 	private MultiLineString aContents;
@@ -80,26 +88,29 @@ public class PackageNode extends RectangularNode implements ParentNode, ChildNod
 		super.draw(pGraphics2D);
 		Rectangle2D bounds = getBounds();
 
-		label.setText("<html>" + aName + "</html>");
-		label.setFont(pGraphics2D.getFont());
-		Dimension d = label.getPreferredSize();
-		label.setBounds(0, 0, d.width, d.height);
-
 		pGraphics2D.draw(aTop);
 
-		double textX = bounds.getX() + NAME_GAP;
-		double textY = bounds.getY() + (aTop.getHeight() - d.getHeight()) / 2;
-      
-		pGraphics2D.translate(textX, textY);
-		label.paint(pGraphics2D);
-		pGraphics2D.translate(-textX, -textY);        
+		synchronized(MultiLineString.LABEL_LOCK)
+		{
+			label.get().setText("<html>" + aName + "</html>");
+			label.get().setFont(pGraphics2D.getFont());
+			Dimension d = label.get().getPreferredSize();
+			label.get().setBounds(0, 0, d.width, d.height);
+
+			double textX = bounds.getX() + NAME_GAP;
+			double textY = bounds.getY() + (aTop.getHeight() - d.getHeight()) / 2;
+
+			pGraphics2D.translate(textX, textY);
+			label.get().paint(pGraphics2D);
+			pGraphics2D.translate(-textX, -textY);
+		}
      
 		pGraphics2D.draw(aBottom);
 		aContents.draw(pGraphics2D, aBottom);
 	}
    
 	@Override
-	public Shape getShape()
+	protected Shape computeShape()
 	{
 		GeneralPath path = new GeneralPath();
 		path.append(aTop, false);
@@ -142,9 +153,13 @@ public class PackageNode extends RectangularNode implements ParentNode, ChildNod
 	@Override
 	public void layout(Graph pGraph, Graphics2D pGraphics2D, Grid pGrid)
 	{
-		label.setText("<html>" + aName + "</html>");
-		label.setFont(pGraphics2D.getFont());
-		Dimension d = label.getPreferredSize();
+		Dimension d;
+		synchronized(MultiLineString.LABEL_LOCK)
+		{
+			label.get().setText("<html>" + aName + "</html>");
+			label.get().setFont(pGraphics2D.getFont());
+			d = label.get().getPreferredSize();
+		}
 		double topWidth = Math.max(d.getWidth() + 2 * NAME_GAP, DEFAULT_TOP_WIDTH);
 		double topHeight = Math.max(d.getHeight(), DEFAULT_TOP_HEIGHT);
 		
@@ -180,6 +195,7 @@ public class PackageNode extends RectangularNode implements ParentNode, ChildNod
 		Rectangle2D b = getBounds();
 		aTop = new Rectangle2D.Double(b.getX(), b.getY(), topWidth, topHeight);
 		aBottom = new Rectangle2D.Double(b.getX(), b.getY() + topHeight, b.getWidth(), b.getHeight() - topHeight);
+		invalidateShape();
 	}
 	
 	private double computeWidth(double pTopWidth, double pContentWidth, double pChildrenWidth)
@@ -244,6 +260,7 @@ public class PackageNode extends RectangularNode implements ParentNode, ChildNod
 		aBottom = (Rectangle2D)aBottom.clone();
 		aTop.setFrame(aTop.getX() + pDeltaX, aTop.getY() + pDeltaY, aTop.getWidth(), aTop.getHeight());
 		aBottom.setFrame(aBottom.getX() + pDeltaX, aBottom.getY() + pDeltaY, aBottom.getWidth(), aBottom.getHeight());
+		invalidateShape();
 		for(Node childNode : getChildren())
         {
         	childNode.translate(pDeltaX, pDeltaY);
@@ -306,6 +323,7 @@ public class PackageNode extends RectangularNode implements ParentNode, ChildNod
 		}
 		aContainedNodes.add(pIndex, pNode);
 		pNode.setParent(this);
+		Graph.childAdded(this, pNode);
 	}
 
 	@Override
@@ -320,6 +338,7 @@ public class PackageNode extends RectangularNode implements ParentNode, ChildNod
 	{
 		aContainedNodes.remove(pNode);
 		pNode.setParent(null);
+		Graph.childRemoved(pNode);
 	}
 	
 	@Override
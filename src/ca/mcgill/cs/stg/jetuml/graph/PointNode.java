@@ -57,6 +57,7 @@ public class PointNode extends AbstractNode
 	public void translate(double pDeltaX, double pDeltaY)
 	{
       aPoint.setLocation(aPoint.getX() + pDeltaX, aPoint.getY() + pDeltaY);
+      super.translate(pDeltaX, pDeltaY);
 	}
 
 	@Override
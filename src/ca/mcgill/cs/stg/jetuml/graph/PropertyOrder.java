@@ -39,6 +39,7 @@ public final class PropertyOrder
 		INSTANCE.addIndex(ClassRelationshipEdge.class, "startLabel", 1);
 		INSTANCE.addIndex(ClassRelationshipEdge.class, "middleLabel", 2);
 		INSTANCE.addIndex(ClassRelationshipEdge.class, "endLabel", 3);
+		INSTANCE.addIndex(ClassRelationshipEdge.class, "routing", 4);
 		INSTANCE.addIndex(CallEdge.class, "middleLabel", 1);
 		INSTANCE.addIndex(ClassNode.class, "name", 1);
 		INSTANCE.addIndex(ClassNode.class, "attributes", 2);
@@ -63,18 +63,29 @@ public abstract class RectangularNode extends AbstractNode
 		return (Rectangle2D) aBounds.clone();
 	}
 
+	/*
+	 * Copies the bounds of this node to pStore without
+	 * allocating a copy of them.
+	 */
+	void storeBounds(GeometryStore pStore, int pId)
+	{
+		pStore.set(pId, aBounds.getX(), aBounds.getY(), aBounds.getWidth(), aBounds.getHeight());
+	}
+
 	/**
 	 * @param pNewBounds The new bounds for this node.
 	 */
 	public void setBounds(Rectangle2D pNewBounds)
 	{
 		aBounds = pNewBounds;
+		invalidateShape();
 	}
 
 	@Override
 	public void layout(Graph pGraph, Graphics2D pGraphics2D, Grid pGrid)
 	{
 		pGrid.snap(aBounds);
+		invalidateShape();
 	}
 
 	@Override
@@ -118,7 +129,7 @@ public abstract class RectangularNode extends AbstractNode
 	}
 
 	@Override
-	public Shape getShape()
+	protected Shape computeShape()
 	{
 		return aBounds;
 	}
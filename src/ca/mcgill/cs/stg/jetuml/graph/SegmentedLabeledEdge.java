@@ -33,6 +33,7 @@ import java.awt.geom.Rectangle2D;
 import javax.swing.JLabel;
 
 import ca.mcgill.cs.stg.jetuml.framework.ArrowHead;
+import ca.mcgill.cs.stg.jetuml.framework.MultiLineString;
 import ca.mcgill.cs.stg.jetuml.framework.LineStyle;
 
 /**
@@ -44,7 +45,15 @@ import ca.mcgill.cs.stg.jetuml.framework.LineStyle;
  */
 public abstract class SegmentedLabeledEdge extends AbstractEdge
 {
-	private static JLabel label = new JLabel();
+	// One label per thread, so that diagrams can be rendered concurrently
+	private static ThreadLocal<JLabel> label = new ThreadLocal<JLabel>()
+	{
+		@Override
+		protected JLabel initialValue()
+		{
+			return new JLabel();
+		}
+	};
 
 	/**
 	 * Constructs a solid edge with no adornments and no label.
@@ -134,16 +143,19 @@ public abstract class SegmentedLabeledEdge extends AbstractEdge
 		{
 			return;
 		}
-		label.setText(toHtml(pString));
-		label.setFont(pGraphics2D.getFont());
-		Dimension dimensions = label.getPreferredSize();      
-		label.setBounds(0, 0, dimensions.width, dimensions.height);
+		synchronized(MultiLineString.LABEL_LOCK)
+		{
+			label.get().setText(toHtml(pString));
+			label.get().setFont(pGraphics2D.getFont());
+			Dimension dimensions = label.get().getPreferredSize();      
+			label.get().setBounds(0, 0, dimensions.width, dimensions.height);
 
-		Rectangle2D bounds = getStringBounds(pEndPoint1, pEndPoint2, pArrowHead, pString, pCenter);
+			Rectangle2D bounds = getStringBounds(pEndPoint1, pEndPoint2, pArrowHead, pString, pCenter);
 
-		pGraphics2D.translate(bounds.getX(), bounds.getY());
-		label.paint(pGraphics2D);
-		pGraphics2D.translate(-bounds.getX(), -bounds.getY());        
+			pGraphics2D.translate(bounds.getX(), bounds.getY());
+			label.get().paint(pGraphics2D);
+			pGraphics2D.translate(-bounds.getX(), -bounds.getY());
+		}
 	}
 
 	/**
@@ -223,8 +235,12 @@ public abstract class SegmentedLabeledEdge extends AbstractEdge
 		{
 			return new Rectangle2D.Double(pEndPoint2.getX(), pEndPoint2.getY(), 0, 0);
 		}
-		label.setText(toHtml(pString));
-		Dimension d = label.getPreferredSize();
+		Dimension d;
+		synchronized(MultiLineString.LABEL_LOCK)
+		{
+			label.get().setText(toHtml(pString));
+			d = label.get().getPreferredSize();
+		}
 		Point2D a = getAttachmentPoint(pEndPoint1, pEndPoint2, pArrow, d, pCenter);
 		return new Rectangle2D.Double(a.getX(), a.getY(), d.getWidth(), d.getHeight());
 	}
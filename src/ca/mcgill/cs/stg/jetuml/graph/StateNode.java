@@ -58,7 +58,7 @@ public class StateNode extends RectangularNode
 	}
    
 	@Override
-	public Shape getShape()
+	protected Shape computeShape()
 	{       
 		return new RoundRectangle2D.Double(getBounds().getX(), getBounds().getY(), 
 				getBounds().getWidth(), getBounds().getHeight(), ARC_SIZE, ARC_SIZE);
@@ -34,6 +34,7 @@ import java.awt.geom.Rectangle2D;
 import javax.swing.JLabel;
 
 import ca.mcgill.cs.stg.jetuml.framework.ArrowHead;
+import ca.mcgill.cs.stg.jetuml.framework.MultiLineString;
 import ca.mcgill.cs.stg.jetuml.framework.Direction;
 
 /**
@@ -59,8 +60,16 @@ public class StateTransitionEdge extends AbstractEdge
 	private static final int DEGREES_20 = 20;
 	private static final int DEGREES_270 = 270;
 	private static final int SELF_EDGE_OFFSET = 15;
-	private static final JLabel LABEL = new JLabel();
-	private static final Font FONT_NORMAL = LABEL.getFont();
+	// One label per thread, so that diagrams can be rendered concurrently
+	private static final ThreadLocal<JLabel> LABEL = new ThreadLocal<JLabel>()
+	{
+		@Override
+		protected JLabel initialValue()
+		{
+			return new JLabel();
+		}
+	};
+	private static final Font FONT_NORMAL = LABEL.get().getFont();
 	private String aLabelText = "";
 	
 	/**
@@ -134,8 +143,11 @@ public class StateTransitionEdge extends AbstractEdge
 		double x = labelBounds.getX();
 		double y = labelBounds.getY();
 		pGraphics2D.translate(x, y);
-		adjustLabelFont();
-		LABEL.paint(pGraphics2D);
+		synchronized(MultiLineString.LABEL_LOCK)
+		{
+			adjustLabelFont();
+			LABEL.get().paint(pGraphics2D);
+		}
 		pGraphics2D.translate(-x, -y);        
 	}
 	
@@ -184,10 +196,14 @@ public class StateTransitionEdge extends AbstractEdge
 		double x = control.getX() / 2 + line.getX1() / 4 + line.getX2() / 4;
 		double y = control.getY() / 2 + line.getY1() / 4 + line.getY2() / 4;
 
-		LABEL.setText(toHtml(aLabelText));
-		adjustLabelFont();
-		Dimension dimension = LABEL.getPreferredSize();
-		LABEL.setBounds(0, 0, dimension.width, dimension.height);
+		Dimension dimension;
+		synchronized(MultiLineString.LABEL_LOCK)
+		{
+			LABEL.get().setText(toHtml(aLabelText));
+			adjustLabelFont();
+			dimension = LABEL.get().getPreferredSize();
+			LABEL.get().setBounds(0, 0, dimension.width, dimension.height);
+		}
    
 		int gap = 3;
 		if( line.getY1() >= line.getY2() - VERTICAL_TOLERANCE && 
@@ -239,10 +255,14 @@ public class StateTransitionEdge extends AbstractEdge
 	private Rectangle2D getSelfEdgeLabelBounds()
 	{
 		Line2D line = getConnectionPoints();
-		LABEL.setText(toHtml(aLabelText));
-		adjustLabelFont();
-		Dimension dimension = LABEL.getPreferredSize();
-		LABEL.setBounds(0, 0, dimension.width, dimension.height);
+		Dimension dimension;
+		synchronized(MultiLineString.LABEL_LOCK)
+		{
+			LABEL.get().setText(toHtml(aLabelText));
+			adjustLabelFont();
+			dimension = LABEL.get().getPreferredSize();
+			LABEL.get().setBounds(0, 0, dimension.width, dimension.height);
+		}
 		if( getPosition() == 1 )
 		{
 			return new Rectangle2D.Double(line.getX1() + SELF_EDGE_OFFSET - dimension.width/2,	
@@ -262,11 +282,11 @@ public class StateTransitionEdge extends AbstractEdge
 			float difference = aLabelText.length() - MAX_LENGTH_FOR_NORMAL_FONT;
 			difference = difference / (2*aLabelText.length()); // damping
 			float factor = 1 - difference;
-			LABEL.setFont(FONT_NORMAL.deriveFont(FONT_NORMAL.getSize()*factor));
+			LABEL.get().setFont(FONT_NORMAL.deriveFont(FONT_NORMAL.getSize()*factor));
 		}
 		else
 		{
-			LABEL.setFont(FONT_NORMAL);
+			LABEL.get().setFont(FONT_NORMAL);
 		}
 	}
 
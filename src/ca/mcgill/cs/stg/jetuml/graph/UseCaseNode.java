@@ -56,7 +56,7 @@ public class UseCaseNode extends RectangularNode
 	}
    
 	@Override
-	public Shape getShape()
+	protected Shape computeShape()
 	{
 		return new Ellipse2D.Double(getBounds().getX(), getBounds().getY(), getBounds().getWidth(), getBounds().getHeight());
 	}
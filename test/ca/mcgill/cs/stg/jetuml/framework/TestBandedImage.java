@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.stg.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.graph.ClassNode;
+
+public class TestBandedImage
+{
+	private static final int MARGIN = 2;
+	
+	private ClassDiagramGraph aGraph;
+	
+	@Before
+	public void setup()
+	{
+		aGraph = new ClassDiagramGraph();
+		for( int i = 0; i < 30; i++ )
+		{
+			aGraph.addNode(new ClassNode(), new Point2D.Double((i % 3) * 150, i * 100));
+		}
+		aGraph.draw(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics(), new Grid());
+	}
+	
+	@Test
+	public void testBands()
+	{
+		BandedImage image = new BandedImage(aGraph, MARGIN);
+		assertTrue(image.getNumYTiles() > 1);
+		assertEquals(image.getHeight(), (int)(aGraph.getBounds().getHeight() + MARGIN * 2));
+		assertEquals(image.getWidth(), (int)(aGraph.getBounds().getWidth() + MARGIN * 2));
+	}
+	
+	@Test
+	public void testWritePNG() throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BandedImage.writePNG(aGraph, MARGIN, out);
+		BufferedImage written = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+		BufferedImage expected = render();
+		assertEquals(expected.getWidth(), written.getWidth());
+		assertEquals(expected.getHeight(), written.getHeight());
+		for( int y = 0; y < expected.getHeight(); y++ )
+		{
+			for( int x = 0; x < expected.getWidth(); x++ )
+			{
+				assertEquals(expected.getRGB(x, y), written.getRGB(x, y));
+			}
+		}
+	}
+	
+	/*
+	 * Renders the graph in a single image.
+	 */
+	private BufferedImage render()
+	{
+		Rectangle2D bounds = aGraph.getBounds();
+		BufferedImage image = new BufferedImage((int) (bounds.getWidth() + MARGIN * 2), 
+				(int) (bounds.getHeight() + MARGIN * 2), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2 = image.createGraphics();
+		g2.setColor(Color.WHITE);
+		g2.fillRect(0, 0, image.getWidth(), image.getHeight());
+		g2.translate(MARGIN - bounds.getX(), MARGIN - bounds.getY());
+		g2.setColor(Color.BLACK);
+		g2.setBackground(Color.WHITE);
+		aGraph.draw(g2, null);
+		return image;
+	}
+}
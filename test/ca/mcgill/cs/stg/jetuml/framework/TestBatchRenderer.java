@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.stg.jetuml.UMLEditor;
+import ca.mcgill.cs.stg.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.graph.ClassNode;
+import ca.mcgill.cs.stg.jetuml.graph.DependencyEdge;
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
+
+public class TestBatchRenderer
+{
+	private File aDirectory;
+	private ByteArrayOutputStream aOutput;
+	
+	@Before
+	public void setup() throws Exception
+	{
+		aDirectory = Files.createTempDirectory("jetuml").toFile();
+		File nested = new File(aDirectory, "nested");
+		nested.mkdir();
+		for( File file : new File[] { new File(aDirectory, "a.jet"), new File(nested, "b.jet") } )
+		{
+			ClassDiagramGraph graph = new ClassDiagramGraph();
+			graph.addNode(new ClassNode(), new Point2D.Double(10, 10));
+			graph.addNode(new ClassNode(), new Point2D.Double(300, 10));
+			graph.addEdge(new DependencyEdge(), new Point2D.Double(20, 20), new Point2D.Double(310, 20));
+			try( FileOutputStream out = new FileOutputStream(file) )
+			{
+				PersistenceService.saveFile(graph, out);
+			}
+		}
+		aOutput = new ByteArrayOutputStream();
+	}
+	
+	@After
+	public void teardown()
+	{
+		delete(aDirectory);
+	}
+	
+	private static void delete(File pFile)
+	{
+		File[] files = pFile.listFiles();
+		if( files != null )
+		{
+			for( File file : files )
+			{
+				delete(file);
+			}
+		}
+		pFile.delete();
+	}
+	
+	private int run(String... pArgs)
+	{
+		return new BatchRenderer(UMLEditor.class).run(pArgs, new PrintStream(aOutput));
+	}
+	
+	@Test
+	public void testRenderDirectory() throws Exception
+	{
+		assertEquals(0, run("-threads", "2", aDirectory.getPath()));
+		assertTrue(ImageIO.read(new File(aDirectory, "a.png")).getWidth() > 300);
+		assertTrue(new File(aDirectory, "nested/b.png").exists());
+		
+		File output = new File(aDirectory, "out");
+		assertEquals(0, run("-format", "svg", "-output", output.getPath(), new File(aDirectory, "a.jet").getPath()));
+		assertTrue(new File(output, "a.svg").length() > 0);
+		
+		assertEquals(0, run("-format", "jet", "-output", output.getPath(), new File(aDirectory, "a.jet").getPath()));
+		Graph graph = PersistenceService.read(new FileInputStream(new File(output, "a.jet")));
+		assertEquals(2, graph.getRootNodes().size());
+		assertEquals(1, graph.getEdges().size());
+	}
+	
+	@Test
+	public void testFailures() throws Exception
+	{
+		assertEquals(2, run());
+		assertEquals(2, run("-format", "gif", aDirectory.getPath()));
+		assertEquals(2, run("-threads", "0", aDirectory.getPath()));
+		assertEquals(2, run(new File(aDirectory, "missing.jet").getPath()));
+		
+		File invalid = new File(aDirectory, "invalid.jet");
+		Files.write(invalid.toPath(), "not a diagram".getBytes());
+		assertEquals(1, run(aDirectory.getPath()));
+		assertTrue(aOutput.toString().contains(invalid.getPath()));
+		assertTrue(new File(aDirectory, "a.png").exists());
+	}
+}
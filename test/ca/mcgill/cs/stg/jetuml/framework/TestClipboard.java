@@ -23,10 +23,21 @@ package ca.mcgill.cs.stg.jetuml.framework;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -223,6 +234,38 @@ public class TestClipboard
 		assertEquals(class2Clone, edge1Clone.getEnd());
 	}
 	
+	@Test
+	public void testTransferFragment() throws Exception
+	{
+		aEdge1.connect(aClass1, aClass2, aClassDiagramGraph);
+		aPackage1.addChild(aClass1);
+		aPackage1.addChild(aClass2);
+		aSelectionList.add(aPackage1);
+		aSelectionList.add(aEdge1);
+		aClipboard.copy(aSelectionList);
+		FragmentTransferable transferable = new FragmentTransferable(ClassDiagramGraph.class, 
+				new ArrayList<>(aClipboard.getNodes()), new ArrayList<>(aClipboard.getEdges()));
+		assertTrue(transferable.isDataFlavorSupported(FragmentTransferable.FRAGMENT_FLAVOR));
+		aClipboard.copy(new SelectionList());
+		aClipboard.load((InputStream)transferable.getTransferData(FragmentTransferable.FRAGMENT_FLAVOR));
+		assertEquals(1, aClipboard.getNodes().size());
+		assertEquals(1, aClipboard.getEdges().size());
+		
+		aClipboard.paste(aPanel);
+		Collection<Node> rootNodes = aClassDiagramGraph.getRootNodes();
+		assertEquals(1, rootNodes.size());
+		PackageNode packageNode = (PackageNode)rootNodes.iterator().next();
+		assertFalse(packageNode == aPackage1);
+		ClassNode class1Clone = (ClassNode)packageNode.getChildren().get(0);
+		assertEquals("c1", class1Clone.getName().toString());
+		ClassNode class2Clone = (ClassNode)packageNode.getChildren().get(1);
+		assertEquals("c2", class2Clone.getName().toString());
+		DependencyEdge edge1Clone = (DependencyEdge)aClassDiagramGraph.getEdges().iterator().next();
+		assertEquals("e1", edge1Clone.getMiddleLabel());
+		assertTrue(class1Clone == edge1Clone.getStart());
+		assertTrue(class2Clone == edge1Clone.getEnd());
+	}
+	
 	@Test
 	public void testPasteNodeWithMissingParent()
 	{
@@ -273,4 +316,83 @@ public class TestClipboard
 		assertEquals(0, rootNodes.size());
 		assertEquals(0, list.size());
 	}
+	
+	private static InputStream compress(byte[] pData) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try( GZIPOutputStream out = new GZIPOutputStream(bytes) )
+		{
+			out.write(pData);
+		}
+		return new ByteArrayInputStream(bytes.toByteArray());
+	}
+	
+	private static InputStream compress(String pXml) throws IOException
+	{
+		return compress(pXml.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	public void testLoadSavedGraphs() throws IOException
+	{
+		for( File file : new File("testdata").listFiles() )
+		{
+			if( file.getName().endsWith(".jet") )
+			{
+				aClipboard.load(compress(Files.readAllBytes(file.toPath())));
+			}
+		}
+	}
+	
+	@Test(expected = IOException.class)
+	public void testLoadNull() throws IOException
+	{
+		aClipboard.load(compress("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + 
+				"<java version=\"1.8.0\" class=\"java.beans.XMLDecoder\"><null/></java>"));
+	}
+	
+	@Test
+	public void testLoadForeignFragment() throws IOException
+	{
+		File created = File.createTempFile("jetuml", null);
+		assertTrue(created.delete());
+		String[] payloads = {
+				"<object class=\"java.io.FileOutputStream\"><string>" + created + "</string></object>",
+				"<object class=\"ca.mcgill.cs.stg.jetuml.diagrams.ClassDiagramGraph\"><void property=\"class\">" + 
+						"<void method=\"forName\"><string>java.lang.Runtime</string></void></void></object>",
+				"<object class=\"java.lang.Enum\" method=\"valueOf\"><class>java.lang.Thread$State</class>" + 
+						"<string>NEW</string></object>",
+				"<new class=\"java.io.FileOutputStream\"><string>" + created + "</string></new>" };
+		for( String payload : payloads )
+		{
+			try
+			{
+				aClipboard.load(compress("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + 
+						"<java version=\"1.8.0\" class=\"java.beans.XMLDecoder\">" + payload + "</java>"));
+				fail(payload);
+			}
+			catch( IOException exception )
+			{
+				assertFalse(created.exists());
+			}
+		}
+	}
+	
+	@Test
+	public void testLoadOversizedFragment() throws IOException
+	{
+		byte[] xml = new byte[(1 << 26) + 1];
+		Arrays.fill(xml, (byte) ' ');
+		byte[] start = "<java version=\"1.8.0\" class=\"java.beans.XMLDecoder\">".getBytes(StandardCharsets.UTF_8);
+		System.arraycopy(start, 0, xml, 0, start.length);
+		try
+		{
+			aClipboard.load(compress(xml));
+			fail();
+		}
+		catch( IOException exception )
+		{
+			assertEquals("The fragment is too large", exception.getMessage());
+		}
+	}
 }
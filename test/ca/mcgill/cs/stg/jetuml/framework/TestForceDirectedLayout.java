@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import ca.mcgill.cs.stg.jetuml.commands.CompoundCommand;
+import ca.mcgill.cs.stg.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.diagrams.ObjectDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.diagrams.UseCaseDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.graph.FieldNode;
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
+import ca.mcgill.cs.stg.jetuml.graph.Node;
+import ca.mcgill.cs.stg.jetuml.graph.ObjectNode;
+import ca.mcgill.cs.stg.jetuml.graph.ObjectReferenceEdge;
+import ca.mcgill.cs.stg.jetuml.graph.UseCaseAssociationEdge;
+import ca.mcgill.cs.stg.jetuml.graph.UseCaseNode;
+
+public class TestForceDirectedLayout
+{
+	private static final Graphics2D GRAPHICS = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB).createGraphics();
+	
+	@Test
+	public void testObjectsKeepTheirFields()
+	{
+		Graph graph = new ObjectDiagramGraph();
+		List<ObjectNode> objects = new ArrayList<>();
+		List<FieldNode> fields = new ArrayList<>();
+		for( int i = 0; i < 8; i++ )
+		{
+			ObjectNode object = new ObjectNode();
+			FieldNode field = new FieldNode();
+			object.addChild(field);
+			graph.restoreRootNode(object);
+			objects.add(object);
+			fields.add(field);
+		}
+		for( int i = 0; i < 8; i++ )
+		{
+			graph.restoreEdge(new ObjectReferenceEdge(), fields.get(i), objects.get((i + 1) % 8));
+		}
+		graph.draw(GRAPHICS, new Grid());
+		
+		CompoundCommand command = ForceDirectedLayout.arrange(graph);
+		command.execute();
+		graph.draw(GRAPHICS, new Grid());
+		assertNoOverlap(graph);
+		for( int i = 0; i < 8; i++ )
+		{
+			assertTrue(objects.get(i).getBounds().contains(fields.get(i).getBounds()));
+		}
+		
+		command.undo();
+		for( ObjectNode object : objects )
+		{
+			assertEquals(0, object.getBounds().getX(), 0);
+			assertEquals(0, object.getBounds().getY(), 0);
+		}
+	}
+	
+	@Test
+	public void testClustersStayTogether()
+	{
+		Graph graph = new UseCaseDiagramGraph();
+		UseCaseNode[][] clusters = new UseCaseNode[2][5];
+		for( UseCaseNode[] cluster : clusters )
+		{
+			for( int i = 0; i < cluster.length; i++ )
+			{
+				cluster[i] = new UseCaseNode();
+				graph.restoreRootNode(cluster[i]);
+				for( int j = 0; j < i; j++ )
+				{
+					graph.restoreEdge(new UseCaseAssociationEdge(), cluster[j], cluster[i]);
+				}
+			}
+		}
+		
+		ForceDirectedLayout.arrange(graph).execute();
+		assertNoOverlap(graph);
+		double inside = 0;
+		double between = 0;
+		for( int i = 0; i < 5; i++ )
+		{
+			for( int j = 0; j < 5; j++ )
+			{
+				inside += distance(clusters[0][i], clusters[0][j]) + distance(clusters[1][i], clusters[1][j]);
+				between += 2 * distance(clusters[0][i], clusters[1][j]);
+			}
+		}
+		assertTrue(inside < between);
+	}
+	
+	@Test
+	public void testLargeGraph()
+	{
+		Graph graph = new UseCaseDiagramGraph();
+		List<UseCaseNode> nodes = new ArrayList<>();
+		for( int i = 0; i < 600; i++ )
+		{
+			UseCaseNode node = new UseCaseNode();
+			nodes.add(node);
+			graph.restoreRootNode(node);
+			if( i > 0 )
+			{
+				graph.restoreEdge(new UseCaseAssociationEdge(), nodes.get((i - 1) / 4), node);
+			}
+		}
+		
+		CompoundCommand command = ForceDirectedLayout.arrange(graph);
+		assertEquals(nodes.size(), command.size());
+		command.execute();
+		assertNoOverlap(graph);
+		Rectangle2D bounds = graph.getBounds();
+		assertTrue(bounds.getWidth() < 10000 && bounds.getHeight() < 10000);
+	}
+	
+	@Test
+	public void testSupportedGraphs()
+	{
+		assertTrue(new ObjectDiagramGraph().canArrangeByForces());
+		assertTrue(new UseCaseDiagramGraph().canArrangeByForces());
+		assertFalse(new ClassDiagramGraph().canArrangeByForces());
+	}
+	
+	private static double distance(Node pNode1, Node pNode2)
+	{
+		return new Point2D.Double(pNode1.getBounds().getCenterX(), pNode1.getBounds().getCenterY()).distance(
+				pNode2.getBounds().getCenterX(), pNode2.getBounds().getCenterY());
+	}
+	
+	private static void assertNoOverlap(Graph pGraph)
+	{
+		List<Node> nodes = new ArrayList<>(pGraph.getRootNodes());
+		for( int i = 0; i < nodes.size(); i++ )
+		{
+			for( int j = i + 1; j < nodes.size(); j++ )
+			{
+				assertFalse(nodes.get(i).getBounds().intersects(nodes.get(j).getBounds()));
+			}
+		}
+	}
+}
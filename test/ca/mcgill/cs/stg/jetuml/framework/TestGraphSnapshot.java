@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.stg.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.framework.GraphSnapshot.EdgeSnapshot;
+import ca.mcgill.cs.stg.jetuml.framework.GraphSnapshot.NodeSnapshot;
+import ca.mcgill.cs.stg.jetuml.graph.ClassNode;
+import ca.mcgill.cs.stg.jetuml.graph.DependencyEdge;
+import ca.mcgill.cs.stg.jetuml.graph.PackageNode;
+
+/**
+ * Tests that snapshots are not affected by later changes
+ * to the graph, and share the views of unchanged elements.
+ */
+public class TestGraphSnapshot
+{
+	private ClassDiagramGraph aGraph;
+	private Graphics2D aGraphics;
+	private ClassNode aNode1;
+	private ClassNode aNode2;
+	private PackageNode aPackage;
+	private ClassNode aChild;
+	private DependencyEdge aEdge;
+	
+	@Before
+	public void setup()
+	{
+		aGraph = new ClassDiagramGraph();
+		aGraphics = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB).createGraphics();
+		aNode1 = new ClassNode();
+		aNode2 = new ClassNode();
+		aPackage = new PackageNode();
+		aChild = new ClassNode();
+		aEdge = new DependencyEdge();
+		aNode2.translate(200, 0);
+		aPackage.translate(0, 200);
+		aPackage.addChild(aChild);
+		aGraph.restoreRootNode(aNode1);
+		aGraph.restoreRootNode(aNode2);
+		aGraph.restoreRootNode(aPackage);
+		aGraph.restoreEdge(aEdge, aNode1, aNode2);
+		aNode1.getName().setText("Node1");
+		aEdge.setMiddleLabel("uses");
+		aGraph.draw(aGraphics, new Grid());
+	}
+	
+	@Test
+	public void testContents()
+	{
+		GraphSnapshot snapshot = GraphSnapshot.of(aGraph);
+		assertEquals(3, snapshot.getRootNodes().size());
+		assertEquals(1, snapshot.getEdges().size());
+		NodeSnapshot node1 = snapshot.getRootNodes().get(0);
+		assertSame(aNode1, node1.getNode());
+		assertEquals(aNode1.getBounds(), node1.getBounds());
+		assertEquals("Node1", ((MultiLineString) node1.getProperty("name")).getText());
+		assertTrue(node1.getPropertyNames().contains("methods"));
+		assertTrue(!node1.getPropertyNames().contains("bounds"));
+		assertNull(node1.getProperty("parent"));
+		assertSame(snapshot.getNode(aChild), snapshot.getNode(aPackage).getChildren().get(0));
+		
+		EdgeSnapshot edge = snapshot.getEdge(aEdge);
+		assertSame(aNode1, edge.getStart());
+		assertSame(aNode2, edge.getEnd());
+		assertEquals("uses", edge.getProperty("middleLabel"));
+		assertEquals(aEdge.getConnectionPoints().getP1(), edge.getConnectionPoints().getP1());
+	}
+	
+	@Test
+	public void testImmutable()
+	{
+		GraphSnapshot snapshot = GraphSnapshot.of(aGraph);
+		Rectangle2D bounds = aNode1.getBounds();
+		aNode1.getName().setText("Renamed");
+		aNode1.translate(10, 10);
+		aEdge.setMiddleLabel("calls");
+		((MultiLineString) snapshot.getNode(aNode1).getProperty("name")).setText("Changed");
+		assertEquals("Node1", ((MultiLineString) snapshot.getNode(aNode1).getProperty("name")).getText());
+		assertEquals(bounds, snapshot.getNode(aNode1).getBounds());
+		assertEquals("uses", snapshot.getEdge(aEdge).getProperty("middleLabel"));
+	}
+	
+	@Test
+	public void testSharing()
+	{
+		GraphSnapshot snapshot1 = GraphSnapshot.of(aGraph);
+		assertSame(snapshot1, snapshot1.update(aGraph));
+		
+		aNode2.getName().setText("Node2");
+		GraphSnapshot snapshot2 = snapshot1.update(aGraph);
+		assertNotSame(snapshot1, snapshot2);
+		assertSame(snapshot1.getNode(aNode1), snapshot2.getNode(aNode1));
+		assertSame(snapshot1.getNode(aPackage), snapshot2.getNode(aPackage));
+		assertNotSame(snapshot1.getNode(aNode2), snapshot2.getNode(aNode2));
+		assertSame(snapshot1.getEdge(aEdge), snapshot2.getEdge(aEdge));
+		
+		aChild.translate(20, 0);
+		GraphSnapshot snapshot3 = snapshot2.update(aGraph);
+		assertNotSame(snapshot2.getNode(aChild), snapshot3.getNode(aChild));
+		assertNotSame(snapshot2.getNode(aPackage), snapshot3.getNode(aPackage));
+		assertSame(snapshot2.getNode(aNode2), snapshot3.getNode(aNode2));
+		
+		ClassNode node3 = new ClassNode();
+		aGraph.insertNode(node3);
+		GraphSnapshot snapshot4 = snapshot3.update(aGraph);
+		assertEquals(4, snapshot4.getRootNodes().size());
+		assertNull(snapshot3.getNode(node3));
+		assertSame(snapshot3.getNode(aNode1), snapshot4.getNode(aNode1));
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.stg.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.graph.ClassNode;
+import ca.mcgill.cs.stg.jetuml.graph.DependencyEdge;
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
+import ca.mcgill.cs.stg.jetuml.graph.Node;
+
+/**
+ * Tests that a hibernated graph frame wakes up with the same
+ * graph, settings and undo history, including spilled commands.
+ */
+public class TestHibernatedGraph
+{
+	private ClassDiagramGraph aGraph;
+	private GraphFrame aFrame;
+	private Graphics2D aGraphics;
+	
+	@Before
+	public void setup()
+	{
+		aGraph = new ClassDiagramGraph();
+		aFrame = new GraphFrame(aGraph, null);
+		aFrame.getGraphPanel().getUndoManager().setMemoryBudget(2);
+		aFrame.getGraphPanel().getUndoManager().setCoalescingWindow(0);
+		aGraphics = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB).createGraphics();
+		for( int i = 0; i < 5; i++ )
+		{
+			aGraph.addNode(new ClassNode(), new Point2D.Double(i * 200, 0));
+			aGraph.draw(aGraphics, new Grid());
+		}
+		Iterator<Node> nodes = aGraph.getRootNodes().iterator();
+		Node start = nodes.next();
+		Node end = nodes.next();
+		aGraph.addEdge(new DependencyEdge(), new Point2D.Double(start.getBounds().getCenterX(), start.getBounds().getCenterY()), 
+				new Point2D.Double(end.getBounds().getCenterX(), end.getBounds().getCenterY()));
+		aGraph.draw(aGraphics, new Grid());
+	}
+	
+	@Test
+	public void testWake()
+	{
+		aFrame.getGraphPanel().changeZoom(2);
+		aFrame.getGraphPanel().setModified(true);
+		double zoom = aFrame.getGraphPanel().getZoom();
+		assertTrue(aFrame.getGraphPanel().getUndoManager().getSpilledCommandCount() > 0);
+		assertEquals(6, aFrame.getGraphPanel().getUndoManager().getHistorySize());
+		
+		assertTrue(aFrame.hibernate());
+		assertTrue(aFrame.isHibernated());
+		assertTrue(aFrame.isModified());
+		assertEquals(0, aFrame.getContentPane().getComponentCount());
+		
+		Graph graph = aFrame.getGraph();
+		assertFalse(aFrame.isHibernated());
+		assertNotSame(aGraph, graph);
+		assertEquals(5, graph.getRootNodes().size());
+		assertEquals(1, graph.getEdges().size());
+		assertEquals(zoom, aFrame.getGraphPanel().getZoom(), 0);
+		assertTrue(aFrame.getGraphPanel().isModified());
+		assertEquals(6, aFrame.getGraphPanel().getUndoManager().getHistorySize());
+		
+		for( int i = 0; i < 6; i++ )
+		{
+			aFrame.getGraphPanel().undo();
+			graph.draw(aGraphics, new Grid());
+		}
+		assertEquals(0, graph.getRootNodes().size());
+		assertEquals(0, graph.getEdges().size());
+		assertEquals(0, aFrame.getGraphPanel().getUndoManager().getHistorySize());
+	}
+	
+	@Test
+	public void testHibernateTwice()
+	{
+		assertTrue(aFrame.hibernate());
+		assertEquals(5, aFrame.getGraph().getRootNodes().size());
+		assertTrue(aFrame.hibernate());
+		aFrame.getGraphPanel().undo();
+		aFrame.getGraph().draw(aGraphics, new Grid());
+		assertEquals(5, aFrame.getGraph().getRootNodes().size());
+		assertEquals(0, aFrame.getGraph().getEdges().size());
+	}
+	
+	@Test
+	public void testNoHibernationWhileTracking()
+	{
+		aFrame.getGraphPanel().startCompoundListening();
+		assertFalse(aFrame.hibernate());
+		assertFalse(aFrame.isHibernated());
+		aFrame.getGraphPanel().endCompoundListening();
+		assertTrue(aFrame.hibernate());
+	}
+	
+	@Test
+	public void testWakeFailure() throws Exception
+	{
+		aFrame.setFile(File.createTempFile("jetuml", ".class.jet"));
+		aFrame.getFileName().deleteOnExit();
+		UndoManager undoManager = aFrame.getGraphPanel().getUndoManager();
+		assertTrue(undoManager.getSpilledCommandCount() > 0);
+		assertTrue(aFrame.hibernate());
+		Field fileField = HibernatedGraph.class.getDeclaredField("aFile");
+		fileField.setAccessible(true);
+		Field graphField = GraphFrame.class.getDeclaredField("aHibernatedGraph");
+		graphField.setAccessible(true);
+		File file = (File) fileField.get(graphField.get(aFrame));
+		try( FileOutputStream out = new FileOutputStream(file) )
+		{
+			out.write("Not a graph".getBytes(StandardCharsets.UTF_8));
+		}
+		
+		Graph graph = aFrame.getGraph();
+		assertFalse(aFrame.isHibernated());
+		assertFalse(file.exists());
+		assertEquals(0, graph.getRootNodes().size());
+		assertNull(aFrame.getFileName());
+		assertTrue(aFrame.isModified());
+		assertEquals(0, undoManager.getHistorySize());
+		assertEquals(0, undoManager.getSpilledSize());
+	}
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the percentiles of histograms against their precision,
+ * and the events they commit.
+ */
+public class TestHistogram
+{
+	private Histogram aHistogram;
+	
+	@Before
+	public void setup()
+	{
+		aHistogram = new Histogram();
+	}
+	
+	@Test
+	public void testEmpty()
+	{
+		assertEquals(0, aHistogram.getCount());
+		assertEquals(0, aHistogram.getMax());
+		assertEquals(0, aHistogram.getMean(), 0);
+		assertEquals(0, aHistogram.getPercentile(50));
+	}
+	
+	@Test
+	public void testBuckets()
+	{
+		for( long value = 0; value < 100000; value++ )
+		{
+			int index = Histogram.indexOf(value);
+			assertTrue(value <= Histogram.highestValueOf(index));
+			assertTrue(index == 0 || value > Histogram.highestValueOf(index - 1));
+		}
+		assertTrue(Histogram.highestValueOf(Histogram.indexOf(Long.MAX_VALUE)) == Long.MAX_VALUE);
+	}
+	
+	@Test
+	public void testPercentiles()
+	{
+		for( int i = 1; i <= 1000; i++ )
+		{
+			aHistogram.record(i * 1000L);
+		}
+		assertEquals(1000, aHistogram.getCount());
+		assertEquals(1000000, aHistogram.getMax());
+		assertEquals(500500, aHistogram.getMean(), 0.001);
+		assertEquals(500000, aHistogram.getPercentile(50), 500000 * 0.04);
+		assertEquals(990000, aHistogram.getPercentile(99), 990000 * 0.04);
+		assertEquals(1000000, aHistogram.getPercentile(100));
+		assertEquals(1000, aHistogram.getPercentile(0), 1000 * 0.04);
+		assertEquals(1, aHistogram.getMaxMillis(), 0.001);
+	}
+	
+	@Test
+	public void testReset()
+	{
+		aHistogram.record(-5);
+		aHistogram.record(7);
+		assertEquals(2, aHistogram.getCount());
+		assertEquals(0, aHistogram.getPercentile(50));
+		assertEquals(7, aHistogram.getPercentile(100));
+		aHistogram.reset();
+		assertEquals(0, aHistogram.getCount());
+		assertEquals(0, aHistogram.getMax());
+		assertEquals(0, aHistogram.getPercentile(100));
+	}
+	
+	@Test
+	public void testFlightRecorderEvent() throws IOException
+	{
+		Histogram histogram = new Histogram("Test");
+		Path file = Files.createTempFile("jetuml", ".jfr");
+		try( Recording recording = new Recording() )
+		{
+			recording.enable("ca.mcgill.cs.stg.jetuml.Operation");
+			recording.start();
+			histogram.recordSince(System.nanoTime() - 1000);
+			aHistogram.recordSince(System.nanoTime());
+			recording.stop();
+			recording.dump(file);
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+			assertEquals(1, events.size());
+			assertEquals("Test", events.get(0).getString("operation"));
+			assertTrue(events.get(0).getDuration("elapsed").toNanos() >= 1000);
+		}
+		finally
+		{
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import ca.mcgill.cs.stg.jetuml.commands.CompoundCommand;
+import ca.mcgill.cs.stg.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.diagrams.ObjectDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.diagrams.StateDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.graph.AssociationEdge;
+import ca.mcgill.cs.stg.jetuml.graph.CircularStateNode;
+import ca.mcgill.cs.stg.jetuml.graph.ClassNode;
+import ca.mcgill.cs.stg.jetuml.graph.DependencyEdge;
+import ca.mcgill.cs.stg.jetuml.graph.GeneralizationEdge;
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
+import ca.mcgill.cs.stg.jetuml.graph.Node;
+import ca.mcgill.cs.stg.jetuml.graph.NoteEdge;
+import ca.mcgill.cs.stg.jetuml.graph.NoteNode;
+import ca.mcgill.cs.stg.jetuml.graph.PackageNode;
+import ca.mcgill.cs.stg.jetuml.graph.PointNode;
+import ca.mcgill.cs.stg.jetuml.graph.StateNode;
+import ca.mcgill.cs.stg.jetuml.graph.StateTransitionEdge;
+
+public class TestLayeredLayout
+{
+	@Test
+	public void testClassHierarchy()
+	{
+		Graph graph = new ClassDiagramGraph();
+		ClassNode base = new ClassNode();
+		ClassNode derived1 = new ClassNode();
+		ClassNode derived2 = new ClassNode();
+		ClassNode used = new ClassNode();
+		ClassNode associated = new ClassNode();
+		for( Node node : new Node[] {used, derived2, associated, derived1, base} )
+		{
+			graph.restoreRootNode(node);
+		}
+		graph.restoreEdge(new GeneralizationEdge(), derived1, base);
+		graph.restoreEdge(new GeneralizationEdge(), derived2, base);
+		graph.restoreEdge(new DependencyEdge(), derived1, used);
+		graph.restoreEdge(new AssociationEdge(), used, associated);
+		
+		CompoundCommand command = LayeredLayout.arrange(graph);
+		command.execute();
+		assertAbove(base, derived1);
+		assertAbove(base, derived2);
+		assertAbove(derived1, used);
+		assertNoOverlap(graph);
+		
+		command.undo();
+		for( Node node : graph.getRootNodes() )
+		{
+			assertEquals(new Rectangle2D.Double(0, 0, node.getBounds().getWidth(), node.getBounds().getHeight()), node.getBounds());
+		}
+		
+		command.execute();
+		assertEquals(0, LayeredLayout.arrange(graph).size());
+	}
+	
+	@Test
+	public void testStateCycles()
+	{
+		Graph graph = new StateDiagramGraph();
+		CircularStateNode initial = new CircularStateNode();
+		StateNode[] states = new StateNode[4];
+		graph.restoreRootNode(initial);
+		for( int i = 0; i < states.length; i++ )
+		{
+			states[i] = new StateNode();
+			graph.restoreRootNode(states[i]);
+		}
+		graph.restoreEdge(new StateTransitionEdge(), initial, states[0]);
+		for( int i = 0; i < states.length; i++ )
+		{
+			graph.restoreEdge(new StateTransitionEdge(), states[i], states[(i + 1) % states.length]);
+			graph.restoreEdge(new StateTransitionEdge(), states[i], states[i]);
+		}
+		
+		LayeredLayout.arrange(graph).execute();
+		assertAbove(initial, states[0]);
+		for( int i = 0; i < states.length - 1; i++ )
+		{
+			assertAbove(states[i], states[i + 1]);
+		}
+		assertNoOverlap(graph);
+	}
+	
+	@Test
+	public void testChildrenAndNotes()
+	{
+		Graph graph = new ClassDiagramGraph();
+		PackageNode packageNode = new PackageNode();
+		ClassNode child = new ClassNode();
+		child.setParent(packageNode);
+		packageNode.addChild(child);
+		ClassNode base = new ClassNode();
+		NoteNode note = new NoteNode();
+		PointNode point = new PointNode();
+		point.translate(200, 200);
+		graph.restoreRootNode(packageNode);
+		graph.restoreRootNode(note);
+		graph.restoreRootNode(point);
+		graph.restoreRootNode(base);
+		graph.restoreEdge(new GeneralizationEdge(), child, base);
+		graph.restoreEdge(new NoteEdge(), note, point);
+		
+		LayeredLayout.arrange(graph).execute();
+		assertAbove(base, packageNode);
+		assertTrue(packageNode.getBounds().contains(child.getBounds()));
+		assertEquals(note.getBounds().getX() + 200, point.getBounds().getX(), 0);
+		assertEquals(note.getBounds().getY() + 200, point.getBounds().getY(), 0);
+		assertFalse(note.getBounds().intersects(base.getBounds()));
+		assertFalse(note.getBounds().intersects(packageNode.getBounds()));
+	}
+	
+	@Test
+	public void testLargeHierarchy()
+	{
+		Graph graph = new ClassDiagramGraph();
+		List<ClassNode> nodes = new ArrayList<>();
+		for( int i = 0; i < 1000; i++ )
+		{
+			ClassNode node = new ClassNode();
+			nodes.add(node);
+			graph.restoreRootNode(node);
+			if( i > 0 && i % 100 != 0 )
+			{
+				graph.restoreEdge(new GeneralizationEdge(), node, nodes.get((i - 1) / 3));
+			}
+			if( i > 10 && i % 7 == 0 )
+			{
+				graph.restoreEdge(new DependencyEdge(), nodes.get(i - 10), node);
+			}
+		}
+		
+		LayeredLayout.arrange(graph).execute();
+		assertNoOverlap(graph);
+		for( int i = 1; i < nodes.size(); i++ )
+		{
+			if( i % 100 != 0 && (i - 1) / 3 % 100 != 0 )
+			{
+				assertAbove(nodes.get((i - 1) / 3), nodes.get(i));
+			}
+		}
+	}
+	
+	@Test
+	public void testSupportedGraphs()
+	{
+		assertTrue(new ClassDiagramGraph().canArrangeInLayers());
+		assertTrue(new StateDiagramGraph().canArrangeInLayers());
+		assertFalse(new ObjectDiagramGraph().canArrangeInLayers());
+	}
+	
+	private static void assertAbove(Node pUpper, Node pLower)
+	{
+		assertTrue(pUpper.getBounds().getMaxY() < pLower.getBounds().getY());
+	}
+	
+	private static void assertNoOverlap(Graph pGraph)
+	{
+		List<Node> nodes = new ArrayList<>(pGraph.getRootNodes());
+		for( int i = 0; i < nodes.size(); i++ )
+		{
+			for( int j = i + 1; j < nodes.size(); j++ )
+			{
+				assertFalse(nodes.get(i).getBounds().intersects(nodes.get(j).getBounds()));
+			}
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JScrollPane;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.stg.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.graph.ClassNode;
+import ca.mcgill.cs.stg.jetuml.graph.DependencyEdge;
+import ca.mcgill.cs.stg.jetuml.graph.Node;
+
+/**
+ * Tests that the thumbnail of a minimap updated from successive
+ * snapshots is the same as one drawn from the last snapshot only.
+ */
+public class TestMinimap
+{
+	private ClassDiagramGraph aGraph;
+	private GraphPanel aPanel;
+	private Graphics2D aGraphics;
+	private List<Node> aNodes = new ArrayList<>();
+	
+	@Before
+	public void setup()
+	{
+		aGraph = new ClassDiagramGraph();
+		aPanel = new GraphPanel(aGraph, new ToolBar(aGraph));
+		aGraphics = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB).createGraphics();
+		for( int i = 0; i < 4; i++ )
+		{
+			ClassNode node = new ClassNode();
+			aGraph.addNode(node, new Point2D.Double(i * 200, 0));
+			aNodes.add(node);
+		}
+		draw();
+		aGraph.addEdge(new DependencyEdge(), center(aNodes.get(0)), center(aNodes.get(1)));
+		draw();
+	}
+	
+	private void draw()
+	{
+		aGraph.draw(aGraphics, new Grid());
+	}
+	
+	private static Point2D center(Node pNode)
+	{
+		return new Point2D.Double(pNode.getBounds().getCenterX(), pNode.getBounds().getCenterY());
+	}
+	
+	private Minimap createMinimap()
+	{
+		return new Minimap(aPanel, new JScrollPane(aPanel).getViewport());
+	}
+	
+	private static int pixelAt(Minimap pMinimap, Point2D pPoint)
+	{
+		return pMinimap.getThumbnail().getRGB((int) (pPoint.getX() * pMinimap.getScale()), (int) (pPoint.getY() * pMinimap.getScale()));
+	}
+	
+	private static void assertSameImage(BufferedImage pExpected, BufferedImage pActual)
+	{
+		for( int x = 0; x < pExpected.getWidth(); x++ )
+		{
+			for( int y = 0; y < pExpected.getHeight(); y++ )
+			{
+				assertEquals("Pixel " + x + "," + y, pExpected.getRGB(x, y), pActual.getRGB(x, y));
+			}
+		}
+	}
+	
+	@Test
+	public void testRender()
+	{
+		Minimap minimap = createMinimap();
+		GraphSnapshot snapshot = aPanel.getSnapshot();
+		assertTrue(minimap.render(snapshot));
+		assertFalse(minimap.render(snapshot));
+		for( Node node : aNodes )
+		{
+			assertNotEquals(Color.WHITE.getRGB(), pixelAt(minimap, center(node)));
+		}
+		assertEquals(Color.WHITE.getRGB(), pixelAt(minimap, new Point2D.Double(150, 300)));
+	}
+	
+	@Test
+	public void testIncrementalRender()
+	{
+		Minimap minimap = createMinimap();
+		minimap.render(aPanel.getSnapshot());
+		double scale = minimap.getScale();
+		Point2D oldCenter = center(aNodes.get(0));
+		aNodes.get(0).translate(0, 150);
+		draw();
+		aGraph.removeNode(aNodes.get(2));
+		draw();
+		GraphSnapshot snapshot = aPanel.getSnapshot();
+		assertTrue(minimap.render(snapshot));
+		
+		assertEquals(scale, minimap.getScale(), 0);
+		assertEquals(Color.WHITE.getRGB(), pixelAt(minimap, oldCenter));
+		assertNotEquals(Color.WHITE.getRGB(), pixelAt(minimap, center(aNodes.get(0))));
+		Minimap expected = createMinimap();
+		expected.render(snapshot);
+		assertSameImage(expected.getThumbnail(), minimap.getThumbnail());
+	}
+	
+	@Test
+	public void testGrowth()
+	{
+		Minimap minimap = createMinimap();
+		minimap.render(aPanel.getSnapshot());
+		double scale = minimap.getScale();
+		aNodes.get(3).translate(2000, 0);
+		draw();
+		minimap.render(aPanel.getSnapshot());
+		assertTrue(minimap.getScale() < scale);
+		Rectangle2D bounds = aNodes.get(3).getBounds();
+		assertNotEquals(Color.WHITE.getRGB(), pixelAt(minimap, new Point2D.Double(bounds.getCenterX(), bounds.getCenterY())));
+	}
+}
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ca.mcgill.cs.stg.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.diagrams.ObjectDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.diagrams.SequenceDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.diagrams.StateDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.diagrams.UseCaseDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.graph.ActorNode;
+import ca.mcgill.cs.stg.jetuml.graph.AggregationEdge;
+import ca.mcgill.cs.stg.jetuml.graph.CallEdge;
+import ca.mcgill.cs.stg.jetuml.graph.CallNode;
+import ca.mcgill.cs.stg.jetuml.graph.ClassNode;
+import ca.mcgill.cs.stg.jetuml.graph.DependencyEdge;
+import ca.mcgill.cs.stg.jetuml.graph.Edge;
+import ca.mcgill.cs.stg.jetuml.graph.FieldNode;
+import ca.mcgill.cs.stg.jetuml.graph.GeneralizationEdge;
+import ca.mcgill.cs.stg.jetuml.graph.Graph;
+import ca.mcgill.cs.stg.jetuml.graph.ImplicitParameterNode;
+import ca.mcgill.cs.stg.jetuml.graph.Node;
+import ca.mcgill.cs.stg.jetuml.graph.NoteEdge;
+import ca.mcgill.cs.stg.jetuml.graph.NoteNode;
+import ca.mcgill.cs.stg.jetuml.graph.ObjectNode;
+import ca.mcgill.cs.stg.jetuml.graph.ObjectReferenceEdge;
+import ca.mcgill.cs.stg.jetuml.graph.StateNode;
+import ca.mcgill.cs.stg.jetuml.graph.StateTransitionEdge;
+import ca.mcgill.cs.stg.jetuml.graph.UseCaseAssociationEdge;
+import ca.mcgill.cs.stg.jetuml.graph.UseCaseNode;
+
+/**
+ * Guards the painting of diagrams against allocation regressions.
+ * A generated diagram of each type is painted repeatedly by a 
+ * GraphPanel into an offscreen image, and the bytes allocated by 
+ * the painting thread for a repaint of the unchanged diagram must 
+ * stay within a budget. The budgets are about one and a half times
+ * the allocation measured when they were set, and should be lowered
+ * when the painting code allocates less.
+ */
+public class TestPaintAllocation
+{
+	private static final int SIZE = 4; // The generated diagrams have SIZE x SIZE groups of nodes
+	private static final int WARM_UP_FRAMES = 10;
+	private static final int MEASURED_FRAMES = 5;
+	
+	private static com.sun.management.ThreadMXBean aThreads;
+	
+	@BeforeClass
+	public static void setupClass()
+	{
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+		aThreads = (com.sun.management.ThreadMXBean) threads;
+		assumeTrue(aThreads.isThreadAllocatedMemorySupported());
+		aThreads.setThreadAllocatedMemoryEnabled(true);
+	}
+	
+	@Test
+	public void testClassDiagram()
+	{
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		ClassNode[][] nodes = new ClassNode[SIZE][SIZE];
+		for( int i = 0; i < SIZE; i++ )
+		{
+			for( int j = 0; j < SIZE; j++ )
+			{
+				nodes[i][j] = new ClassNode();
+				nodes[i][j].getName().setText("Class" + i + j);
+				nodes[i][j].getAttributes().setText("field : int");
+				nodes[i][j].getMethods().setText("method()");
+				graph.addNode(nodes[i][j], new Point2D.Double(i * 200, j * 150));
+			}
+		}
+		for( int i = 0; i < SIZE; i++ )
+		{
+			for( int j = 1; j < SIZE; j++ )
+			{
+				connect(graph, new DependencyEdge(), nodes[i][j], nodes[i][j - 1]);
+				connect(graph, new GeneralizationEdge(), nodes[j][i], nodes[j - 1][i]);
+				connect(graph, new AggregationEdge(), nodes[j - 1][i], nodes[j][(i + 1) % SIZE]);
+			}
+		}
+		NoteNode note = new NoteNode();
+		note.getText().setText("A note");
+		graph.addNode(note, new Point2D.Double(SIZE * 200, 0));
+		connect(graph, new NoteEdge(), note, nodes[SIZE - 1][0]);
+		assertWithinBudget(graph, 16000000);
+	}
+	
+	@Test
+	public void testSequenceDiagram()
+	{
+		SequenceDiagramGraph graph = new SequenceDiagramGraph();
+		ImplicitParameterNode[] objects = new ImplicitParameterNode[SIZE];
+		for( int i = 0; i < SIZE; i++ )
+		{
+			objects[i] = new ImplicitParameterNode();
+			objects[i].getName().setText("object" + i);
+			graph.addNode(objects[i], new Point2D.Double(i * 150, 0));
+		}
+		CallNode caller = new CallNode();
+		objects[0].addChild(caller);
+		for( int j = 0; j < SIZE; j++ )
+		{
+			for( int i = 1; i < SIZE; i++ )
+			{
+				CallNode callee = new CallNode();
+				objects[i].addChild(callee);
+				CallEdge call = new CallEdge();
+				call.setMiddleLabel("call" + j + i);
+				connect(graph, call, caller, callee);
+			}
+		}
+		assertWithinBudget(graph, 6000000);
+	}
+	
+	@Test
+	public void testStateDiagram()
+	{
+		StateDiagramGraph graph = new StateDiagramGraph();
+		StateNode[][] nodes = new StateNode[SIZE][SIZE];
+		for( int i = 0; i < SIZE; i++ )
+		{
+			for( int j = 0; j < SIZE; j++ )
+			{
+				nodes[i][j] = new StateNode();
+				nodes[i][j].getName().setText("State" + i + j);
+				graph.addNode(nodes[i][j], new Point2D.Double(i * 150, j * 120));
+			}
+		}
+		for( int i = 0; i < SIZE; i++ )
+		{
+			for( int j = 1; j < SIZE; j++ )
+			{
+				StateTransitionEdge forward = new StateTransitionEdge();
+				forward.setLabel("next");
+				connect(graph, forward, nodes[i][j - 1], nodes[i][j]);
+				connect(graph, new StateTransitionEdge(), nodes[i][j], nodes[i][j - 1]);
+				connect(graph, new StateTransitionEdge(), nodes[j][i], nodes[j][i]);
+			}
+		}
+		assertWithinBudget(graph, 8000000);
+	}
+	
+	@Test
+	public void testObjectDiagram()
+	{
+		ObjectDiagramGraph graph = new ObjectDiagramGraph();
+		ObjectNode[][] nodes = new ObjectNode[SIZE][SIZE];
+		FieldNode[][] fields = new FieldNode[SIZE][SIZE];
+		for( int i = 0; i < SIZE; i++ )
+		{
+			for( int j = 0; j < SIZE; j++ )
+			{
+				nodes[i][j] = new ObjectNode();
+				nodes[i][j].getName().setText("object" + i + j);
+				fields[i][j] = new FieldNode();
+				fields[i][j].getName().setText("next");
+				nodes[i][j].addChild(fields[i][j]);
+				graph.addNode(nodes[i][j], new Point2D.Double(i * 200, j * 150));
+			}
+		}
+		for( int i = 0; i < SIZE; i++ )
+		{
+			for( int j = 1; j < SIZE; j++ )
+			{
+				connect(graph, new ObjectReferenceEdge(), fields[i][j - 1], nodes[i][j]);
+			}
+		}
+		assertWithinBudget(graph, 17000000);
+	}
+	
+	@Test
+	public void testUseCaseDiagram()
+	{
+		UseCaseDiagramGraph graph = new UseCaseDiagramGraph();
+		for( int i = 0; i < SIZE; i++ )
+		{
+			ActorNode actor = new ActorNode();
+			actor.getName().setText("Actor" + i);
+			graph.addNode(actor, new Point2D.Double(0, i * 150));
+			for( int j = 0; j < SIZE; j++ )
+			{
+				UseCaseNode useCase = new UseCaseNode();
+				useCase.getName().setText("Use case " + i + j);
+				graph.addNode(useCase, new Point2D.Double(200 + j * 150, i * 150));
+				connect(graph, new UseCaseAssociationEdge(), actor, useCase);
+			}
+		}
+		assertWithinBudget(graph, 5000000);
+	}
+	
+	private static void connect(Graph pGraph, Edge pEdge, Node pStart, Node pEnd)
+	{
+		pEdge.connect(pStart, pEnd, pGraph);
+		pGraph.insertEdge(pEdge);
+	}
+	
+	/*
+	 * Paints pGraph until the allocation of a frame is stable and
+	 * checks the smallest allocation of the measured frames, which
+	 * excludes the frames during which the JIT compiler changed
+	 * the code that runs.
+	 */
+	private static void assertWithinBudget(Graph pGraph, long pBudget)
+	{
+		GraphPanel panel = new GraphPanel(pGraph, null);
+		Dimension size = panel.getPreferredSize();
+		panel.setSize(size);
+		BufferedImage image = new BufferedImage(size.width + 1, size.height + 1, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		for( int i = 0; i < WARM_UP_FRAMES; i++ )
+		{
+			paint(panel, graphics);
+		}
+		long smallest = Long.MAX_VALUE;
+		for( int i = 0; i < MEASURED_FRAMES; i++ )
+		{
+			long before = aThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			paint(panel, graphics);
+			smallest = Math.min(smallest, aThreads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before);
+		}
+		graphics.dispose();
+		assertTrue(String.format("A repaint of %s allocated %d bytes, more than the budget of %d bytes", 
+				pGraph.getClass().getSimpleName(), smallest, pBudget), smallest <= pBudget);
+	}
+	
+	private static void paint(GraphPanel pPanel, Graphics2D pGraphics)
+	{
+		Graphics2D graphics = (Graphics2D) pGraphics.create();
+		pPanel.paintComponent(graphics);
+		graphics.dispose();
+	}
+}
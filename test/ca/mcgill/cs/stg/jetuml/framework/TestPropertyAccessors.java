@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+
+import org.junit.Test;
+
+import ca.mcgill.cs.stg.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.graph.ClassNode;
+import ca.mcgill.cs.stg.jetuml.graph.DependencyEdge;
+
+public class TestPropertyAccessors
+{
+	@Test
+	public void testShared() throws Exception
+	{
+		assertSame(PropertyAccessors.forClass(ClassNode.class), PropertyAccessors.forClass(ClassNode.class));
+	}
+	
+	@Test
+	public void testDescriptorOrder() throws Exception
+	{
+		PropertyAccessors accessors = PropertyAccessors.forClass(ClassNode.class);
+		PropertyDescriptor[] descriptors = Introspector.getBeanInfo(ClassNode.class).getPropertyDescriptors();
+		assertEquals(descriptors.length, accessors.size());
+		for( int i = 0; i < descriptors.length; i++ )
+		{
+			assertEquals(descriptors[i].getName(), accessors.getDescriptor(i).getName());
+			assertEquals(i, accessors.indexOf(descriptors[i].getName()));
+		}
+		assertEquals(-1, accessors.indexOf("foo"));
+	}
+	
+	@Test
+	public void testPresentationOrder() throws Exception
+	{
+		PropertyAccessors accessors = PropertyAccessors.forClass(ClassNode.class);
+		int[] order = accessors.getPresentationOrder();
+		assertEquals(accessors.size(), order.length);
+		assertEquals("name", accessors.getDescriptor(order[order.length - 3]).getName());
+		assertEquals("attributes", accessors.getDescriptor(order[order.length - 2]).getName());
+		assertEquals("methods", accessors.getDescriptor(order[order.length - 1]).getName());
+	}
+	
+	@Test
+	public void testGetAndSet() throws Exception
+	{
+		ClassNode node = new ClassNode();
+		PropertyAccessors accessors = PropertyAccessors.forClass(ClassNode.class);
+		int index = accessors.indexOf("name");
+		assertTrue(accessors.isReadable(index));
+		assertTrue(accessors.isWritable(index));
+		MultiLineString name = new MultiLineString();
+		name.setText("Foo");
+		accessors.set(node, index, name);
+		assertSame(name, node.getName());
+		assertSame(name, accessors.get(node, index));
+	}
+	
+	@Test
+	public void testInheritedReadOnlyProperty() throws Exception
+	{
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		ClassNode node1 = new ClassNode();
+		ClassNode node2 = new ClassNode();
+		DependencyEdge edge = new DependencyEdge();
+		edge.connect(node1, node2, graph);
+		PropertyAccessors accessors = PropertyAccessors.forClass(DependencyEdge.class);
+		int index = accessors.indexOf("start");
+		assertTrue(accessors.isReadable(index));
+		assertFalse(accessors.isWritable(index));
+		assertSame(node1, accessors.get(edge, index));
+	}
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2015-2017 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.framework;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import ca.mcgill.cs.stg.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.graph.ClassNode;
+import ca.mcgill.cs.stg.jetuml.graph.DependencyEdge;
+
+public class TestSVGGraphics2D
+{
+	@Test
+	public void testWrite() throws Exception
+	{
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		ClassNode node1 = new ClassNode();
+		MultiLineString name = new MultiLineString();
+		name.setText("Foo & <Bar>");
+		node1.setName(name);
+		ClassNode node2 = new ClassNode();
+		graph.addNode(node1, new Point2D.Double(10, 10));
+		graph.addNode(node2, new Point2D.Double(300, 10));
+		graph.addEdge(new DependencyEdge(), new Point2D.Double(20, 20), new Point2D.Double(310, 20));
+		graph.draw(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics(), new Grid());
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SVGGraphics2D.write(graph, 2, out);
+		Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals("svg", document.getDocumentElement().getNodeName());
+		assertEquals(String.valueOf((int)(graph.getBounds().getWidth() + 4)), document.getDocumentElement().getAttribute("width"));
+		NodeList texts = document.getElementsByTagName("text");
+		boolean found = false;
+		for( int i = 0; i < texts.getLength(); i++ )
+		{
+			found = found || texts.item(i).getTextContent().contains("Foo & <Bar>");
+		}
+		assertTrue(found);
+		assertTrue(document.getElementsByTagName("rect").getLength() > 2);
+		assertTrue(document.getElementsByTagName("path").getLength() + document.getElementsByTagName("line").getLength() > 0);
+	}
+	
+	@Test
+	public void testConcurrentWrite() throws Exception
+	{
+		final int documents = 4;
+		final ClassDiagramGraph[] graphs = new ClassDiagramGraph[documents];
+		byte[][] expected = new byte[documents][];
+		for( int i = 0; i < documents; i++ )
+		{
+			graphs[i] = new ClassDiagramGraph();
+			for( int j = 0; j <= i * 10; j++ )
+			{
+				ClassNode node = new ClassNode();
+				MultiLineString name = new MultiLineString();
+				name.setText("Class" + i + "\n" + j);
+				node.setName(name);
+				graphs[i].addNode(node, new Point2D.Double(j * 150, i * 100));
+			}
+			graphs[i].draw(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics(), new Grid());
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			SVGGraphics2D.write(graphs[i], 2, out);
+			expected[i] = out.toByteArray();
+		}
+		
+		final byte[][] actual = new byte[documents][];
+		Thread[] threads = new Thread[documents];
+		for( int i = 0; i < documents; i++ )
+		{
+			final int index = i;
+			threads[i] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						ByteArrayOutputStream out = new ByteArrayOutputStream();
+						SVGGraphics2D.write(graphs[index], 2, out);
+						actual[index] = out.toByteArray();
+					}
+					catch( IOException exception )
+					{
+						actual[index] = new byte[0];
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for( int i = 0; i < documents; i++ )
+		{
+			threads[i].join();
+			assertArrayEquals(expected[i], actual[i]);
+		}
+	}
+}
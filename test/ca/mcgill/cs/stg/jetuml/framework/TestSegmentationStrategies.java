@@ -20,6 +20,7 @@
  *******************************************************************************/
 package ca.mcgill.cs.stg.jetuml.framework;
 
+import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 
 import org.junit.Before;
@@ -31,6 +32,7 @@ import ca.mcgill.cs.stg.jetuml.diagrams.ClassDiagramGraph;
 import ca.mcgill.cs.stg.jetuml.graph.AggregationEdge;
 import ca.mcgill.cs.stg.jetuml.graph.AssociationEdge;
 import ca.mcgill.cs.stg.jetuml.graph.ClassNode;
+import ca.mcgill.cs.stg.jetuml.graph.ClassRelationshipEdge;
 import ca.mcgill.cs.stg.jetuml.graph.DependencyEdge;
 import ca.mcgill.cs.stg.jetuml.graph.Edge;
 import ca.mcgill.cs.stg.jetuml.graph.GeneralizationEdge;
@@ -533,4 +535,53 @@ public class TestSegmentationStrategies
 		assertEquals( 1061, points[3].getX(), 0.01);
 		assertEquals( 60, points[3].getY(), 0.01);
 	}
+	
+	@Test
+	public void testOrthogonalAvoidsNodes()
+	{
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		ClassNode start = new ClassNode();
+		ClassNode obstacle = new ClassNode();
+		ClassNode end = new ClassNode();
+		obstacle.translate(200, 0);
+		end.translate(400, 0);
+		graph.insertNode(start);
+		graph.insertNode(obstacle);
+		graph.insertNode(end);
+		DependencyEdge edge = new DependencyEdge();
+		edge.setRouting(ClassRelationshipEdge.Routing.Orthogonal);
+		graph.restoreEdge(edge, start, end);
+		
+		Point2D[] points = edge.obtainSegmentationStyle().getPath(edge, graph);
+		assertEquals(start.getBounds().getMaxX(), points[0].getX(), 0);
+		assertEquals(end.getBounds().getMinX(), points[points.length - 1].getX(), 0);
+		assertTrue(points.length > 2);
+		for( int i = 1; i < points.length; i++ )
+		{
+			assertTrue(points[i - 1].getX() == points[i].getX() || points[i - 1].getY() == points[i].getY());
+			assertFalse(new Line2D.Double(points[i - 1], points[i]).intersects(obstacle.getBounds()));
+		}
+		
+		// The path is only searched again when the nodes in its corridor change
+		assertArrayEquals(points, edge.obtainSegmentationStyle().getPath(edge, graph));
+		obstacle.translate(0, 200);
+		Point2D[] straight = edge.obtainSegmentationStyle().getPath(edge, graph);
+		assertEquals(2, straight.length);
+		assertEquals(straight[0].getY(), straight[1].getY(), 0);
+	}
+	
+	@Test
+	public void testOrthogonalSides()
+	{
+		SegmentationStyle style = SegmentationStyleFactory.createOrthogonalStrategy();
+		Edge edge = new DependencyEdge();
+		aGraph.restoreEdge(edge, aNode3, aNode5);
+		assertEquals(SegmentationStyle.Side.SOUTH, style.getAttachedSide(edge, aNode3));
+		assertEquals(SegmentationStyle.Side.NORTH, style.getAttachedSide(edge, aNode5));
+		edge = new DependencyEdge();
+		aGraph.restoreEdge(edge, aNode3, aNode4);
+		assertEquals(SegmentationStyle.Side.EAST, style.getAttachedSide(edge, aNode3));
+		assertEquals(SegmentationStyle.Side.WEST, style.getAttachedSide(edge, aNode4));
+		assertTrue(style.isPossible(edge));
+	}
 }
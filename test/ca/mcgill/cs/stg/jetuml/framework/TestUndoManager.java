@@ -21,9 +21,13 @@
 package ca.mcgill.cs.stg.jetuml.framework;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
 import java.lang.reflect.Field;
 import java.util.Stack;
 
@@ -33,8 +37,13 @@ import org.junit.Test;
 import ca.mcgill.cs.stg.jetuml.commands.AddNodeCommand;
 import ca.mcgill.cs.stg.jetuml.commands.Command;
 import ca.mcgill.cs.stg.jetuml.commands.CompoundCommand;
+import ca.mcgill.cs.stg.jetuml.commands.DeleteNodeCommand;
+import ca.mcgill.cs.stg.jetuml.commands.MoveCommand;
+import ca.mcgill.cs.stg.jetuml.commands.RemoveEdgeCommand;
 import ca.mcgill.cs.stg.jetuml.diagrams.ClassDiagramGraph;
 import ca.mcgill.cs.stg.jetuml.graph.ClassNode;
+import ca.mcgill.cs.stg.jetuml.graph.DependencyEdge;
+import ca.mcgill.cs.stg.jetuml.graph.Edge;
 
 public class TestUndoManager
 {
@@ -151,6 +160,130 @@ public class TestUndoManager
 		assertEquals(3, cc.size());
 	}
 	
+	@Test
+	public void testSpillToDisk()
+	{
+		aUndoManager = new UndoManager(4);
+		aUndoManager.setCoalescingWindow(0);
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		Graphics2D graphics = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB).createGraphics();
+		ClassNode[] nodes = new ClassNode[4];
+		for( int i = 0; i < nodes.length; i++ )
+		{
+			nodes[i] = new ClassNode();
+			graph.addNode(nodes[i], new Point2D.Double(i * 200, 0));
+			aUndoManager.add(new AddNodeCommand(graph, nodes[i]));
+			if( i == 1 )
+			{
+				graph.removeNode(nodes[1]);
+				graph.draw(graphics, new Grid());
+				aUndoManager.add(new DeleteNodeCommand(graph, nodes[1]));
+			}
+		}
+		for( int i = 0; i < 3; i++ )
+		{
+			nodes[0].translate(10, 0);
+			aUndoManager.add(new MoveCommand(graph, nodes[0], 10, 0));
+		}
+		assertEquals(8, aUndoManager.getHistorySize());
+		assertTrue(aUndoManager.getSpilledCommandCount() > 0);
+		assertTrue(aUndoManager.getSpilledSize() > 0);
+		assertTrue(aUndoManager.getMemoryWeight() <= 4);
+		
+		for( int i = 0; i < 6; i++ )
+		{
+			aUndoManager.undoCommand();
+		}
+		graph.draw(graphics, new Grid());
+		assertEquals(0, nodes[0].getBounds().getX(), 0);
+		assertEquals(2, graph.getRootNodes().size());
+		assertTrue(graph.contains(nodes[0]));
+		
+		for( int i = 0; i < 2; i++ )
+		{
+			aUndoManager.undoCommand();
+		}
+		graph.draw(graphics, new Grid());
+		assertEquals(0, aUndoManager.getHistorySize());
+		assertEquals(0, aUndoManager.getSpilledCommandCount());
+		assertEquals(0, graph.getRootNodes().size());
+	}
+	
+	@Test
+	public void testSpillRemovedEdge()
+	{
+		aUndoManager = new UndoManager(2);
+		aUndoManager.setCoalescingWindow(0);
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		Graphics2D graphics = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB).createGraphics();
+		ClassNode node1 = new ClassNode();
+		ClassNode node2 = new ClassNode();
+		graph.addNode(node1, new Point2D.Double(0, 0));
+		graph.addNode(node2, new Point2D.Double(200, 0));
+		DependencyEdge edge = new DependencyEdge();
+		graph.addEdge(edge, new Point2D.Double(1, 1), new Point2D.Double(201, 1));
+		graph.draw(graphics, new Grid());
+		graph.removeEdge(edge);
+		graph.draw(graphics, new Grid());
+		aUndoManager.add(new RemoveEdgeCommand(graph, edge));
+		for( int i = 0; i < 4; i++ )
+		{
+			node1.translate(10, 0);
+			aUndoManager.add(new MoveCommand(graph, node1, 10, 0));
+		}
+		assertTrue(aUndoManager.getSpilledCommandCount() > 0);
+		
+		for( int i = 0; i < 5; i++ )
+		{
+			aUndoManager.undoCommand();
+		}
+		graph.draw(graphics, new Grid());
+		assertEquals(1, graph.getEdges().size());
+		Edge restored = graph.getEdges().iterator().next();
+		assertSame(node1, restored.getStart());
+		assertSame(node2, restored.getEnd());
+		assertSame(graph, restored.getGraph());
+	}
+	
+	@Test
+	public void testCoalescing()
+	{
+		aUndoManager.setCoalescingWindow(Long.MAX_VALUE);
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		ClassNode node1 = new ClassNode();
+		ClassNode node2 = new ClassNode();
+		graph.addNode(node1, new Point2D.Double(0, 0));
+		graph.addNode(node2, new Point2D.Double(200, 0));
+		aUndoManager.add(aCommand1);
+		for( int i = 0; i < 3; i++ )
+		{
+			node1.translate(10, 0);
+			node2.translate(0, 5);
+			CompoundCommand move = new CompoundCommand();
+			move.add(new MoveCommand(graph, node1, 10, 0));
+			move.add(new MoveCommand(graph, node2, 0, 5));
+			aUndoManager.add(move);
+		}
+		assertEquals(2, getPastCommands().size());
+		assertEquals(2, ((CompoundCommand)getPastCommands().peek()).size());
+		
+		aUndoManager.add(new MoveCommand(graph, node1, 0, 0)); // Not the same elements
+		assertEquals(3, getPastCommands().size());
+		
+		aUndoManager.undoCommand();
+		aUndoManager.undoCommand();
+		assertEquals(0, node1.getBounds().getX(), 0);
+		assertEquals(0, node2.getBounds().getY(), 0);
+		assertEquals(1, getPastCommands().size());
+		
+		aUndoManager.redoCommand();
+		assertEquals(30, node1.getBounds().getX(), 0);
+		assertEquals(15, node2.getBounds().getY(), 0);
+		node1.translate(10, 0);
+		aUndoManager.add(new MoveCommand(graph, node1, 10, 0)); // Not merged after a redo
+		assertEquals(3, getPastCommands().size());
+	}
+	
 	@SuppressWarnings("unchecked")
 	private Stack<Command> getPastCommands()
 	{
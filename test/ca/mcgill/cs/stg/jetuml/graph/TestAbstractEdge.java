@@ -21,7 +21,20 @@
 
 package ca.mcgill.cs.stg.jetuml.graph;
 
+import java.awt.BasicStroke;
+import java.awt.Shape;
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
 import org.junit.Test;
+
+import ca.mcgill.cs.stg.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.diagrams.ObjectDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.diagrams.StateDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.framework.Grid;
+
 import static org.junit.Assert.*;
 
 
@@ -39,4 +52,102 @@ public class TestAbstractEdge
 		assertEquals("<html>&lt;html&gt;&lt;html&gt;</html>", AbstractEdge.toHtml("<html><html>"));
 		assertEquals("<html>&amp;</html>", AbstractEdge.toHtml("&"));
 	}
+	
+	@Test
+	public void testContains()
+	{
+		StateDiagramGraph stateGraph = new StateDiagramGraph();
+		StateNode state1 = new StateNode();
+		StateNode state2 = new StateNode();
+		stateGraph.addNode(state1, new Point2D.Double(10, 10));
+		stateGraph.addNode(state2, new Point2D.Double(200, 120));
+		assertContainsMatchesStroke(connect(stateGraph, new StateTransitionEdge(), state1, state2));
+		assertContainsMatchesStroke(connect(stateGraph, new StateTransitionEdge(), state1, state2));
+		assertContainsMatchesStroke(connect(stateGraph, new StateTransitionEdge(), state1, state1));
+		
+		ClassDiagramGraph classGraph = new ClassDiagramGraph();
+		ClassNode class1 = new ClassNode();
+		ClassNode class2 = new ClassNode();
+		classGraph.addNode(class1, new Point2D.Double(10, 10));
+		classGraph.addNode(class2, new Point2D.Double(250, 150));
+		assertContainsMatchesStroke(connect(classGraph, new GeneralizationEdge(), class1, class2));
+		assertContainsMatchesStroke(connect(classGraph, new AggregationEdge(), class2, class1));
+		NoteNode note = new NoteNode();
+		classGraph.addNode(note, new Point2D.Double(300, 10));
+		assertContainsMatchesStroke(connect(classGraph, new NoteEdge(), note, class1));
+		
+		ObjectDiagramGraph objectGraph = new ObjectDiagramGraph();
+		ObjectNode object = new ObjectNode();
+		FieldNode field = new FieldNode();
+		ObjectNode target = new ObjectNode();
+		objectGraph.addNode(object, new Point2D.Double(10, 10));
+		objectGraph.addNode(target, new Point2D.Double(250, 100));
+		object.addChild(field);
+		assertContainsMatchesStroke(connect(objectGraph, new ObjectReferenceEdge(), field, target));
+	}
+	
+	@Test
+	public void testContainsAfterMove()
+	{
+		ClassDiagramGraph graph = new ClassDiagramGraph();
+		NoteNode note = new NoteNode();
+		ClassNode node = new ClassNode();
+		graph.addNode(note, new Point2D.Double(10, 10));
+		graph.addNode(node, new Point2D.Double(10, 200));
+		Edge edge = connect(graph, new NoteEdge(), note, node);
+		Line2D connection = edge.getConnectionPoints();
+		Point2D middle = new Point2D.Double((connection.getX1() + connection.getX2()) / 2, (connection.getY1() + connection.getY2()) / 2);
+		assertTrue(edge.contains(middle));
+		
+		// The end nodes moved, but the graph was not routed again
+		note.translate(100, 0);
+		node.translate(100, 0);
+		assertFalse(edge.contains(middle));
+		assertTrue(edge.contains(new Point2D.Double(middle.getX() + 100, middle.getY())));
+	}
+	
+	private static Edge connect(Graph pGraph, AbstractEdge pEdge, Node pStart, Node pEnd)
+	{
+		pEdge.connect(pStart, pEnd, pGraph);
+		pGraph.insertEdge(pEdge);
+		pGraph.draw(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics(), new Grid());
+		return pEdge;
+	}
+	
+	/*
+	 * Checks that the points close to the path of pEdge are 
+	 * contained in the edge and that those far from it are not, 
+	 * as measured by stroking its shape.
+	 */
+	private static void assertContainsMatchesStroke(Edge pEdge)
+	{
+		AbstractEdge edge = (AbstractEdge) pEdge;
+		Shape near = new BasicStroke(5, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND).createStrokedShape(edge.getShape());
+		Shape far = new BasicStroke(7, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND).createStrokedShape(edge.getShape());
+		Point2D start = edge.getConnectionPoints().getP1();
+		Point2D end = edge.getConnectionPoints().getP2();
+		Rectangle2D bounds = edge.getShape().getBounds2D();
+		int contained = 0;
+		for( double x = bounds.getMinX() - 10; x <= bounds.getMaxX() + 10; x += 0.5 )
+		{
+			for( double y = bounds.getMinY() - 10; y <= bounds.getMaxY() + 10; y += 0.5 )
+			{
+				Point2D point = new Point2D.Double(x, y);
+				if( point.distance(start) <= 3.5 || point.distance(end) <= 3.5 )
+				{
+					continue;
+				}
+				if( near.contains(point) )
+				{
+					assertTrue(point.toString(), edge.contains(point));
+					contained++;
+				}
+				else if( !far.contains(point) )
+				{
+					assertFalse(point.toString(), edge.contains(point));
+				}
+			}
+		}
+		assertTrue(contained > 0);
+	}
 }
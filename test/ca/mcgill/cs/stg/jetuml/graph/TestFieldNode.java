@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.stg.jetuml.diagrams.ObjectDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.framework.Grid;
+import ca.mcgill.cs.stg.jetuml.framework.MultiLineString;
+
+/**
+ * Tests that drawing a field node does not change its geometry.
+ */
+public class TestFieldNode
+{
+	private ObjectDiagramGraph aGraph;
+	private FieldNode aField;
+	private Graphics2D aGraphics;
+	private Grid aGrid;
+	
+	@Before
+	public void setup()
+	{
+		aGraph = new ObjectDiagramGraph();
+		aGraphics = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB).createGraphics();
+		aGrid = new Grid();
+		aGraph.addNode(new ObjectNode(), new Point2D.Double(20, 20));
+		aGraph.draw(aGraphics, aGrid);
+		aField = new FieldNode();
+		MultiLineString value = new MultiLineString();
+		value.setText("value");
+		aField.setValue(value);
+		aField.setBoxedValue(true);
+		aGraph.addNode(aField, new Point2D.Double(30, 40));
+		aGraph.draw(aGraphics, aGrid);
+	}
+	
+	@Test
+	public void testShapeCachedAcrossDraws()
+	{
+		Shape shape = aField.getShape();
+		int version = aField.getGeometryVersion();
+		aField.draw(aGraphics);
+		aField.draw(aGraphics);
+		assertSame(shape, aField.getShape());
+		assertEquals(version, aField.getGeometryVersion());
+	}
+	
+	@Test
+	public void testValueBounds()
+	{
+		Rectangle2D bounds = aField.getBounds();
+		Rectangle2D valueBounds = aField.getShape().getBounds2D();
+		assertEquals(bounds.getMaxX(), valueBounds.getMaxX(), 0);
+		assertEquals(bounds.getY(), valueBounds.getY(), 0);
+		assertEquals(bounds.getHeight(), valueBounds.getHeight(), 0);
+		
+		aField.translate(10, 10);
+		assertEquals(bounds.getMaxX() + 10, aField.getShape().getBounds2D().getMaxX(), 0);
+	}
+}
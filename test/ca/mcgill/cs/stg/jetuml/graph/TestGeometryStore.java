@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * JetUML - A desktop application for fast UML diagramming.
+ *
+ * Copyright (C) 2016 by the contributors of the JetUML project.
+ *
+ * See: https://github.com/prmr/JetUML
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package ca.mcgill.cs.stg.jetuml.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.stg.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.framework.Grid;
+
+/**
+ * Tests that the bounds read from a GeometryStore
+ * always match the bounds of the nodes.
+ */
+public class TestGeometryStore
+{
+	private Graph aGraph;
+	private GeometryStore aGeometry;
+	private ClassNode aNode1;
+	private ClassNode aNode2;
+	private PackageNode aPackage;
+	private ClassNode aChild;
+	
+	@Before
+	public void setup()
+	{
+		aGraph = new ClassDiagramGraph();
+		aNode1 = new ClassNode();
+		aNode2 = new ClassNode();
+		aPackage = new PackageNode();
+		aChild = new ClassNode();
+		aGraph.insertNode(aNode1);
+		aGraph.insertNode(aNode2);
+		aGraph.insertNode(aPackage);
+		aPackage.addChild(aChild);
+		aNode2.translate(200, 100);
+		aPackage.translate(0, 300);
+		Graphics2D graphics = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB).createGraphics();
+		aGraph.layout(graphics, new Grid());
+		aGeometry = aGraph.getGeometry();
+	}
+	
+	private void assertBounds(Node pNode)
+	{
+		Rectangle2D bounds = pNode.getBounds();
+		assertEquals(bounds.getX(), aGeometry.getX(pNode), 0);
+		assertEquals(bounds.getY(), aGeometry.getY(pNode), 0);
+		assertEquals(bounds.getWidth(), aGeometry.getWidth(pNode), 0);
+		assertEquals(bounds.getHeight(), aGeometry.getHeight(pNode), 0);
+		assertEquals(bounds.getMaxX(), aGeometry.getMaxX(pNode), 0);
+		assertEquals(bounds.getMaxY(), aGeometry.getMaxY(pNode), 0);
+		assertEquals(bounds.getCenterX(), aGeometry.getCenterX(pNode), 0);
+		assertEquals(bounds.getCenterY(), aGeometry.getCenterY(pNode), 0);
+	}
+	
+	@Test
+	public void testIds()
+	{
+		assertEquals(4, aGeometry.size());
+		assertEquals(0, aGeometry.getId(aNode1));
+		assertEquals(1, aGeometry.getId(aNode2));
+		assertEquals(2, aGeometry.getId(aPackage));
+		assertEquals(3, aGeometry.getId(aChild));
+		assertEquals(-1, aGeometry.getId(new ClassNode()));
+	}
+	
+	@Test
+	public void testBounds()
+	{
+		assertBounds(aNode1);
+		assertBounds(aNode2);
+		assertBounds(aPackage);
+		assertBounds(aChild);
+	}
+	
+	@Test
+	public void testBoundsAfterChange()
+	{
+		aNode2.translate(15, -20);
+		assertBounds(aNode2);
+		aChild.translate(40, 0);
+		assertBounds(aChild);
+		PointNode point = new PointNode();
+		point.translate(5, 7);
+		assertBounds(point);
+		ClassNode detached = new ClassNode();
+		detached.translate(100, 100);
+		assertBounds(detached);
+	}
+	
+	@Test
+	public void testRectangles()
+	{
+		Rectangle2D bounds = aNode2.getBounds();
+		Rectangle2D rectangle = new Rectangle2D.Double(bounds.getX() - 1, bounds.getY() - 1, bounds.getWidth() + 2, bounds.getHeight() + 2);
+		assertTrue(aGeometry.isInside(aNode2, rectangle));
+		assertTrue(aGeometry.intersects(aNode2, rectangle));
+		assertFalse(aGeometry.isInside(aNode1, rectangle));
+		assertFalse(aGeometry.intersects(aNode1, rectangle));
+		
+		rectangle.setFrame(bounds.getCenterX(), bounds.getCenterY(), 1000, 1000);
+		assertFalse(aGeometry.isInside(aNode2, rectangle));
+		assertTrue(aGeometry.intersects(aNode2, rectangle));
+		
+		Rectangle2D union = aNode1.getBounds();
+		aGeometry.addTo(aNode2, union);
+		Rectangle2D expected = aNode1.getBounds();
+		expected.add(bounds);
+		assertEquals(expected, union);
+	}
+}
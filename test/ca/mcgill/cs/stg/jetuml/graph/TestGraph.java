@@ -25,17 +25,23 @@ import java.awt.Graphics2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import ca.mcgill.cs.stg.jetuml.diagrams.ClassDiagramGraph;
+import ca.mcgill.cs.stg.jetuml.framework.GraphModificationListener;
 import ca.mcgill.cs.stg.jetuml.framework.Grid;
+import ca.mcgill.cs.stg.jetuml.framework.Instrumentation;
 
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
 
 
 /**
@@ -194,6 +200,81 @@ public class TestGraph
 		assertFalse( aGraph.contains(aEdge2 ));
 	}
 	
+	@Test
+	public void testParallelLayout()
+	{
+		Graph sequential = createLargeGraph();
+		Graph parallel = createLargeGraph();
+		parallel.setParallelLayout(true);
+		sequential.layout(aGraphics, aGrid);
+		parallel.layout(aGraphics, aGrid);
+		assertEquals(sequential.getBounds(), parallel.getBounds());
+		Node[] expected = sequential.getRootNodes().toArray(new Node[0]);
+		Node[] actual = parallel.getRootNodes().toArray(new Node[0]);
+		assertEquals(expected.length, actual.length);
+		for( int i = 0; i < expected.length; i++ )
+		{
+			assertEquals(expected[i].getBounds(), actual[i].getBounds());
+		}
+		PackageNode packageNode = (PackageNode) actual[0];
+		assertEquals(((PackageNode)expected[0]).getChildren().get(0).getBounds(), packageNode.getChildren().get(0).getBounds());
+	}
+	
+	@Test
+	public void testRouteEdges()
+	{
+		Graph graph = new ClassDiagramGraph();
+		ClassNode[] nodes = new ClassNode[30];
+		for( int i = 0; i < nodes.length; i++ )
+		{
+			nodes[i] = new ClassNode();
+			nodes[i].translate(i % 6 * 200, i / 6 * 200);
+			graph.restoreRootNode(nodes[i]);
+		}
+		for( int i = 0; i < 300; i++ )
+		{
+			graph.restoreEdge(i % 2 == 0 ? new DependencyEdge() : new AggregationEdge(), nodes[i % nodes.length], nodes[(i * 7 + 1) % nodes.length]);
+		}
+		graph.layout(aGraphics, aGrid);
+		for( Edge edge : graph.getEdges() )
+		{
+			ClassRelationshipEdge relationship = (ClassRelationshipEdge) edge;
+			assertTrue(graph.getRoutedPath(edge) == relationship.getPoints());
+			assertArrayEquals(relationship.computePath(), relationship.getPoints());
+		}
+		
+		nodes[0].translate(1000, 1000);
+		graph.route();
+		assertNull(graph.getRoutedPath(graph.getEdges().iterator().next()));
+		graph.layout(aGraphics, aGrid);
+		for( Edge edge : graph.getEdges() )
+		{
+			ClassRelationshipEdge relationship = (ClassRelationshipEdge) edge;
+			assertArrayEquals(relationship.computePath(), relationship.getPoints());
+		}
+	}
+	
+	private static Graph createLargeGraph()
+	{
+		Graph graph = new ClassDiagramGraph();
+		PackageNode packageNode = new PackageNode();
+		packageNode.setName("package");
+		ClassNode child = new ClassNode();
+		child.getName().setText("Child");
+		child.setParent(packageNode);
+		packageNode.addChild(child);
+		graph.restoreRootNode(packageNode);
+		for( int i = 0; i < 400; i++ )
+		{
+			ClassNode node = new ClassNode();
+			node.getName().setText("Class" + i);
+			node.getMethods().setText(i % 3 == 0 ? "method" + i + "()" : "");
+			node.translate(i % 40 * 150, i / 40 * 150);
+			graph.restoreRootNode(node);
+		}
+		return graph;
+	}
+	
 	@Test
 	public void testGetBoundsEmpty()
 	{
@@ -256,4 +337,244 @@ public class TestGraph
 		node.translate(-50, -50);
 		assertEquals(new Rectangle2D.Double(0,0,104,64), graph.getBounds());
 	}
+	
+	@Test
+	public void testRemoveNodes()
+	{
+		PackageNode packageNode = new PackageNode();
+		ClassNode child = new ClassNode();
+		aGraph.insertNode(packageNode);
+		packageNode.addChild(child);
+		aGraph.restoreEdge(aEdge1, aNode1, aNode2);
+		aGraph.restoreEdge(aEdge2, aNode2, aNode3);
+		aGraph.removeNode(aNode2);
+		aGraph.removeNode(aNode2);
+		aGraph.removeEdge(aEdge1);
+		aGraph.removeNode(packageNode);
+		aGraph.removeNode(child);
+		assertTrue(packageNode.getChildren().isEmpty());
+		aGraph.draw(aGraphics, aGrid);
+		assertEquals(2, aGraph.getRootNodes().size());
+		assertTrue(aGraph.getRootNodes().contains(aNode1));
+		assertTrue(aGraph.getRootNodes().contains(aNode3));
+		assertTrue(aGraph.getEdges().isEmpty());
+		
+		// Removed nodes can be removed again once the graph is laid out
+		aGraph.insertNode(aNode2);
+		aGraph.draw(aGraphics, aGrid);
+		aGraph.removeNode(aNode2);
+		aGraph.draw(aGraphics, aGrid);
+		assertFalse(aGraph.getRootNodes().contains(aNode2));
+	}
+	
+	@Test
+	public void testRemoveNodesInBatch()
+	{
+		aGraph.restoreEdge(aEdge1, aNode1, aNode2);
+		aGraph.restoreEdge(aEdge2, aNode2, aNode3);
+		aGraph.beginBatch();
+		aGraph.removeNode(aNode1);
+		aEdge3.connect(aNode3, aNode2, aGraph);
+		aGraph.insertEdge(aEdge3); // Indexed while removing nodes
+		aGraph.removeNode(aNode2);
+		aGraph.commitBatch();
+		aGraph.draw(aGraphics, aGrid);
+		assertEquals(1, aGraph.getRootNodes().size());
+		assertTrue(aGraph.getEdges().isEmpty());
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testRemovedNodesChangedBySubclass() throws ReflectiveOperationException
+	{
+		Field field = Graph.class.getDeclaredField("aNodesToBeRemoved");
+		field.setAccessible(true);
+		ArrayList<Node> removed = (ArrayList<Node>) field.get(aGraph);
+		aGraph.removeNode(aNode1);
+		removed.clear();
+		removed.add(aNode3); // Same size as before
+		aGraph.removeNode(aNode3);
+		assertEquals(1, removed.size());
+		aGraph.removeNode(aNode1);
+		assertEquals(2, removed.size());
+		removed.set(1, aNode2);
+		aGraph.removeNode(aNode1);
+		assertEquals(3, removed.size());
+	}
+	
+	@Test
+	public void testLayoutSamples()
+	{
+		aGraph.draw(aGraphics, aGrid);
+		long count = Instrumentation.LAYOUT.getCount();
+		aGraph.draw(aGraphics, aGrid); // Nothing to lay out
+		assertEquals(count, Instrumentation.LAYOUT.getCount());
+		aGraph.route();
+		aGraph.draw(aGraphics, aGrid);
+		assertEquals(count + 1, Instrumentation.LAYOUT.getCount());
+		aGraph.layout();
+		aGraph.draw(aGraphics, aGrid);
+		assertEquals(count + 2, Instrumentation.LAYOUT.getCount());
+	}
+	
+	@Test
+	public void testContains()
+	{
+		PackageNode packageNode = new PackageNode();
+		ClassNode child = new ClassNode();
+		packageNode.addChild(child);
+		assertFalse(aGraph.contains(packageNode));
+		assertFalse(aGraph.contains(child));
+		aGraph.insertNode(packageNode);
+		assertTrue(aGraph.contains(packageNode));
+		assertTrue(aGraph.contains(child));
+		assertFalse(aGraph.contains(packageNode.clone()));
+		
+		ClassNode child2 = new ClassNode();
+		packageNode.addChild(child2);
+		assertTrue(aGraph.contains(child2));
+		packageNode.removeChild(child2);
+		assertFalse(aGraph.contains(child2));
+		
+		aGraph.removeNode(child);
+		assertFalse(aGraph.contains(child));
+		aGraph.insertNode(child);
+		assertTrue(aGraph.contains(child));
+		aGraph.draw(aGraphics, aGrid);
+		
+		// Root nodes and edges stay in the graph until the next layout
+		aGraph.restoreEdge(aEdge1, aNode1, packageNode);
+		aGraph.removeNode(packageNode);
+		assertTrue(aGraph.contains(packageNode));
+		assertTrue(aGraph.contains(aEdge1));
+		assertFalse(aGraph.contains(child));
+		aGraph.draw(aGraphics, aGrid);
+		assertFalse(aGraph.contains(packageNode));
+		assertFalse(aGraph.contains(aEdge1));
+		assertTrue(aGraph.contains(aNode1));
+	}
+	
+	@Test
+	public void testBatch()
+	{
+		final int[] events = new int[3]; // Starting, finishing, and added elements
+		aGraph.setGraphModificationListener(new GraphModificationListener()
+		{
+			public void startingCompoundOperation()
+			{
+				events[0]++;
+			}
+			
+			public void finishingCompoundOperation()
+			{
+				events[1]++;
+			}
+			
+			public void nodeAdded(Graph pGraph, Node pNode)
+			{
+				events[2]++;
+			}
+			
+			public void edgeAdded(Graph pGraph, Edge pEdge)
+			{
+				events[2]++;
+			}
+			
+			public void nodeRemoved(Graph pGraph, Node pNode) 
+			{}
+			
+			public void edgeRemoved(Graph pGraph, Edge pEdge) 
+			{}
+			
+			public void propertyChanged(Graph pGraph, GraphElement pElement, String pProperty, Object pOldValue, Object pNewValue) 
+			{}
+			
+			public void layoutChanged(Graph pGraph) 
+			{}
+		});
+		aNode1.translate(150, 0);
+		aNode2.translate(150, 200);
+		aGraph.beginBatch(1, 2);
+		aGraph.batch(new Runnable()
+		{
+			public void run()
+			{
+				aGraph.insertNode(new ClassNode());
+				aGraph.addEdge(aEdge1, new Point2D.Double(200, 30), new Point2D.Double(200, 200));
+			}
+		});
+		aGraph.insertEdge(aEdge2);
+		assertEquals(1, events[0]);
+		assertEquals(0, events[1]);
+		aGraph.commitBatch();
+		assertEquals(1, events[0]);
+		assertEquals(1, events[1]);
+		assertEquals(3, events[2]);
+		assertEquals(4, aGraph.getRootNodes().size());
+		assertTrue(aGraph.contains(aEdge1));
+		assertTrue(aGraph.contains(aEdge2));
+		
+		try
+		{
+			aGraph.batch(new Runnable()
+			{
+				public void run()
+				{
+					throw new IllegalStateException();
+				}
+			});
+			fail();
+		}
+		catch(IllegalStateException exception)
+		{
+			assertEquals(2, events[0]);
+			assertEquals(2, events[1]);
+		}
+	}
+	
+	@Test
+	public void testLayoutChanged()
+	{
+		final int[] layouts = new int[1];
+		aGraph.setGraphModificationListener(new GraphModificationListener()
+		{
+			public void startingCompoundOperation()
+			{}
+			
+			public void finishingCompoundOperation()
+			{}
+			
+			public void nodeAdded(Graph pGraph, Node pNode)
+			{}
+			
+			public void edgeAdded(Graph pGraph, Edge pEdge)
+			{}
+			
+			public void nodeRemoved(Graph pGraph, Node pNode) 
+			{}
+			
+			public void edgeRemoved(Graph pGraph, Edge pEdge) 
+			{}
+			
+			public void propertyChanged(Graph pGraph, GraphElement pElement, String pProperty, Object pOldValue, Object pNewValue) 
+			{}
+			
+			public void layoutChanged(Graph pGraph) 
+			{
+				layouts[0]++;
+			}
+		});
+		aGraph.insertNode(aNode1);
+		aGraph.draw(aGraphics, aGrid);
+		assertEquals(1, layouts[0]);
+		aGraph.draw(aGraphics, aGrid); // Painting alone does not change the layout
+		assertEquals(1, layouts[0]);
+		aNode1.translate(10, 10);
+		aGraph.route();
+		aGraph.draw(aGraphics, aGrid);
+		assertEquals(2, layouts[0]);
+		aGraph.layout();
+		aGraph.draw(aGraphics, aGrid);
+		assertEquals(3, layouts[0]);
+	}
 }
@@ -22,8 +22,11 @@ package ca.mcgill.cs.stg.jetuml.graph;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
+import java.awt.Shape;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 
@@ -67,6 +70,20 @@ public class TestPackageNode
 		assertEquals(new Rectangle2D.Double(0, 0, 100, 80), aPackage1.getShape().getBounds());
 	}
 	
+	@Test
+	public void testShapeCache()
+	{
+		aPackage1.addChild(aClass1);
+		Shape shape = aPackage1.getShape();
+		assertSame(shape, aPackage1.getShape());
+		aPackage1.translate(10, 20);
+		assertNotSame(shape, aPackage1.getShape());
+		assertEquals(new Rectangle2D.Double(10, 20, 100, 80), aPackage1.getShape().getBounds());
+		PackageNode clone = aPackage1.clone();
+		assertNotSame(aPackage1.getShape(), clone.getShape());
+		assertEquals(new Rectangle2D.Double(10, 20, 100, 80), clone.getShape().getBounds());
+	}
+	
 	@Test
 	public void testAddChild()
 	{